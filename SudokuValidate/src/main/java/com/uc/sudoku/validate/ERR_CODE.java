@@ -30,15 +30,24 @@ public enum ERR_CODE {
 	
 	private String statusCode;
 	private String description;
+	private int category;
 	private ERR_CODE(String code, String desc){
 		this.statusCode = code;
 		this.description = desc;
+		this.category = Integer.parseInt(code) / 1000;
 	}
 	
 	public String getStatusCode() {
 		return statusCode;
 	}
 	
+	/**
+	 * @return the thousands of the status code: 1 for file, 2 for structure and 3 for logic errors
+	 */
+	public int getCategory() {
+		return category;
+	}
+	
 	public String getDescription() {
 		return description;
 	}
@@ -0,0 +1,358 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuArchiveReader
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Validates the puzzle files packed into an archive without extracting them to disk, one entry after the other.<p>
+ * Two kinds of archives are supported:
+ * <ul>
+ * <li>zip archives, '*.zip': every '*.txt' entry is a puzzle file, other entries and directories are skipped</li>
+ * <li>gzip files, '*.gz': the single puzzle file compressed, whose entry name is the file name without '.gz'</li>
+ * </ul>
+ * Each entry is validated with the same rules and error codes as a single grid file, and reported under
+ * 		its source <code>archive!/entry</code>, see {@link #getSource()}. An entry that cannot be read is returned as
+ * 		a grid in error {@link ERR_CODE#UNABLE_TO_READ_SUDOKU_FILE}, and reading goes on with the next entry.
+ * 		So is an entry larger than {@value #MAX_ENTRY_SIZE} bytes, far more than the text of the largest grid,
+ * 		which is inflated no further than that.
+ * The returned grids carry their zero-based position among the validated entries as {@link SudokuProposedSolution#getRecordIndex()}.
+ * <p>
+ * The entries of a zip archive may as well be inflated and validated in parallel, see {@link #validateEntry(ZipFile, ZipEntry, SudokuProposedSolution)}
+ * 		and {@link SudokuBatchValidate}. A gzip file is a single stream and is always read sequentially.
+ * <p>
+ * A reader is not thread-safe.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public class SudokuArchiveReader implements Iterator<SudokuProposedSolution>, Closeable {
+
+	private static Logger LOGGER = Logger.getLogger(SudokuArchiveReader.class);
+
+	public static final String ZIP_EXTN = ".zip";
+
+	public static final String GZIP_EXTN = ".gz";
+
+	// separates the archive from the entry in the source of a grid, as in jar URLs
+	public static final String ENTRY_SEPARATOR = "!/";
+
+	// the largest entry validated, in bytes, so that a compression bomb is not inflated further
+	public static final int MAX_ENTRY_SIZE = 1 << 20;
+
+	private final Path file;
+
+	// the open zip archive, null for a gzip file
+	private final ZipFile zip;
+
+	private final Enumeration<? extends ZipEntry> entries;
+
+	// the single entry of a gzip file, null once validated
+	private String gzipEntry;
+
+	// the entry of the grid returned by the following call to next(), null if not yet read
+	private String nextEntry;
+
+	private String entry;
+
+	private long nextIndex = 0;
+
+	private boolean reuseGrid = false;
+
+	private SudokuVariant variant = SudokuVariant.STANDARD;
+
+	private ValidationPolicy policy = ValidationPolicy.EXHAUSTIVE;
+
+	// the grid validated into last
+	private SudokuProposedSolution current;
+
+	private SudokuArchiveReader(Path file, ZipFile zip) {
+		this.file = file;
+		this.zip = zip;
+		if (zip != null) {
+			entries = zip.entries();
+		} else {
+			entries = null;
+			gzipEntry = gzipEntryName(file);
+		}
+	}
+
+	/**
+	 * @return true if the file name denotes a supported archive
+	 */
+	public static boolean isArchive(String name) {
+		String lower = name.toLowerCase();
+		return lower.endsWith(ZIP_EXTN) || lower.endsWith(GZIP_EXTN);
+	}
+
+	/**
+	 * Opens an archive, see {@link #isArchive(String)}.
+	 *
+	 * @throws IOException  if the file cannot be opened, or is not a zip archive although named '*.zip'
+	 */
+	public static SudokuArchiveReader open(Path file) throws IOException {
+		String name = file.getFileName().toString();
+		if (name.toLowerCase().endsWith(ZIP_EXTN)) {
+			return new SudokuArchiveReader(file, new ZipFile(file.toFile()));
+		}
+		if (!Files.isReadable(file)) {
+			throw new FileNotFoundException(file.toString());
+		}
+		return new SudokuArchiveReader(file, null);
+	}
+
+	/**
+	 * @return true if the zip entry holds a puzzle file
+	 */
+	public static boolean isPuzzleEntry(ZipEntry entry) {
+		return !entry.isDirectory() && entry.getName().endsWith(SudokuValidateUtils.PUZZLE_FILE_EXTN);
+	}
+
+	/**
+	 * Validates a single entry of a zip archive into the given grid, which is reset first.
+	 * 		May be called by several threads at once for different entries of the same archive.
+	 *
+	 * @return  the given grid, in error {@link ERR_CODE#UNABLE_TO_READ_SUDOKU_FILE} if the entry cannot be read
+	 */
+	public static SudokuProposedSolution validateEntry(ZipFile zip, ZipEntry entry, SudokuProposedSolution grid) {
+		try {
+			if (entry.getSize() > MAX_ENTRY_SIZE) {
+				throw tooLarge(entry.getName());
+			}
+			InputStream in = new LimitedInputStream(zip.getInputStream(entry), entry.getName());
+			try {
+				SudokuProposedSolution.validate(in, grid);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			grid.reset();
+			grid.addErr(readError(e));
+		}
+		return grid;
+	}
+
+	/**
+	 * Validates the single entry of a gzip file into the given grid, which is reset first.
+	 *
+	 * @return  the given grid, in error {@link ERR_CODE#MISSING_SUDOKU_FILE} or {@link ERR_CODE#UNABLE_TO_READ_SUDOKU_FILE}
+	 * 		if the file cannot be read
+	 */
+	public static SudokuProposedSolution validateGzip(Path file, SudokuProposedSolution grid) {
+		try {
+			InputStream in = new LimitedInputStream(new GZIPInputStream(Files.newInputStream(file)), gzipEntryName(file));
+			try {
+				SudokuProposedSolution.validate(in, grid);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			grid.reset();
+			grid.addErr(readError(e));
+		}
+		return grid;
+	}
+
+	/**
+	 * @return the name of the file compressed into a gzip file, taken from the name of the gzip file
+	 */
+	public static String gzipEntryName(Path file) {
+		String name = file.getFileName().toString();
+		return name.substring(0, name.length() - GZIP_EXTN.length());
+	}
+
+	/**
+	 * @return the error reporting an archive or entry that cannot be read
+	 */
+	static ValidationError readError(IOException e) {
+		if (e instanceof FileNotFoundException || e instanceof NoSuchFileException) {
+			return new ValidationError(ERR_CODE.MISSING_SUDOKU_FILE, e);
+		}
+		return new ValidationError(ERR_CODE.UNABLE_TO_READ_SUDOKU_FILE, e);
+	}
+
+	private static IOException tooLarge(String entry) {
+		return new IOException(entry + ": larger than " + MAX_ENTRY_SIZE + " bytes");
+	}
+
+	/**
+	 * @return the source under which an entry of an archive is reported
+	 */
+	public static String source(Path archive, String entry) {
+		return archive + ENTRY_SEPARATOR + entry;
+	}
+
+	public boolean hasNext() {
+		if (nextEntry == null) {
+			if (zip != null) {
+				while (entries.hasMoreElements()) {
+					ZipEntry candidate = entries.nextElement();
+					if (isPuzzleEntry(candidate)) {
+						nextEntry = candidate.getName();
+						break;
+					}
+					if (LOGGER.isDebugEnabled()) {
+						LOGGER.debug(source(file, candidate.getName()) + ": skipped");
+					}
+				}
+			} else {
+				nextEntry = gzipEntry;
+				gzipEntry = null;
+			}
+		}
+		return nextEntry != null;
+	}
+
+	public SudokuProposedSolution next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		entry = nextEntry;
+		nextEntry = null;
+
+		SudokuProposedSolution grid = nextGrid();
+		if (zip != null) {
+			validateEntry(zip, zip.getEntry(entry), grid);
+		} else {
+			validateGzip(file, grid);
+		}
+		grid.setRecordIndex(nextIndex++);
+		return grid;
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	public void close() throws IOException {
+		if (zip != null) {
+			zip.close();
+		}
+	}
+
+	private SudokuProposedSolution nextGrid() {
+		if (!reuseGrid || current == null) {
+			current = new SudokuProposedSolution(variant);
+			current.setValidationPolicy(policy);
+		}
+		return current;
+	}
+
+	// JavaBean accessors
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * @return the name of the entry of the grid returned last, null before the first call to {@link #next()}
+	 */
+	public String getEntryName() {
+		return entry;
+	}
+
+	/**
+	 * @return <code>archive!/entry</code> for the grid returned last
+	 */
+	public String getSource() {
+		return source(file, entry);
+	}
+
+	public boolean isReuseGrid() {
+		return reuseGrid;
+	}
+
+	/**
+	 * @param reuseGrid  true to validate every entry into the same grid, which is then only valid until the next call to {@link #next()}
+	 */
+	public void setReuseGrid(boolean reuseGrid) {
+		this.reuseGrid = reuseGrid;
+	}
+
+	public SudokuGeometry getGeometry() {
+		return variant.getGeometry();
+	}
+
+	/**
+	 * @param geometry  the geometry of the grids of this archive, 9x9 by default, selecting its classic variant
+	 */
+	public void setGeometry(SudokuGeometry geometry) {
+		this.variant = SudokuVariant.classic(geometry);
+		current = null;
+	}
+
+	public SudokuVariant getVariant() {
+		return variant;
+	}
+
+	/**
+	 * @param variant  the variant of the grids of this archive, which also sets their geometry, classic 9x9 by default
+	 */
+	public void setVariant(SudokuVariant variant) {
+		this.variant = variant;
+		current = null;
+	}
+
+	public ValidationPolicy getValidationPolicy() {
+		return policy;
+	}
+
+	/**
+	 * @param policy  the validation policy of the grids of this archive, exhaustive by default
+	 */
+	public void setValidationPolicy(ValidationPolicy policy) {
+		this.policy = policy;
+		current = null;
+	}
+
+	/**
+	 * Fails once more than {@value SudokuArchiveReader#MAX_ENTRY_SIZE} bytes have been read, whatever size the entry declares.
+	 */
+	private static final class LimitedInputStream extends FilterInputStream {
+
+		private final String entry;
+
+		private int remaining = MAX_ENTRY_SIZE;
+
+		LimitedInputStream(InputStream in, String entry) {
+			super(in);
+			this.entry = entry;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0 && --remaining < 0) {
+				throw tooLarge(entry);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			// one byte more than the limit, to tell an entry of exactly the limit from a larger one
+			int n = super.read(b, off, Math.min(len, remaining + 1));
+			if (n > 0 && (remaining -= n) < 0) {
+				throw tooLarge(entry);
+			}
+			return n;
+		}
+	}
+}
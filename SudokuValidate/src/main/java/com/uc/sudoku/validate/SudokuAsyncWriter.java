@@ -0,0 +1,150 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuAsyncWriter
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes formatted records from a background thread.<p>
+ * Callers hand over complete records, which are queued and written in batches of up to {@value #BATCH_SIZE}
+ * 		records, flushing the target once per batch instead of once per record. Callers therefore never wait for I/O,
+ * 		only for room in the bounded queue should the target fall behind by more than its capacity.
+ * <p>
+ * {@link #write(String)} may be called from any number of threads. A failure of the target is rethrown by the
+ * 		following call to {@link #write(String)} or {@link #close()}; records queued after the failure are discarded.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public class SudokuAsyncWriter implements Closeable {
+
+	public static final int BATCH_SIZE = 256;
+
+	// marks the end of the queue, compared by identity
+	private static final String END = new String("");
+
+	private final BlockingQueue<String> queue;
+
+	private final Writer out;
+
+	private final Thread thread;
+
+	private final AtomicLong written = new AtomicLong();
+
+	private volatile IOException failure;
+
+	private boolean closed = false;
+
+	/**
+	 * @param out       the target, which is closed together with this writer
+	 * @param capacity  the number of records that may be queued
+	 */
+	public SudokuAsyncWriter(Writer out, int capacity) {
+		this.out = out;
+		this.queue = new ArrayBlockingQueue<String>(capacity);
+		this.thread = new Thread(new Runnable() {
+			public void run() {
+				drain();
+			}
+		}, "sudoku-report-writer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Queues a record, which must include its line separator.
+	 */
+	public void write(String record) throws IOException {
+		checkFailure();
+		try {
+			queue.put(record);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while queueing a record");
+		}
+	}
+
+	/**
+	 * Writes all queued records, then closes the target.
+	 */
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			queue.put(END);
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while closing");
+		} finally {
+			out.close();
+		}
+		checkFailure();
+	}
+
+	/**
+	 * @return the number of records written to the target so far
+	 */
+	public long getWritten() {
+		return written.get();
+	}
+
+	private void checkFailure() throws IOException {
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private void drain() {
+		List<String> batch = new ArrayList<String>(BATCH_SIZE);
+		try {
+			while (true) {
+				batch.add(queue.take());
+				queue.drainTo(batch, BATCH_SIZE - 1);
+				for (String record : batch) {
+					if (record == END) {
+						out.flush();
+						return;
+					}
+					out.write(record);
+					written.incrementAndGet();
+				}
+				out.flush();
+				batch.clear();
+			}
+		} catch (IOException e) {
+			failure = e;
+			for (String record : batch) {
+				if (record == END) {
+					return;
+				}
+			}
+			// keep taking records so that writers are not blocked forever
+			drainAfterFailure();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void drainAfterFailure() {
+		try {
+			while (queue.take() != END) {
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,162 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuBatchSummary
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Aggregated outcome of a batch validation run.<br>
+ * Counts the total number of validated grids, the number of valid grids and, per {@link ERR_CODE},
+ * 		the number of grids reporting at least one error of that code.<p>
+ * Instances are thread-safe so that all validation threads of a batch run may record into the same summary.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public class SudokuBatchSummary {
+
+	private final AtomicLong total = new AtomicLong();
+
+	private final AtomicLong valid = new AtomicLong();
+
+	// grids whose outcome was taken from a manifest, see SudokuManifest
+	private final AtomicLong unchanged = new AtomicLong();
+
+	// indexed by ERR_CODE.ordinal()
+	private final AtomicLongArray errCounts = new AtomicLongArray(ERR_CODE.values().length);
+
+	private volatile long startNanos = System.nanoTime();
+
+	private volatile long endNanos = -1;
+
+	/**
+	 * Records the outcome of a single validated grid.
+	 *
+	 * @param grid  the validated grid
+	 */
+	public void record(SudokuProposedSolution grid) {
+		total.incrementAndGet();
+		if (!grid.isInError()) {
+			valid.incrementAndGet();
+			return;
+		}
+
+		// count each error code once per grid
+		int seen = 0;
+		for (int i = 0; i < grid.getErrCount(); i++) {
+			int ordinal = grid.getErrCode(i).ordinal();
+			if ((seen & (1 << ordinal)) == 0) {
+				seen |= 1 << ordinal;
+				errCounts.incrementAndGet(ordinal);
+			}
+		}
+	}
+
+	/**
+	 * Records the outcome of a grid taken from a {@link SudokuManifest} rather than validated.
+	 *
+	 * @param grid  the grid holding the recorded errors
+	 */
+	public void recordUnchanged(SudokuProposedSolution grid) {
+		unchanged.incrementAndGet();
+		record(grid);
+	}
+
+	/**
+	 * Adds the counts of another summary, e.g. of a shard validated by another process, see {@link SudokuShardCoordinator}.
+	 */
+	public void add(SudokuBatchSummary other) {
+		long[] counts = new long[errCounts.length()];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = other.errCounts.get(i);
+		}
+		add(other.getTotal(), other.getValid(), other.getUnchanged(), counts);
+	}
+
+	/**
+	 * Adds counts received from another process.
+	 *
+	 * @param errCounts  indexed by ERR_CODE.ordinal(), codes beyond those known to this summary are ignored
+	 */
+	void add(long total, long valid, long unchanged, long[] errCounts) {
+		this.total.addAndGet(total);
+		this.valid.addAndGet(valid);
+		this.unchanged.addAndGet(unchanged);
+		for (int i = 0; i < Math.min(errCounts.length, this.errCounts.length()); i++) {
+			this.errCounts.addAndGet(i, errCounts[i]);
+		}
+	}
+
+	/**
+	 * (Re)starts the clock used to compute the throughput of the run.
+	 */
+	public void start() {
+		startNanos = System.nanoTime();
+		endNanos = -1;
+	}
+
+	/**
+	 * Stops the clock used to compute the throughput of the run.
+	 */
+	public void stop() {
+		endNanos = System.nanoTime();
+	}
+
+	// JavaBean accessors
+	public long getTotal() {
+		return total.get();
+	}
+
+	public long getValid() {
+		return valid.get();
+	}
+
+	public long getInvalid() {
+		return getTotal() - getValid();
+	}
+
+	public long getUnchanged() {
+		return unchanged.get();
+	}
+
+	public long getErrCount(ERR_CODE code) {
+		return errCounts.get(code.ordinal());
+	}
+
+	public long getElapsedMillis() {
+		long end = endNanos < 0 ? System.nanoTime() : endNanos;
+		return (end - startNanos) / 1000000L;
+	}
+
+	public double getFilesPerSecond() {
+		long millis = getElapsedMillis();
+		return millis > 0 ? getTotal() * 1000d / millis : getTotal();
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("\n\t\t\t\tBatch Summary:");
+		sb.append("\n\t\t\t\t-------------------------");
+		sb.append("\n\t\t\t\tTotal:   ").append(getTotal());
+		sb.append("\n\t\t\t\tValid:   ").append(getValid());
+		sb.append("\n\t\t\t\tInvalid: ").append(getInvalid());
+		if (getUnchanged() > 0) {
+			sb.append("\n\t\t\t\tUnchanged: ").append(getUnchanged());
+		}
+		sb.append("\n\t\t\t\t-------------------------");
+		for (ERR_CODE code : ERR_CODE.values()) {
+			long count = getErrCount(code);
+			if (count > 0) {
+				sb.append("\n\t\t\t\tStatus Code ").append(code.getStatusCode()).append(" (").append(code.name()).append("): ").append(count);
+			}
+		}
+		sb.append("\n\t\t\t\t-------------------------");
+		sb.append("\n\t\t\t\tElapsed: ").append(getElapsedMillis()).append(" ms");
+		sb.append("\n\t\t\t\tRate:    ").append(String.format("%.1f", getFilesPerSecond())).append(" files/sec\n");
+		return sb.toString();
+	}
+}
@@ -0,0 +1,304 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuBatchValidate
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Enumeration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Validates many Sudoku solution files within a single JVM.<p>
+ * Input specifications may be
+ * <ul>
+ * <li>a single puzzle file</li>
+ * <li>an archive of puzzle files, '*.zip' or '*.gz', see {@link SudokuArchiveReader}</li>
+ * <li>a directory, which is searched recursively for '*.txt' files and archives</li>
+ * <li>a glob pattern such as <code>submissions/**&#47;*.txt</code></li>
+ * <li>a file list prefixed by '@', each non-blank line of which is again an input specification</li>
+ * </ul>
+ * Files are validated in parallel on a fixed size thread pool. The work queue of the pool is bounded; when it is full
+ * 		the thread walking the inputs validates the file itself, so that arbitrarily large trees are processed
+ * 		with a constant amount of memory.<br>
+ * The entries of a zip archive are inflated and validated in parallel just like files, straight from the archive,
+ * 		and reported under their source <code>archive!/entry</code>.<br>
+ * With a {@link SudokuManifest} set, files unchanged since an earlier run are reported from the manifest
+ * 		instead of being validated again.<br>
+ * The outcome of all files is aggregated into a single {@link SudokuBatchSummary}.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public class SudokuBatchValidate {
+
+	private static Logger LOGGER = Logger.getLogger(SudokuBatchValidate.class);
+
+	// number of queued files per worker thread before the submitting thread has to help out
+	private static final int QUEUE_SIZE_PER_THREAD = 64;
+
+	private final int threads;
+
+	private final SudokuBatchSummary summary = new SudokuBatchSummary();
+
+	private ThreadPoolExecutor executor;
+
+	private final SudokuInputResolver resolver = new SudokuInputResolver() {
+		@Override
+		void accept(Path file, BasicFileAttributes attrs) {
+			submit(file, attrs);
+		}
+	};
+
+	// receives the outcome of every file, if set
+	private SudokuResultSink sink;
+
+	// holds the outcomes of earlier runs, if set
+	private SudokuManifest manifest;
+
+	private volatile SudokuVariant variant = SudokuVariant.STANDARD;
+
+	private volatile ValidationPolicy policy = ValidationPolicy.EXHAUSTIVE;
+
+	// every validation thread validates into its own grid over and over, see grid()
+	private final ThreadLocal<SudokuProposedSolution> grids = new ThreadLocal<SudokuProposedSolution>() {
+		@Override
+		protected SudokuProposedSolution initialValue() {
+			return new SudokuProposedSolution(variant);
+		}
+	};
+
+	/**
+	 * @param threads  the number of validation threads. Values below 1 default to the number of available processors.
+	 */
+	public SudokuBatchValidate(int threads) {
+		this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Validates all files matching the given input specifications and blocks until all of them have been validated.
+	 *
+	 * @param specs  files, directories, glob patterns or '@' file lists
+	 * @return       the aggregated summary of the run
+	 */
+	public SudokuBatchSummary validate(String... specs) throws IOException, InterruptedException {
+		executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(threads * QUEUE_SIZE_PER_THREAD),
+				new ThreadPoolExecutor.CallerRunsPolicy());
+		summary.start();
+		try {
+			for (String spec : specs) {
+				resolver.resolve(spec);
+			}
+		} finally {
+			executor.shutdown();
+			while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+				if (LOGGER.isDebugEnabled()) {
+					LOGGER.debug("Files validated so far: " + summary.getTotal());
+				}
+			}
+			summary.stop();
+		}
+		return summary;
+	}
+
+	public SudokuBatchSummary getSummary() {
+		return summary;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public SudokuResultSink getSink() {
+		return sink;
+	}
+
+	/**
+	 * @param sink  receives the outcome of every validated file, null for none. The sink is not closed by this class.
+	 */
+	public void setSink(SudokuResultSink sink) {
+		this.sink = sink;
+	}
+
+	public SudokuManifest getManifest() {
+		return manifest;
+	}
+
+	/**
+	 * @param manifest  the outcomes of earlier runs, null for none. Files unchanged since are reported from the manifest
+	 * 		rather than validated, unless the sink reports grids, see {@link SudokuResultSink#setIncludeGrid(boolean)}.
+	 * 		Archives are always validated. The manifest must match the geometry and policy of the batch and is not closed by this class.
+	 * 		It is not used for variants other than the classic one, see {@link #setVariant(SudokuVariant)}.
+	 */
+	public void setManifest(SudokuManifest manifest) {
+		this.manifest = manifest;
+	}
+
+	public SudokuGeometry getGeometry() {
+		return variant.getGeometry();
+	}
+
+	/**
+	 * @param geometry  the geometry of all files of the batch, 9x9 by default, selecting its classic variant.
+	 * 		To be set before {@link #validate(String...)}.
+	 */
+	public void setGeometry(SudokuGeometry geometry) {
+		this.variant = SudokuVariant.classic(geometry);
+	}
+
+	public SudokuVariant getVariant() {
+		return variant;
+	}
+
+	/**
+	 * @param variant  the variant of all files of the batch, which also sets their geometry, classic 9x9 by default.
+	 * 		To be set before {@link #validate(String...)}.
+	 */
+	public void setVariant(SudokuVariant variant) {
+		this.variant = variant;
+	}
+
+	public ValidationPolicy getValidationPolicy() {
+		return policy;
+	}
+
+	/**
+	 * @param policy  the validation policy of all files of the batch, exhaustive by default. To be set before {@link #validate(String...)}.
+	 */
+	public void setValidationPolicy(ValidationPolicy policy) {
+		this.policy = policy;
+	}
+
+	/**
+	 * @param attrs  the attributes of a file found by walking a tree, null otherwise
+	 */
+	private void submit(final Path file, final BasicFileAttributes attrs) {
+		String name = file.getFileName().toString().toLowerCase();
+		if (name.endsWith(SudokuArchiveReader.ZIP_EXTN)) {
+			submitZip(file);
+			return;
+		}
+		if (name.endsWith(SudokuArchiveReader.GZIP_EXTN)) {
+			submitGzip(file);
+			return;
+		}
+		executor.execute(new Runnable() {
+			public void run() {
+				SudokuProposedSolution grid = grid();
+				if (manifest != null && variant.isClassic() && (sink == null || !sink.isIncludeGrid())) {
+					try {
+						record(file.toString(), grid, manifest.validate(file, attrs, grid));
+						return;
+					} catch (IOException e) {
+						// reported by validating the file as usual
+					}
+				}
+				record(file.toString(), SudokuValidate.validateFile(file.toString(), grid), false);
+			}
+		});
+	}
+
+	/**
+	 * Submits every puzzle entry of a zip archive on its own. The archive is closed by whichever thread
+	 * 		finishes last, the submitting thread or the validation of an entry.
+	 */
+	private void submitZip(final Path file) {
+		final ZipFile zip;
+		try {
+			zip = new ZipFile(file.toFile());
+		} catch (IOException e) {
+			SudokuProposedSolution grid = grid();
+			grid.reset();
+			grid.addErr(SudokuArchiveReader.readError(e));
+			record(file.toString(), grid, false);
+			return;
+		}
+
+		final AtomicInteger users = new AtomicInteger(1);
+		try {
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			while (entries.hasMoreElements()) {
+				final ZipEntry entry = entries.nextElement();
+				if (!SudokuArchiveReader.isPuzzleEntry(entry)) {
+					continue;
+				}
+				users.incrementAndGet();
+				executor.execute(new Runnable() {
+					public void run() {
+						try {
+							SudokuProposedSolution grid = SudokuArchiveReader.validateEntry(zip, entry, grid());
+							record(SudokuArchiveReader.source(file, entry.getName()), grid, false);
+						} finally {
+							release(zip, users);
+						}
+					}
+				});
+			}
+		} finally {
+			release(zip, users);
+		}
+	}
+
+	// a gzip file can only be read from start to end, so its single entry is validated by one task
+	private void submitGzip(final Path file) {
+		executor.execute(new Runnable() {
+			public void run() {
+				SudokuProposedSolution grid = SudokuArchiveReader.validateGzip(file, grid());
+				record(SudokuArchiveReader.source(file, SudokuArchiveReader.gzipEntryName(file)), grid, false);
+			}
+		});
+	}
+
+	/**
+	 * @return the grid of the calling thread for the current variant and policy. The thread walking the inputs
+	 * 		keeps its grid from one run to the next, so it is built again if the variant has been changed since.
+	 */
+	private SudokuProposedSolution grid() {
+		SudokuProposedSolution grid = grids.get();
+		if (grid.getVariant() != variant) {
+			grid = new SudokuProposedSolution(variant);
+			grids.set(grid);
+		}
+		grid.setValidationPolicy(policy);
+		return grid;
+	}
+
+	private static void release(ZipFile zip, AtomicInteger users) {
+		if (users.decrementAndGet() == 0) {
+			try {
+				zip.close();
+			} catch (IOException e) {
+				LOGGER.error("Unable to close " + zip.getName() + ": " + e.getMessage());
+			}
+		}
+	}
+
+	private void record(String source, SudokuProposedSolution grid, boolean unchanged) {
+		if (unchanged) {
+			summary.recordUnchanged(grid);
+		} else {
+			summary.record(grid);
+		}
+		if (sink != null) {
+			try {
+				sink.write(source, grid);
+			} catch (IOException e) {
+				LOGGER.error(source + ": unable to report, " + e.getMessage());
+			}
+		}
+		if (grid.isInError() && LOGGER.isDebugEnabled()) {
+			LOGGER.debug(source + ": " + grid.getErrs().get(0).getError());
+		}
+	}
+}
@@ -0,0 +1,155 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuBitboardChecker
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+/**
+ * Checks complete 81 cell grids given as digits rather than text.<p>
+ * The row, column and subgrid masks are built in one pass without branches, using precomputed
+ * 		cell to row/column/subgrid tables instead of a division and a modulo per cell.
+ * A grid is valid if and only if all 27 masks equal {@link #FULL_MASK}, i.e. each row, column
+ * 		and subgrid holds every digit from 1 to 9, and every cell holds a digit from 1 to 9. The latter is checked
+ * 		alongside the masks, as a shift by a negative or large number wraps around onto the bit of a digit.<br>
+ * Only grids failing this check are walked again cell by cell through {@link SudokuProposedSolution#set(int, int)},
+ * 		which reports exactly the same conflicting cells as validating the grid's text would.<br>
+ * Grids of other geometries, see {@link SudokuGeometry}, take the same steps with the tables and full mask of their geometry.
+ * 		The largest of them may be checked on several threads instead, see {@link SudokuParallelChecker}.
+ * 		Grids of other variants, see {@link SudokuVariant}, are checked with the region table of their variant
+ * 		and also build the masks of the units the variant adds, which must be full as well.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public final class SudokuBitboardChecker {
+
+	// the mask of a unit holding all digits 1..9, bit n standing for digit n
+	public static final int FULL_MASK = 0x3FE;
+
+	static final byte[] ROW_OF = SudokuGeometry.STANDARD.rowOf;
+
+	static final byte[] COL_OF = SudokuGeometry.STANDARD.colOf;
+
+	static final byte[] BOX_OF = SudokuGeometry.STANDARD.boxOf;
+
+	private SudokuBitboardChecker() {
+	}
+
+	/**
+	 * Validates the digits of a complete grid into the given grid, which is reset first.<br>
+	 * Valid grids end up in exactly the state filling them through {@link SudokuProposedSolution#set(int, int)} would give.
+	 * For invalid grids every cell conflicting with an earlier one is reported as {@link ERR_CODE#NUMBER_ALREADY_USED},
+	 * 		an empty cell (0) as {@link ERR_CODE#MISSING_DIGITS_IN_ROW} and any other value, negative ones included,
+	 * 		as {@link ERR_CODE#INVALID_CHARACTERS_IN_ROW}.
+	 *
+	 * @param cells  the 81 digits in left-to-right and top-down order,
+	 * 		or as many numbers as the geometry of the grid has cells
+	 * @param grid   the grid to validate into
+	 * @return       true if the grid is valid
+	 */
+	public static boolean check(int[] cells, SudokuProposedSolution grid) {
+		if (grid.getVariant() != SudokuVariant.STANDARD) {
+			return checkVariant(cells, grid);
+		}
+		grid.reset();
+		long[] rows = grid.rowMasks();
+		long[] cols = grid.colMasks();
+		long[] boxes = grid.subgridMasks();
+
+		// negative once any cell is out of [1, 9]
+		int range = 0;
+		for (int loc = 0; loc < 81; loc++) {
+			int num = cells[loc];
+			range |= (num - 1) | (9 - num);
+			long bit = 1L << num;
+			rows[ROW_OF[loc]] |= bit;
+			cols[COL_OF[loc]] |= bit;
+			boxes[BOX_OF[loc]] |= bit;
+		}
+
+		long diff = 0;
+		for (int i = 0; i < 9; i++) {
+			diff |= (rows[i] ^ FULL_MASK) | (cols[i] ^ FULL_MASK) | (boxes[i] ^ FULL_MASK);
+		}
+		if (diff == 0 && range >= 0) {
+			System.arraycopy(cells, 0, grid.cells(), 0, 81);
+			return true;
+		}
+
+		replay(cells, grid);
+		return false;
+	}
+
+	// the same check for grids of any geometry and variant
+	private static boolean checkVariant(int[] cells, SudokuProposedSolution grid) {
+		grid.reset();
+		SudokuVariant variant = grid.getVariant();
+		SudokuGeometry geometry = grid.getGeometry();
+		byte[] rowOf = geometry.rowOf, colOf = geometry.colOf, boxOf = variant.boxOf;
+		int[] unitStart = variant.unitStart, unitOf = variant.unitOf;
+		long[] rows = grid.rowMasks();
+		long[] cols = grid.colMasks();
+		long[] boxes = grid.subgridMasks();
+		long[] units = grid.unitMasks();
+		int count = geometry.getCellCount(), side = geometry.getSide();
+
+		int range = 0;
+		for (int loc = 0; loc < count; loc++) {
+			int num = cells[loc];
+			range |= (num - 1) | (side - num);
+			long bit = 1L << num;
+			rows[rowOf[loc]] |= bit;
+			cols[colOf[loc]] |= bit;
+			boxes[boxOf[loc]] |= bit;
+			for (int k = unitStart[loc]; k < unitStart[loc + 1]; k++) {
+				units[unitOf[k]] |= bit;
+			}
+		}
+
+		long full = geometry.getFullMask();
+		long diff = 0;
+		for (int i = 0; i < side; i++) {
+			diff |= (rows[i] ^ full) | (cols[i] ^ full) | (boxes[i] ^ full);
+		}
+		for (long unit : units) {
+			diff |= unit ^ full;
+		}
+		if (diff == 0 && range >= 0) {
+			System.arraycopy(cells, 0, grid.cells(), 0, count);
+			return true;
+		}
+
+		replay(cells, grid);
+		return false;
+	}
+
+	// the sequential walk reporting the offending cells
+	private static void replay(int[] cells, SudokuProposedSolution grid) {
+		grid.reset();
+		SudokuGeometry geometry = grid.getGeometry();
+		int side = geometry.getSide();
+		for (int loc = 0; loc < geometry.getCellCount(); loc++) {
+			int num = cells[loc];
+			int row = geometry.rowOf[loc], col = geometry.colOf[loc];
+			if (num == 0) {
+				grid.addErr(ERR_CODE.MISSING_DIGITS_IN_ROW, row, col, 0);
+				return;
+			} else if (num < 0 || num > side) {
+				grid.addErr(ERR_CODE.INVALID_CHARACTERS_IN_ROW, row, col, symbolOf(num));
+			} else if (!grid.set(loc, num)) {
+				grid.addErr(ERR_CODE.NUMBER_ALREADY_USED, row, col, num);
+			} else {
+				continue;
+			}
+			if (grid.getValidationPolicy() == ValidationPolicy.FAIL_FAST) {
+				return;
+			}
+		}
+	}
+
+	// the character reported for an invalid number, as rendered by SudokuGeometry, '?' if it has none
+	static int symbolOf(int num) {
+		return num > 0 && num < 36 ? SudokuGeometry.symbolOf(num) : '?';
+	}
+}
@@ -0,0 +1,103 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuBoardStore
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Keeps the boards of many simultaneous game sessions in memory, by session id.<p>
+ * All boards share a fixed number of lock stripes, see {@link SudokuSharedBoard}, so that a board costs
+ * 		a grid and a few fields whatever the number of boards. Each board spreads its units over consecutive stripes
+ * 		starting at a position derived from its id. The store and its boards are thread-safe.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public class SudokuBoardStore {
+
+	private static Logger LOGGER = Logger.getLogger(SudokuBoardStore.class);
+
+	public static final int DEFAULT_STRIPES = 4096;
+
+	private final ConcurrentMap<String, SudokuSharedBoard> boards = new ConcurrentHashMap<String, SudokuSharedBoard>();
+
+	private final Object[] locks;
+
+	public SudokuBoardStore() {
+		this(DEFAULT_STRIPES);
+	}
+
+	/**
+	 * @param stripes  the number of locks shared by all boards, rounded up to a power of two
+	 */
+	public SudokuBoardStore(int stripes) {
+		int n = 1;
+		while (n < stripes) {
+			n <<= 1;
+		}
+		locks = new Object[n];
+		for (int i = 0; i < locks.length; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	/**
+	 * @return the 9x9 board of the session, created empty if there is none yet
+	 */
+	public SudokuSharedBoard open(String id) {
+		return open(id, SudokuGeometry.STANDARD);
+	}
+
+	/**
+	 * @return the board of the session, created empty with the given geometry if there is none yet
+	 * @throws IllegalStateException  if the session has a board of another geometry
+	 */
+	public SudokuSharedBoard open(String id, SudokuGeometry geometry) {
+		SudokuSharedBoard board = boards.get(id);
+		if (board == null) {
+			// spreads the ids over the stripes
+			int base = id.hashCode() * 0x9E3779B9;
+			board = new SudokuSharedBoard(id, geometry, locks, base ^ (base >>> 16));
+			SudokuSharedBoard existing = boards.putIfAbsent(id, board);
+			if (existing != null) {
+				board = existing;
+			} else if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("Opened board " + board);
+			}
+		}
+		if (board.getGeometry() != geometry) {
+			throw new IllegalStateException("Board " + id + " is " + board.getGeometry() + ", not " + geometry);
+		}
+		return board;
+	}
+
+	/**
+	 * @return the board of the session, null if there is none
+	 */
+	public SudokuSharedBoard get(String id) {
+		return boards.get(id);
+	}
+
+	/**
+	 * Drops the board of a session. Threads still holding the board may go on playing it.
+	 *
+	 * @return the board dropped, null if there was none
+	 */
+	public SudokuSharedBoard remove(String id) {
+		return boards.remove(id);
+	}
+
+	public int size() {
+		return boards.size();
+	}
+
+	public int getStripes() {
+		return locks.length;
+	}
+}
@@ -0,0 +1,327 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuCorpusReader
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Validates a corpus file holding many Sudoku solutions, one grid after the other.<p>
+ * Two corpus formats are supported:
+ * <ul>
+ * <li>{@link Format#CSV_BLOCKS}: grids in the usual comma-separated format, separated by one or more blank lines</li>
+ * <li>{@link Format#COMPACT_LINES}: one grid per line, given as its 81 digits in left-to-right and top-down order</li>
+ * </ul>
+ * Each grid is validated with the same rules and error codes as a single grid file. The grids are read,
+ * 		validated and handed out one at a time, so that the heap usage does not depend on the size of the corpus.
+ * The returned grids carry their zero-based position within the corpus as {@link SudokuProposedSolution#getRecordIndex()}.
+ * Grids are classic 9x9 Sudokus unless another {@link SudokuGeometry} or {@link SudokuVariant} is set;
+ * 		compact lines then hold one symbol per cell, see {@link SudokuGeometry#digitOf(int)}.
+ * With {@link #setReuseGrid(boolean)} enabled every call to {@link #next()} validates into the same grid instance,
+ * 		so that no memory at all is allocated per grid.
+ * <p>
+ * A reader is not thread-safe. IO errors while iterating are rethrown as {@link UncheckedIOException}.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public class SudokuCorpusReader implements Iterator<SudokuProposedSolution>, Closeable {
+
+	/**
+	 * The layout of the grids within a corpus file.
+	 */
+	public enum Format {
+		CSV_BLOCKS,
+		COMPACT_LINES;
+
+		/**
+		 * Guesses the format from the first non-blank line: a line containing commas denotes
+		 * 		{@link #CSV_BLOCKS}, anything else {@link #COMPACT_LINES}.
+		 */
+		public static Format detect(Path file) throws IOException {
+			Reader rd = Files.newBufferedReader(file, Charset.defaultCharset());
+			try {
+				// commas follow within the first cell or two
+				int c, seen = 0;
+				while (seen < 16 && (c = rd.read()) >= 0) {
+					if (c == ',') {
+						return CSV_BLOCKS;
+					} else if (c == '\n' || c == '\r') {
+						if (seen > 0) {
+							break;
+						}
+					} else {
+						seen ++;
+					}
+				}
+				return seen > 0 ? COMPACT_LINES : CSV_BLOCKS;
+			} finally {
+				rd.close();
+			}
+		}
+	}
+
+	private static final int READ_BUFFER_SIZE = 8192;
+
+	private final Reader rd;
+
+	private final Format format;
+
+	private final char[] buf = new char[READ_BUFFER_SIZE];
+
+	private int pos = 0, len = 0;
+
+	private boolean eof = false;
+
+	private long nextIndex = 0;
+
+	// the grid returned by the following call to next(), null if not yet read
+	private SudokuProposedSolution next;
+
+	private boolean reuseGrid = false;
+
+	private SudokuVariant variant = SudokuVariant.STANDARD;
+
+	private ValidationPolicy policy = ValidationPolicy.EXHAUSTIVE;
+
+	// the grid validated into last
+	private SudokuProposedSolution current;
+
+	// the start of parsing the current grid, see SudokuMetrics
+	private long start;
+
+	public SudokuCorpusReader(Reader rd, Format format) {
+		this.rd = rd;
+		this.format = format;
+	}
+
+	/**
+	 * Opens a corpus file, detecting its format.
+	 */
+	public static SudokuCorpusReader open(Path file) throws IOException {
+		Format format = Format.detect(file);
+		return new SudokuCorpusReader(new InputStreamReader(Files.newInputStream(file), Charset.defaultCharset()), format);
+	}
+
+	public Format getFormat() {
+		return format;
+	}
+
+	public boolean isReuseGrid() {
+		return reuseGrid;
+	}
+
+	/**
+	 * @param reuseGrid  true to validate every grid into the same instance. A grid returned by {@link #next()}
+	 * 		is then only valid until the following call to {@link #hasNext()} or {@link #next()}.
+	 */
+	public void setReuseGrid(boolean reuseGrid) {
+		this.reuseGrid = reuseGrid;
+	}
+
+	public SudokuGeometry getGeometry() {
+		return variant.getGeometry();
+	}
+
+	/**
+	 * @param geometry  the geometry of the grids of this corpus, 9x9 by default, selecting its classic variant
+	 */
+	public void setGeometry(SudokuGeometry geometry) {
+		this.variant = SudokuVariant.classic(geometry);
+	}
+
+	public SudokuVariant getVariant() {
+		return variant;
+	}
+
+	/**
+	 * @param variant  the variant of the grids of this corpus, which also sets their geometry, classic 9x9 by default
+	 */
+	public void setVariant(SudokuVariant variant) {
+		this.variant = variant;
+	}
+
+	public ValidationPolicy getValidationPolicy() {
+		return policy;
+	}
+
+	/**
+	 * @param policy  the validation policy of the grids of this corpus, exhaustive by default
+	 */
+	public void setValidationPolicy(ValidationPolicy policy) {
+		this.policy = policy;
+	}
+
+	public boolean hasNext() {
+		if (next == null) {
+			try {
+				next = format == Format.CSV_BLOCKS ? readBlock() : readLine();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return next != null;
+	}
+
+	public SudokuProposedSolution next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		SudokuProposedSolution grid = next;
+		next = null;
+		return grid;
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * @return a sequential stream over the remaining grids of the corpus, closing the stream closes this reader
+	 */
+	public Stream<SudokuProposedSolution> stream() {
+		Spliterator<SudokuProposedSolution> split = Spliterators.spliteratorUnknownSize(this,
+				Spliterator.ORDERED | Spliterator.NONNULL);
+		return StreamSupport.stream(split, false).onClose(new Runnable() {
+			public void run() {
+				try {
+					close();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		});
+	}
+
+	public void close() throws IOException {
+		rd.close();
+	}
+
+	/**
+	 * Reads the next block of non-blank lines. The line break ending a block's last row is not passed on,
+	 * 		just as a single grid file ends without one.
+	 */
+	private SudokuProposedSolution readBlock() throws IOException {
+		SudokuGridParser parser = null;
+		boolean lineEmpty = true;
+		boolean pendingNewline = false;
+
+		int c;
+		while ((c = read()) >= 0) {
+			if (c == '\r') {
+				continue;
+			}
+			if (c == '\n') {
+				if (!lineEmpty) {
+					pendingNewline = true;
+					lineEmpty = true;
+				} else if (parser != null) {
+					// blank line ends the block
+					break;
+				}
+				continue;
+			}
+
+			if (parser == null) {
+				parser = newParser();
+			}
+			if (pendingNewline) {
+				parser.accept('\n');
+				pendingNewline = false;
+			}
+			lineEmpty = false;
+			parser.accept(c);
+		}
+
+		return finish(parser);
+	}
+
+	/**
+	 * Reads the next non-blank line, the row structure of which is implied by its cell count.
+	 */
+	private SudokuProposedSolution readLine() throws IOException {
+		SudokuGridParser parser = null;
+		SudokuGeometry geometry = variant.getGeometry();
+		int side = geometry.getSide();
+		int count = 0;
+
+		int c;
+		while ((c = read()) >= 0) {
+			if (c == '\r') {
+				continue;
+			}
+			if (c == '\n') {
+				if (parser != null) {
+					break;
+				}
+				continue;
+			}
+
+			if (parser == null) {
+				parser = newParser();
+			}
+			if (count > 0) {
+				parser.accept(count % side == 0 ? '\n' : ',');
+			}
+			parser.accept(c);
+			count ++;
+		}
+
+		if (parser != null && count < geometry.getCellCount() && count % side != 0) {
+			// lets the parser report the incomplete last row
+			parser.accept('\n');
+		}
+		return finish(parser);
+	}
+
+	private SudokuGridParser newParser() {
+		if (current == null || !reuseGrid || current.getVariant() != variant) {
+			current = new SudokuProposedSolution(variant);
+		}
+		current.setValidationPolicy(policy);
+		start = SudokuMetrics.start();
+		SudokuGridParser parser = current.resetParser();
+		current.setRecordIndex(nextIndex++);
+		return parser;
+	}
+
+	private SudokuProposedSolution finish(SudokuGridParser parser) {
+		if (parser == null) {
+			return null;
+		}
+		parser.end();
+		SudokuMetrics.stop(SudokuMetrics.Phase.PARSE, start, parser.getGrid());
+		return parser.getGrid();
+	}
+
+	private int read() throws IOException {
+		if (pos == len) {
+			if (eof) {
+				return -1;
+			}
+			len = rd.read(buf, 0, buf.length);
+			pos = 0;
+			if (len <= 0) {
+				len = 0;
+				eof = true;
+				return -1;
+			}
+		}
+		return buf[pos++];
+	}
+}
@@ -0,0 +1,99 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuCsvSink
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes one comma-separated line per grid below a header line:
+ * <pre>
+ * source,record,valid,status,errors,dropped[,grid]
+ * a.txt,-1,false,3001,3001@1:2=5;3001@4:0=7,0
+ * </pre>
+ * The errors are given as "status@row:col", followed by "=value" for errors naming an offending digit or character,
+ * 		and separated by semicolons. "dropped" counts the errors beyond the capacity of the grid, which are left out. Fields containing commas, quotes or line breaks are quoted.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public class SudokuCsvSink extends SudokuResultSink {
+
+	public static final String HEADER = "source,record,valid,status,errors,dropped";
+
+	private boolean headerWritten = false;
+
+	public SudokuCsvSink(Writer out) {
+		super(out);
+	}
+
+	@Override
+	public void write(String source, SudokuProposedSolution grid) throws IOException {
+		synchronized (this) {
+			if (!headerWritten) {
+				writeRaw(isIncludeGrid() ? HEADER + ",grid\n" : HEADER + "\n");
+				headerWritten = true;
+			}
+		}
+		super.write(source, grid);
+	}
+
+	@Override
+	protected void format(String source, SudokuProposedSolution grid, StringBuilder sb) {
+		appendField(source, sb);
+		sb.append(',').append(grid.getRecordIndex());
+		sb.append(',').append(!grid.isInError());
+		sb.append(',').append(grid.isInError() ? grid.getErrCode(0).getStatusCode() : "0");
+		sb.append(',');
+
+		StringBuilder errs = new StringBuilder();
+		for (int i = 0; i < grid.getErrCount(); i++) {
+			ERR_CODE code = grid.getErrCode(i);
+			if (i > 0) {
+				errs.append(';');
+			}
+			errs.append(code.getStatusCode()).append('@').append(grid.getErrRow(i)).append(':').append(grid.getErrCol(i));
+			int value = grid.getErrValue(i);
+			if (value != 0) {
+				errs.append('=');
+				if (code == ERR_CODE.NUMBER_ALREADY_USED) {
+					errs.append(value);
+				} else {
+					errs.append((char) value);
+				}
+			}
+		}
+		appendField(errs, sb);
+		sb.append(',').append(grid.getErrsDropped());
+
+		if (isIncludeGrid()) {
+			sb.append(',');
+			appendCells(grid, sb);
+		}
+		sb.append('\n');
+	}
+
+	private static void appendField(CharSequence field, StringBuilder sb) {
+		boolean quote = false;
+		for (int i = 0; i < field.length() && !quote; i++) {
+			char c = field.charAt(i);
+			quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+		if (!quote) {
+			sb.append(field);
+			return;
+		}
+		sb.append('"');
+		for (int i = 0; i < field.length(); i++) {
+			char c = field.charAt(i);
+			if (c == '"') {
+				sb.append('"');
+			}
+			sb.append(c);
+		}
+		sb.append('"');
+	}
+}
@@ -0,0 +1,327 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuDirectoryWatcher
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+/**
+ * Validates puzzle files as soon as they are dropped into one or more spool directories.<p>
+ * The directories are watched with the file system's {@link WatchService}. A '*.txt' file that is created or modified
+ * 		is validated once no further event has been seen for it during the quiet period, {@value #DEFAULT_QUIET_MILLIS} ms
+ * 		by default, so that a file written in several steps is validated once, when complete. Files gone by then are skipped.
+ * 		Should the watch service lose events, the whole directory is validated again.
+ * <p>
+ * Files are validated on a bounded pool of threads, each validating into its own reusable grid. The outcome of every file
+ * 		is recorded in the {@link SudokuBatchSummary} of the watcher and written to its sink, if set,
+ * 		or else logged. Subdirectories are not watched.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public class SudokuDirectoryWatcher {
+
+	private static Logger LOGGER = Logger.getLogger(SudokuDirectoryWatcher.class);
+
+	public static final long DEFAULT_QUIET_MILLIS = 20;
+
+	private static final int QUEUE_PER_THREAD = 64;
+
+	private final int threads;
+
+	private final SudokuBatchSummary summary = new SudokuBatchSummary();
+
+	private final List<Path> dirs = new ArrayList<Path>();
+
+	private volatile SudokuResultSink sink;
+
+	private volatile SudokuVariant variant = SudokuVariant.STANDARD;
+
+	private volatile ValidationPolicy policy = ValidationPolicy.EXHAUSTIVE;
+
+	private long quietMillis = DEFAULT_QUIET_MILLIS;
+
+	private WatchService watcher;
+
+	private Thread thread;
+
+	private ThreadPoolExecutor executor;
+
+	// files waiting for their quiet period to pass, by deadline in nanoseconds; ordered by deadline
+	// since the quiet period is the same for all. Accessed by the watch thread only.
+	private final LinkedHashMap<Path, Long> pending = new LinkedHashMap<Path, Long>();
+
+	private final ThreadLocal<SudokuProposedSolution> grids = new ThreadLocal<SudokuProposedSolution>() {
+		@Override
+		protected SudokuProposedSolution initialValue() {
+			SudokuProposedSolution grid = new SudokuProposedSolution(variant);
+			grid.setValidationPolicy(policy);
+			return grid;
+		}
+	};
+
+	/**
+	 * @param threads  the number of validation threads, 0 for one per available processor
+	 */
+	public SudokuDirectoryWatcher(int threads) {
+		this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Adds a directory to watch. To be called before {@link #start()}.
+	 */
+	public synchronized void watch(Path dir) {
+		dirs.add(dir);
+	}
+
+	/**
+	 * Registers the directories and starts watching them.
+	 *
+	 * @throws IOException  if a directory cannot be watched
+	 */
+	public synchronized void start() throws IOException {
+		watcher = FileSystems.getDefault().newWatchService();
+		final Map<WatchKey, Path> keys = new LinkedHashMap<WatchKey, Path>();
+		try {
+			for (Path dir : dirs) {
+				keys.put(dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY), dir);
+			}
+		} catch (IOException e) {
+			watcher.close();
+			throw e;
+		}
+
+		executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(threads * QUEUE_PER_THREAD), new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+
+					public Thread newThread(Runnable r) {
+						return new Thread(r, "sudoku-watch-" + count.incrementAndGet());
+					}
+				}, new ThreadPoolExecutor.CallerRunsPolicy());
+		summary.start();
+		thread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					watch(keys);
+				} catch (ClosedWatchServiceException e) {
+					// stopped
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, "sudoku-watch");
+		thread.start();
+		if (LOGGER.isInfoEnabled()) {
+			LOGGER.info("Watching " + dirs + " with " + threads + " threads");
+		}
+	}
+
+	/**
+	 * Stops watching and waits up to the given delay for the files being validated.
+	 */
+	public synchronized void stop(int delaySeconds) throws InterruptedException {
+		if (watcher == null) {
+			return;
+		}
+		try {
+			watcher.close();
+		} catch (IOException e) {
+			LOGGER.error("Unable to close the watch service: " + e.getMessage());
+		}
+		thread.join();
+		executor.shutdown();
+		executor.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+		summary.stop();
+		watcher = null;
+	}
+
+	private void watch(Map<WatchKey, Path> keys) throws InterruptedException {
+		while (true) {
+			WatchKey key;
+			if (pending.isEmpty()) {
+				key = watcher.take();
+			} else {
+				long wait = pending.values().iterator().next() - System.nanoTime();
+				key = watcher.poll(Math.max(wait, 0), TimeUnit.NANOSECONDS);
+			}
+			while (key != null) {
+				Path dir = keys.get(key);
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+						rescan(dir);
+					} else {
+						delay(dir.resolve((Path) event.context()));
+					}
+				}
+				if (!key.reset()) {
+					LOGGER.warn("No longer watching " + dir);
+				}
+				key = watcher.poll();
+			}
+			submitQuiet();
+		}
+	}
+
+	// events lost: every puzzle file of the directory may have changed
+	private void rescan(Path dir) {
+		try {
+			DirectoryStream<Path> files = Files.newDirectoryStream(dir);
+			try {
+				for (Path file : files) {
+					delay(file);
+				}
+			} finally {
+				files.close();
+			}
+		} catch (IOException e) {
+			LOGGER.error("Unable to scan " + dir + ": " + e.getMessage());
+		}
+	}
+
+	// (re)starts the quiet period of a file
+	private void delay(Path file) {
+		if (!file.getFileName().toString().endsWith(SudokuValidateUtils.PUZZLE_FILE_EXTN)) {
+			return;
+		}
+		pending.remove(file);
+		pending.put(file, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(quietMillis));
+	}
+
+	private void submitQuiet() {
+		long now = System.nanoTime();
+		Iterator<Map.Entry<Path, Long>> it = pending.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Path, Long> entry = it.next();
+			if (entry.getValue() - now > 0) {
+				break;
+			}
+			it.remove();
+			final Path file = entry.getKey();
+			executor.execute(new Runnable() {
+				public void run() {
+					validate(file);
+				}
+			});
+		}
+	}
+
+	// also run by the watch thread when the pool is saturated, so that nothing thrown may end the watch loop
+	private void validate(Path file) {
+		try {
+			validateFile(file);
+		} catch (RuntimeException e) {
+			if (LOGGER.isEnabledFor(Level.ERROR)) {
+				LOGGER.error(file + ": unable to validate", e);
+			}
+		}
+	}
+
+	private void validateFile(Path file) {
+		if (!Files.isRegularFile(file)) {
+			// moved on or deleted meanwhile
+			return;
+		}
+		SudokuProposedSolution grid = SudokuValidate.validateFile(file.toString(), grids.get());
+		summary.record(grid);
+		SudokuResultSink sink = this.sink;
+		if (sink != null) {
+			try {
+				sink.write(file.toString(), grid);
+			} catch (IOException e) {
+				LOGGER.error(file + ": unable to report, " + e.getMessage());
+			}
+		} else if (LOGGER.isInfoEnabled()) {
+			LOGGER.info(file + ": " + (grid.isInError() ? grid.getErrs().get(0).getError() : "VALID. Status Code: 0"));
+		}
+	}
+
+	// JavaBean accessors
+	public SudokuBatchSummary getSummary() {
+		return summary;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public SudokuResultSink getSink() {
+		return sink;
+	}
+
+	/**
+	 * @param sink  receives the outcome of every validated file, null to log it instead. The sink is not closed by this class.
+	 */
+	public void setSink(SudokuResultSink sink) {
+		this.sink = sink;
+	}
+
+	public SudokuGeometry getGeometry() {
+		return variant.getGeometry();
+	}
+
+	/**
+	 * @param geometry  the geometry of all files, 9x9 by default, selecting its classic variant. To be set before {@link #start()}.
+	 */
+	public void setGeometry(SudokuGeometry geometry) {
+		this.variant = SudokuVariant.classic(geometry);
+	}
+
+	public SudokuVariant getVariant() {
+		return variant;
+	}
+
+	/**
+	 * @param variant  the variant of all files, which also sets their geometry, classic 9x9 by default.
+	 * 		To be set before {@link #start()}.
+	 */
+	public void setVariant(SudokuVariant variant) {
+		this.variant = variant;
+	}
+
+	public ValidationPolicy getValidationPolicy() {
+		return policy;
+	}
+
+	/**
+	 * @param policy  the validation policy of all files, exhaustive by default. To be set before {@link #start()}.
+	 */
+	public void setValidationPolicy(ValidationPolicy policy) {
+		this.policy = policy;
+	}
+
+	public long getQuietMillis() {
+		return quietMillis;
+	}
+
+	/**
+	 * @param quietMillis  the time without events after which a file is validated. To be set before {@link #start()}.
+	 */
+	public void setQuietMillis(long quietMillis) {
+		this.quietMillis = quietMillis;
+	}
+}
@@ -0,0 +1,154 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuGeometry
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+/**
+ * The shape of a Sudoku grid of N&sup2; x N&sup2; cells, made of N&sup2; subgrids of N x N cells, N being the box size.<p>
+ * The standard 9x9 grid has a box size of 3, the 16x16 and 25x25 variants have box sizes of 4 and 5.
+ * A geometry provides the cell to row/column/subgrid tables and the mask of a complete unit, bit n standing for digit n,
+ * 		so that a mask fits a <code>long</code> for box sizes up to {@value #MAX_BOX_SIZE}.
+ * <p>
+ * Up to 9x9, each cell is a single digit. Larger grids take the numbers 1 to N&sup2;, either as decimal numbers
+ * 		of one or more digits or as the letters 'A' for 10, 'B' for 11 and so on, in either case, so that
+ * 		a 16x16 cell may be given as "12" or as "C".
+ * <p>
+ * Geometries are immutable and shared; use {@link #of(int)}.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public final class SudokuGeometry {
+
+	public static final int MIN_BOX_SIZE = 2;
+
+	// 49 digits plus the unused bit 0 fit a long mask
+	public static final int MAX_BOX_SIZE = 7;
+
+	private static final SudokuGeometry[] GEOMETRIES = new SudokuGeometry[MAX_BOX_SIZE + 1];
+
+	static {
+		for (int n = MIN_BOX_SIZE; n <= MAX_BOX_SIZE; n++) {
+			GEOMETRIES[n] = new SudokuGeometry(n);
+		}
+	}
+
+	/** The standard 9x9 grid */
+	public static final SudokuGeometry STANDARD = GEOMETRIES[3];
+
+	private final int boxSize;
+
+	private final int side;
+
+	private final int cellCount;
+
+	private final long fullMask;
+
+	// the row, column and subgrid of each cell, indexes fit a byte up to 49x49
+	final byte[] rowOf;
+
+	final byte[] colOf;
+
+	final byte[] boxOf;
+
+	private SudokuGeometry(int boxSize) {
+		this.boxSize = boxSize;
+		this.side = boxSize * boxSize;
+		this.cellCount = side * side;
+		this.fullMask = ((1L << side) - 1) << 1;
+		rowOf = new byte[cellCount];
+		colOf = new byte[cellCount];
+		boxOf = new byte[cellCount];
+		for (int loc = 0; loc < cellCount; loc++) {
+			int r = loc/side;
+			int c = loc%side;
+			rowOf[loc] = (byte) r;
+			colOf[loc] = (byte) c;
+			boxOf[loc] = (byte) ((r/boxSize)*boxSize + c/boxSize);
+		}
+	}
+
+	/**
+	 * @param boxSize  the number of rows (and columns) of a subgrid, from {@value #MIN_BOX_SIZE} to {@value #MAX_BOX_SIZE}
+	 * @return         the geometry of grids with subgrids of that size
+	 */
+	public static SudokuGeometry of(int boxSize) {
+		if (boxSize < MIN_BOX_SIZE || boxSize > MAX_BOX_SIZE) {
+			throw new IllegalArgumentException("Unsupported box size " + boxSize);
+		}
+		return GEOMETRIES[boxSize];
+	}
+
+	/**
+	 * @param side  the number of rows (and columns) of a grid, e.g. 9 or 16
+	 * @return      the geometry of such grids, null if the side is not the square of a supported box size
+	 */
+	public static SudokuGeometry ofSide(int side) {
+		for (int n = MIN_BOX_SIZE; n <= MAX_BOX_SIZE; n++) {
+			if (n * n == side) {
+				return GEOMETRIES[n];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the number of a single character symbol, -1 if the character does not denote a number of this geometry
+	 */
+	public int digitOf(int c) {
+		int num;
+		if (c >= '1' && c <= '9') {
+			num = c - '0';
+		} else if (c >= 'A' && c <= 'Z') {
+			num = c - 'A' + 10;
+		} else if (c >= 'a' && c <= 'z') {
+			num = c - 'a' + 10;
+		} else {
+			return -1;
+		}
+		return num <= side ? num : -1;
+	}
+
+	/**
+	 * @return the single character symbol of a number, 'X' for 0 (an empty cell)
+	 */
+	public static char symbolOf(int num) {
+		if (num == 0) {
+			return 'X';
+		}
+		return num < 10 ? (char) ('0' + num) : (char) ('A' + num - 10);
+	}
+
+	// JavaBean accessors
+	public int getBoxSize() {
+		return boxSize;
+	}
+
+	public int getSide() {
+		return side;
+	}
+
+	public int getCellCount() {
+		return cellCount;
+	}
+
+	/**
+	 * @return the mask of a row, column or subgrid holding every number from 1 to {@link #getSide()}
+	 */
+	public long getFullMask() {
+		return fullMask;
+	}
+
+	/**
+	 * @return true if cells may take more than one character, i.e. for grids larger than 9x9
+	 */
+	public boolean isMultiCharacter() {
+		return side > 9;
+	}
+
+	public String toString() {
+		return side + "x" + side;
+	}
+}
@@ -0,0 +1,470 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuGridGenerator
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Generates valid Sudoku solutions and deliberately broken grids for load and benchmark corpora.<p>
+ * Grid n of a run is a pure function of the seed and n, so that a corpus is reproduced exactly whatever
+ * 		the number of threads. The grids of a block of {@value #BLOCK_SIZE} share one base solution, found by
+ * 		filling the three diagonal subgrids at random and solving the rest with the {@link SudokuSolver}.
+ * 		Each grid is then a random relabelling of the digits and permutation of the bands, stacks, rows and columns
+ * 		of its base, optionally transposed, all of which keep a solution valid.
+ * <p>
+ * With a defect rate above 0, that share of the grids carries exactly one {@link Defect}, each of which
+ * 		makes validation report its {@link ERR_CODE} as the first error.
+ * <p>
+ * Grids are written in the comma-separated format, either one grid file per grid into an existing directory,
+ * 		or as blocks of a corpus file, see {@link SudokuCorpusReader}.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public class SudokuGridGenerator {
+
+	// created on first use, after main has kept log4j from configuring itself, see SudokuLogging
+	private static final class Log {
+		static final Logger LOGGER = Logger.getLogger(SudokuGridGenerator.class);
+	}
+
+	public static final String USAGE = "Usage: generate.bat count <corpusFile|dir> [-seed n] [-threads n] [-defects rate]";
+
+	public static final String OPT_SEED = "-seed";
+
+	public static final String OPT_DEFECTS = "-defects";
+
+	// grids sharing one base solution, and the unit of work of a thread
+	public static final int BLOCK_SIZE = 1024;
+
+	private static final String LINE_SEP = "\r\n";
+
+	// characters rejected by the parser, neither separators nor digits
+	private static final String INVALID_CHARS = "X0a.?*#";
+
+	private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+	/**
+	 * The defects injected into broken grids, each with the error code validation reports first.
+	 */
+	public enum Defect {
+		/** a cell repeats another digit of its row */
+		DUPLICATE_DIGIT(ERR_CODE.NUMBER_ALREADY_USED),
+		/** a cell holds a character other than a digit */
+		INVALID_CHARACTER(ERR_CODE.INVALID_CHARACTERS_IN_ROW),
+		/** two cells of a row are not separated by a comma */
+		MISSING_COMMA(ERR_CODE.INVALID_SUDOKU_FILEFORMAT),
+		/** a cell of a row other than the last is left empty */
+		MISSING_DIGIT(ERR_CODE.MISSING_DIGITS_IN_ROW),
+		/** a row other than the last has a tenth cell */
+		EXTRA_DIGIT(ERR_CODE.TOO_MANY_DIGITS_IN_ROW),
+		/** one or more of the last rows are left out */
+		MISSING_ROW(ERR_CODE.NOT_ENOUGH_ROWS_IN_GRID),
+		/** a row is repeated after the last row */
+		EXTRA_ROW(ERR_CODE.TOO_MANY_ROWS_IN_GRID);
+
+		private final ERR_CODE errCode;
+
+		private Defect(ERR_CODE errCode) {
+			this.errCode = errCode;
+		}
+
+		public ERR_CODE getErrCode() {
+			return errCode;
+		}
+	}
+
+	private final long seed;
+
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	private double defectRate = 0;
+
+	private Defect[] defects = Defect.values();
+
+	private final AtomicLong[] defectCounts = new AtomicLong[Defect.values().length];
+
+	private final AtomicLong generated = new AtomicLong();
+
+	public SudokuGridGenerator(long seed) {
+		this.seed = seed;
+		for (int i = 0; i < defectCounts.length; i++) {
+			defectCounts[i] = new AtomicLong();
+		}
+	}
+
+	public static void main(String[] args) {
+		SudokuLogging.skipDefaultInit();
+		SudokuLogging.configure();
+		if (args.length < 2) {
+			Log.LOGGER.error(USAGE);
+			return;
+		}
+		try {
+			long count = Long.parseLong(args[0]);
+			long seed = System.nanoTime();
+			for (int i = 2; i + 1 < args.length; i += 2) {
+				if (OPT_SEED.equals(args[i])) {
+					seed = Long.parseLong(args[i + 1]);
+				}
+			}
+			SudokuGridGenerator generator = new SudokuGridGenerator(seed);
+			for (int i = 2; i + 1 < args.length; i += 2) {
+				if (SudokuValidateUtils.OPT_THREADS.equals(args[i])) {
+					generator.setThreads(Integer.parseInt(args[i + 1]));
+				} else if (OPT_DEFECTS.equals(args[i])) {
+					generator.setDefectRate(Double.parseDouble(args[i + 1]));
+				}
+			}
+
+			long startTime = System.currentTimeMillis();
+			generator.generate(Paths.get(args[1]), count);
+			if (Log.LOGGER.isInfoEnabled()) {
+				Log.LOGGER.info("seed: " + seed + "\tgenerated: " + generator.getGenerated() + "\tdefective: " + generator.getDefective()
+						+ "\ttime: " + (System.currentTimeMillis() - startTime) + "ms");
+			}
+		} catch (NumberFormatException e) {
+			Log.LOGGER.error(USAGE);
+		} catch (IOException e) {
+			Log.LOGGER.error(new ValidationError(ERR_CODE.UNABLE_TO_READ_SUDOKU_FILE, e).getError());
+		}
+	}
+
+	/**
+	 * Generates grids 0 to count-1, replacing existing files.
+	 *
+	 * @param out    an existing directory to write one grid file per grid into, or else the corpus file to write
+	 */
+	public void generate(Path out, long count) throws IOException {
+		final boolean perFile = Files.isDirectory(out);
+		final File dir = out.toFile();
+		ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private final AtomicInteger n = new AtomicInteger();
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "sudoku-generate-" + n.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		Writer corpus = perFile ? null : new BufferedWriter(new FileWriter(dir), 1 << 16);
+		try {
+			// blocks are written in order, with a few blocks generated ahead per thread
+			ArrayDeque<Future<StringBuilder>> pending = new ArrayDeque<Future<StringBuilder>>();
+			long blocks = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+			for (long block = 0; block < blocks || !pending.isEmpty(); ) {
+				if (block < blocks && pending.size() < threads * 2) {
+					final long first = block * BLOCK_SIZE;
+					final long last = Math.min(count, first + BLOCK_SIZE);
+					pending.add(pool.submit(new Callable<StringBuilder>() {
+						public StringBuilder call() throws IOException {
+							return generateBlock(first, last, perFile ? dir : null);
+						}
+					}));
+					block ++;
+					continue;
+				}
+				StringBuilder sb = pending.poll().get();
+				if (corpus != null) {
+					corpus.append(sb);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+			if (corpus != null) {
+				corpus.close();
+			}
+		}
+	}
+
+	/**
+	 * Fills the cells with valid solution n.
+	 */
+	public void solution(long n, int[] cells) {
+		int[] base = new int[81];
+		baseSolution(n / BLOCK_SIZE, new SudokuSolver(), base);
+		transform(base, random(n), cells);
+	}
+
+	/**
+	 * Appends the text of grid n as in a single grid file, without a line break after the last row.
+	 *
+	 * @return the defect injected, null for a valid grid
+	 */
+	public Defect grid(long n, StringBuilder sb) {
+		int[] base = new int[81];
+		baseSolution(n / BLOCK_SIZE, new SudokuSolver(), base);
+		return grid(n, base, new int[81], sb);
+	}
+
+	// JavaBean accessors
+	public long getSeed() {
+		return seed;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	public double getDefectRate() {
+		return defectRate;
+	}
+
+	/**
+	 * @param defectRate  the share of grids carrying a defect, from 0 for valid grids only to 1 for broken grids only
+	 */
+	public void setDefectRate(double defectRate) {
+		this.defectRate = defectRate;
+	}
+
+	/**
+	 * @param defects  the defects to choose from for broken grids, all by default
+	 */
+	public void setDefects(Set<Defect> defects) {
+		this.defects = EnumSet.copyOf(defects).toArray(new Defect[defects.size()]);
+	}
+
+	/**
+	 * @return the number of grids generated so far
+	 */
+	public long getGenerated() {
+		return generated.get();
+	}
+
+	/**
+	 * @return the number of grids generated so far with the given defect
+	 */
+	public long getDefective(Defect defect) {
+		return defectCounts[defect.ordinal()].get();
+	}
+
+	/**
+	 * @return the number of grids generated so far with any defect
+	 */
+	public long getDefective() {
+		long total = 0;
+		for (AtomicLong c : defectCounts) {
+			total += c.get();
+		}
+		return total;
+	}
+
+	/**
+	 * Generates grids first to last-1, all sharing one base solution.
+	 *
+	 * @param dir  the directory to write one file per grid into, null to return the corpus text
+	 */
+	private StringBuilder generateBlock(long first, long last, File dir) throws IOException {
+		int[] base = new int[81];
+		int[] cells = new int[81];
+		baseSolution(first / BLOCK_SIZE, new SudokuSolver(), base);
+
+		StringBuilder sb = new StringBuilder(dir == null ? (int) (last - first) * 180 : 256);
+		for (long n = first; n < last; n++) {
+			if (dir != null) {
+				sb.setLength(0);
+				grid(n, base, cells, sb);
+				Writer wr = new BufferedWriter(new FileWriter(new File(dir,
+						String.format("grid_%06d%s", n, SudokuValidateUtils.PUZZLE_FILE_EXTN))));
+				try {
+					wr.append(sb);
+				} finally {
+					wr.close();
+				}
+			} else {
+				grid(n, base, cells, sb);
+				sb.append(LINE_SEP).append(LINE_SEP);
+			}
+		}
+		if (dir != null) {
+			sb.setLength(0);
+		}
+		return sb;
+	}
+
+	private Defect grid(long n, int[] base, int[] cells, StringBuilder sb) {
+		Random rnd = random(n);
+		transform(base, rnd, cells);
+		Defect defect = null;
+		if (defectRate > 0 && rnd.nextDouble() < defectRate) {
+			defect = defects[rnd.nextInt(defects.length)];
+			defectCounts[defect.ordinal()].incrementAndGet();
+		}
+		append(cells, defect, rnd, sb);
+		generated.incrementAndGet();
+		return defect;
+	}
+
+	/**
+	 * Fills the three diagonal subgrids, which do not constrain one another, with random permutations
+	 * 		and completes the grid with the solver. Such grids always have a solution.
+	 */
+	private void baseSolution(long block, SudokuSolver solver, int[] base) {
+		Random rnd = random(-1 - block);
+		int[] givens = new int[81];
+		int[] digits = {1, 2, 3, 4, 5, 6, 7, 8, 9};
+		for (int b = 0; b < 3; b++) {
+			shuffle(digits, 0, 9, rnd);
+			for (int i = 0; i < 9; i++) {
+				givens[(b*3 + i/3)*9 + b*3 + i%3] = digits[i];
+			}
+		}
+		solver.solve(givens, base);
+	}
+
+	/**
+	 * Relabels the digits and permutes the bands, stacks, rows within bands and columns within stacks of the base.
+	 */
+	private static void transform(int[] base, Random rnd, int[] cells) {
+		int[] label = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+		shuffle(label, 1, 10, rnd);
+		int[] rows = permutation(rnd);
+		int[] cols = permutation(rnd);
+		boolean transpose = rnd.nextBoolean();
+		for (int r = 0; r < 9; r++) {
+			for (int c = 0; c < 9; c++) {
+				int from = transpose ? cols[c]*9 + rows[r] : rows[r]*9 + cols[c];
+				cells[r*9 + c] = label[base[from]];
+			}
+		}
+	}
+
+	// a permutation of the 9 lines of a grid keeping the lines of each band (or stack) together
+	private static int[] permutation(Random rnd) {
+		int[] bands = {0, 1, 2};
+		shuffle(bands, 0, 3, rnd);
+		int[] lines = new int[9];
+		int[] within = {0, 1, 2};
+		for (int b = 0; b < 3; b++) {
+			shuffle(within, 0, 3, rnd);
+			for (int i = 0; i < 3; i++) {
+				lines[b*3 + i] = bands[b]*3 + within[i];
+			}
+		}
+		return lines;
+	}
+
+	/**
+	 * Appends the comma-separated rows of a valid solution, with the given defect injected.
+	 */
+	private static void append(int[] cells, Defect defect, Random rnd, StringBuilder sb) {
+		int rows = 9, defectRow = -1, defectCol = -1, extraRow = -1;
+		if (defect != null) {
+			switch (defect) {
+			case DUPLICATE_DIGIT:
+				defectRow = rnd.nextInt(9);
+				defectCol = rnd.nextInt(9);
+				cells[defectRow*9 + defectCol] = cells[defectRow*9 + (defectCol + 1 + rnd.nextInt(8)) % 9];
+				break;
+			case INVALID_CHARACTER:
+				defectRow = rnd.nextInt(9);
+				defectCol = rnd.nextInt(9);
+				break;
+			case MISSING_COMMA:
+				defectRow = rnd.nextInt(9);
+				defectCol = 1 + rnd.nextInt(8);
+				break;
+			case MISSING_DIGIT:
+				// the parser checks the columns of a row at its line break, which the last row lacks,
+				// and would shift the digits of a row starting with a comma
+				defectRow = rnd.nextInt(8);
+				defectCol = 1 + rnd.nextInt(8);
+				break;
+			case EXTRA_DIGIT:
+				defectRow = rnd.nextInt(8);
+				break;
+			case MISSING_ROW:
+				rows = 1 + rnd.nextInt(8);
+				break;
+			case EXTRA_ROW:
+				extraRow = rnd.nextInt(9);
+				break;
+			}
+		}
+
+		for (int row = 0; row < rows; row++) {
+			if (row > 0) {
+				sb.append(LINE_SEP);
+			}
+			for (int col = 0; col < 9; col++) {
+				if (col > 0 && !(defect == Defect.MISSING_COMMA && row == defectRow && col == defectCol)) {
+					sb.append(',');
+				}
+				if (row == defectRow && col == defectCol) {
+					if (defect == Defect.INVALID_CHARACTER) {
+						sb.append(INVALID_CHARS.charAt(rnd.nextInt(INVALID_CHARS.length())));
+						continue;
+					} else if (defect == Defect.MISSING_DIGIT) {
+						continue;
+					}
+				}
+				sb.append((char) ('0' + cells[row*9 + col]));
+			}
+			if (defect == Defect.EXTRA_DIGIT && row == defectRow) {
+				// the first digit of the next row fits, so that the extra cell breaks no Sudoku rule first
+				sb.append(',').append((char) ('0' + cells[(row + 1)*9]));
+			}
+		}
+		if (extraRow >= 0) {
+			sb.append(LINE_SEP);
+			for (int col = 0; col < 9; col++) {
+				if (col > 0) {
+					sb.append(',');
+				}
+				sb.append((char) ('0' + cells[extraRow*9 + col]));
+			}
+		}
+	}
+
+	private Random random(long n) {
+		// spreads neighbouring seeds and indexes over the seed space of Random
+		long z = (seed + n * GOLDEN) * GOLDEN;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return new Random(z ^ (z >>> 31));
+	}
+
+	private static void shuffle(int[] a, int from, int to, Random rnd) {
+		for (int i = to - 1; i > from; i--) {
+			int j = from + rnd.nextInt(i - from + 1);
+			int t = a[i];
+			a[i] = a[j];
+			a[j] = t;
+		}
+	}
+}
@@ -0,0 +1,295 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuGridParser
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+import java.nio.ByteBuffer;
+
+import org.apache.log4j.Logger;
+
+/**
+ * The character level state machine behind {@link SudokuProposedSolution#validate(java.io.Reader)}.<p>
+ * Characters are pushed one at a time, whatever their source (a Reader, a byte buffer, ...), so that
+ * 		all input paths share exactly the same validation rules and error codes.<br>
+ * A parser fills a single grid, may be reused after a {@link #reset()} and is not thread-safe.<br>
+ * Errors are recorded in their packed form; their messages are only rendered when debug logging is enabled.
+ * 		Under {@link ValidationPolicy#FAIL_FAST} the first error of any kind terminates the validation.
+ * <p>
+ * Up to 9x9 each character is a cell, just as in the original format. For larger geometries, see {@link SudokuGeometry},
+ * 		a cell is the token between two commas, the number of which is accumulated character by character
+ * 		so that no token is ever materialised as a String. A token failing to denote a number of the geometry is
+ * 		reported once, as {@link ERR_CODE#INVALID_CHARACTERS_IN_ROW} with the first offending character.
+ * 		As a missing comma merely makes two tokens one, it is reported the same way rather than as
+ * 		{@link ERR_CODE#INVALID_SUDOKU_FILEFORMAT}. The column count of the last row is checked at the end of the input.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+final class SudokuGridParser {
+
+	private static Logger LOGGER = Logger.getLogger(SudokuGridParser.class);
+
+	// chars read from a Reader at once
+	static final int READ_BUFFER_SIZE = 1024;
+
+	private final SudokuProposedSolution grid;
+
+	// the rows (and columns) of the grid, and the highest single digit
+	private final int side;
+
+	private final int maxDigit;
+
+	private final int cellCount;
+
+	private final boolean tokens;
+
+	private int row = 0, col = 0, loc = 0;
+
+	private boolean lastCharWasComma = true;
+
+	// the number of the current multi-character token, -1 once it has been reported as invalid
+	private int token = 0;
+
+	private boolean tokenIsLetter = false;
+
+	// set once a terminal error has been found
+	private boolean done = false;
+
+	// buffers reused across validations, created on first use
+	private char[] readBuffer;
+
+	private ByteBuffer byteBuffer;
+
+	SudokuGridParser(SudokuProposedSolution grid) {
+		this.grid = grid;
+		this.side = grid.getGeometry().getSide();
+		this.maxDigit = '0' + Math.min(side, 9);
+		this.cellCount = grid.getGeometry().getCellCount();
+		this.tokens = grid.getGeometry().isMultiCharacter();
+	}
+
+	/**
+	 * Prepares this parser for validating the next input into its (already reset) grid.
+	 */
+	void reset() {
+		row = 0;
+		col = 0;
+		loc = 0;
+		lastCharWasComma = true;
+		token = 0;
+		tokenIsLetter = false;
+		done = false;
+	}
+
+	/**
+	 * Consumes the next character of the input.
+	 *
+	 * @param cellVal  the character
+	 * @return         false if validation has terminated and no further characters should be passed
+	 */
+	boolean accept(int cellVal) {
+		if (done) {
+			return false;
+		}
+
+		// sanity check on rows
+		if (row >= side) {
+			return stop(ERR_CODE.TOO_MANY_ROWS_IN_GRID, row, 0, 0);
+		}
+
+		if (tokens) {
+			return acceptToken(cellVal);
+		}
+
+		if (cellVal == ','){
+			// comma ... skip to next cell
+
+			// sanity check to make sure last char was not also a comma
+			if (lastCharWasComma){
+				return stop(ERR_CODE.MISSING_DIGITS_IN_ROW, row, col, 0);
+			}
+
+			lastCharWasComma = true;
+			return true;
+		} else if (cellVal == '\n') {
+			// newline ... skip to next row
+			return nextRow();
+		} else if (cellVal == '\r'){
+			// carriage return ... skip to next row
+			return true;
+		} else if (cellVal >= '1' && cellVal <= maxDigit) {
+
+			// ensure the file is comma-separated
+			if (!lastCharWasComma && col > 0){
+				return stop(ERR_CODE.INVALID_SUDOKU_FILEFORMAT, row, 0, 0);
+			}
+
+			// a cell beyond the last row, which has no line break to check its columns at
+			if (loc == cellCount){
+				return stop(ERR_CODE.TOO_MANY_DIGITS_IN_ROW, row, col, 0);
+			}
+
+			// valid number
+			if (!grid.set(loc, cellVal-'0')){
+				int badVal = cellVal-'0';
+				error(ERR_CODE.NUMBER_ALREADY_USED, row, col, badVal);
+			}
+		} else {
+			error(ERR_CODE.INVALID_CHARACTERS_IN_ROW, row, col, cellVal);
+		}
+
+		loc ++;
+		col ++;
+		lastCharWasComma = false;
+		return !done;
+	}
+
+	// the line break ending a row, kept out of accept(int) so that the JIT inlines the latter into the read loops
+	private boolean nextRow() {
+		//sanity check on columns
+		if (col < side ){
+			return stop(ERR_CODE.MISSING_DIGITS_IN_ROW, row, col, 0);
+		}
+
+		//sanity check on columns
+		if (col > side ){
+			return stop(ERR_CODE.TOO_MANY_DIGITS_IN_ROW, row, col, 0);
+		}
+
+		row ++;
+		col = 0;
+		return true;
+	}
+
+	// accept(int) for grids whose cells may take several characters
+	private boolean acceptToken(int cellVal) {
+		if (cellVal == ',') {
+			// an empty cell
+			if (token == 0) {
+				return stop(ERR_CODE.MISSING_DIGITS_IN_ROW, row, col, 0);
+			}
+			commit();
+			return !done;
+		} else if (cellVal == '\n') {
+			if (token != 0) {
+				commit();
+				if (done) {
+					return false;
+				}
+			}
+			return nextRow();
+		} else if (cellVal == '\r') {
+			return true;
+		}
+
+		if (token < 0) {
+			// the rest of a token already reported
+			return true;
+		}
+		int num = -1;
+		if (cellVal >= '0' && cellVal <= '9') {
+			if (!tokenIsLetter) {
+				num = token*10 + cellVal - '0';
+			}
+		} else if (token == 0) {
+			num = grid.getGeometry().digitOf(cellVal);
+			tokenIsLetter = true;
+		}
+		if (num < 1 || num > side) {
+			error(ERR_CODE.INVALID_CHARACTERS_IN_ROW, row, col, cellVal);
+			token = -1;
+		} else {
+			token = num;
+		}
+		return !done;
+	}
+
+	// places the number of the current token, if valid, and moves to the next column
+	private void commit() {
+		if (token > 0 && col < side && !grid.set(row*side + col, token)) {
+			error(ERR_CODE.NUMBER_ALREADY_USED, row, col, token);
+		}
+		col ++;
+		token = 0;
+		tokenIsLetter = false;
+	}
+
+	/**
+	 * Signals the end of the input and performs the final structure checks.
+	 */
+	void end() {
+		if (done) {
+			return;
+		}
+		done = true;
+
+		if (tokens && row < side) {
+			if (token != 0) {
+				commit();
+			}
+			// the last row has no line break to check its columns at
+			if (col > side) {
+				error(ERR_CODE.TOO_MANY_DIGITS_IN_ROW, row, col, 0, true);
+			} else if (col > 0 && col < side) {
+				error(ERR_CODE.MISSING_DIGITS_IN_ROW, row, col, 0, true);
+			}
+		}
+
+		// sanity check on rows
+		if (row > side - 1) {
+			error(ERR_CODE.TOO_MANY_ROWS_IN_GRID, row, 0, 0, true);
+		} else if (row < side - 1) {
+			error(ERR_CODE.NOT_ENOUGH_ROWS_IN_GRID, row, 0, 0, true);
+		}
+	}
+
+	SudokuProposedSolution getGrid() {
+		return grid;
+	}
+
+	/**
+	 * @return a buffer for reading characters, reused across validations
+	 */
+	char[] getReadBuffer() {
+		if (readBuffer == null) {
+			readBuffer = new char[READ_BUFFER_SIZE];
+		}
+		return readBuffer;
+	}
+
+	/**
+	 * @return a cleared heap buffer of the given capacity, reused across validations where possible
+	 */
+	ByteBuffer getByteBuffer(int capacity) {
+		if (byteBuffer == null || byteBuffer.capacity() < capacity) {
+			byteBuffer = ByteBuffer.allocate(Math.max(capacity, READ_BUFFER_SIZE));
+		}
+		byteBuffer.clear();
+		byteBuffer.limit(capacity);
+		return byteBuffer;
+	}
+
+	private boolean stop(ERR_CODE code, int row, int col, int value) {
+		error(code, row, col, value, true);
+		done = true;
+		return false;
+	}
+
+	private void error(ERR_CODE code, int row, int col, int value) {
+		error(code, row, col, value, false);
+	}
+
+	// terminal errors are recorded however many errors the cells have, see SudokuProposedSolution.addErr().
+	// Only recorded errors are logged, so that a large broken input cannot flood the log.
+	private void error(ERR_CODE code, int row, int col, int value, boolean terminal) {
+		boolean recorded = grid.addErr(code, row, col, value, terminal);
+		if (grid.getValidationPolicy() == ValidationPolicy.FAIL_FAST) {
+			done = true;
+		}
+		if (recorded && LOGGER.isDebugEnabled()) {
+			LOGGER.debug(ValidationError.unpack(ValidationError.pack(code, row, col, value), null).getError());
+		}
+	}
+}
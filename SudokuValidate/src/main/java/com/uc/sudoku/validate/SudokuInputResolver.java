@@ -0,0 +1,117 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuInputResolver
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * Resolves input specifications to the files they denote, see {@link SudokuBatchValidate} for the forms they take.<p>
+ * Files are handed to {@link #accept(Path, BasicFileAttributes)} one at a time while directories are walked,
+ * 		so that arbitrarily large trees are resolved with a constant amount of memory.
+ * 		Files named directly are accepted whether they exist or not, so that missing files are reported like any other failure.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+abstract class SudokuInputResolver {
+
+	private static Logger LOGGER = Logger.getLogger(SudokuInputResolver.class);
+
+	/**
+	 * Resolves a single input specification.
+	 *
+	 * @throws IOException  if a file list cannot be read
+	 */
+	void resolve(String spec) throws IOException {
+		if (StringUtils.isBlank(spec)) {
+			return;
+		}
+		spec = spec.trim();
+
+		if (spec.startsWith(SudokuValidateUtils.FILE_LIST_PREFIX)) {
+			BufferedReader rd = Files.newBufferedReader(Paths.get(spec.substring(1)), Charset.defaultCharset());
+			try {
+				String line;
+				while ((line = rd.readLine()) != null) {
+					resolve(line);
+				}
+			} finally {
+				rd.close();
+			}
+		} else if (isGlob(spec)) {
+			resolveGlob(spec);
+		} else {
+			Path path = Paths.get(spec);
+			if (Files.isDirectory(path)) {
+				resolveTree(path, null);
+			} else {
+				accept(path, null);
+			}
+		}
+	}
+
+	/**
+	 * Receives a file denoted by the specifications.
+	 *
+	 * @param attrs  the attributes of a file found by walking a tree, null otherwise
+	 */
+	abstract void accept(Path file, BasicFileAttributes attrs);
+
+	private void resolveGlob(String spec) throws IOException {
+		// walk from the deepest directory not containing any wildcard
+		Path pattern = Paths.get(spec);
+		Path base = pattern.isAbsolute() ? pattern.getRoot() : Paths.get("");
+		for (Path element : pattern) {
+			if (isGlob(element.toString())) {
+				break;
+			}
+			base = base.resolve(element);
+		}
+		if (Files.isDirectory(base)) {
+			String glob = spec.replace('\\', '/');
+			resolveTree(base, FileSystems.getDefault().getPathMatcher("glob:" + glob));
+		}
+	}
+
+	private void resolveTree(Path dir, final PathMatcher matcher) throws IOException {
+		Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				String name = file.getFileName().toString();
+				boolean selected = matcher != null
+						? matcher.matches(file)
+						: name.endsWith(SudokuValidateUtils.PUZZLE_FILE_EXTN) || SudokuArchiveReader.isArchive(name);
+				if (selected && attrs.isRegularFile()) {
+					accept(file, attrs);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException e) {
+				LOGGER.error("Unable to visit " + file + ": " + e.getMessage());
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	private static boolean isGlob(String spec) {
+		return StringUtils.containsAny(spec, "*?[{");
+	}
+}
@@ -0,0 +1,96 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuJsonLinesSink
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+import java.io.Writer;
+
+/**
+ * Writes one JSON object per line and grid:
+ * <pre>
+ * {"source":"a.txt","valid":false,"status":3001,"errors":[{"status":3001,"row":1,"col":2,"value":"5"}]}
+ * </pre>
+ * Grids read from a corpus additionally carry their "record" index, and the "grid" digits are included on request.
+ * 		Grids with more errors than they can record carry the number of errors left out as "dropped".
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public class SudokuJsonLinesSink extends SudokuResultSink {
+
+	public SudokuJsonLinesSink(Writer out) {
+		super(out);
+	}
+
+	@Override
+	protected void format(String source, SudokuProposedSolution grid, StringBuilder sb) {
+		sb.append("{\"source\":");
+		appendString(source, sb);
+		if (grid.getRecordIndex() >= 0) {
+			sb.append(",\"record\":").append(grid.getRecordIndex());
+		}
+		sb.append(',');
+		appendOutcome(grid, sb);
+		if (isIncludeGrid()) {
+			sb.append(",\"grid\":\"");
+			appendCells(grid, sb);
+			sb.append('"');
+		}
+		sb.append("}\n");
+	}
+
+	/**
+	 * Appends the validity, status and errors of a grid as JSON members, without the enclosing braces.<br>
+	 * The status is 0 for a valid grid and the status code of the first error otherwise. Values are only given
+	 * 		for errors naming an offending digit or character.
+	 */
+	static void appendOutcome(SudokuProposedSolution grid, StringBuilder sb) {
+		sb.append("\"valid\":").append(!grid.isInError());
+		sb.append(",\"status\":").append(grid.isInError() ? grid.getErrCode(0).getStatusCode() : "0");
+		sb.append(",\"errors\":[");
+		for (int i = 0; i < grid.getErrCount(); i++) {
+			ERR_CODE code = grid.getErrCode(i);
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append("{\"status\":").append(code.getStatusCode());
+			sb.append(",\"row\":").append(grid.getErrRow(i));
+			sb.append(",\"col\":").append(grid.getErrCol(i));
+			int value = grid.getErrValue(i);
+			if (value != 0) {
+				sb.append(",\"value\":\"");
+				if (code == ERR_CODE.NUMBER_ALREADY_USED) {
+					sb.append(value);
+				} else {
+					appendEscaped((char) value, sb);
+				}
+				sb.append('"');
+			}
+			sb.append('}');
+		}
+		sb.append(']');
+		if (grid.getErrsDropped() > 0) {
+			sb.append(",\"dropped\":").append(grid.getErrsDropped());
+		}
+	}
+
+	static void appendString(String s, StringBuilder sb) {
+		sb.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			appendEscaped(s.charAt(i), sb);
+		}
+		sb.append('"');
+	}
+
+	private static void appendEscaped(char c, StringBuilder sb) {
+		if (c == '"' || c == '\\') {
+			sb.append('\\').append(c);
+		} else if (c < 0x20 || c > 0x7E) {
+			sb.append(String.format("\\u%04x", (int) c));
+		} else {
+			sb.append(c);
+		}
+	}
+}
@@ -0,0 +1,109 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuLogging
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+import java.util.TimeZone;
+
+import org.apache.log4j.ConsoleAppender;
+import org.apache.log4j.Layout;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.xml.DOMConfigurator;
+
+/**
+ * Configures log4j for the command line tools without parsing any XML.<p>
+ * By default the root logger logs INFO and above to the console in the format of <code>config/log4j.xml</code>,
+ * 		<code>%d{ABSOLUTE}: - %m%n</code>, configured in code. The time is formatted without java.text,
+ * 		whose locale data alone takes longer to load than validating a grid. A log4j XML file may be given with the system property {@value #CONFIG_PROPERTY}
+ * 		instead, e.g. <code>-Dsudoku.log4j=src/main/resources/config/log4j.xml</code>; the standard property
+ * 		<code>log4j.configuration</code> is honoured as well.
+ * <p>
+ * log4j configures itself from any log4j.xml on the class path when the first logger is created, which is why
+ * 		the main methods call {@link #skipDefaultInit()} first, and their classes create their loggers on first use.
+ * 		Only the main methods call either method, so that a host using the validator as a library keeps its own configuration.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public final class SudokuLogging {
+
+	public static final String CONFIG_PROPERTY = "sudoku.log4j";
+
+	private static final String LOG4J_CONFIGURATION = "log4j.configuration";
+
+	private static final String LOG4J_INIT_OVERRIDE = "log4j.defaultInitOverride";
+
+	private SudokuLogging() {
+	}
+
+	/**
+	 * Keeps log4j from configuring itself from the class path, unless a configuration has been named explicitly.
+	 * 		Takes effect only if called before the first logger is created, and applies to the whole JVM.
+	 */
+	public static void skipDefaultInit() {
+		if (System.getProperty(LOG4J_CONFIGURATION) == null && System.getProperty(LOG4J_INIT_OVERRIDE) == null) {
+			System.setProperty(LOG4J_INIT_OVERRIDE, "true");
+		}
+	}
+
+	/**
+	 * Configures logging for a command line run, see the class comment. Replaces the appenders of the root logger.
+	 */
+	public static void configure() {
+		String config = System.getProperty(CONFIG_PROPERTY);
+		if (config != null) {
+			DOMConfigurator.configure(config);
+			return;
+		}
+		if (System.getProperty(LOG4J_CONFIGURATION) != null) {
+			// log4j has configured itself
+			return;
+		}
+		Logger root = Logger.getRootLogger();
+		root.removeAllAppenders();
+		root.addAppender(new ConsoleAppender(new ConsoleLayout()));
+		root.setLevel(Level.INFO);
+	}
+
+	/**
+	 * The time of day in milliseconds followed by the message, as laid out by <code>%d{ABSOLUTE}: - %m%n</code>.
+	 */
+	static final class ConsoleLayout extends Layout {
+
+		private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+		private final TimeZone zone = TimeZone.getDefault();
+
+		@Override
+		public String format(LoggingEvent event) {
+			long time = event.timeStamp + zone.getOffset(event.timeStamp);
+			int millis = (int) (((time % MILLIS_PER_DAY) + MILLIS_PER_DAY) % MILLIS_PER_DAY);
+			String message = event.getRenderedMessage();
+			StringBuilder sb = new StringBuilder(20 + (message != null ? message.length() : 4));
+			pad(sb, millis / 3600000, 2).append(':');
+			pad(sb, millis / 60000 % 60, 2).append(':');
+			pad(sb, millis / 1000 % 60, 2).append(',');
+			pad(sb, millis % 1000, 3);
+			return sb.append(": - ").append(message).append(LINE_SEP).toString();
+		}
+
+		private static StringBuilder pad(StringBuilder sb, int value, int digits) {
+			for (int limit = digits == 3 ? 100 : 10; limit > 1 && value < limit; limit /= 10) {
+				sb.append('0');
+			}
+			return sb.append(value);
+		}
+
+		@Override
+		public boolean ignoresThrowable() {
+			return true;
+		}
+
+		public void activateOptions() {
+		}
+	}
+}
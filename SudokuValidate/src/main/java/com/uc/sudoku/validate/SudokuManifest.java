@@ -0,0 +1,356 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuManifest
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Remembers the outcome of every validated file across runs, so that a run over a mostly unchanged tree only
+ * 		validates the files that changed.<p>
+ * For each file the manifest holds its size, modification time, a 64 bit FNV-1a hash of its content, its errors
+ * 		in the packed form of {@link ValidationError} and the number of errors it had no room for. {@link #validate(Path, BasicFileAttributes, SudokuProposedSolution)}
+ * 		takes the outcome of a file from the manifest without opening it if its size and modification time are
+ * 		unchanged, and without validating it if its content hash is unchanged. All other files are validated as usual.
+ * <p>
+ * The manifest file is append-only: every outcome is appended as a new record, a later record of a file replacing
+ * 		the earlier ones. The records are read into memory when the manifest is opened. A record cut short by a crash
+ * 		is dropped, and the file is rewritten on {@link #close()} once most of its records have been replaced.
+ * 		The manifest holds the outcomes of one geometry and validation policy; it is started over when opened with another.
+ * <p>
+ * Grids taken from the manifest carry their errors but not their cells. An instance may be used by any number of threads.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public class SudokuManifest implements Closeable {
+
+	private static Logger LOGGER = Logger.getLogger(SudokuManifest.class);
+
+	private static final int MAGIC = 0x53444B4D;
+
+	// 3: the first-per-category policy keys on the category of the error code, not the code itself
+	private static final int VERSION = 3;
+
+	private static final int HEADER_SIZE = 16;
+
+	// the file is rewritten on close if it holds more than this many records per file
+	private static final int MAX_RECORDS_PER_FILE = 2;
+
+	// a file modified this recently may change again within the resolution of its modification time
+	private static final long RACY_MILLIS = 2000;
+
+	// recorded instead of the modification time of such a file, so that its content is compared next time
+	private static final long UNKNOWN = Long.MIN_VALUE;
+
+	private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+
+	private static final long FNV_PRIME = 0x100000001B3L;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * The last recorded outcome of a file
+	 */
+	static final class Entry {
+		final long size;
+		final long modified;
+		final long hash;
+		// packed errors, empty for a valid file
+		final int[] errs;
+		final int dropped;
+
+		Entry(long size, long modified, long hash, int[] errs, int dropped) {
+			this.size = size;
+			this.modified = modified;
+			this.hash = hash;
+			this.errs = errs;
+			this.dropped = dropped;
+		}
+	}
+
+	private final Path file;
+
+	private final SudokuGeometry geometry;
+
+	private final ValidationPolicy policy;
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	private DataOutputStream out;
+
+	// records in the file, including replaced ones
+	private long records;
+
+	private SudokuManifest(Path file, SudokuGeometry geometry, ValidationPolicy policy) {
+		this.file = file;
+		this.geometry = geometry;
+		this.policy = policy;
+	}
+
+	/**
+	 * Opens a manifest, creating it if it does not exist.
+	 *
+	 * @param geometry  the geometry of the files to validate
+	 * @param policy    the validation policy of the files to validate
+	 */
+	public static SudokuManifest open(Path file, SudokuGeometry geometry, ValidationPolicy policy) throws IOException {
+		SudokuManifest manifest = new SudokuManifest(file, geometry, policy);
+		manifest.load();
+		return manifest;
+	}
+
+	/**
+	 * Validates a file into the given grid, which is reset first, unless the manifest holds the outcome
+	 * 		of its current content. The outcome is recorded in the manifest either way.
+	 *
+	 * @param attrs  the attributes of the file if already at hand, null to read them
+	 * @return       true if the outcome was taken from the manifest
+	 * @throws IOException  if the file cannot be read, the manifest is then left as it was
+	 */
+	public boolean validate(Path file, BasicFileAttributes attrs, SudokuProposedSolution grid) throws IOException {
+		if (attrs == null) {
+			attrs = Files.readAttributes(file, BasicFileAttributes.class);
+		}
+		String key = file.toAbsolutePath().normalize().toString();
+		long size = attrs.size();
+		long modified = attrs.lastModifiedTime().toMillis();
+		Entry entry = entries.get(key);
+		if (entry != null && entry.size == size && entry.modified == modified) {
+			restore(entry, grid);
+			return true;
+		}
+
+		boolean unchanged;
+		long hash;
+		FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			ByteBuffer buf;
+			if (ch.size() > SudokuProposedSolution.MAP_THRESHOLD) {
+				buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+			} else {
+				buf = grid.resetParser().getByteBuffer((int) ch.size());
+				while (buf.hasRemaining() && ch.read(buf, buf.position()) >= 0) {
+					// keep reading until the buffer is full or EOF
+				}
+				buf.flip();
+			}
+			hash = hash(buf);
+			unchanged = entry != null && entry.hash == hash;
+			if (unchanged) {
+				restore(entry, grid);
+			} else {
+				SudokuProposedSolution.validate(buf, grid);
+			}
+		} finally {
+			ch.close();
+		}
+
+		int[] errs = new int[grid.getErrCount()];
+		for (int i = 0; i < errs.length; i++) {
+			errs[i] = ValidationError.pack(grid.getErrCode(i), grid.getErrRow(i), grid.getErrCol(i), grid.getErrValue(i));
+		}
+		if (System.currentTimeMillis() - modified < RACY_MILLIS) {
+			modified = UNKNOWN;
+		}
+		put(key, new Entry(size, modified, hash, errs, grid.getErrsDropped()));
+		return unchanged;
+	}
+
+	/**
+	 * @return the 64 bit FNV-1a hash of the bytes between the buffer's position and its limit
+	 */
+	static long hash(ByteBuffer buf) {
+		long hash = FNV_OFFSET;
+		for (int i = buf.position(); i < buf.limit(); i++) {
+			hash = (hash ^ (buf.get(i) & 0xFF)) * FNV_PRIME;
+		}
+		return hash;
+	}
+
+	/**
+	 * @return the recorded outcome of a file, null if none
+	 */
+	Entry get(Path file) {
+		return entries.get(file.toAbsolutePath().normalize().toString());
+	}
+
+	private static void restore(Entry entry, SudokuProposedSolution grid) {
+		grid.reset();
+		for (int packed : entry.errs) {
+			grid.restoreErr(packed);
+		}
+		grid.restoreErrsDropped(entry.dropped);
+	}
+
+	private synchronized void put(String key, Entry entry) throws IOException {
+		entries.put(key, entry);
+		write(out, key, entry);
+		records ++;
+	}
+
+	private static void write(DataOutputStream out, String key, Entry entry) throws IOException {
+		byte[] path = key.getBytes(UTF8);
+		out.writeShort(path.length);
+		out.write(path);
+		out.writeLong(entry.size);
+		out.writeLong(entry.modified);
+		out.writeLong(entry.hash);
+		out.writeShort(entry.errs.length);
+		for (int packed : entry.errs) {
+			out.writeInt(packed);
+		}
+		out.writeInt(entry.dropped);
+	}
+
+	/**
+	 * Reads all complete records, drops an incomplete last one and opens the file for appending.
+	 */
+	private void load() throws IOException {
+		long end = 0;
+		if (Files.exists(file)) {
+			FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+			try {
+				ByteBuffer buf = ByteBuffer.allocate((int) Math.min(ch.size(), Integer.MAX_VALUE));
+				while (buf.hasRemaining() && ch.read(buf) >= 0) {
+				}
+				buf.flip();
+				end = read(buf);
+			} finally {
+				ch.close();
+			}
+		}
+
+		FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		if (ch.size() > end) {
+			if (end > 0 && LOGGER.isInfoEnabled()) {
+				LOGGER.info(file + ": dropping " + (ch.size() - end) + " bytes of an incomplete record");
+			}
+			ch.truncate(end);
+		}
+		ch.position(end);
+		out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch), 64 * 1024));
+		if (end == 0) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(geometry.getBoxSize());
+			out.writeInt(policy.ordinal());
+		}
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug(file + ": " + entries.size() + " files in " + records + " records");
+		}
+	}
+
+	/**
+	 * @return the end of the last complete record, 0 if the manifest is to be started over
+	 * @throws IOException  if the file is not a manifest, so that it is not overwritten
+	 */
+	private long read(ByteBuffer buf) throws IOException {
+		if (buf.remaining() >= 4 && buf.getInt(0) != MAGIC) {
+			throw new IOException(file + " is not a manifest");
+		}
+		if (buf.remaining() < HEADER_SIZE || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+			return 0;
+		}
+		if (buf.getInt() != geometry.getBoxSize() || buf.getInt() != policy.ordinal()) {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info(file + ": recorded for another geometry or validation policy, starting over");
+			}
+			return 0;
+		}
+
+		long end = buf.position();
+		byte[] path = new byte[256];
+		while (buf.remaining() >= 2) {
+			int len = buf.getShort() & 0xFFFF;
+			if (buf.remaining() < len + 26) {
+				break;
+			}
+			if (len > path.length) {
+				path = new byte[len];
+			}
+			buf.get(path, 0, len);
+			long size = buf.getLong(), modified = buf.getLong(), hash = buf.getLong();
+			int n = buf.getShort() & 0xFFFF;
+			if (buf.remaining() < 4 * n + 4) {
+				break;
+			}
+			int[] errs = new int[n];
+			for (int i = 0; i < n; i++) {
+				errs[i] = buf.getInt();
+			}
+			entries.put(new String(path, 0, len, UTF8), new Entry(size, modified, hash, errs, buf.getInt()));
+			records ++;
+			end = buf.position();
+		}
+		return end;
+	}
+
+	/**
+	 * Writes all outstanding records, rewriting the file with only the last record of every file
+	 * 		if most of its records have been replaced.
+	 */
+	public synchronized void close() throws IOException {
+		out.close();
+		if (records <= MAX_RECORDS_PER_FILE * (long) entries.size()) {
+			return;
+		}
+
+		Path tmp = Paths.get(file + ".tmp");
+		DataOutputStream compact = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024));
+		try {
+			compact.writeInt(MAGIC);
+			compact.writeInt(VERSION);
+			compact.writeInt(geometry.getBoxSize());
+			compact.writeInt(policy.ordinal());
+			for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+				write(compact, entry.getKey(), entry.getValue());
+			}
+		} finally {
+			compact.close();
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug(file + ": compacted " + records + " records to " + entries.size());
+		}
+		records = entries.size();
+	}
+
+	// JavaBean accessors
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * @return the number of files with a recorded outcome
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the number of records in the file, including those replaced by later records of the same file
+	 */
+	public synchronized long getRecords() {
+		return records;
+	}
+}
@@ -0,0 +1,384 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuMetrics
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Process-wide validation metrics: latency histograms per {@link Phase}, the number of validated grids,
+ * 		and counters per error code and per row and column the errors were reported at.<p>
+ * Metrics are disabled by default. While disabled, an instrumented call costs one volatile read and
+ * 		neither reads the clock nor touches any counter. They are enabled with the system property
+ * 		{@value #PROP_ENABLED}{@code =true} or through JMX, where they are registered as {@value #OBJECT_NAME}.
+ * 		The system property {@value #PROP_DUMP_SECONDS} additionally logs a text dump at the given period.
+ * <p>
+ * Latencies are kept in histograms of power-of-two buckets, so that recording is a few atomic increments
+ * 		and percentiles are reported as the upper bound of their bucket, i.e. within a factor of two.
+ * All counters are lock-free and may be updated from any number of threads.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public final class SudokuMetrics implements SudokuMetricsMBean {
+
+	private static Logger LOGGER = Logger.getLogger(SudokuMetrics.class);
+
+	public static final String PROP_ENABLED = "sudoku.metrics";
+
+	public static final String PROP_DUMP_SECONDS = "sudoku.metrics.dump";
+
+	public static final String OBJECT_NAME = "com.uc.sudoku.validate:type=SudokuMetrics";
+
+	/**
+	 * The timed phases of a validation.
+	 */
+	public enum Phase {
+		// reading and parsing text, including the rule checks made while placing each digit
+		PARSE,
+		// checking grids given as digits
+		CHECK,
+		// rendering the outcome for the user or a client
+		REPORT
+	}
+
+	// rows and columns as packed by ValidationError, -1 (unknown) mapping to index 0
+	private static final int POSITIONS = 256;
+
+	private static final SudokuMetrics INSTANCE = new SudokuMetrics();
+
+	private static volatile boolean enabled = false;
+
+	private final Histogram[] phases = new Histogram[Phase.values().length];
+
+	private final AtomicLong grids = new AtomicLong();
+
+	private final AtomicLong validGrids = new AtomicLong();
+
+	private final AtomicLongArray errCounts = new AtomicLongArray(ERR_CODE.values().length);
+
+	private final AtomicLongArray rowCounts = new AtomicLongArray(POSITIONS);
+
+	private final AtomicLongArray colCounts = new AtomicLongArray(POSITIONS);
+
+	private volatile long startNanos = System.nanoTime();
+
+	private ScheduledExecutorService dumper;
+
+	private SudokuMetrics() {
+		for (int i = 0; i < phases.length; i++) {
+			phases[i] = new Histogram();
+		}
+	}
+
+	public static SudokuMetrics get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Applies the system properties, registering the MBean and scheduling the periodic dump as requested.
+	 */
+	public static void configure() {
+		if (Boolean.getBoolean(PROP_ENABLED)) {
+			INSTANCE.setEnabled(true);
+			INSTANCE.register();
+			long seconds = Long.getLong(PROP_DUMP_SECONDS, 0L);
+			if (seconds > 0) {
+				INSTANCE.startDump(seconds);
+			}
+		}
+	}
+
+	/**
+	 * @return the start of a timed phase, 0 if metrics are disabled
+	 */
+	public static long start() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Records the duration of a phase started with {@link #start()}.
+	 */
+	public static void stop(Phase phase, long start) {
+		if (start != 0) {
+			INSTANCE.phases[phase.ordinal()].record(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Records the duration of a phase started with {@link #start()} and the outcome of the grid it validated.
+	 */
+	public static void stop(Phase phase, long start, SudokuProposedSolution grid) {
+		if (start != 0) {
+			INSTANCE.phases[phase.ordinal()].record(System.nanoTime() - start);
+			INSTANCE.record(grid);
+		}
+	}
+
+	private void record(SudokuProposedSolution grid) {
+		grids.incrementAndGet();
+		if (!grid.isInError()) {
+			validGrids.incrementAndGet();
+			return;
+		}
+		for (int i = 0; i < grid.getErrCount(); i++) {
+			errCounts.incrementAndGet(grid.getErrCode(i).ordinal());
+			rowCounts.incrementAndGet(grid.getErrRow(i) + 1);
+			colCounts.incrementAndGet(grid.getErrCol(i) + 1);
+		}
+	}
+
+	/**
+	 * Registers this instance with the platform MBean server, unless already registered.
+	 */
+	public synchronized void register() {
+		try {
+			MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (!mbs.isRegistered(name)) {
+				mbs.registerMBean(this, name);
+			}
+		} catch (JMException e) {
+			LOGGER.error("Unable to register " + OBJECT_NAME + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Logs {@link #dump()} at the given period from a daemon thread, replacing any earlier schedule.
+	 */
+	public synchronized void startDump(long periodSeconds) {
+		stopDump();
+		dumper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "sudoku-metrics");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		dumper.scheduleAtFixedRate(new Runnable() {
+			public void run() {
+				if (LOGGER.isInfoEnabled()) {
+					LOGGER.info(dump());
+				}
+			}
+		}, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+	}
+
+	public synchronized void stopDump() {
+		if (dumper != null) {
+			dumper.shutdownNow();
+			dumper = null;
+		}
+	}
+
+	// JavaBean accessors
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		SudokuMetrics.enabled = enabled;
+	}
+
+	public long getGrids() {
+		return grids.get();
+	}
+
+	public long getValidGrids() {
+		return validGrids.get();
+	}
+
+	public double getGridsPerSecond() {
+		long nanos = System.nanoTime() - startNanos;
+		return nanos > 0 ? grids.get() * 1e9 / nanos : 0;
+	}
+
+	public long getErrCount(ERR_CODE code) {
+		return errCounts.get(code.ordinal());
+	}
+
+	public long getErrRowCount(int row) {
+		return rowCounts.get(row + 1);
+	}
+
+	public long getErrColCount(int col) {
+		return colCounts.get(col + 1);
+	}
+
+	/**
+	 * @return the latency histogram of a phase
+	 */
+	public Histogram getLatency(Phase phase) {
+		return phases[phase.ordinal()];
+	}
+
+	public String[] getErrCounts() {
+		List<String> counts = new ArrayList<String>();
+		for (ERR_CODE code : ERR_CODE.values()) {
+			long count = errCounts.get(code.ordinal());
+			if (count > 0) {
+				counts.add(code.getStatusCode() + "=" + count);
+			}
+		}
+		return counts.toArray(new String[counts.size()]);
+	}
+
+	public String[] getPhaseLatencies() {
+		String[] latencies = new String[phases.length];
+		for (Phase phase : Phase.values()) {
+			latencies[phase.ordinal()] = phase + ": " + phases[phase.ordinal()];
+		}
+		return latencies;
+	}
+
+	public String[] getErrRowCounts() {
+		return positions(rowCounts);
+	}
+
+	public String[] getErrColCounts() {
+		return positions(colCounts);
+	}
+
+	/**
+	 * Clears all counters and histograms and restarts the throughput clock.
+	 */
+	public void reset() {
+		for (Histogram h : phases) {
+			h.reset();
+		}
+		grids.set(0);
+		validGrids.set(0);
+		for (int i = 0; i < errCounts.length(); i++) {
+			errCounts.set(i, 0);
+		}
+		for (int i = 0; i < POSITIONS; i++) {
+			rowCounts.set(i, 0);
+			colCounts.set(i, 0);
+		}
+		startNanos = System.nanoTime();
+	}
+
+	public String dump() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("\n\t Validation metrics:");
+		sb.append("\n\t grids: ").append(getGrids()).append("\tvalid: ").append(getValidGrids());
+		sb.append("\tgrids/sec: ").append(String.format("%.1f", getGridsPerSecond()));
+		for (String latency : getPhaseLatencies()) {
+			sb.append("\n\t ").append(latency);
+		}
+		sb.append("\n\t errors: ");
+		for (String count : getErrCounts()) {
+			sb.append(count).append(' ');
+		}
+		sb.append("\n\t error rows: ");
+		for (String count : getErrRowCounts()) {
+			sb.append(count).append(' ');
+		}
+		sb.append("\n\t error cols: ");
+		for (String count : getErrColCounts()) {
+			sb.append(count).append(' ');
+		}
+		return sb.toString();
+	}
+
+	private static String[] positions(AtomicLongArray counts) {
+		List<String> list = new ArrayList<String>();
+		for (int i = 0; i < POSITIONS; i++) {
+			long count = counts.get(i);
+			if (count > 0) {
+				list.add((i - 1) + "=" + count);
+			}
+		}
+		return list.toArray(new String[list.size()]);
+	}
+
+	/**
+	 * A latency histogram of power-of-two buckets, bucket n counting durations below 2^n nanoseconds.
+	 */
+	public static final class Histogram {
+
+		private final AtomicLongArray buckets = new AtomicLongArray(64);
+
+		private final AtomicLong count = new AtomicLong();
+
+		private final AtomicLong sum = new AtomicLong();
+
+		private final AtomicLong max = new AtomicLong();
+
+		void record(long nanos) {
+			if (nanos < 0) {
+				nanos = 0;
+			}
+			buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(nanos));
+			count.incrementAndGet();
+			sum.addAndGet(nanos);
+			long m;
+			while (nanos > (m = max.get()) && !max.compareAndSet(m, nanos)) {
+			}
+		}
+
+		void reset() {
+			for (int i = 0; i < 64; i++) {
+				buckets.set(i, 0);
+			}
+			count.set(0);
+			sum.set(0);
+			max.set(0);
+		}
+
+		public long getCount() {
+			return count.get();
+		}
+
+		public long getMeanNanos() {
+			long n = count.get();
+			return n > 0 ? sum.get() / n : 0;
+		}
+
+		public long getMaxNanos() {
+			return max.get();
+		}
+
+		/**
+		 * @param fraction  e.g. 0.99 for the 99th percentile
+		 * @return          the upper bound of the bucket holding the percentile, 0 if nothing was recorded
+		 */
+		public long getPercentileNanos(double fraction) {
+			long n = count.get();
+			if (n == 0) {
+				return 0;
+			}
+			long rank = (long) Math.ceil(n * fraction);
+			long seen = 0;
+			for (int i = 0; i < 64; i++) {
+				seen += buckets.get(i);
+				if (seen >= rank) {
+					return i < 63 ? 1L << i : Long.MAX_VALUE;
+				}
+			}
+			return max.get();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("count %d, mean %.1fus, p50 %.1fus, p99 %.1fus, max %.1fus", getCount(),
+					getMeanNanos() / 1e3, getPercentileNanos(0.5) / 1e3, getPercentileNanos(0.99) / 1e3, getMaxNanos() / 1e3);
+		}
+	}
+}
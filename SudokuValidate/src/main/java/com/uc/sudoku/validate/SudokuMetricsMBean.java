@@ -0,0 +1,49 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuMetricsMBean
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+/**
+ * The JMX management interface of {@link SudokuMetrics}.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public interface SudokuMetricsMBean {
+
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	long getGrids();
+
+	long getValidGrids();
+
+	double getGridsPerSecond();
+
+	/**
+	 * @return one entry "statusCode=count" per error code that occurred
+	 */
+	String[] getErrCounts();
+
+	/**
+	 * @return one entry "phase: count, mean, p50, p99 and max in microseconds" per phase
+	 */
+	String[] getPhaseLatencies();
+
+	/**
+	 * @return one entry "row=count" per row an error was reported at
+	 */
+	String[] getErrRowCounts();
+
+	/**
+	 * @return one entry "col=count" per column an error was reported at
+	 */
+	String[] getErrColCounts();
+
+	void reset();
+
+	String dump();
+}
@@ -0,0 +1,356 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuOffHeapStore
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Holds a large number of 9x9 grids together with their validation outcomes outside the Java heap.<p>
+ * Grids are stored in their packed encoding, see {@link SudokuPackedGrid}, in chunks of
+ * 		{@value #DEFAULT_CHUNK_GRIDS} grids by default, each mapped from a temporary file. Each chunk holds the records of its grids followed by
+ * 		an outcome of {@value #OUTCOME_SIZE} bytes per grid: the codes of its errors, bit n standing for
+ * 		ordinal n, and its first error in the packed form of {@link ValidationError}.
+ * <p>
+ * {@link #validate(int)} decodes every record straight from its chunk into a scratch array of the validating thread
+ * 		and writes the outcome back next to it, so that the heap taken by a run does not depend on the number of grids.
+ * 		Mapped chunks are paged in and out by the operating system and, unlike direct buffers, are not limited by
+ * 		<code>-XX:MaxDirectMemorySize</code>, which defaults to the maximum heap size. A store of 100 million grids
+ * 		takes a temporary file of about 4.9 GB and a hundred buffer objects on the heap.
+ * 		{@link #close()} deletes the file; the mapped memory is released once the store is no longer referenced.
+ * <p>
+ * Grids may be added by one thread at a time, and not while the store is being validated.
+ * 		Outcomes may be read by any thread once {@link #validate(int)} has returned.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public class SudokuOffHeapStore implements Closeable {
+
+	private static Logger LOGGER = Logger.getLogger(SudokuOffHeapStore.class);
+
+	public static final int DEFAULT_CHUNK_GRIDS = 1 << 20;
+
+	public static final int OUTCOME_SIZE = 8;
+
+	// grids validated by a single task, so that threads share the work of a chunk
+	private static final int GRIDS_PER_TASK = 1 << 14;
+
+	// set in the codes of every validated grid
+	private static final int VALIDATED = 1 << 31;
+
+	private final int chunkGrids;
+
+	// the directory of the backing file, null for the default temporary-file directory
+	private final Path directory;
+
+	// the backing file of all chunks, created with the first chunk and deleted when closed, on Unix as soon as it is opened
+	private FileChannel backing;
+
+	private final List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+
+	private long size = 0;
+
+	private ValidationPolicy policy = ValidationPolicy.EXHAUSTIVE;
+
+	public SudokuOffHeapStore() {
+		this(DEFAULT_CHUNK_GRIDS);
+	}
+
+	/**
+	 * @param chunkGrids  the number of grids per mapped chunk, so that a chunk takes no more than 2 GB
+	 */
+	public SudokuOffHeapStore(int chunkGrids) {
+		this(chunkGrids, null);
+	}
+
+	/**
+	 * @param chunkGrids  the number of grids per mapped chunk, so that a chunk takes no more than 2 GB
+	 * @param directory   the directory of the backing file, null for the default temporary-file directory
+	 */
+	public SudokuOffHeapStore(int chunkGrids, Path directory) {
+		if (chunkGrids < 1 || (long) chunkGrids * (SudokuPackedGrid.RECORD_SIZE + OUTCOME_SIZE) > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Unsupported chunk size " + chunkGrids);
+		}
+		this.chunkGrids = chunkGrids;
+		this.directory = directory;
+	}
+
+	/**
+	 * Loads all records of a packed file. A truncated last record is kept and fails validation
+	 * 		as {@link ERR_CODE#INVALID_SUDOKU_FILEFORMAT}, as it does when read by {@link SudokuPackedReader}.
+	 *
+	 * @throws IOException  if the file cannot be read or is not a packed file
+	 */
+	public static SudokuOffHeapStore load(Path file) throws IOException {
+		SudokuOffHeapStore store = new SudokuOffHeapStore();
+		store.addAll(file);
+		return store;
+	}
+
+	/**
+	 * Appends all records of a packed file, reading them straight into the chunks.
+	 *
+	 * @throws IOException  if the file cannot be read or is not a packed file
+	 */
+	public void addAll(Path file) throws IOException {
+		FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(SudokuPackedGrid.HEADER_SIZE);
+			while (header.hasRemaining() && ch.read(header) >= 0) {
+			}
+			header.flip();
+			if (!SudokuPackedGrid.isHeader(header)) {
+				throw new IOException(file + ": " + ERR_CODE.INVALID_SUDOKU_FILEFORMAT);
+			}
+
+			long records = (ch.size() - SudokuPackedGrid.HEADER_SIZE + SudokuPackedGrid.RECORD_SIZE - 1) / SudokuPackedGrid.RECORD_SIZE;
+			long first = size;
+			while (size < first + records) {
+				int slot = slot(size);
+				ByteBuffer chunk = chunk(size).duplicate();
+				int count = (int) Math.min(chunkGrids - slot, first + records - size);
+				chunk.limit((slot + count) * SudokuPackedGrid.RECORD_SIZE).position(slot * SudokuPackedGrid.RECORD_SIZE);
+				while (chunk.hasRemaining() && ch.read(chunk) >= 0) {
+				}
+				if (chunk.hasRemaining()) {
+					// the last record is truncated: break its checksum
+					int last = chunk.limit() - 1;
+					int[] cells = new int[81];
+					SudokuPackedGrid.decode(chunk, last + 1 - SudokuPackedGrid.RECORD_SIZE, cells);
+					int sum = 0;
+					for (int cell : cells) {
+						sum += cell;
+					}
+					chunk.put(last, (byte) (chunk.get(last) & 0xF0 | ((sum + 1) & 0xF)));
+				}
+				size += count;
+			}
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug(file + ": " + records + " grids loaded, " + size + " in store");
+			}
+		} finally {
+			ch.close();
+		}
+	}
+
+	/**
+	 * Appends a grid.
+	 *
+	 * @param cells  the 81 cells in left-to-right and top-down order, values in the range [0, 15]
+	 * @return       the index of the grid
+	 * @throws IOException  if the backing file cannot be extended
+	 */
+	public long add(int[] cells) throws IOException {
+		long index = size;
+		ByteBuffer chunk = chunk(index).duplicate();
+		chunk.position(slot(index) * SudokuPackedGrid.RECORD_SIZE);
+		SudokuPackedGrid.encode(cells, chunk);
+		size ++;
+		return index;
+	}
+
+	/**
+	 * Decodes a grid.
+	 *
+	 * @return true if the record's checksum matches
+	 */
+	public boolean get(long index, int[] cells) {
+		return SudokuPackedGrid.decode(chunks.get(chunkOf(index)), slot(index) * SudokuPackedGrid.RECORD_SIZE, cells);
+	}
+
+	/**
+	 * Validates all grids, recording the outcome of each in the store.
+	 *
+	 * @param threads  the number of validation threads, 0 for one per available processor
+	 * @return         the aggregated summary of the run
+	 */
+	public SudokuBatchSummary validate(int threads) throws InterruptedException {
+		final SudokuBatchSummary summary = new SudokuBatchSummary();
+		final ValidationPolicy policy = this.policy;
+		int n = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = Executors.newFixedThreadPool(n);
+		final ThreadLocal<SudokuProposedSolution> grids = new ThreadLocal<SudokuProposedSolution>() {
+			@Override
+			protected SudokuProposedSolution initialValue() {
+				SudokuProposedSolution grid = new SudokuProposedSolution();
+				grid.setValidationPolicy(policy);
+				return grid;
+			}
+		};
+		final ThreadLocal<int[]> scratches = new ThreadLocal<int[]>() {
+			@Override
+			protected int[] initialValue() {
+				return new int[81];
+			}
+		};
+
+		summary.start();
+		List<Future<?>> tasks = new ArrayList<Future<?>>();
+		try {
+			for (long from = 0; from < size; from += GRIDS_PER_TASK) {
+				final long start = from;
+				final long end = Math.min(size, from + GRIDS_PER_TASK);
+				tasks.add(executor.submit(new Runnable() {
+					public void run() {
+						validate(start, end, scratches.get(), grids.get(), summary);
+					}
+				}));
+			}
+			for (Future<?> task : tasks) {
+				task.get();
+			}
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		summary.stop();
+
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug(summary.toString());
+		}
+		return summary;
+	}
+
+	private void validate(long start, long end, int[] scratch, SudokuProposedSolution grid, SudokuBatchSummary summary) {
+		for (long index = start; index < end; index++) {
+			ByteBuffer chunk = chunks.get(chunkOf(index));
+			int slot = slot(index);
+			SudokuPackedGrid.validate(chunk, slot * SudokuPackedGrid.RECORD_SIZE, scratch, grid);
+			int codes = VALIDATED, first = 0;
+			for (int i = 0; i < grid.getErrCount(); i++) {
+				codes |= 1 << grid.getErrCode(i).ordinal();
+			}
+			if (grid.isInError()) {
+				first = ValidationError.pack(grid.getErrCode(0), grid.getErrRow(0), grid.getErrCol(0), grid.getErrValue(0));
+			}
+			int outcome = outcomeOffset(slot);
+			chunk.putInt(outcome, codes);
+			chunk.putInt(outcome + 4, first);
+			summary.record(grid);
+		}
+	}
+
+	/**
+	 * @return true if the grid has been validated
+	 */
+	public boolean isValidated(long index) {
+		return (codes(index) & VALIDATED) != 0;
+	}
+
+	/**
+	 * @return true if the grid has been validated and found valid
+	 */
+	public boolean isValid(long index) {
+		return codes(index) == VALIDATED;
+	}
+
+	/**
+	 * @return true if validation reported an error of the given code for the grid
+	 */
+	public boolean hasErr(long index, ERR_CODE code) {
+		return (codes(index) & (1 << code.ordinal())) != 0;
+	}
+
+	/**
+	 * @return the first error reported for the grid, null if it is valid or has not been validated
+	 */
+	public ValidationError getFirstErr(long index) {
+		if (isValid(index) || !isValidated(index)) {
+			return null;
+		}
+		return ValidationError.unpack(chunks.get(chunkOf(index)).getInt(outcomeOffset(slot(index)) + 4), null);
+	}
+
+	private int codes(long index) {
+		return chunks.get(chunkOf(index)).getInt(outcomeOffset(slot(index)));
+	}
+
+	// the chunk to hold a grid appended at the given index, mapped on first use
+	private ByteBuffer chunk(long index) throws IOException {
+		int c = (int) (index / chunkGrids);
+		if (backing == null) {
+			Path file = directory == null ? Files.createTempFile("sudoku", ".store") : Files.createTempFile(directory, "sudoku", ".store");
+			backing = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+		}
+		long chunkBytes = (long) chunkGrids * (SudokuPackedGrid.RECORD_SIZE + OUTCOME_SIZE);
+		while (chunks.size() <= c) {
+			// a new region of a sparse file reads as zeros, an outcome not yet validated
+			ByteBuffer chunk = backing.map(FileChannel.MapMode.READ_WRITE, chunks.size() * chunkBytes, chunkBytes);
+			chunks.add(chunk.order(ByteOrder.nativeOrder()));
+		}
+		return chunks.get(c);
+	}
+
+	private int chunkOf(long index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("No grid " + index + " in a store of " + size);
+		}
+		return (int) (index / chunkGrids);
+	}
+
+	private int slot(long index) {
+		return (int) (index % chunkGrids);
+	}
+
+	private int outcomeOffset(int slot) {
+		return chunkGrids * SudokuPackedGrid.RECORD_SIZE + slot * OUTCOME_SIZE;
+	}
+
+	/**
+	 * Deletes the backing file. The store is empty afterwards and may be filled again.
+	 */
+	public void close() throws IOException {
+		chunks.clear();
+		size = 0;
+		if (backing != null) {
+			try {
+				backing.close();
+			} finally {
+				backing = null;
+			}
+		}
+	}
+
+	// JavaBean accessors
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * @return the size of the backing file, in bytes
+	 */
+	public long getCapacityBytes() {
+		return (long) chunks.size() * chunkGrids * (SudokuPackedGrid.RECORD_SIZE + OUTCOME_SIZE);
+	}
+
+	public ValidationPolicy getValidationPolicy() {
+		return policy;
+	}
+
+	/**
+	 * @param policy  the validation policy of the next {@link #validate(int)}, exhaustive by default.
+	 * 		Under {@link ValidationPolicy#FAIL_FAST} only the code of the first error of a grid is recorded.
+	 */
+	public void setValidationPolicy(ValidationPolicy policy) {
+		this.policy = policy;
+	}
+}
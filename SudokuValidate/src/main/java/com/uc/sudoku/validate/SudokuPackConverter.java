@@ -0,0 +1,261 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuPackConverter
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Converts comma-separated Sudoku grids to the packed binary format and back, see {@link SudokuPackedGrid}.<p>
+ * Packing accepts single grid files, directories of grid files and corpus files, see {@link SudokuCorpusReader}.
+ * Only the digits of a grid are stored, so grids with structural errors (missing or invalid characters,
+ * 		wrong number of rows or columns) cannot be packed and are reported and skipped. Grids breaking
+ * 		the Sudoku rules are packed as they are, and so fail validation again once packed.
+ * <p>
+ * Unpacking writes either one corpus file of comma-separated blocks, or one grid file per record
+ * 		if the target is an existing directory.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public class SudokuPackConverter {
+
+	// created on first use, after main has kept log4j from configuring itself, see SudokuLogging
+	private static final class Log {
+		static final Logger LOGGER = Logger.getLogger(SudokuPackConverter.class);
+	}
+
+	public static final String USAGE = "Usage: convert.bat pack packedFile <dir|puzzleName.txt|corpusFile> ..."
+			+ " | convert.bat unpack packedFile <corpusFile|dir>";
+
+	public static final String CMD_PACK = "pack";
+
+	public static final String CMD_UNPACK = "unpack";
+
+	private static final int RECORDS_PER_WRITE = 1024;
+
+	private static final String LINE_SEP = "\r\n";
+
+	private long converted = 0;
+
+	private long skipped = 0;
+
+	public static void main(String[] args) {
+		SudokuLogging.skipDefaultInit();
+		SudokuLogging.configure();
+		if (args.length < 3 || !(CMD_PACK.equals(args[0]) || CMD_UNPACK.equals(args[0]))) {
+			Log.LOGGER.error(USAGE);
+			return;
+		}
+
+		SudokuPackConverter converter = new SudokuPackConverter();
+		try {
+			if (CMD_PACK.equals(args[0])) {
+				String[] inputs = new String[args.length - 2];
+				System.arraycopy(args, 2, inputs, 0, inputs.length);
+				converter.pack(Paths.get(args[1]), inputs);
+			} else {
+				converter.unpack(Paths.get(args[1]), Paths.get(args[2]));
+			}
+			if (Log.LOGGER.isInfoEnabled()) {
+				Log.LOGGER.info("converted: " + converter.getConverted() + "\tskipped: " + converter.getSkipped());
+			}
+		} catch (IOException e) {
+			Log.LOGGER.error(new ValidationError(ERR_CODE.UNABLE_TO_READ_SUDOKU_FILE, e).getError());
+		}
+	}
+
+	/**
+	 * Packs the grids of all inputs into one packed file, replacing any existing file.
+	 *
+	 * @param out     the packed file
+	 * @param inputs  grid files, directories searched recursively for grid files, or corpus files
+	 */
+	public void pack(Path out, String... inputs) throws IOException {
+		FileChannel ch = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			ByteBuffer buf = ByteBuffer.allocate(SudokuPackedGrid.HEADER_SIZE + SudokuPackedGrid.RECORD_SIZE * RECORDS_PER_WRITE);
+			SudokuPackedGrid.putHeader(buf);
+			SudokuProposedSolution grid = new SudokuProposedSolution();
+			int[] cells = new int[81];
+
+			for (String input : inputs) {
+				Path path = Paths.get(input);
+				if (Files.isDirectory(path)) {
+					for (Path file : listGridFiles(path)) {
+						SudokuValidate.validateFile(file.toString(), grid);
+						add(grid, file.toString(), cells, buf, ch);
+					}
+				} else if (input.endsWith(SudokuValidateUtils.PUZZLE_FILE_EXTN)) {
+					SudokuValidate.validateFile(input, grid);
+					add(grid, input, cells, buf, ch);
+				} else {
+					SudokuCorpusReader corpus = SudokuCorpusReader.open(path);
+					corpus.setReuseGrid(true);
+					try {
+						while (corpus.hasNext()) {
+							grid = corpus.next();
+							add(grid, input + "#" + grid.getRecordIndex(), cells, buf, ch);
+						}
+					} finally {
+						corpus.close();
+					}
+				}
+			}
+			flush(buf, ch);
+		} finally {
+			ch.close();
+		}
+	}
+
+	/**
+	 * Unpacks a packed file into comma-separated grids. Records failing their checksum are reported and skipped.
+	 *
+	 * @param in   the packed file
+	 * @param out  a corpus file to write, or an existing directory to write one grid file per record into
+	 */
+	public void unpack(Path in, Path out) throws IOException {
+		DataInputStream din = new DataInputStream(new BufferedInputStream(new FileInputStream(in.toFile())));
+		try {
+			byte[] record = new byte[SudokuPackedGrid.RECORD_SIZE];
+			ByteBuffer buf = ByteBuffer.wrap(record);
+			int[] cells = new int[81];
+
+			din.readFully(record, 0, SudokuPackedGrid.HEADER_SIZE);
+			buf.limit(SudokuPackedGrid.HEADER_SIZE);
+			if (!SudokuPackedGrid.isHeader(buf)) {
+				throw new IOException(in + ": " + ERR_CODE.INVALID_SUDOKU_FILEFORMAT);
+			}
+			buf.clear();
+
+			boolean perFile = Files.isDirectory(out);
+			Writer corpus = perFile ? null : new BufferedWriter(new FileWriter(out.toFile()));
+			try {
+				for (long index = 0; ; index++) {
+					try {
+						din.readFully(record);
+					} catch (EOFException e) {
+						break;
+					}
+					if (!SudokuPackedGrid.decode(buf, 0, cells)) {
+						Log.LOGGER.warn(in + "#" + index + ": " + ERR_CODE.INVALID_SUDOKU_FILEFORMAT);
+						skipped ++;
+						continue;
+					}
+
+					if (perFile) {
+						Writer wr = new BufferedWriter(new FileWriter(new File(out.toFile(),
+								String.format("grid_%06d%s", index, SudokuValidateUtils.PUZZLE_FILE_EXTN))));
+						try {
+							writeGrid(cells, wr);
+						} finally {
+							wr.close();
+						}
+					} else {
+						if (converted > 0) {
+							corpus.write(LINE_SEP);
+							corpus.write(LINE_SEP);
+						}
+						writeGrid(cells, corpus);
+					}
+					converted ++;
+				}
+				if (corpus != null && converted > 0) {
+					corpus.write(LINE_SEP);
+				}
+			} finally {
+				if (corpus != null) {
+					corpus.close();
+				}
+			}
+		} finally {
+			din.close();
+		}
+	}
+
+	// JavaBean accessors
+	public long getConverted() {
+		return converted;
+	}
+
+	public long getSkipped() {
+		return skipped;
+	}
+
+	private void add(SudokuProposedSolution grid, String name, int[] cells, ByteBuffer buf, FileChannel ch) throws IOException {
+		if (!SudokuPackedGrid.digitsOf(grid, cells)) {
+			Log.LOGGER.warn(name + ": not packed, " + grid.getErrs().get(0).getError());
+			skipped ++;
+			return;
+		}
+		if (buf.remaining() < SudokuPackedGrid.RECORD_SIZE) {
+			flush(buf, ch);
+		}
+		SudokuPackedGrid.encode(cells, buf);
+		converted ++;
+	}
+
+	private static void flush(ByteBuffer buf, FileChannel ch) throws IOException {
+		buf.flip();
+		while (buf.hasRemaining()) {
+			ch.write(buf);
+		}
+		buf.clear();
+	}
+
+	// the grid text as in a single grid file, without a line break after the last row
+	private static void writeGrid(int[] cells, Writer wr) throws IOException {
+		for (int row = 0; row < 9; row++) {
+			if (row > 0) {
+				wr.write(LINE_SEP);
+			}
+			for (int col = 0; col < 9; col++) {
+				if (col > 0) {
+					wr.write(',');
+				}
+				wr.write('0' + cells[row*9 + col]);
+			}
+		}
+	}
+
+	private static List<Path> listGridFiles(Path dir) throws IOException {
+		final List<Path> files = new ArrayList<Path>();
+		Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				if (attrs.isRegularFile() && file.getFileName().toString().endsWith(SudokuValidateUtils.PUZZLE_FILE_EXTN)) {
+					files.add(file);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		// a stable record order
+		Collections.sort(files);
+		return files;
+	}
+}
@@ -0,0 +1,136 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuPackedGrid
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The packed binary encoding of a 9 x 9 grid.<p>
+ * Each cell is stored as one nibble, 0 denoting an empty cell, in left-to-right and top-down order,
+ * 		two cells per byte with the first cell in the high nibble. The 81 cells fill 40.5 bytes; the
+ * 		remaining low nibble of the last byte holds a checksum, the sum of all cells modulo 16.
+ * A record therefore takes {@value #RECORD_SIZE} bytes, compared to about 162 bytes of comma-separated text.
+ * <p>
+ * A packed file starts with a {@value #HEADER_SIZE} byte header: the magic bytes 'SDKP',
+ * 		the format version and three reserved bytes. The records follow without any separator.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public final class SudokuPackedGrid {
+
+	public static final int RECORD_SIZE = 41;
+
+	public static final int HEADER_SIZE = 8;
+
+	public static final int VERSION = 1;
+
+	private static final byte[] MAGIC = {'S', 'D', 'K', 'P'};
+
+	private SudokuPackedGrid() {
+	}
+
+	/**
+	 * Writes the file header at the buffer's position.
+	 */
+	public static void putHeader(ByteBuffer out) {
+		out.put(MAGIC).put((byte) VERSION).put((byte) 0).put((byte) 0).put((byte) 0);
+	}
+
+	/**
+	 * @return true if the buffer starts with a header of a supported version at its position
+	 */
+	public static boolean isHeader(ByteBuffer in) {
+		if (in.remaining() < HEADER_SIZE) {
+			return false;
+		}
+		int pos = in.position();
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (in.get(pos + i) != MAGIC[i]) {
+				return false;
+			}
+		}
+		return in.get(pos + MAGIC.length) == VERSION;
+	}
+
+	/**
+	 * Encodes 81 cells at the buffer's position, advancing it by {@value #RECORD_SIZE} bytes.
+	 *
+	 * @param cells  the cells in left-to-right and top-down order, values in the range [0, 15]
+	 * @param out    the target buffer
+	 */
+	public static void encode(int[] cells, ByteBuffer out) {
+		int sum = 0;
+		for (int loc = 0; loc < 80; loc += 2) {
+			out.put((byte) (cells[loc] << 4 | cells[loc + 1]));
+			sum += cells[loc] + cells[loc + 1];
+		}
+		sum += cells[80];
+		out.put((byte) (cells[80] << 4 | (sum & 0xF)));
+	}
+
+	/**
+	 * Decodes the record starting at the given absolute offset without changing the buffer's position.
+	 *
+	 * @param in      the source buffer
+	 * @param offset  the offset of the record
+	 * @param cells   receives the 81 cells
+	 * @return        true if the checksum matches
+	 */
+	public static boolean decode(ByteBuffer in, int offset, int[] cells) {
+		int sum = 0;
+		for (int i = 0; i < 40; i++) {
+			int b = in.get(offset + i);
+			int hi = (b >> 4) & 0xF, lo = b & 0xF;
+			cells[2*i] = hi;
+			cells[2*i + 1] = lo;
+			sum += hi + lo;
+		}
+		int last = in.get(offset + 40);
+		cells[80] = (last >> 4) & 0xF;
+		sum += cells[80];
+		return (sum & 0xF) == (last & 0xF);
+	}
+
+	/**
+	 * Validates the record starting at the given absolute offset, see {@link SudokuBitboardChecker}.<br>
+	 * A record failing its checksum is reported as {@link ERR_CODE#INVALID_SUDOKU_FILEFORMAT}.
+	 *
+	 * @param in       the source buffer
+	 * @param offset   the offset of the record
+	 * @param scratch  an array of at least 81 cells receiving the decoded cells
+	 * @param grid     the grid to validate into, which is reset first
+	 * @return         the given grid, which may contain errors
+	 */
+	public static SudokuProposedSolution validate(ByteBuffer in, int offset, int[] scratch, SudokuProposedSolution grid) {
+		if (!decode(in, offset, scratch)) {
+			grid.reset();
+			grid.addErr(ERR_CODE.INVALID_SUDOKU_FILEFORMAT, 0, 0, 0);
+			return grid;
+		}
+		return SudokuProposedSolution.validate(scratch, grid);
+	}
+
+	/**
+	 * Recovers the digits of a validated grid, including those rejected as {@link ERR_CODE#NUMBER_ALREADY_USED}.
+	 *
+	 * @param grid   a grid validated from text
+	 * @param cells  receives the 81 digits
+	 * @return       false if the grid has errors other than duplicate digits and so cannot be represented
+	 */
+	public static boolean digitsOf(SudokuProposedSolution grid, int[] cells) {
+		for (int i = 0; i < grid.getErrCount(); i++) {
+			if (grid.getErrCode(i) != ERR_CODE.NUMBER_ALREADY_USED) {
+				return false;
+			}
+		}
+		System.arraycopy(grid.cells(), 0, cells, 0, 81);
+		for (int i = 0; i < grid.getErrCount(); i++) {
+			cells[grid.getErrRow(i)*9 + grid.getErrCol(i)] = grid.getErrValue(i);
+		}
+		return true;
+	}
+}
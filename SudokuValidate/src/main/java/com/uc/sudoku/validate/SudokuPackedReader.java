@@ -0,0 +1,181 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuPackedReader
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Validates the grids of a packed file, see {@link SudokuPackedGrid}.<p>
+ * The records are read in blocks into one reusable buffer and validated straight from their digits
+ * 		through {@link SudokuBitboardChecker}, so that no text is parsed at all.
+ * The returned grids carry their zero-based position within the file as {@link SudokuProposedSolution#getRecordIndex()}.
+ * A trailing partial record is reported as {@link ERR_CODE#INVALID_SUDOKU_FILEFORMAT}.
+ * <p>
+ * A reader is not thread-safe. IO errors while iterating are rethrown as {@link UncheckedIOException}.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public class SudokuPackedReader implements Iterator<SudokuProposedSolution>, Closeable {
+
+	private static final int RECORDS_PER_READ = 1024;
+
+	private final FileChannel ch;
+
+	private final ByteBuffer buf = ByteBuffer.allocate(SudokuPackedGrid.RECORD_SIZE * RECORDS_PER_READ);
+
+	private final int[] cells = new int[81];
+
+	private boolean eof = false;
+
+	private long nextIndex = 0;
+
+	private boolean reuseGrid = false;
+
+	private SudokuVariant variant = SudokuVariant.STANDARD;
+
+	private ValidationPolicy policy = ValidationPolicy.EXHAUSTIVE;
+
+	private SudokuProposedSolution current;
+
+	private SudokuPackedReader(FileChannel ch) {
+		this.ch = ch;
+		buf.flip();
+	}
+
+	/**
+	 * Opens a packed file, checking its header.
+	 *
+	 * @throws IOException  if the file cannot be read or is not a packed file
+	 */
+	public static SudokuPackedReader open(Path file) throws IOException {
+		FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+		ByteBuffer header = ByteBuffer.allocate(SudokuPackedGrid.HEADER_SIZE);
+		while (header.hasRemaining() && ch.read(header) >= 0) {
+		}
+		header.flip();
+		if (!SudokuPackedGrid.isHeader(header)) {
+			ch.close();
+			throw new IOException(file + ": " + ERR_CODE.INVALID_SUDOKU_FILEFORMAT);
+		}
+		return new SudokuPackedReader(ch);
+	}
+
+	/**
+	 * @return true if the file starts with the header of a packed file
+	 */
+	public static boolean isPacked(Path file) throws IOException {
+		FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(SudokuPackedGrid.HEADER_SIZE);
+			while (header.hasRemaining() && ch.read(header) >= 0) {
+			}
+			header.flip();
+			return SudokuPackedGrid.isHeader(header);
+		} finally {
+			ch.close();
+		}
+	}
+
+	public boolean isReuseGrid() {
+		return reuseGrid;
+	}
+
+	/**
+	 * @param reuseGrid  true to validate every grid into the same instance. A grid returned by {@link #next()}
+	 * 		is then only valid until the following call to {@link #next()}.
+	 */
+	public void setReuseGrid(boolean reuseGrid) {
+		this.reuseGrid = reuseGrid;
+	}
+
+	public SudokuVariant getVariant() {
+		return variant;
+	}
+
+	/**
+	 * @param variant  the variant of the grids of this file, classic by default
+	 * @throws IllegalArgumentException  if the variant is not one of 9x9 grids, the only ones packed files hold
+	 */
+	public void setVariant(SudokuVariant variant) {
+		if (variant.getGeometry() != SudokuGeometry.STANDARD) {
+			throw new IllegalArgumentException("Packed files hold 9x9 grids, not " + variant);
+		}
+		this.variant = variant;
+	}
+
+	public ValidationPolicy getValidationPolicy() {
+		return policy;
+	}
+
+	/**
+	 * @param policy  the validation policy of the grids of this file, exhaustive by default
+	 */
+	public void setValidationPolicy(ValidationPolicy policy) {
+		this.policy = policy;
+	}
+
+	public boolean hasNext() {
+		if (buf.remaining() < SudokuPackedGrid.RECORD_SIZE && !eof) {
+			try {
+				fill();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return buf.hasRemaining();
+	}
+
+	public SudokuProposedSolution next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		if (current == null || !reuseGrid || current.getVariant() != variant) {
+			current = new SudokuProposedSolution(variant);
+			current.setValidationPolicy(policy);
+		}
+
+		if (buf.remaining() < SudokuPackedGrid.RECORD_SIZE) {
+			// a truncated last record
+			current.reset();
+			current.addErr(ERR_CODE.INVALID_SUDOKU_FILEFORMAT, 0, 0, 0);
+			buf.position(buf.limit());
+		} else {
+			SudokuPackedGrid.validate(buf, buf.position(), cells, current);
+			buf.position(buf.position() + SudokuPackedGrid.RECORD_SIZE);
+		}
+		current.setRecordIndex(nextIndex++);
+		return current;
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	public void close() throws IOException {
+		ch.close();
+	}
+
+	// keeps any partial record and reads until the buffer is full or the file ends
+	private void fill() throws IOException {
+		buf.compact();
+		while (buf.hasRemaining()) {
+			if (ch.read(buf) < 0) {
+				eof = true;
+				break;
+			}
+		}
+		buf.flip();
+	}
+}
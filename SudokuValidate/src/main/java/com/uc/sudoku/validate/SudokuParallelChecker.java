@@ -0,0 +1,393 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuParallelChecker
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Validates grids of large geometries, see {@link SudokuGeometry}, on several threads of a {@link ForkJoinPool}.<p>
+ * The rows of a grid file are parsed in parallel, and the row, column and subgrid units of a grid are checked
+ * 		as independent tasks, each building the mask of its unit. Only grids with at least {@value #PARALLEL_THRESHOLD}
+ * 		cells are checked in parallel, and only if the pool has more than one thread. All others take the sequential
+ * 		path of {@link SudokuBitboardChecker} and {@link SudokuGridParser}, as splitting them costs more than checking them.
+ * <p>
+ * The outcome is exactly that of the sequential path: the same cells, errors and error order under every {@link ValidationPolicy}.
+ * 		For an invalid grid, the unit tasks mark every empty or invalid cell and every cell repeating an earlier number
+ * 		of its unit. All unmarked cells are placed in parallel, as none of them conflicts with any cell before it,
+ * 		and the marked cells are then walked in order through {@link SudokuProposedSolution#set(int, int)}.
+ * 		Text which is not a well-formed grid of numbers is left to the sequential parser, which reports its structure errors.
+ * 		Grids of variants other than the classic one, see {@link SudokuVariant}, are always checked sequentially.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public final class SudokuParallelChecker {
+
+	// grids with at least this many cells are checked in parallel, i.e. 36x36 and 49x49
+	public static final int PARALLEL_THRESHOLD = 36 * 36;
+
+	// the units checked, and the rows parsed, by a single task
+	static final int UNITS_PER_TASK = 8;
+
+	static final int ROWS_PER_TASK = 4;
+
+	// the mask bit of numbers out of the range of the geometry
+	private static final long INVALID_BIT = 1L << 63;
+
+	// the passes of the unit tasks
+	private enum Pass {
+		// the masks of all units
+		MASKS,
+		// the cells to walk in order
+		MARKS,
+		// the masks and cells of the unmarked cells
+		PLACE
+	}
+
+	private SudokuParallelChecker() {
+	}
+
+	/**
+	 * @return true if grids of the geometry are checked in parallel by the pool
+	 */
+	public static boolean isParallel(SudokuGeometry geometry, ForkJoinPool pool) {
+		return geometry.getCellCount() >= PARALLEL_THRESHOLD && pool.getParallelism() > 1;
+	}
+
+	/**
+	 * @return true if grids of the geometry are checked in parallel by the common pool
+	 */
+	public static boolean isParallel(SudokuGeometry geometry) {
+		return geometry.getCellCount() >= PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1;
+	}
+
+	/**
+	 * Same as {@link SudokuBitboardChecker#check(int[], SudokuProposedSolution)}, on the common pool.
+	 */
+	public static boolean check(int[] cells, SudokuProposedSolution grid) {
+		return check(cells, grid, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Same as {@link SudokuBitboardChecker#check(int[], SudokuProposedSolution)}, in parallel on the given pool
+	 * 		if the grid is large enough, see {@link #isParallel(SudokuGeometry, ForkJoinPool)}.
+	 *
+	 * @param cells  as many numbers as the geometry of the grid has cells
+	 * @param grid   the grid to validate into, which is reset first
+	 * @return       true if the grid is valid
+	 */
+	public static boolean check(int[] cells, SudokuProposedSolution grid, ForkJoinPool pool) {
+		SudokuGeometry geometry = grid.getGeometry();
+		if (!isParallel(geometry, pool) || !grid.getVariant().isClassic()) {
+			return SudokuBitboardChecker.check(cells, grid);
+		}
+		grid.reset();
+		int side = geometry.getSide();
+		pool.invoke(new UnitTask(Pass.MASKS, cells, grid, null, 0, 0, 3 * side));
+
+		long[] rows = grid.rowMasks();
+		long[] cols = grid.colMasks();
+		long[] boxes = grid.subgridMasks();
+		long full = geometry.getFullMask();
+		long diff = 0;
+		for (int i = 0; i < side; i++) {
+			diff |= (rows[i] ^ full) | (cols[i] ^ full) | (boxes[i] ^ full);
+		}
+		if (diff == 0) {
+			System.arraycopy(cells, 0, grid.cells(), 0, geometry.getCellCount());
+			return true;
+		}
+
+		replay(cells, grid, pool);
+		return false;
+	}
+
+	/**
+	 * Same as {@link SudokuProposedSolution#validate(ByteBuffer, SudokuProposedSolution)}, parsing the rows in parallel
+	 * 		on the given pool if the grid is large enough, see {@link #isParallel(SudokuGeometry, ForkJoinPool)}.
+	 *
+	 * @param     buf   the bytes of a Sudoku solution file, read with absolute gets only
+	 * @param     grid  the grid to validate into, which is reset first
+	 * @return    grid  the given grid, which may contain errors.
+	 */
+	public static SudokuProposedSolution validate(ByteBuffer buf, SudokuProposedSolution grid, ForkJoinPool pool) {
+		SudokuGeometry geometry = grid.getGeometry();
+		if (!isParallel(geometry, pool) || !grid.getVariant().isClassic() || !parse(buf, grid, pool)) {
+			SudokuProposedSolution.parse(buf, grid);
+		}
+		return grid;
+	}
+
+	/**
+	 * Parses and checks a well-formed grid: as many lines as the grid has rows, with no line break after the last,
+	 * 		each holding as many comma separated numbers of the geometry as the grid has columns.
+	 *
+	 * @return false if the text is not such a grid, the grid is then left to the sequential parser
+	 */
+	private static boolean parse(ByteBuffer buf, SudokuProposedSolution grid, ForkJoinPool pool) {
+		SudokuGeometry geometry = grid.getGeometry();
+		int side = geometry.getSide();
+		// the start of every line, and one past the end of the last
+		int[] starts = new int[side + 1];
+		int lines = 1;
+		starts[0] = buf.position();
+		for (int i = buf.position(); i < buf.limit(); i++) {
+			if (buf.get(i) == '\n') {
+				if (lines == side) {
+					return false;
+				}
+				starts[lines++] = i + 1;
+			}
+		}
+		if (lines < side) {
+			return false;
+		}
+		starts[side] = buf.limit() + 1;
+
+		int[] cells = new int[geometry.getCellCount()];
+		if (!pool.invoke(new RowTask(buf, geometry, starts, cells, 0, side))) {
+			return false;
+		}
+		check(cells, grid, pool);
+		return true;
+	}
+
+	// the cells of a single row, false if not a well-formed row of numbers
+	private static boolean parseRow(ByteBuffer buf, SudokuGeometry geometry, int from, int end, int[] cells, int loc) {
+		int side = geometry.getSide();
+		int col = 0, token = 0;
+		boolean tokenIsLetter = false;
+		for (int i = from; i < end; i++) {
+			int b = buf.get(i);
+			if (b == ',') {
+				if (token == 0 || col == side - 1) {
+					return false;
+				}
+				cells[loc + col++] = token;
+				token = 0;
+				tokenIsLetter = false;
+			} else if (b == '\r') {
+				// skipped wherever it is, as by the sequential parser
+			} else if (b >= '0' && b <= '9' && !tokenIsLetter) {
+				token = token*10 + b - '0';
+				if (token == 0 || token > side) {
+					return false;
+				}
+			} else if (token == 0) {
+				token = geometry.digitOf(b);
+				tokenIsLetter = true;
+				if (token < 1) {
+					return false;
+				}
+			} else {
+				return false;
+			}
+		}
+		if (token == 0 || col != side - 1) {
+			return false;
+		}
+		cells[loc + col] = token;
+		return true;
+	}
+
+	// the outcome of the sequential walk of an invalid grid
+	private static void replay(int[] cells, SudokuProposedSolution grid, ForkJoinPool pool) {
+		SudokuGeometry geometry = grid.getGeometry();
+		int side = geometry.getSide();
+		int count = geometry.getCellCount();
+
+		// the first empty cell, where the walk ends; the row masks tell its row
+		int stop = count;
+		long[] rows = grid.rowMasks();
+		for (int r = 0; r < side && stop == count; r++) {
+			if ((rows[r] & 1) != 0) {
+				stop = r * side;
+				while (cells[stop] != 0) {
+					stop ++;
+				}
+			}
+		}
+
+		boolean[] marks = new boolean[count];
+		pool.invoke(new UnitTask(Pass.MARKS, cells, grid, marks, stop, 0, 3 * side));
+		grid.reset();
+		pool.invoke(new UnitTask(Pass.PLACE, cells, grid, marks, stop, 0, 3 * side));
+
+		for (int loc = 0; loc < count; loc++) {
+			if (!marks[loc]) {
+				continue;
+			}
+			int num = cells[loc];
+			int row = geometry.rowOf[loc], col = geometry.colOf[loc];
+			if (num == 0) {
+				grid.addErr(ERR_CODE.MISSING_DIGITS_IN_ROW, row, col, 0);
+				return;
+			} else if (num < 0 || num > side) {
+				grid.addErr(ERR_CODE.INVALID_CHARACTERS_IN_ROW, row, col, SudokuBitboardChecker.symbolOf(num));
+			} else if (!grid.set(loc, num)) {
+				grid.addErr(ERR_CODE.NUMBER_ALREADY_USED, row, col, num);
+			} else {
+				continue;
+			}
+			if (grid.getValidationPolicy() == ValidationPolicy.FAIL_FAST) {
+				// the walk ends here, before the cells placed beyond
+				for (int later = loc + 1; later < stop; later++) {
+					if (!marks[later]) {
+						grid.unset(later);
+					}
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * A pass over a range of units: rows first, then columns, then subgrids.
+	 */
+	private static final class UnitTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Pass pass;
+
+		private final int[] cells;
+
+		private final SudokuProposedSolution grid;
+
+		private final boolean[] marks;
+
+		// the cells from here on are left out of the PLACE pass
+		private final int stop;
+
+		private final int from, to;
+
+		UnitTask(Pass pass, int[] cells, SudokuProposedSolution grid, boolean[] marks, int stop, int from, int to) {
+			this.pass = pass;
+			this.cells = cells;
+			this.grid = grid;
+			this.marks = marks;
+			this.stop = stop;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > UNITS_PER_TASK) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new UnitTask(pass, cells, grid, marks, stop, from, mid),
+						new UnitTask(pass, cells, grid, marks, stop, mid, to));
+				return;
+			}
+			for (int unit = from; unit < to; unit++) {
+				check(unit);
+			}
+		}
+
+		// walks the cells of a unit in their order in the grid
+		private void check(int unit) {
+			SudokuGeometry geometry = grid.getGeometry();
+			int side = geometry.getSide(), n = geometry.getBoxSize();
+			int kind = unit / side, u = unit % side;
+			long[] masks;
+			int first, outer, outerStride, inner;
+			if (kind == 0) {
+				masks = grid.rowMasks();
+				first = u * side;
+				outer = 1;
+				outerStride = 0;
+				inner = side;
+			} else if (kind == 1) {
+				masks = grid.colMasks();
+				first = u;
+				outer = side;
+				outerStride = side;
+				inner = 1;
+			} else {
+				masks = grid.subgridMasks();
+				first = (u / n) * n * side + (u % n) * n;
+				outer = n;
+				outerStride = side;
+				inner = n;
+			}
+
+			int[] placed = kind == 0 ? grid.cells() : null;
+			long mask = 0;
+			for (int i = 0; i < outer; i++) {
+				int start = first + i * outerStride;
+				for (int loc = start; loc < start + inner; loc++) {
+					int num = cells[loc];
+					// an invalid number takes the top bit, which no geometry uses, rather than wrapping around
+					long bit = num < 0 || num > side ? INVALID_BIT : 1L << num;
+					if (pass == Pass.MARKS) {
+						if ((mask & bit) != 0 || num == 0 || bit == INVALID_BIT) {
+							marks[loc] = true;
+						}
+					} else if (pass == Pass.PLACE) {
+						if (loc >= stop || marks[loc]) {
+							continue;
+						}
+						if (placed != null) {
+							placed[loc] = num;
+						}
+					}
+					mask |= bit;
+				}
+			}
+			if (pass != Pass.MARKS) {
+				masks[u] = mask;
+			}
+		}
+	}
+
+	/**
+	 * Parses a range of rows, false if any of them is not well-formed.
+	 */
+	private static final class RowTask extends RecursiveTask<Boolean> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final ByteBuffer buf;
+
+		private final SudokuGeometry geometry;
+
+		private final int[] starts;
+
+		private final int[] cells;
+
+		private final int from, to;
+
+		RowTask(ByteBuffer buf, SudokuGeometry geometry, int[] starts, int[] cells, int from, int to) {
+			this.buf = buf;
+			this.geometry = geometry;
+			this.starts = starts;
+			this.cells = cells;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Boolean compute() {
+			if (to - from > ROWS_PER_TASK) {
+				int mid = (from + to) >>> 1;
+				RowTask left = new RowTask(buf, geometry, starts, cells, from, mid);
+				left.fork();
+				boolean right = new RowTask(buf, geometry, starts, cells, mid, to).compute();
+				return left.join() && right;
+			}
+			int side = geometry.getSide();
+			for (int r = from; r < to; r++) {
+				if (!parseRow(buf, geometry, starts[r], starts[r + 1] - 1, cells, r * side)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
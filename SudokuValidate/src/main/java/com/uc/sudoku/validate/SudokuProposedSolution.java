@@ -7,36 +7,139 @@
 package com.uc.sudoku.validate;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.lang.StringUtils;
 
-import org.apache.log4j.Logger;
 /**
  * Am object that holds the currently known values of the Sudoku puzzle.<br>
  * The Sudoku solution must contain 81 cells of 9 rows by 9 columns 
  * 		that hold integer values between 0 and 9.  Columns are labelled from 0 to 8,
  * 		rows are labelled from 0 to row 8.<br>
  * The Sudoku solution also consists of 9 times 3x3 subgrids, each referenced from 0 to 8.
- * Within the Sudoku grid each cell is uniquely referenced from 0 to 80.
+ * Within the Sudoku grid each cell is uniquely referenced from 0 to 80.<br>
+ * Grids of other sizes, such as 16x16 or 25x25, are created for their {@link SudokuGeometry}, the rows, columns,
+ * 		subgrids and cells then being numbered from 0 accordingly.
+ * 		Variants such as diagonal or jigsaw Sudoku are created for their {@link SudokuVariant}, which adds units
+ * 		to the rows, columns and subgrids or replaces the subgrids by irregular regions.
+ * <p>
+ * Besides being validated as a whole, a grid may be played move by move through {@link #set(int, int)},
+ * 		{@link #unset(int)}, {@link #conflicts(int, int)} and {@link #isComplete()}. Each move costs a few mask
+ * 		operations and allocates nothing. A grid is not thread-safe.
  * 
  * @author Andrew Upton,  2011 Upton Consulting gmbh 
  */
 
 public class SudokuProposedSolution {
 	
-	private static Logger LOGGER = Logger.getLogger(SudokuProposedSolution.class);
-	
-	private int[] cells = new int[81];
+	// files larger than this are memory-mapped rather than read
+	static final long MAP_THRESHOLD = 64 * 1024;
+
+	/** the row of a cell already holds the number, see {@link #conflicts(int, int)} */
+	public static final int CONFLICT_ROW = 1;
+
+	/** the column of a cell already holds the number */
+	public static final int CONFLICT_COL = 2;
+
+	/** the subgrid (or region) of a cell already holds the number */
+	public static final int CONFLICT_SUBGRID = 4;
+
+	/** a unit added by the variant, e.g. a diagonal, already holds the number */
+	public static final int CONFLICT_UNIT = 8;
+
+	// slots of errs kept for the errors terminating a validation, as the end of the input may find
+	// both the last row and the grid short
+	static final int TERMINAL_ERRS = 2;
+
+	private final SudokuGeometry geometry;
+
+	private final SudokuVariant variant;
+
+	private final boolean standard;
+
+	// the cell to row/column tables of the geometry and the cell to region table of the variant
+	private final byte[] rowOf, colOf, boxOf;
+
+	// the cell to unit tables of the units added by the variant, see SudokuVariant
+	private final int[] unitStart, unitOf;
+
+	private final int[] cells;
+
+	private final long[] colsSet;
 
-	private int[] colsSet = new int[9];
+	private final long[] rowsSet;
 
-	private int[] rowsSet = new int[9];
+	private final long[] subgridSet;
 
-	private int[] subgridSet = new int[9];
+	// the units added by the variant
+	private final long[] unitsSet;
+
+	// Any validation errors determined during file processing, packed by ValidationError.pack(),
+	// one error per cell plus the errors terminating the validation
+	private final int[] errs;
+
+	private int errCount = 0;
+
+	// number of errors beyond the capacity of errs that have not been recorded
+	private int errsDropped = 0;
+
+	private ValidationPolicy policy = ValidationPolicy.EXHAUSTIVE;
+
+	// the error categories recorded so far, bit n standing for category n, see ERR_CODE.getCategory()
+	private int categoriesSeen = 0;
+
+	// the exception behind a file access error, if any
+	private Exception errCause;
+
+	// the errors rendered as objects, created on demand only
+	private List<ValidationError> errList;
+
+	// parses into this grid, created on first use and reused after a reset()
+	private SudokuGridParser parser;
+
+	// Position of this grid within a multi-grid corpus file, -1 for single grid files
+	private long recordIndex = -1;
+
+	/**
+	 * Creates an empty standard 9x9 grid.
+	 */
+	public SudokuProposedSolution() {
+		this(SudokuGeometry.STANDARD);
+	}
 
-	// Any validation errors determined during file processing
-	private List<ValidationError> errCodes = new ArrayList<ValidationError>();
+	/**
+	 * Creates an empty grid of the given geometry.
+	 */
+	public SudokuProposedSolution(SudokuGeometry geometry) {
+		this(SudokuVariant.classic(geometry));
+	}
+
+	/**
+	 * Creates an empty grid of the given variant.
+	 */
+	public SudokuProposedSolution(SudokuVariant variant) {
+		this.geometry = variant.getGeometry();
+		this.variant = variant;
+		this.standard = variant == SudokuVariant.STANDARD;
+		this.rowOf = geometry.rowOf;
+		this.colOf = geometry.colOf;
+		this.boxOf = variant.boxOf;
+		this.unitStart = variant.unitStart;
+		this.unitOf = variant.unitOf;
+		this.cells = new int[geometry.getCellCount()];
+		this.colsSet = new long[geometry.getSide()];
+		this.rowsSet = new long[geometry.getSide()];
+		this.subgridSet = new long[geometry.getSide()];
+		this.unitsSet = new long[variant.getUnitCount()];
+		this.errs = new int[geometry.getCellCount() + TERMINAL_ERRS];
+	}
 	
 	/**
 	 * This method validates the contents of a given file.<br>
@@ -58,195 +161,595 @@ public class SudokuProposedSolution {
 	 * @return    grid SudokuGrid which may contain errors.
 	 */
 	public static SudokuProposedSolution validate(Reader rd) throws IOException {
-		SudokuProposedSolution grid = new SudokuProposedSolution();
+		return validate(rd, new SudokuProposedSolution());
+	}
+
+	/**
+	 * Same as {@link #validate(Reader)}, but validates into the given grid which is {@link #reset()} first.
+	 * Repeated validations into the same grid do not allocate any memory.
+	 *
+	 * @param     rd    the FileReader
+	 * @param     grid  the grid to reuse
+	 * @return    grid  the given grid, which may contain errors.
+	 */
+	public static SudokuProposedSolution validate(Reader rd, SudokuProposedSolution grid) throws IOException {
+		long start = SudokuMetrics.start();
+		parse(rd, grid);
+		SudokuMetrics.stop(SudokuMetrics.Phase.PARSE, start, grid);
+		return grid;
+	}
+
+	private static SudokuProposedSolution parse(Reader rd, SudokuProposedSolution grid) throws IOException {
+		SudokuGridParser parser = grid.resetParser();
 
-		int row = 0, col = 0, loc = 0;
-		boolean lastCharWasComma = true;
-		
 		// Read to the end of the file
-		while (true){
-
-			// sanity check on rows
-			if (row > 8) {
-				ValidationError err = new ValidationError(ERR_CODE.TOO_MANY_ROWS_IN_GRID, row);
-				grid.addErr(err);
-				if (LOGGER.isDebugEnabled()) {
-					LOGGER.debug(err.getError());
+		char[] buf = parser.getReadBuffer();
+		int len;
+		while ((len = rd.read(buf)) >= 0) {
+			for (int i = 0; i < len; i++) {
+				if (!parser.accept(buf[i])) {
+					return parser.getGrid();
 				}
-				break;
 			}
-			
-			// Read a character
-			int cellVal = rd.read();
+		}
+		parser.end();
 
-			// -1 is returned if the input stream has reached EOF
-			if (cellVal < 0) {
-				break;
-			}
+		return parser.getGrid();
+	}
 
-			if (cellVal == ','){
-				// comma ... skip to next cell
-				
-				// sanity check to make sure last char was not also a comma
-				if (lastCharWasComma){
-					ValidationError err = new ValidationError(ERR_CODE.MISSING_DIGITS_IN_ROW, row, col); 
-					grid.addErr(err);
-					if (LOGGER.isDebugEnabled()) {
-						LOGGER.debug(err.getError());
-					}
-					return grid;
-				}
-				
-				lastCharWasComma = true;
-				continue;
-			} else if (cellVal == '\n') {
-				// newline ... skip to next row
-
-				//sanity check on columns
-				if (col < 9 ){
-					ValidationError err = new ValidationError(ERR_CODE.MISSING_DIGITS_IN_ROW, row, col); 
-					grid.addErr(err);
-					if (LOGGER.isDebugEnabled()) {
-						LOGGER.debug(err.getError());
-					}
-					return grid;
+	/**
+	 * Validates ASCII encoded bytes with exactly the same rules and error codes as {@link #validate(Reader)},
+	 * 		without decoding them to characters first.<br>
+	 * The bytes between the buffer's position and its limit are validated, the position of the buffer is left unchanged.
+	 * Non-ASCII (UTF-8) sequences are reported as a single invalid character, just as a decoding Reader would do.
+	 *
+	 * @param     buf  the bytes of a Sudoku solution file, e.g. a {@link java.nio.MappedByteBuffer}
+	 * @return    grid SudokuGrid which may contain errors.
+	 */
+	public static SudokuProposedSolution validate(ByteBuffer buf) {
+		return validate(buf, new SudokuProposedSolution());
+	}
+
+	/**
+	 * Same as {@link #validate(ByteBuffer)}, but validates into the given grid which is {@link #reset()} first.
+	 * Repeated validations into the same grid do not allocate any memory.
+	 *
+	 * @param     buf   the bytes of a Sudoku solution file
+	 * @param     grid  the grid to reuse
+	 * @return    grid  the given grid, which may contain errors.
+	 */
+	public static SudokuProposedSolution validate(ByteBuffer buf, SudokuProposedSolution grid) {
+		long start = SudokuMetrics.start();
+		// the constant first, so that small grids do not even load the parallel checker
+		if (grid.getGeometry().getCellCount() >= SudokuParallelChecker.PARALLEL_THRESHOLD
+				&& SudokuParallelChecker.isParallel(grid.getGeometry())) {
+			SudokuParallelChecker.validate(buf, grid, ForkJoinPool.commonPool());
+		} else {
+			parse(buf, grid);
+		}
+		SudokuMetrics.stop(SudokuMetrics.Phase.PARSE, start, grid);
+		return grid;
+	}
+
+	// the sequential path, also taken by SudokuParallelChecker for text which is not a well-formed grid
+	static SudokuProposedSolution parse(ByteBuffer buf, SudokuProposedSolution grid) {
+		SudokuGridParser parser = grid.resetParser();
+
+		if (buf.hasArray()) {
+			if (!accept(parser, buf, buf.position(), buf.limit())) {
+				return parser.getGrid();
+			}
+		} else {
+			int end = buf.limit();
+			for (int i = buf.position(); i < end; i++) {
+				int b = buf.get(i);
+				if (b < 0) {
+					b = decodeUtf8(buf, i);
+					i += utf8Length(buf.get(i)) - 1;
 				}
-				
-				//sanity check on columns
-				if (col > 9 ){
-					ValidationError err = new ValidationError(ERR_CODE.TOO_MANY_DIGITS_IN_ROW, row, col); 
-					grid.addErr(err);
-					if (LOGGER.isDebugEnabled()) {
-						LOGGER.debug(err.getError());
-					}				
-					return grid;
+				if (!parser.accept(b)) {
+					return parser.getGrid();
 				}
+			}
+		}
+		parser.end();
 
-				row ++; 
-				col = 0;
-				continue;
-			} else if (cellVal == '\r'){
-				// carriage return ... skip to next row				
-				continue;
-			} else if (cellVal >= '1' && cellVal <= '9') {
-				
-				// ensure the file is comma-separated
-				if (!lastCharWasComma && col > 0){
-					ValidationError err = new ValidationError(ERR_CODE.INVALID_SUDOKU_FILEFORMAT, row); 
-					grid.addErr(err);
-					if (LOGGER.isDebugEnabled()) {
-						LOGGER.debug(err.getError());
-					}				
-					return grid;
-				}
-				
-				// valid number
-				if (!grid.set(loc, cellVal-'0')){
-					int badVal = cellVal-'0';
-					ValidationError err = new ValidationError(ERR_CODE.NUMBER_ALREADY_USED, row, col, String.valueOf(badVal)); 
-					grid.addErr(err);
-					if (LOGGER.isDebugEnabled()) {
-						LOGGER.debug(err.getError());
+		return parser.getGrid();
+	}
+
+	/**
+	 * Validates the complete contents of a file channel, see {@link #validate(ByteBuffer)}.<br>
+	 * Large files are memory-mapped, small files are read with a single call into a heap buffer
+	 * 		since mapping a file costs more than reading a few hundred bytes.
+	 *
+	 * @param     ch  an open channel, e.g. from {@link java.io.FileInputStream#getChannel()}
+	 * @return    grid SudokuGrid which may contain errors.
+	 */
+	public static SudokuProposedSolution validate(FileChannel ch) throws IOException {
+		return validate(ch, new SudokuProposedSolution());
+	}
+
+	/**
+	 * Same as {@link #validate(FileChannel)}, but validates into the given grid which is {@link #reset()} first.
+	 *
+	 * @param     ch    an open channel
+	 * @param     grid  the grid to reuse
+	 * @return    grid  the given grid, which may contain errors.
+	 */
+	public static SudokuProposedSolution validate(FileChannel ch, SudokuProposedSolution grid) throws IOException {
+		long size = ch.size();
+		if (size > MAP_THRESHOLD) {
+			return validate(ch.map(FileChannel.MapMode.READ_ONLY, 0, size), grid);
+		}
+
+		ByteBuffer buf = grid.resetParser().getByteBuffer((int) size);
+		while (buf.hasRemaining() && ch.read(buf, buf.position()) >= 0) {
+			// keep reading until the buffer is full or EOF
+		}
+		buf.flip();
+		return validate(buf, grid);
+	}
+
+	/**
+	 * Validates the contents of a stream, e.g. an entry of an archive, with the same rules as {@link #validate(ByteBuffer)}.<br>
+	 * The stream is fed to the parser in chunks of a fixed size, and is read no further once the parser has stopped
+	 * 		at an error that ends the validation. It is not closed.
+	 *
+	 * @param     in    the bytes of a Sudoku solution file
+	 * @param     grid  the grid to reuse
+	 * @return    grid  the given grid, which may contain errors.
+	 */
+	public static SudokuProposedSolution validate(InputStream in, SudokuProposedSolution grid) throws IOException {
+		long start = SudokuMetrics.start();
+		parse(in, grid);
+		SudokuMetrics.stop(SudokuMetrics.Phase.PARSE, start, grid);
+		return grid;
+	}
+
+	private static SudokuProposedSolution parse(InputStream in, SudokuProposedSolution grid) throws IOException {
+		SudokuGridParser parser = grid.resetParser();
+
+		ByteBuffer buf = parser.getByteBuffer(SudokuGridParser.READ_BUFFER_SIZE);
+		byte[] bytes = buf.array();
+		// the bytes of a UTF-8 sequence held back at the start of the buffer until the rest of it is read
+		int kept = 0;
+		int len;
+		while ((len = in.read(bytes, kept, SudokuGridParser.READ_BUFFER_SIZE - kept)) >= 0) {
+			int end = kept + len;
+			int complete = end;
+			for (int i = end - 1; i >= 0 && i >= end - 3; i--) {
+				if ((bytes[i] & 0xC0) != 0x80) {
+					if (bytes[i] < 0 && i + utf8Length(bytes[i]) > end) {
+						complete = i;
 					}
-				}
-			} else {
-				ValidationError err = new ValidationError(ERR_CODE.INVALID_CHARACTERS_IN_ROW, row, col, Character.toString((char)cellVal));
-				grid.addErr(err);
-				if (LOGGER.isDebugEnabled()) {
-					LOGGER.debug(err.getError());
+					break;
 				}
 			}
-			
-			loc ++;
-			col ++;
-			lastCharWasComma = false;	
-		}
-		
-		// sanity check on rows
-		if (row < 8) {
-			ValidationError err = new ValidationError(ERR_CODE.NOT_ENOUGH_ROWS_IN_GRID, row);
-			grid.addErr(err);
-			if (LOGGER.isDebugEnabled()) {
-				LOGGER.debug(err.getError());
+			buf.limit(end);
+			if (!accept(parser, buf, 0, complete)) {
+				return parser.getGrid();
 			}
+			kept = end - complete;
+			System.arraycopy(bytes, complete, bytes, 0, kept);
 		}
+		buf.limit(kept);
+		if (!accept(parser, buf, 0, kept)) {
+			return parser.getGrid();
+		}
+		parser.end();
+
+		return parser.getGrid();
+	}
+
+	// feeds the bytes of a heap buffer from index from to index to to the parser, false once it has stopped
+	private static boolean accept(SudokuGridParser parser, ByteBuffer buf, int from, int to) {
+		byte[] bytes = buf.array();
+		int offset = buf.arrayOffset();
+		for (int i = offset + from; i < offset + to; i++) {
+			int b = bytes[i];
+			if (b < 0) {
+				b = decodeUtf8(buf, i - offset);
+				i += utf8Length(bytes[i]) - 1;
+			}
+			if (!parser.accept(b)) {
+				return false;
+			}
+		}
+		return true;
+	}
 
+	/**
+	 * Validates a complete grid given as its 81 digits, see {@link SudokuBitboardChecker}.
+	 *
+	 * @param     cells  the digits in left-to-right and top-down order
+	 * @return    grid SudokuGrid which may contain errors.
+	 */
+	public static SudokuProposedSolution validate(int[] cells) {
+		return validate(cells, new SudokuProposedSolution());
+	}
+
+	/**
+	 * Same as {@link #validate(int[])}, but validates into the given grid which is {@link #reset()} first.
+	 *
+	 * @param     cells  the digits in left-to-right and top-down order
+	 * @param     grid   the grid to reuse
+	 * @return    grid   the given grid, which may contain errors.
+	 */
+	public static SudokuProposedSolution validate(int[] cells, SudokuProposedSolution grid) {
+		long start = SudokuMetrics.start();
+		if (grid.getGeometry().getCellCount() >= SudokuParallelChecker.PARALLEL_THRESHOLD
+				&& SudokuParallelChecker.isParallel(grid.getGeometry())) {
+			SudokuParallelChecker.check(cells, grid, ForkJoinPool.commonPool());
+		} else {
+			SudokuBitboardChecker.check(cells, grid);
+		}
+		SudokuMetrics.stop(SudokuMetrics.Phase.CHECK, start, grid);
 		return grid;
 	}
 
+	// number of bytes in the UTF-8 sequence starting with the given lead byte
+	private static int utf8Length(byte lead) {
+		if ((lead & 0xE0) == 0xC0) return 2;
+		if ((lead & 0xF0) == 0xE0) return 3;
+		if ((lead & 0xF8) == 0xF0) return 4;
+		return 1;
+	}
+
+	// decodes the (invalid anyway) non-ASCII character at the given index for error reporting
+	private static int decodeUtf8(ByteBuffer buf, int i) {
+		byte lead = buf.get(i);
+		int len = utf8Length(lead);
+		if (len == 1 || i + len > buf.limit()) {
+			return lead & 0xFF;
+		}
+		int cp = lead & (0x7F >> len);
+		for (int k = 1; k < len; k++) {
+			cp = (cp << 6) | (buf.get(i + k) & 0x3F);
+		}
+		return cp;
+	}
+
 
 	/**
 	 * <b>Many thanks to Patrick Chan for this algorithm</b>
 	 * 
 	 * Sets a number in a cell. This method checks to see if
 	 * 		the cell is allowed to contain the specified number in the given row, 
-	 * 		column or subgrid.<br> 
+	 * 		column or subgrid, and in the units the variant adds, if any.<br> 
 	 * E.g. if the passed number is 5 but the row already has a 5, the cell will
 	 *      not be set and false is returned.
 	 *      
 	 * @param loc  the location of the target cell.
-	 *             Values must be in the range [0, 80].
+	 *             Values must be in the range [0, 80], or up to the cell count of the geometry less one.
 	 * @param num  the number to set in the cell.
-	 *             Values must be in the range [1, 9].
+	 *             Values must be in the range [1, 9], or up to the side of the geometry.
 	 * @return     true if the set was successful.
 	 */
 	public boolean set(int loc, int num) {
-		// Compute row and column
-		int r = loc/9;
-		int c = loc%9;
-		int blockLoc = (r/3)*3+c/3;
+		// Look up row, column and subgrid, in the constant 9x9 tables where possible as the JIT folds them
+		int r, c, blockLoc;
+		if (standard) {
+			r = SudokuBitboardChecker.ROW_OF[loc];
+			c = SudokuBitboardChecker.COL_OF[loc];
+			blockLoc = SudokuBitboardChecker.BOX_OF[loc];
+		} else {
+			r = rowOf[loc];
+			c = colOf[loc];
+			blockLoc = boxOf[loc];
+		}
+		long bit = 1L << num;
 
 		boolean canSet = cells[loc] == 0
-		&& (colsSet[c] & (1<<num)) == 0
-		&& (rowsSet[r] & (1<<num)) == 0
-		&& (subgridSet[blockLoc] & (1<<num)) == 0;
+		&& (colsSet[c] & bit) == 0
+		&& (rowsSet[r] & bit) == 0
+		&& (subgridSet[blockLoc] & bit) == 0;
 		if (!canSet) {
 			return false;
 		}
+		// the units added by the variant, none for classic grids
+		int first = unitStart[loc], end = unitStart[loc + 1];
+		for (int k = first; k < end; k++) {
+			if ((unitsSet[unitOf[k]] & bit) != 0) {
+				return false;
+			}
+		}
 
 		cells[loc] = num;
-		colsSet[c] |= (1<<num);
-		rowsSet[r] |= (1<<num);
-		subgridSet[blockLoc] |= (1<<num);
+		colsSet[c] |= bit;
+		rowsSet[r] |= bit;
+		subgridSet[blockLoc] |= bit;
+		for (int k = first; k < end; k++) {
+			unitsSet[unitOf[k]] |= bit;
+		}
+		return true;
+	}
+
+	/**
+	 * Clears a cell, taking its number back out of its row, column, subgrid and added units.
+	 * As {@link #set(int, int)} never lets a unit hold a number twice, this leaves the number free in all of them.
+	 *
+	 * @param loc  the location of the target cell
+	 * @return     the number the cell held, 0 if it was empty
+	 */
+	public int unset(int loc) {
+		int num = cells[loc];
+		if (num == 0) {
+			return 0;
+		}
+		long keep = ~(1L << num);
+		cells[loc] = 0;
+		colsSet[colOf[loc]] &= keep;
+		rowsSet[rowOf[loc]] &= keep;
+		subgridSet[boxOf[loc]] &= keep;
+		for (int k = unitStart[loc]; k < unitStart[loc + 1]; k++) {
+			unitsSet[unitOf[k]] &= keep;
+		}
+		return num;
+	}
+
+	/**
+	 * @param loc  the location of a cell
+	 * @return     the number in the cell, 0 if it is empty
+	 */
+	public int get(int loc) {
+		return cells[loc];
+	}
+
+	/**
+	 * Tells why a number may not be set in a cell, regardless of the number the cell currently holds,
+	 * 		so that a move replacing a number can be checked before the cell is cleared.
+	 *
+	 * @param loc  the location of the target cell
+	 * @param num  the number to check
+	 * @return     a combination of {@link #CONFLICT_ROW}, {@link #CONFLICT_COL}, {@link #CONFLICT_SUBGRID}
+	 * 		and {@link #CONFLICT_UNIT}, 0 if no other cell of the units of the cell holds the number
+	 */
+	public int conflicts(int loc, int num) {
+		if (cells[loc] == num) {
+			return 0;
+		}
+		long bit = 1L << num;
+		int conflicts = 0;
+		if ((rowsSet[rowOf[loc]] & bit) != 0) {
+			conflicts |= CONFLICT_ROW;
+		}
+		if ((colsSet[colOf[loc]] & bit) != 0) {
+			conflicts |= CONFLICT_COL;
+		}
+		if ((subgridSet[boxOf[loc]] & bit) != 0) {
+			conflicts |= CONFLICT_SUBGRID;
+		}
+		for (int k = unitStart[loc]; k < unitStart[loc + 1]; k++) {
+			if ((unitsSet[unitOf[k]] & bit) != 0) {
+				conflicts |= CONFLICT_UNIT;
+			}
+		}
+		return conflicts;
+	}
+
+	/**
+	 * @return true if every cell holds a number, which makes the grid a solution since no unit
+	 * 		can hold a number twice. Costs one comparison per row.
+	 */
+	public boolean isComplete() {
+		long full = geometry.getFullMask();
+		for (long row : rowsSet) {
+			if (row != full) {
+				return false;
+			}
+		}
 		return true;
 	}
 
 	public String toString() {
+		int side = geometry.getSide();
+		int box = geometry.getBoxSize();
+		// 25 dashes for a 9x9 grid
+		String line = "\n\t\t\t\t" + StringUtils.repeat("-", 2*side + 2*box + 1);
 		StringBuilder sb = new StringBuilder();
-		for (int r = 0; r < 9; r++) {
-			if (r%3 == 0) {
-				sb.append("\n\t\t\t\t-------------------------\n\t\t\t\t");
-			} else {
-				sb.append("\n\t\t\t\t");
+		for (int r = 0; r < side; r++) {
+			if (r%box == 0) {
+				sb.append(line);
 			}
-			for (int c=0; c<9; c++) {
-				if (c%3 == 0) {
+			sb.append("\n\t\t\t\t");
+			for (int c=0; c<side; c++) {
+				if (c%box == 0) {
 					sb.append("| ");
 				}
-				int num = cells[r*9+c];
-				if (num == 0) {
-					sb.append("X ");
-				} else {
-					sb.append(num+" ");
-				}
+				sb.append(SudokuGeometry.symbolOf(cells[r*side+c])).append(' ');
 			}
 			sb.append("|");
 		}
-		sb.append("\n\t\t\t\t-------------------------\n");
+		sb.append(line).append("\n");
 		return sb.toString();
 	}
 
 	
+	/**
+	 * Clears all cells, errors and the record index so that this instance can be validated into again.
+	 */
+	public void reset() {
+		Arrays.fill(cells, 0);
+		Arrays.fill(colsSet, 0);
+		Arrays.fill(rowsSet, 0);
+		Arrays.fill(subgridSet, 0);
+		Arrays.fill(unitsSet, 0);
+		errCount = 0;
+		errsDropped = 0;
+		categoriesSeen = 0;
+		errCause = null;
+		errList = null;
+		recordIndex = -1;
+	}
+
+	/**
+	 * Records an error without creating any objects.<br>
+	 * Errors beyond the capacity of a grid are counted but not recorded, see {@link #getErrsDropped()}. Errors the
+	 * 		{@link ValidationPolicy} leaves out are neither recorded nor counted.
+	 *
+	 * @param code   the error
+	 * @param row    the row of the error, -1 if unknown
+	 * @param col    the column of the error, -1 if unknown
+	 * @param value  the offending digit (NUMBER_ALREADY_USED) or character, 0 if none
+	 */
+	void addErr(ERR_CODE code, int row, int col, int value) {
+		addErr(code, row, col, value, false);
+	}
+
+	/**
+	 * Same as {@link #addErr(ERR_CODE, int, int, int)}, but an error terminating the validation, e.g. a grid short of rows,
+	 * 		is recorded even once the errors of the cells have used up the capacity of the grid.
+	 *
+	 * @return true if the error was recorded, false if the policy skips it or the grid has no room left for it
+	 */
+	boolean addErr(ERR_CODE code, int row, int col, int value, boolean terminal) {
+		if (policy != ValidationPolicy.EXHAUSTIVE) {
+			int bit = 1 << code.getCategory();
+			if (policy == ValidationPolicy.FAIL_FAST ? errCount > 0 : (categoriesSeen & bit) != 0) {
+				return false;
+			}
+			categoriesSeen |= bit;
+		}
+		if (errCount == (terminal ? errs.length : errs.length - TERMINAL_ERRS)) {
+			errsDropped ++;
+			return false;
+		}
+		errs[errCount++] = ValidationError.pack(code, row, col, value);
+		errList = null;
+		return true;
+	}
+
+	/**
+	 * Restores a packed error recorded by a grid of the same geometry, e.g. from a manifest, as it was.
+	 */
+	void restoreErr(int packed) {
+		if (errCount == errs.length) {
+			errsDropped ++;
+			return;
+		}
+		errs[errCount++] = packed;
+		errList = null;
+	}
+
+	void restoreErrsDropped(int dropped) {
+		errsDropped += dropped;
+	}
+
+	// the internal state, for the checkers working on whole grids
+	int[] cells() {
+		return cells;
+	}
+
+	long[] rowMasks() {
+		return rowsSet;
+	}
+
+	long[] colMasks() {
+		return colsSet;
+	}
+
+	long[] subgridMasks() {
+		return subgridSet;
+	}
+
+	long[] unitMasks() {
+		return unitsSet;
+	}
+
+	// resets this grid for a new validation and returns its parser
+	SudokuGridParser resetParser() {
+		reset();
+		if (parser == null) {
+			parser = new SudokuGridParser(this);
+		} else {
+			parser.reset();
+		}
+		return parser;
+	}
+
 	// JavaBean accessors 
+	public SudokuGeometry getGeometry() {
+		return geometry;
+	}
+
+	public SudokuVariant getVariant() {
+		return variant;
+	}
+
 	public void addErr(ValidationError err) {
-		this.errCodes.add(err);
+		if (err.getException() != null) {
+			this.errCause = err.getException();
+		}
+		addErr(err.getErrCode(), err.getRow(), err.getCol(), ValidationError.valueOf(err.getErrCode(), err.getBadValue()), true);
 	}
 	
+	/**
+	 * Renders the recorded errors as objects. The list is created on the first call after a change
+	 * 		and is not backed by this grid.
+	 */
 	public List<ValidationError> getErrs() {
-		return errCodes;
+		if (errList == null) {
+			List<ValidationError> list = new ArrayList<ValidationError>(errCount);
+			for (int i = 0; i < errCount; i++) {
+				list.add(ValidationError.unpack(errs[i], errCause));
+			}
+			errList = list;
+		}
+		return errList;
 	}
 	
 	public boolean isInError(){
-		return getErrs().size() > 0 ? true : false;
+		return errCount > 0;
+	}
+
+	public int getErrCount() {
+		return errCount;
+	}
+
+	/**
+	 * @return the number of errors found after the capacity of the grid, one error per cell, was used up.
+	 * 		They are not recorded, unlike the error terminating the validation.
+	 */
+	public int getErrsDropped() {
+		return errsDropped;
+	}
+
+	public ERR_CODE getErrCode(int i) {
+		return ValidationError.codeOf(errs[i]);
+	}
+
+	public int getErrRow(int i) {
+		return ValidationError.rowOf(errs[i]);
+	}
+
+	public int getErrCol(int i) {
+		return ValidationError.colOf(errs[i]);
+	}
+
+	/**
+	 * @return the offending digit of a {@link ERR_CODE#NUMBER_ALREADY_USED} error, the offending character otherwise
+	 */
+	public int getErrValue(int i) {
+		return ValidationError.valueOf(errs[i]);
+	}
+
+	public ValidationPolicy getValidationPolicy() {
+		return policy;
+	}
+
+	/**
+	 * @param policy  how much of a grid to validate after an error, {@link ValidationPolicy#EXHAUSTIVE} by default.
+	 * 		The policy is kept across a {@link #reset()}.
+	 */
+	public void setValidationPolicy(ValidationPolicy policy) {
+		this.policy = policy;
+	}
+
+	public long getRecordIndex() {
+		return recordIndex;
+	}
+
+	public void setRecordIndex(long recordIndex) {
+		this.recordIndex = recordIndex;
 	}
 }
@@ -0,0 +1,112 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuResultSink
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Receives the outcome of validated grids in a machine-readable format, one record per grid.<p>
+ * A record is formatted on the calling thread, so that the grid may be reused as soon as {@link #write(String, SudokuProposedSolution)}
+ * 		returns, and is then written by a {@link SudokuAsyncWriter}. Sinks may be shared by all validation threads of a run.
+ * <p>
+ * The digits of the grid, with 'X' for cells left empty or rejected, are only included on request,
+ * 		see {@link #setIncludeGrid(boolean)}.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public abstract class SudokuResultSink implements Closeable {
+
+	public static final String CSV_EXTN = ".csv";
+
+	// records queued before validation threads have to wait for the writer
+	private static final int QUEUE_SIZE = 8192;
+
+	private static final int RECORD_SIZE = 160;
+
+	private final SudokuAsyncWriter writer;
+
+	private volatile boolean includeGrid = false;
+
+	protected SudokuResultSink(Writer out) {
+		this.writer = new SudokuAsyncWriter(out, QUEUE_SIZE);
+	}
+
+	/**
+	 * Opens a sink writing to the given file, in CSV format if its name ends with {@value #CSV_EXTN}
+	 * 		and in JSON lines format otherwise.
+	 */
+	public static SudokuResultSink open(Path file) throws IOException {
+		Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), Charset.forName("UTF-8")));
+		if (file.getFileName().toString().toLowerCase().endsWith(CSV_EXTN)) {
+			return new SudokuCsvSink(out);
+		}
+		return new SudokuJsonLinesSink(out);
+	}
+
+	/**
+	 * Formats and queues the outcome of a grid.
+	 *
+	 * @param source  the file or corpus record the grid was read from
+	 * @param grid    the validated grid
+	 */
+	public void write(String source, SudokuProposedSolution grid) throws IOException {
+		StringBuilder sb = new StringBuilder(includeGrid ? RECORD_SIZE + 96 : RECORD_SIZE);
+		format(source, grid, sb);
+		writer.write(sb.toString());
+	}
+
+	/**
+	 * Writes all queued records and closes the target.
+	 */
+	public void close() throws IOException {
+		writer.close();
+	}
+
+	/**
+	 * @return the number of records written so far
+	 */
+	public long getWritten() {
+		return writer.getWritten();
+	}
+
+	public boolean isIncludeGrid() {
+		return includeGrid;
+	}
+
+	public void setIncludeGrid(boolean includeGrid) {
+		this.includeGrid = includeGrid;
+	}
+
+	/**
+	 * Appends the record of one grid, including its line separator.
+	 */
+	protected abstract void format(String source, SudokuProposedSolution grid, StringBuilder sb);
+
+	/**
+	 * Queues a record ahead of all grids, e.g. a header line.
+	 */
+	protected void writeRaw(String record) throws IOException {
+		writer.write(record);
+	}
+
+	/**
+	 * Appends the 81 cells (or as many as the geometry of the grid has), 'X' standing for an empty cell.
+	 */
+	protected static void appendCells(SudokuProposedSolution grid, StringBuilder sb) {
+		int[] cells = grid.cells();
+		for (int loc = 0; loc < cells.length; loc++) {
+			sb.append(SudokuGeometry.symbolOf(cells[loc]));
+		}
+	}
+}
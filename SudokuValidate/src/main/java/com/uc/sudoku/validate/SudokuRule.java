@@ -0,0 +1,204 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuRule
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
+
+/**
+ * A constraint of a Sudoku variant, declaring the units of cells that must hold every number once.<p>
+ * Every grid has its rows and columns. A rule adds units of its own, such as the two diagonals, and may replace
+ * 		the subgrids by irregular regions, as a jigsaw Sudoku does. Rules are compiled together into
+ * 		a {@link SudokuVariant}, which is what grids are validated against.
+ * <p>
+ * Custom rules extend this class or are declared with {@link #units(String, int[][])}. Rules must be immutable.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public abstract class SudokuRule {
+
+	/** The two main diagonals, as in an X-Sudoku */
+	public static final SudokuRule DIAGONALS = new SudokuRule("diagonal") {
+		@Override
+		public int[][] units(SudokuGeometry geometry) {
+			int side = geometry.getSide();
+			int[][] units = new int[2][side];
+			for (int i = 0; i < side; i++) {
+				units[0][i] = i*side + i;
+				units[1][i] = i*side + side - 1 - i;
+			}
+			return units;
+		}
+	};
+
+	/**
+	 * The windows of a Windoku, e.g. the four 3x3 windows starting at rows and columns 1 and 5 of a 9x9 grid,
+	 * 		one cell off the edges and the subgrids
+	 */
+	public static final SudokuRule WINDOWS = new SudokuRule("windoku") {
+		@Override
+		public int[][] units(SudokuGeometry geometry) {
+			int n = geometry.getBoxSize(), side = geometry.getSide();
+			int[][] units = new int[(n - 1) * (n - 1)][side];
+			for (int w = 0; w < units.length; w++) {
+				int top = 1 + (w / (n - 1)) * (n + 1), left = 1 + (w % (n - 1)) * (n + 1);
+				for (int i = 0; i < side; i++) {
+					units[w][i] = (top + i/n)*side + left + i%n;
+				}
+			}
+			return units;
+		}
+	};
+
+	private static final SudokuRule[] BUILT_IN = {DIAGONALS, WINDOWS};
+
+	private final String name;
+
+	protected SudokuRule(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @return the cells of every unit this rule adds to the rows, columns and regions of a grid,
+	 * 		each unit holding as many distinct cells as the grid has columns
+	 */
+	public abstract int[][] units(SudokuGeometry geometry);
+
+	/**
+	 * @return the region of every cell, from 0 to the side of the grid less one, replacing the subgrids;
+	 * 		null (by default) to keep the subgrids
+	 */
+	public int[] regions(SudokuGeometry geometry) {
+		return null;
+	}
+
+	/**
+	 * @return the built-in rule of the given name in any case, null if there is none
+	 */
+	public static SudokuRule parse(String name) {
+		for (SudokuRule rule : BUILT_IN) {
+			if (rule.name.equalsIgnoreCase(name)) {
+				return rule;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Declares units of cells that must hold every number once, such as the extra groups of a Hyper or
+	 * 		a Disjoint Groups Sudoku.
+	 *
+	 * @param units  the cells of every unit, as many distinct cells as the grid has columns each; copied
+	 */
+	public static SudokuRule units(String name, int[][] units) {
+		final int[][] copy = copyOf(units);
+		return new SudokuRule(name) {
+			@Override
+			public int[][] units(SudokuGeometry geometry) {
+				return copyOf(copy);
+			}
+		};
+	}
+
+	/**
+	 * Declares the irregular regions of a jigsaw Sudoku, which replace the subgrids.
+	 *
+	 * @param regions  the region of every cell in left-to-right and top-down order, from 0 to the side of the grid less one; copied
+	 */
+	public static SudokuRule jigsaw(int[] regions) {
+		final int[] copy = regions.clone();
+		return new SudokuRule("jigsaw") {
+			@Override
+			public int[][] units(SudokuGeometry geometry) {
+				return new int[0][];
+			}
+
+			@Override
+			public int[] regions(SudokuGeometry geometry) {
+				return copy.clone();
+			}
+		};
+	}
+
+	/**
+	 * Recreates a rule from its compiled form, see {@link SudokuShardCoordinator#readVariant(java.io.DataInputStream)}.
+	 *
+	 * @param regions  the region of every cell, null to keep the subgrids; not copied
+	 * @param units    the cells of every unit; not copied
+	 */
+	static SudokuRule compiled(String name, final int[] regions, final int[][] units) {
+		return new SudokuRule(name) {
+			@Override
+			public int[][] units(SudokuGeometry geometry) {
+				return copyOf(units);
+			}
+
+			@Override
+			public int[] regions(SudokuGeometry geometry) {
+				return regions != null ? regions.clone() : null;
+			}
+		};
+	}
+
+	private static int[][] copyOf(int[][] units) {
+		int[][] copy = new int[units.length][];
+		for (int i = 0; i < units.length; i++) {
+			copy[i] = units[i].clone();
+		}
+		return copy;
+	}
+
+	/**
+	 * Reads the regions of a jigsaw Sudoku from a file laid out like a puzzle file, one line per row
+	 * 		and one number (or letter, see {@link SudokuGeometry}) per cell naming its region from 1 on,
+	 * 		the cells being separated by commas or not at all.
+	 *
+	 * @throws IllegalArgumentException  if the file does not name the region of every cell of the geometry
+	 */
+	public static SudokuRule jigsaw(Path layout, SudokuGeometry geometry) throws IOException {
+		List<String> lines = Files.readAllLines(layout, Charset.forName("US-ASCII"));
+		int side = geometry.getSide();
+		int[] regions = new int[geometry.getCellCount()];
+		int loc = 0;
+		for (String line : lines) {
+			if (StringUtils.isBlank(line)) {
+				continue;
+			}
+			String[] cells = line.indexOf(',') >= 0 ? StringUtils.split(line, ',') : line.trim().split("");
+			if (cells.length != side || loc == regions.length) {
+				throw new IllegalArgumentException(layout + ": not a " + geometry + " layout");
+			}
+			for (String cell : cells) {
+				cell = cell.trim();
+				int region = cell.length() == 1 ? geometry.digitOf(cell.charAt(0)) : NumberUtils.toInt(cell, -1);
+				if (region < 1 || region > side) {
+					throw new IllegalArgumentException(layout + ": invalid region '" + cell + "'");
+				}
+				regions[loc++] = region - 1;
+			}
+		}
+		if (loc != regions.length) {
+			throw new IllegalArgumentException(layout + ": not a " + geometry + " layout");
+		}
+		return jigsaw(regions);
+	}
+
+	// JavaBean accessors
+	public String getName() {
+		return name;
+	}
+
+	public String toString() {
+		return name;
+	}
+}
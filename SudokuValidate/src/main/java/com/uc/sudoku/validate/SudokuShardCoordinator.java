@@ -0,0 +1,796 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuShardCoordinator
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Validates a batch on several worker processes, on this machine or on others.<p>
+ * The coordinator resolves the inputs as {@link SudokuBatchValidate} does and hands them out in shards of
+ * 		{@value #DEFAULT_SHARD_SIZE} files, see {@link #setShardSize(int)}, to the workers connected to its socket.
+ * 		In corpus mode every input is a corpus file, see {@link SudokuValidate#validateCorpus}, and makes a shard of its own.
+ * 		A worker, see {@link SudokuShardWorker}, validates a shard on threads of its own and sends back the errors
+ * 		of every failing grid and the {@link SudokuBatchSummary} of the shard.
+ * <p>
+ * The outcome of a shard is only merged once the shard is complete: the summaries are added up and the failures
+ * 		written to the sink, if set. Until then the failures are kept in a temporary file of the worker's connection,
+ * 		so that the heap does not grow with the failures of a large shard. Valid grids are only counted.
+ * 		Should the connection to a worker be lost, or the worker send nothing for {@value #DEFAULT_WORKER_TIMEOUT} seconds,
+ * 		see {@link #setWorkerTimeout(int)}, its shard is handed to another worker, up to {@value #MAX_ATTEMPTS} attempts in all,
+ * 		and a worker process started by the coordinator that ends is replaced. The run is given up once all of them
+ * 		have been lost more often than that. A local worker process that hangs is only ended with the run.
+ * <p>
+ * The output of local worker processes is discarded unless a directory is set for their logs, see {@link #setWorkerLogDir(Path)}.
+ * <p>
+ * Workers started by the coordinator connect over the loopback interface unless another is set with
+ * 		{@link #setBindAddress(InetAddress)}. Workers on other machines are started with <code>-worker host:port</code>,
+ * 		or through {@link #setWorkerCommand(List)}, and must see the inputs under the same paths, e.g. on a shared file system.
+ * <p>
+ * Frames are written with {@link DataOutputStream}: the worker opens with {@link #MAGIC}, {@link #VERSION} and its name.
+ * 		The coordinator then sends {@link #SHARD} frames, each answered by any number of {@link #FAILURE} frames and
+ * 		a {@link #DONE} frame, and finally {@link #STOP}.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public class SudokuShardCoordinator {
+
+	private static Logger LOGGER = Logger.getLogger(SudokuShardCoordinator.class);
+
+	public static final int DEFAULT_SHARD_SIZE = 64;
+
+	// attempts to validate a shard, and lost worker processes replaced per worker
+	public static final int MAX_ATTEMPTS = 3;
+
+	// seconds a worker may send nothing while validating a shard before it is given up as hung
+	public static final int DEFAULT_WORKER_TIMEOUT = 600;
+
+	static final int MAGIC = 0x53444B53;
+
+	static final int VERSION = 3;
+
+	// id, corpus mode, variant, see writeVariant(), policy ordinal, input count and inputs
+	static final byte SHARD = 1;
+
+	static final byte STOP = 2;
+
+	// source, record index, error count, packed errors and the number of errors dropped
+	static final byte FAILURE = 3;
+
+	// id, then the counts of the shard's summary
+	static final byte DONE = 4;
+
+	private static final long POLL_MILLIS = 50;
+
+	private static final File DISCARD = new File(File.separatorChar == '\\' ? "NUL" : "/dev/null");
+
+	/**
+	 * A group of inputs validated by one worker
+	 */
+	static final class Shard {
+		final long id;
+		final List<String> inputs;
+		int attempts;
+
+		Shard(long id, List<String> inputs) {
+			this.id = id;
+			this.inputs = inputs;
+		}
+	}
+
+	private final int workers;
+
+	private final SudokuBatchSummary summary = new SudokuBatchSummary();
+
+	private volatile SudokuVariant variant = SudokuVariant.STANDARD;
+
+	private volatile ValidationPolicy policy = ValidationPolicy.EXHAUSTIVE;
+
+	private boolean corpus = false;
+
+	private int shardSize = DEFAULT_SHARD_SIZE;
+
+	private int threads = 0;
+
+	private InetAddress bindAddress = InetAddress.getLoopbackAddress();
+
+	private int port = 0;
+
+	private int workerTimeout = DEFAULT_WORKER_TIMEOUT;
+
+	private List<String> workerCommand;
+
+	private Path workerLogDir;
+
+	private SudokuResultSink sink;
+
+	private ServerSocket server;
+
+	// fresh shards, bounded so that the inputs are resolved only a little ahead of the workers
+	private BlockingQueue<Shard> shards;
+
+	// shards of lost workers, handed out first
+	private final LinkedBlockingDeque<Shard> retries = new LinkedBlockingDeque<Shard>();
+
+	// shards made and neither validated nor given up yet
+	private final AtomicInteger pending = new AtomicInteger();
+
+	private volatile boolean resolved = false;
+
+	private volatile boolean aborted = false;
+
+	private final CountDownLatch done = new CountDownLatch(1);
+
+	private final List<String> abandoned = Collections.synchronizedList(new ArrayList<String>());
+
+	private final AtomicInteger reassigned = new AtomicInteger();
+
+	private final List<Process> processes = new ArrayList<Process>();
+
+	private int replacements = 0;
+
+	private int started = 0;
+
+	/**
+	 * @param workers  the number of worker processes to start on this machine, 0 to wait for workers started elsewhere
+	 */
+	public SudokuShardCoordinator(int workers) {
+		this.workers = Math.max(workers, 0);
+	}
+
+	/**
+	 * Validates all inputs on the workers and blocks until all shards have been validated or given up.
+	 *
+	 * @param specs  files, directories, glob patterns or '@' file lists; corpus files in corpus mode
+	 * @return       the merged summary of all shards
+	 * @throws IOException  if the socket cannot be opened or no worker can be started
+	 */
+	public SudokuBatchSummary validate(final String... specs) throws IOException, InterruptedException {
+		server = new ServerSocket(port, 50, bindAddress);
+		shards = new ArrayBlockingQueue<Shard>(2 * Math.max(workers, 1));
+		summary.start();
+		try {
+			Thread acceptor = new Thread(new Runnable() {
+				public void run() {
+					accept();
+				}
+			}, "sudoku-shard-accept");
+			acceptor.setDaemon(true);
+			acceptor.start();
+			Thread resolver = new Thread(new Runnable() {
+				public void run() {
+					resolve(specs);
+				}
+			}, "sudoku-shard-resolve");
+			resolver.setDaemon(true);
+			resolver.start();
+			for (int i = 0; i < workers; i++) {
+				startWorker();
+			}
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Coordinating on " + getAddress() + " with " + workers + " local workers");
+			}
+
+			done.await();
+		} finally {
+			server.close();
+			stopWorkers();
+			summary.stop();
+		}
+
+		if (aborted) {
+			List<Shard> left = new ArrayList<Shard>(retries);
+			shards.drainTo(left);
+			for (Shard shard : left) {
+				abandoned.addAll(shard.inputs);
+			}
+		}
+		if (!abandoned.isEmpty()) {
+			LOGGER.error(abandoned.size() + " inputs given up: " + abandoned);
+		}
+		return summary;
+	}
+
+	/**
+	 * @return <code>host:port</code> of the socket workers connect to, only known once {@link #validate(String...)} has started
+	 */
+	public String getAddress() {
+		return server.getInetAddress().getHostAddress() + ":" + server.getLocalPort();
+	}
+
+	// fills the shards while the workers validate them
+	private void resolve(String[] specs) {
+		final List<String> batch = new ArrayList<String>();
+		final long[] ids = new long[1];
+		SudokuInputResolver resolver = new SudokuInputResolver() {
+			@Override
+			void accept(Path file, BasicFileAttributes attrs) {
+				batch.add(file.toString());
+				if (batch.size() >= shardSize) {
+					offer(new Shard(ids[0]++, new ArrayList<String>(batch)));
+					batch.clear();
+				}
+			}
+		};
+		for (String spec : specs) {
+			if (done.getCount() == 0) {
+				return;
+			}
+			if (corpus) {
+				offer(new Shard(ids[0]++, Collections.singletonList(spec)));
+				continue;
+			}
+			try {
+				resolver.resolve(spec);
+			} catch (IOException e) {
+				LOGGER.error("Unable to resolve " + spec + ": " + e.getMessage());
+			}
+		}
+		if (!batch.isEmpty()) {
+			offer(new Shard(ids[0]++, batch));
+		}
+		resolved = true;
+		checkDone();
+	}
+
+	private void offer(Shard shard) {
+		pending.incrementAndGet();
+		try {
+			while (!shards.offer(shard, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+				if (done.getCount() == 0) {
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void accept() {
+		int count = 0;
+		while (true) {
+			final Socket socket;
+			try {
+				socket = server.accept();
+			} catch (IOException e) {
+				// closed
+				return;
+			}
+			Thread handler = new Thread(new Runnable() {
+				public void run() {
+					serve(socket);
+				}
+			}, "sudoku-shard-" + ++count);
+			// a worker hanging in a shard must not keep this JVM alive once the run is given up
+			handler.setDaemon(true);
+			handler.start();
+		}
+	}
+
+	// hands out shards to one worker until none are left
+	private void serve(Socket socket) {
+		String worker = socket.getRemoteSocketAddress().toString();
+		Shard shard = null;
+		FailureSpill spill = new FailureSpill();
+		try {
+			try {
+				socket.setTcpNoDelay(true);
+				socket.setSoTimeout((int) Math.min(TimeUnit.SECONDS.toMillis(workerTimeout), Integer.MAX_VALUE));
+				DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+				if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+					LOGGER.error(worker + ": not a worker of this version");
+					return;
+				}
+				worker = in.readUTF() + "@" + worker;
+				if (LOGGER.isDebugEnabled()) {
+					LOGGER.debug(worker + ": connected");
+				}
+				SudokuProposedSolution grid = new SudokuProposedSolution(variant);
+				while ((shard = nextShard()) != null) {
+					send(out, shard);
+					receive(in, shard, spill, grid);
+					shard = null;
+					pending.decrementAndGet();
+					checkDone();
+				}
+				out.writeByte(STOP);
+				out.flush();
+			} finally {
+				socket.close();
+				spill.close();
+			}
+		} catch (IOException e) {
+			if (shard != null) {
+				lost(shard, worker, e);
+			}
+		}
+	}
+
+	private Shard nextShard() {
+		try {
+			while (done.getCount() > 0) {
+				Shard shard = retries.pollFirst();
+				if (shard == null) {
+					shard = shards.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+				}
+				if (shard != null) {
+					return shard;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return null;
+	}
+
+	private void send(DataOutputStream out, Shard shard) throws IOException {
+		out.writeByte(SHARD);
+		out.writeLong(shard.id);
+		out.writeBoolean(corpus);
+		writeVariant(out, variant);
+		out.writeInt(policy.ordinal());
+		out.writeInt(shard.inputs.size());
+		for (String input : shard.inputs) {
+			out.writeUTF(input);
+		}
+		out.flush();
+	}
+
+	// reads the outcome of a shard and merges it once complete, the failures of an earlier attempt are dropped
+	private void receive(DataInputStream in, Shard shard, FailureSpill spill, SudokuProposedSolution grid) throws IOException {
+		spill.clear();
+		while (true) {
+			byte type = in.readByte();
+			if (type == FAILURE) {
+				spill.copy(in);
+			} else if (type == DONE && in.readLong() == shard.id) {
+				break;
+			} else {
+				throw new IOException("Unexpected frame " + type);
+			}
+		}
+		summary.add(readSummary(in));
+		if (spill.size() == 0) {
+			return;
+		}
+
+		DataInputStream failures = spill.replay();
+		for (int f = 0; f < spill.size(); f++) {
+			String source = failures.readUTF();
+			grid.reset();
+			grid.setRecordIndex(failures.readLong());
+			for (int i = failures.readShort(); i > 0; i--) {
+				grid.restoreErr(failures.readInt());
+			}
+			grid.restoreErrsDropped(failures.readInt());
+			if (sink != null) {
+				try {
+					sink.write(source, grid);
+				} catch (IOException e) {
+					LOGGER.error(source + ": unable to report, " + e.getMessage());
+				}
+			}
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug(source + (grid.getRecordIndex() >= 0 ? "#" + grid.getRecordIndex() : "") + ": " + grid.getErrs().get(0).getError());
+			}
+		}
+	}
+
+	// a shard whose worker was lost is handed out again, or given up
+	private void lost(Shard shard, String worker, IOException e) {
+		LOGGER.warn(worker + ": lost while validating shard " + shard.id + ", " + e);
+		if (++shard.attempts < MAX_ATTEMPTS) {
+			reassigned.incrementAndGet();
+			retries.addFirst(shard);
+		} else {
+			abandoned.addAll(shard.inputs);
+			pending.decrementAndGet();
+			checkDone();
+		}
+	}
+
+	private void checkDone() {
+		if (resolved && pending.get() == 0) {
+			done.countDown();
+		}
+	}
+
+	/**
+	 * Writes the counts of a summary, see {@link SudokuBatchSummary#add(long, long, long, long[])}.
+	 */
+	static void writeSummary(DataOutputStream out, SudokuBatchSummary summary) throws IOException {
+		out.writeLong(summary.getTotal());
+		out.writeLong(summary.getValid());
+		out.writeLong(summary.getUnchanged());
+		out.writeShort(ERR_CODE.values().length);
+		for (ERR_CODE code : ERR_CODE.values()) {
+			out.writeLong(summary.getErrCount(code));
+		}
+	}
+
+	static SudokuBatchSummary readSummary(DataInputStream in) throws IOException {
+		long total = in.readLong(), valid = in.readLong(), unchanged = in.readLong();
+		long[] errCounts = new long[in.readShort()];
+		for (int i = 0; i < errCounts.length; i++) {
+			errCounts[i] = in.readLong();
+		}
+		SudokuBatchSummary summary = new SudokuBatchSummary();
+		summary.add(total, valid, unchanged, errCounts);
+		return summary;
+	}
+
+	/**
+	 * Writes a variant in its compiled form, so that workers need neither its rule classes nor its layout files:
+	 * 		the box size, the rule count and for each rule its name, the region of every cell or none, and its units.
+	 */
+	static void writeVariant(DataOutputStream out, SudokuVariant variant) throws IOException {
+		SudokuGeometry geometry = variant.getGeometry();
+		out.writeInt(geometry.getBoxSize());
+		out.writeShort(variant.getRules().size());
+		for (SudokuRule rule : variant.getRules()) {
+			out.writeUTF(rule.getName());
+			int[] regions = rule.regions(geometry);
+			out.writeInt(regions != null ? regions.length : 0);
+			for (int i = 0; regions != null && i < regions.length; i++) {
+				out.writeShort(regions[i]);
+			}
+			int[][] units = rule.units(geometry);
+			out.writeInt(units.length);
+			for (int[] unit : units) {
+				out.writeShort(unit.length);
+				for (int loc : unit) {
+					out.writeInt(loc);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads a variant written by {@link #writeVariant(DataOutputStream, SudokuVariant)} and compiles it again.
+	 *
+	 * @throws IOException  if the variant does not fit its geometry
+	 */
+	static SudokuVariant readVariant(DataInputStream in) throws IOException {
+		SudokuGeometry geometry = SudokuGeometry.of(in.readInt());
+		SudokuRule[] rules = new SudokuRule[in.readShort()];
+		for (int r = 0; r < rules.length; r++) {
+			String name = in.readUTF();
+			int[] regions = new int[in.readInt()];
+			for (int i = 0; i < regions.length; i++) {
+				regions[i] = in.readShort();
+			}
+			int[][] units = new int[in.readInt()][];
+			for (int u = 0; u < units.length; u++) {
+				units[u] = new int[in.readShort()];
+				for (int i = 0; i < units[u].length; i++) {
+					units[u][i] = in.readInt();
+				}
+			}
+			rules[r] = SudokuRule.compiled(name, regions.length > 0 ? regions : null, units);
+		}
+		try {
+			return SudokuVariant.of(geometry, rules);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid variant: " + e.getMessage(), e);
+		}
+	}
+
+	private synchronized void startWorker() throws IOException {
+		List<String> command = new ArrayList<String>(getWorkerCommand());
+		command.add(SudokuValidateUtils.OPT_WORKER);
+		command.add(getAddress());
+		command.add(SudokuValidateUtils.OPT_THREADS);
+		command.add(String.valueOf(threads));
+		// not inherited: a worker writing to this process's console would interleave with it
+		File log = DISCARD;
+		if (workerLogDir != null) {
+			log = Files.createDirectories(workerLogDir).resolve("worker-" + ++started + ".log").toFile();
+		}
+		final Process process = new ProcessBuilder(command).redirectErrorStream(true)
+				.redirectOutput(ProcessBuilder.Redirect.appendTo(log)).start();
+		processes.add(process);
+		Thread monitor = new Thread(new Runnable() {
+			public void run() {
+				try {
+					process.waitFor();
+					exited(process);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, "sudoku-shard-monitor");
+		monitor.setDaemon(true);
+		monitor.start();
+	}
+
+	// a worker process ends before all shards have been validated only if lost
+	private synchronized void exited(Process process) {
+		processes.remove(process);
+		if (done.getCount() == 0) {
+			return;
+		}
+		LOGGER.warn("Worker process ended with exit code " + process.exitValue());
+		if (replacements < MAX_ATTEMPTS * workers) {
+			replacements ++;
+			try {
+				startWorker();
+				return;
+			} catch (IOException e) {
+				LOGGER.error("Unable to start a worker: " + e.getMessage());
+			}
+		}
+		if (processes.isEmpty()) {
+			LOGGER.error("All worker processes lost, giving up");
+			aborted = true;
+			done.countDown();
+		}
+	}
+
+	private void stopWorkers() throws InterruptedException {
+		List<Process> running;
+		synchronized (this) {
+			running = new ArrayList<Process>(processes);
+		}
+		// the workers end once told there are no more shards
+		for (Process process : running) {
+			if (!process.waitFor(10, TimeUnit.SECONDS)) {
+				process.destroy();
+			}
+		}
+	}
+
+	/**
+	 * The failures of the shard a worker is validating, in the layout of their frames, kept in a temporary file
+	 * 		until the shard is complete. The file is created with the first failure and deleted when closed.
+	 */
+	static final class FailureSpill implements Closeable {
+
+		private FileChannel ch;
+
+		private DataOutputStream out;
+
+		private int size;
+
+		// drops the failures of the previous shard
+		void clear() throws IOException {
+			size = 0;
+			if (ch != null) {
+				ch.truncate(0);
+				out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch)));
+			}
+		}
+
+		// copies the body of a failure frame
+		void copy(DataInputStream in) throws IOException {
+			if (ch == null) {
+				Path file = Files.createTempFile("sudoku-shard", ".failures");
+				ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+				out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch)));
+			}
+			out.writeUTF(in.readUTF());
+			out.writeLong(in.readLong());
+			short errs = in.readShort();
+			out.writeShort(errs);
+			for (int i = 0; i < errs; i++) {
+				out.writeInt(in.readInt());
+			}
+			out.writeInt(in.readInt());
+			size ++;
+		}
+
+		int size() {
+			return size;
+		}
+
+		// the failures copied since the last clear, in the order received
+		DataInputStream replay() throws IOException {
+			out.flush();
+			ch.position(0);
+			return new DataInputStream(new BufferedInputStream(Channels.newInputStream(ch)));
+		}
+
+		public void close() throws IOException {
+			if (ch != null) {
+				ch.close();
+			}
+		}
+	}
+
+	// JavaBean accessors
+	public SudokuBatchSummary getSummary() {
+		return summary;
+	}
+
+	public int getWorkers() {
+		return workers;
+	}
+
+	/**
+	 * @return the inputs of the shards given up, see {@link #MAX_ATTEMPTS}
+	 */
+	public List<String> getAbandoned() {
+		return abandoned;
+	}
+
+	/**
+	 * @return the number of times a shard was handed to another worker
+	 */
+	public int getReassigned() {
+		return reassigned.get();
+	}
+
+	public SudokuGeometry getGeometry() {
+		return variant.getGeometry();
+	}
+
+	/**
+	 * @param geometry  the geometry of all grids, 9x9 by default, selecting its classic variant
+	 */
+	public void setGeometry(SudokuGeometry geometry) {
+		this.variant = SudokuVariant.classic(geometry);
+	}
+
+	public SudokuVariant getVariant() {
+		return variant;
+	}
+
+	/**
+	 * @param variant  the variant of all grids, which also sets their geometry, classic 9x9 by default.
+	 * 		It is sent to the workers compiled, see {@link #writeVariant(DataOutputStream, SudokuVariant)}.
+	 */
+	public void setVariant(SudokuVariant variant) {
+		this.variant = variant;
+	}
+
+	public ValidationPolicy getValidationPolicy() {
+		return policy;
+	}
+
+	/**
+	 * @param policy  the validation policy of all grids, exhaustive by default
+	 */
+	public void setValidationPolicy(ValidationPolicy policy) {
+		this.policy = policy;
+	}
+
+	public boolean isCorpus() {
+		return corpus;
+	}
+
+	/**
+	 * @param corpus  true if the inputs are corpus files, see {@link SudokuCorpusReader} and {@link SudokuPackedReader}
+	 */
+	public void setCorpus(boolean corpus) {
+		this.corpus = corpus;
+	}
+
+	public int getShardSize() {
+		return shardSize;
+	}
+
+	/**
+	 * @param shardSize  the number of files per shard, unless in corpus mode
+	 */
+	public void setShardSize(int shardSize) {
+		this.shardSize = Math.max(shardSize, 1);
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * @param threads  the number of validation threads of every local worker, 0 for one per available processor
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public InetAddress getBindAddress() {
+		return bindAddress;
+	}
+
+	/**
+	 * @param bindAddress  the interface to listen on for workers, the loopback interface by default
+	 */
+	public void setBindAddress(InetAddress bindAddress) {
+		this.bindAddress = bindAddress;
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	/**
+	 * @param port  the port to listen on for workers, 0 (by default) for any free port
+	 */
+	public void setPort(int port) {
+		this.port = port;
+	}
+
+	public int getWorkerTimeout() {
+		return workerTimeout;
+	}
+
+	/**
+	 * @param workerTimeout  the seconds a worker may send nothing while validating a shard, 0 for no limit,
+	 * 		{@value #DEFAULT_WORKER_TIMEOUT} by default. A corpus shard without failures sends nothing until it is complete.
+	 */
+	public void setWorkerTimeout(int workerTimeout) {
+		this.workerTimeout = Math.max(workerTimeout, 0);
+	}
+
+	public Path getWorkerLogDir() {
+		return workerLogDir;
+	}
+
+	/**
+	 * @param workerLogDir  the directory in which every local worker process appends its output to a log of its own,
+	 * 		<code>worker-n.log</code>, null (by default) to discard it
+	 */
+	public void setWorkerLogDir(Path workerLogDir) {
+		this.workerLogDir = workerLogDir;
+	}
+
+	/**
+	 * @return the command starting a local worker, by default this JVM's java launcher with its class path
+	 */
+	public List<String> getWorkerCommand() {
+		if (workerCommand != null) {
+			return workerCommand;
+		}
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		return Arrays.asList(java, "-cp", System.getProperty("java.class.path"), SudokuValidate.class.getName());
+	}
+
+	/**
+	 * @param workerCommand  the command starting a worker, to which <code>-worker host:port -threads n</code> is appended,
+	 * 		e.g. with JVM options of its own or run on another machine through a remote shell
+	 */
+	public void setWorkerCommand(List<String> workerCommand) {
+		this.workerCommand = workerCommand;
+	}
+
+	public SudokuResultSink getSink() {
+		return sink;
+	}
+
+	/**
+	 * @param sink  receives the failing grids, without their cells, null for none. The sink is not closed by this class.
+	 */
+	public void setSink(SudokuResultSink sink) {
+		this.sink = sink;
+	}
+}
@@ -0,0 +1,179 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuShardWorker
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Validates the shards handed out by a {@link SudokuShardCoordinator}, see there for the protocol.<p>
+ * A worker connects to the coordinator, validates one shard at a time on threads of its own and
+ * 		ends once told there are no more shards or the connection is lost.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public class SudokuShardWorker {
+
+	private static Logger LOGGER = Logger.getLogger(SudokuShardWorker.class);
+
+	private final String host;
+
+	private final int port;
+
+	private final int threads;
+
+	private DataOutputStream out;
+
+	private long shards = 0;
+
+	/**
+	 * @param host     the host of the coordinator
+	 * @param port     the port of the coordinator
+	 * @param threads  the number of validation threads, 0 for one per available processor
+	 */
+	public SudokuShardWorker(String host, int port, int threads) {
+		this.host = host;
+		this.port = port;
+		this.threads = threads;
+	}
+
+	/**
+	 * Validates shards until the coordinator has none left.
+	 *
+	 * @throws IOException  if the connection to the coordinator fails
+	 */
+	public void run() throws IOException, InterruptedException {
+		Socket socket = new Socket(host, port);
+		SudokuResultSink failures = new FailureSink();
+		try {
+			socket.setTcpNoDelay(true);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			out.writeInt(SudokuShardCoordinator.MAGIC);
+			out.writeInt(SudokuShardCoordinator.VERSION);
+			out.writeUTF(ManagementFactory.getRuntimeMXBean().getName());
+			out.flush();
+
+			while (in.readByte() == SudokuShardCoordinator.SHARD) {
+				long id = in.readLong();
+				boolean corpus = in.readBoolean();
+				SudokuVariant variant = SudokuShardCoordinator.readVariant(in);
+				ValidationPolicy policy = ValidationPolicy.values()[in.readInt()];
+				String[] inputs = new String[in.readInt()];
+				for (int i = 0; i < inputs.length; i++) {
+					inputs[i] = in.readUTF();
+				}
+				if (LOGGER.isDebugEnabled()) {
+					LOGGER.debug("Validating shard " + id + " of " + inputs.length + " inputs");
+				}
+
+				SudokuBatchSummary summary = corpus
+						? validateCorpus(inputs, variant, policy, failures)
+						: validateFiles(inputs, variant, policy, failures);
+				synchronized (out) {
+					out.writeByte(SudokuShardCoordinator.DONE);
+					out.writeLong(id);
+					SudokuShardCoordinator.writeSummary(out, summary);
+					out.flush();
+				}
+				shards ++;
+			}
+		} finally {
+			failures.close();
+			socket.close();
+		}
+		if (LOGGER.isInfoEnabled()) {
+			LOGGER.info("Validated " + shards + " shards");
+		}
+	}
+
+	private SudokuBatchSummary validateFiles(String[] inputs, SudokuVariant variant, ValidationPolicy policy,
+			SudokuResultSink failures) throws InterruptedException {
+		SudokuBatchValidate batch = new SudokuBatchValidate(threads);
+		batch.setVariant(variant);
+		batch.setValidationPolicy(policy);
+		batch.setSink(failures);
+		try {
+			return batch.validate(inputs);
+		} catch (IOException e) {
+			// the files resolved before the failure are still validated
+			LOGGER.error("Unable to resolve the shard: " + e.getMessage());
+			return batch.getSummary();
+		}
+	}
+
+	private SudokuBatchSummary validateCorpus(String[] inputs, SudokuVariant variant, ValidationPolicy policy,
+			SudokuResultSink failures) {
+		SudokuBatchSummary summary = new SudokuBatchSummary();
+		summary.start();
+		for (String input : inputs) {
+			SudokuValidate.validateCorpus(input, variant, policy, summary, failures);
+		}
+		summary.stop();
+		return summary;
+	}
+
+	/**
+	 * Sends the errors of every failing grid to the coordinator as soon as it has been validated.
+	 */
+	private class FailureSink extends SudokuResultSink {
+
+		FailureSink() {
+			super(new StringWriter());
+		}
+
+		@Override
+		public void write(String source, SudokuProposedSolution grid) throws IOException {
+			if (!grid.isInError()) {
+				return;
+			}
+			synchronized (out) {
+				out.writeByte(SudokuShardCoordinator.FAILURE);
+				out.writeUTF(source);
+				out.writeLong(grid.getRecordIndex());
+				out.writeShort(grid.getErrCount());
+				for (int i = 0; i < grid.getErrCount(); i++) {
+					out.writeInt(ValidationError.pack(grid.getErrCode(i), grid.getErrRow(i), grid.getErrCol(i), grid.getErrValue(i)));
+				}
+				out.writeInt(grid.getErrsDropped());
+			}
+		}
+
+		@Override
+		protected void format(String source, SudokuProposedSolution grid, StringBuilder sb) {
+			// never called, failures are sent as they are
+		}
+	}
+
+	// JavaBean accessors
+	public String getHost() {
+		return host;
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * @return the number of shards validated so far
+	 */
+	public long getShards() {
+		return shards;
+	}
+}
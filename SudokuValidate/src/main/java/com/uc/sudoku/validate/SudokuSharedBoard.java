@@ -0,0 +1,227 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuSharedBoard
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A board of a {@link SudokuBoardStore} that any number of threads may play at the same time.<p>
+ * A move locks the row, column and subgrid of its cell only, on the store's lock stripes, and is then applied
+ * 		to an ordinary {@link SudokuProposedSolution}. Moves on different units of a board thus run in parallel,
+ * 		as do moves on different boards unless their units happen to share a stripe. The stripes of a move are always
+ * 		locked in ascending order, so that moves cannot deadlock.<br>
+ * The board keeps the invariants of {@link SudokuProposedSolution}: no unit holds a number twice,
+ * 		and a number is set in a unit's mask if and only if a cell of the unit holds it.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public class SudokuSharedBoard {
+
+	private final String id;
+
+	private final SudokuGeometry geometry;
+
+	private final SudokuProposedSolution grid;
+
+	// the lock stripes of the store, a power of two in number
+	private final Object[] locks;
+
+	// the stripe of unit 0, units being numbered rows first, then columns, then subgrids
+	private final int base;
+
+	private final AtomicInteger filled = new AtomicInteger();
+
+	SudokuSharedBoard(String id, SudokuGeometry geometry, Object[] locks, int base) {
+		this.id = id;
+		this.geometry = geometry;
+		this.grid = new SudokuProposedSolution(geometry);
+		this.locks = locks;
+		this.base = base;
+	}
+
+	/**
+	 * Sets a number in an empty cell unless its row, column or subgrid already holds it.
+	 *
+	 * @return true if the number was set
+	 * @throws IllegalArgumentException  if the cell or number is out of range
+	 */
+	public boolean set(int loc, int num) {
+		checkNumber(num);
+		int row = rowStripe(loc), col = colStripe(loc), box = boxStripe(loc);
+		int lo = Math.min(row, Math.min(col, box)), hi = Math.max(row, Math.max(col, box));
+		synchronized (locks[lo]) {
+			synchronized (locks[row + col + box - lo - hi]) {
+				synchronized (locks[hi]) {
+					if (!grid.set(loc, num)) {
+						return false;
+					}
+					filled.incrementAndGet();
+					return true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Replaces the number of a cell in one step, leaving the cell as it was if the new number conflicts.
+	 *
+	 * @return true if the cell now holds the number
+	 * @throws IllegalArgumentException  if the cell or number is out of range
+	 */
+	public boolean replace(int loc, int num) {
+		checkNumber(num);
+		int row = rowStripe(loc), col = colStripe(loc), box = boxStripe(loc);
+		int lo = Math.min(row, Math.min(col, box)), hi = Math.max(row, Math.max(col, box));
+		synchronized (locks[lo]) {
+			synchronized (locks[row + col + box - lo - hi]) {
+				synchronized (locks[hi]) {
+					int old = grid.unset(loc);
+					if (grid.set(loc, num)) {
+						if (old == 0) {
+							filled.incrementAndGet();
+						}
+						return true;
+					}
+					if (old != 0) {
+						grid.set(loc, old);
+					}
+					return false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Clears a cell.
+	 *
+	 * @return the number the cell held, 0 if it was empty
+	 * @throws IllegalArgumentException  if the cell is out of range
+	 */
+	public int unset(int loc) {
+		int row = rowStripe(loc), col = colStripe(loc), box = boxStripe(loc);
+		int lo = Math.min(row, Math.min(col, box)), hi = Math.max(row, Math.max(col, box));
+		synchronized (locks[lo]) {
+			synchronized (locks[row + col + box - lo - hi]) {
+				synchronized (locks[hi]) {
+					int num = grid.unset(loc);
+					if (num != 0) {
+						filled.decrementAndGet();
+					}
+					return num;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the units holding the number elsewhere, see {@link SudokuProposedSolution#conflicts(int, int)}
+	 * @throws IllegalArgumentException  if the cell or number is out of range
+	 */
+	public int conflicts(int loc, int num) {
+		checkNumber(num);
+		int row = rowStripe(loc), col = colStripe(loc), box = boxStripe(loc);
+		int lo = Math.min(row, Math.min(col, box)), hi = Math.max(row, Math.max(col, box));
+		synchronized (locks[lo]) {
+			synchronized (locks[row + col + box - lo - hi]) {
+				synchronized (locks[hi]) {
+					return grid.conflicts(loc, num);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the number in a cell, 0 if it is empty
+	 * @throws IllegalArgumentException  if the cell is out of range
+	 */
+	public int get(int loc) {
+		synchronized (locks[rowStripe(loc)]) {
+			return grid.get(loc);
+		}
+	}
+
+	/**
+	 * @return true if every cell holds a number, which makes the board a solution
+	 */
+	public boolean isComplete() {
+		return filled.get() == geometry.getCellCount();
+	}
+
+	/**
+	 * @return the number of cells holding a number
+	 */
+	public int getFilled() {
+		return filled.get();
+	}
+
+	/**
+	 * Copies all cells at a single point in time, locking every unit of the board meanwhile.
+	 *
+	 * @return the numbers in left-to-right and top-down order, 0 for empty cells
+	 */
+	public int[] snapshot() {
+		int units = 3 * geometry.getSide();
+		int[] stripes = new int[units];
+		for (int u = 0; u < units; u++) {
+			stripes[u] = stripe(u);
+		}
+		Arrays.sort(stripes);
+		int[] cells = new int[geometry.getCellCount()];
+		copy(stripes, 0, cells);
+		return cells;
+	}
+
+	// locks the remaining stripes in ascending order, then copies the cells
+	private void copy(int[] stripes, int i, int[] cells) {
+		if (i == stripes.length) {
+			System.arraycopy(grid.cells(), 0, cells, 0, cells.length);
+			return;
+		}
+		synchronized (locks[stripes[i]]) {
+			copy(stripes, i + 1, cells);
+		}
+	}
+
+	private int stripe(int unit) {
+		return (base + unit) & (locks.length - 1);
+	}
+
+	private int rowStripe(int loc) {
+		if (loc < 0 || loc >= geometry.getCellCount()) {
+			throw new IllegalArgumentException("No cell " + loc + " in a " + geometry + " grid");
+		}
+		return stripe(geometry.rowOf[loc]);
+	}
+
+	private int colStripe(int loc) {
+		return stripe(geometry.getSide() + geometry.colOf[loc]);
+	}
+
+	private int boxStripe(int loc) {
+		return stripe(2 * geometry.getSide() + geometry.boxOf[loc]);
+	}
+
+	private void checkNumber(int num) {
+		if (num < 1 || num > geometry.getSide()) {
+			throw new IllegalArgumentException("No number " + num + " in a " + geometry + " grid");
+		}
+	}
+
+	// JavaBean accessors
+	public String getId() {
+		return id;
+	}
+
+	public SudokuGeometry getGeometry() {
+		return geometry;
+	}
+
+	public String toString() {
+		return id + " (" + geometry + ", " + filled.get() + " filled)";
+	}
+}
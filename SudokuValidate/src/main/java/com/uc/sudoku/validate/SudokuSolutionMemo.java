@@ -0,0 +1,201 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuSolutionMemo
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The memo of {@link SudokuSolver#hasUniqueSolution(int[])}: a bounded map from a partial grid, reduced to a key
+ * 		shared with some of its equivalent grids, to whether it has a unique solution.<p>
+ * The key is not a canonical form under the full Sudoku symmetry group. It covers the relabelling of the digits
+ * 		together with {@value #TRANSFORMS} geometric transformations only: transposition, any order of the bands,
+ * 		any order of the stacks, and reversing the rows within the bands and the columns within the stacks.
+ * 		These include all rotations and reflections, but not swapping two rows within a band or two columns
+ * 		within a stack, so that such equivalent grids get different keys and are solved separately.
+ * 		A miss only costs a search, so that the memo stays correct; covering the rest of the group would
+ * 		multiply the transformations by 36.<br>
+ * The key is the smallest of the transformed grids, each relabelled in order of first appearance.
+ * 		A candidate is dropped as soon as it compares greater, so that most take a few cells only.
+ * <p>
+ * The memo is not used by validation: computing a key takes about 12 &micro;s against 0.3 &micro;s for checking
+ * 		a complete grid with {@link SudokuBitboardChecker}, so that it only pays off in front of a search.
+ * <p>
+ * The least recently used entries are evicted beyond the maximum size. Instances are thread-safe.
+ *
+ * @param <V> the cached result
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public class SudokuSolutionMemo<V> {
+
+	public static final int TRANSFORMS = 2 * 6 * 6 * 2 * 2;
+
+	// SOURCE[t][loc]: the cell of the original grid moved to loc by transformation t
+	private static final byte[][] SOURCE = new byte[TRANSFORMS][81];
+
+	private static final int[][] ORDERS = {{0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}};
+
+	static {
+		int t = 0;
+		for (int transpose = 0; transpose < 2; transpose++) {
+			for (int[] bands : ORDERS) {
+				for (int[] stacks : ORDERS) {
+					for (int revRows = 0; revRows < 2; revRows++) {
+						for (int revCols = 0; revCols < 2; revCols++) {
+							for (int loc = 0; loc < 81; loc++) {
+								int r = loc/9, c = loc%9;
+								int row = bands[r/3]*3 + (revRows == 1 ? 2 - r%3 : r%3);
+								int col = stacks[c/3]*3 + (revCols == 1 ? 2 - c%3 : c%3);
+								SOURCE[t][loc] = (byte) (transpose == 1 ? col*9 + row : row*9 + col);
+							}
+							t++;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * The key of a grid, compared by content.
+	 */
+	public static final class Key {
+
+		private final byte[] packed;
+
+		private final int hash;
+
+		private Key(byte[] packed) {
+			this.packed = packed;
+			this.hash = Arrays.hashCode(packed);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key && Arrays.equals(packed, ((Key) o).packed);
+		}
+	}
+
+	private final Map<Key, V> map;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * @param maxEntries  the number of entries beyond which the least recently used are evicted
+	 */
+	public SudokuSolutionMemo(final int maxEntries) {
+		this.map = new LinkedHashMap<Key, V>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, V> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Computes the key of a grid.
+	 *
+	 * @param cells  the 81 digits in left-to-right and top-down order, 0 denoting an empty cell
+	 * @return       the key, null if a cell holds a value out of the range [0, 9]
+	 */
+	public static Key keyOf(int[] cells) {
+		for (int loc = 0; loc < 81; loc++) {
+			if (cells[loc] < 0 || cells[loc] > 9) {
+				return null;
+			}
+		}
+
+		int[] best = new int[81];
+		int[] cand = new int[81];
+		int[] label = new int[10];
+		boolean found = false;
+
+		for (int t = 0; t < TRANSFORMS; t++) {
+			byte[] source = SOURCE[t];
+			Arrays.fill(label, 0);
+			int next = 1;
+			// 0 while equal to the best so far, -1 once smaller
+			int cmp = found ? 0 : -1;
+			int loc = 0;
+			for (; loc < 81; loc++) {
+				int num = cells[source[loc]];
+				if (num != 0 && label[num] == 0) {
+					label[num] = next++;
+				}
+				int l = label[num];
+				cand[loc] = l;
+				if (cmp == 0 && l != best[loc]) {
+					if (l > best[loc]) {
+						break;
+					}
+					cmp = -1;
+				}
+			}
+			if (loc == 81 && cmp < 0) {
+				int[] tmp = best;
+				best = cand;
+				cand = tmp;
+				found = true;
+			}
+		}
+
+		byte[] packed = new byte[SudokuPackedGrid.RECORD_SIZE];
+		SudokuPackedGrid.encode(best, ByteBuffer.wrap(packed));
+		return new Key(packed);
+	}
+
+	/**
+	 * @return the result memoized for the grid or a grid with the same key, null if none
+	 */
+	public V get(Key key) {
+		V value;
+		synchronized (map) {
+			value = map.get(key);
+		}
+		(value != null ? hits : misses).incrementAndGet();
+		return value;
+	}
+
+	public void put(Key key, V value) {
+		synchronized (map) {
+			map.put(key, value);
+		}
+	}
+
+	public int size() {
+		synchronized (map) {
+			return map.size();
+		}
+	}
+
+	public void clear() {
+		synchronized (map) {
+			map.clear();
+		}
+	}
+
+	// JavaBean accessors
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+}
@@ -0,0 +1,300 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuSolver
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+/**
+ * Solves partial grids and counts their solutions.<p>
+ * The state of a search is the same as that of a {@link SudokuProposedSolution}: the 81 cells and one mask
+ * 		per row, column and subgrid with bit n set once digit n has been placed. The candidates of an empty cell
+ * 		are the digits missing from all three of its masks, so that they are never stored but computed with two ORs.
+ * <p>
+ * Each level of the search first propagates constraints until nothing changes:
+ * <ul>
+ * <li>naked singles: an empty cell with a single candidate takes that digit</li>
+ * <li>hidden singles: a digit that fits a single cell of a row, column or subgrid goes there</li>
+ * </ul>
+ * It then branches on the empty cell with the fewest candidates (minimum remaining values), trying each candidate
+ * 		on a copy of the state. The copies are preallocated per level, so that a search does not allocate any memory.
+ * Counting stops as soon as the requested number of solutions has been found, so that proving a puzzle unique
+ * 		costs one search for the solution plus the exhaustion of the remaining branches.
+ * <p>
+ * Instances are not thread-safe; use one solver per thread.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public final class SudokuSolver {
+
+	private static final int FULL_MASK = SudokuBitboardChecker.FULL_MASK;
+
+	private static final byte[] ROW_OF = SudokuBitboardChecker.ROW_OF;
+
+	private static final byte[] COL_OF = SudokuBitboardChecker.COL_OF;
+
+	private static final byte[] BOX_OF = SudokuBitboardChecker.BOX_OF;
+
+	// the cells of the 9 rows, 9 columns and 9 subgrids
+	private static final byte[][] UNITS = new byte[27][9];
+
+	// every guess fills at least one cell, so that the search is at most 81 levels deep
+	private static final int LEVELS = 82;
+
+	static {
+		for (int loc = 0; loc < 81; loc++) {
+			int r = ROW_OF[loc], c = COL_OF[loc], b = BOX_OF[loc];
+			UNITS[r][c] = (byte) loc;
+			UNITS[9 + c][r] = (byte) loc;
+			UNITS[18 + b][(r%3)*3 + c%3] = (byte) loc;
+		}
+	}
+
+	// the state per level: cells followed by 9 row, 9 column and 9 subgrid masks
+	private final int[][] states = new int[LEVELS][81 + 27];
+
+	private final int[] solution = new int[81];
+
+	private int solutions;
+
+	private int limit;
+
+	private SudokuSolutionMemo<Boolean> memo;
+
+	/**
+	 * Counts the solutions of a partial grid, stopping at the given limit.
+	 *
+	 * @param cells  the 81 cells in left-to-right and top-down order, 0 denoting an empty cell
+	 * @param limit  the number of solutions to stop at, e.g. 2 to tell unique puzzles from others
+	 * @return       the number of solutions found, at most the limit. 0 if the givens already conflict.
+	 */
+	public int countSolutions(int[] cells, int limit) {
+		this.solutions = 0;
+		this.limit = limit;
+		if (load(cells)) {
+			search(0);
+		}
+		return solutions;
+	}
+
+	/**
+	 * Solves a partial grid.
+	 *
+	 * @param cells     the 81 cells, 0 denoting an empty cell
+	 * @param solution  receives the first solution found, if any
+	 * @return          true if the grid has a solution
+	 */
+	public boolean solve(int[] cells, int[] solution) {
+		if (countSolutions(cells, 1) == 0) {
+			return false;
+		}
+		System.arraycopy(this.solution, 0, solution, 0, 81);
+		return true;
+	}
+
+	/**
+	 * @return true if the partial grid has exactly one solution. The answer is looked up in and added to the memo, if set.
+	 */
+	public boolean hasUniqueSolution(int[] cells) {
+		SudokuSolutionMemo.Key key = memo != null ? SudokuSolutionMemo.keyOf(cells) : null;
+		if (key != null) {
+			Boolean unique = memo.get(key);
+			if (unique != null) {
+				return unique.booleanValue();
+			}
+		}
+		boolean unique = countSolutions(cells, 2) == 1;
+		if (key != null) {
+			memo.put(key, Boolean.valueOf(unique));
+		}
+		return unique;
+	}
+
+	/**
+	 * @return the first solution found by the last search, valid if it found any
+	 */
+	public int[] getSolution() {
+		return solution;
+	}
+
+	public SudokuSolutionMemo<Boolean> getMemo() {
+		return memo;
+	}
+
+	/**
+	 * @param memo  memoizes the outcome of {@link #hasUniqueSolution(int[])}, null for none.
+	 * 		A memo may be shared by the solvers of several threads.
+	 */
+	public void setMemo(SudokuSolutionMemo<Boolean> memo) {
+		this.memo = memo;
+	}
+
+	/**
+	 * Parses a puzzle given as its 81 cells, '0', '.' or 'X' denoting an empty cell.
+	 *
+	 * @return the cells, null if the text does not denote 81 cells
+	 */
+	public static int[] parse(CharSequence line) {
+		int[] cells = new int[81];
+		int loc = 0;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c == ',' || Character.isWhitespace(c)) {
+				continue;
+			}
+			if (loc == 81) {
+				return null;
+			}
+			if (c >= '1' && c <= '9') {
+				cells[loc++] = c - '0';
+			} else if (c == '0' || c == '.' || c == 'X') {
+				cells[loc++] = 0;
+			} else {
+				return null;
+			}
+		}
+		return loc == 81 ? cells : null;
+	}
+
+	/**
+	 * Loads the givens into the first level, returning false if two givens conflict.
+	 */
+	private boolean load(int[] cells) {
+		int[] s = states[0];
+		for (int i = 81; i < s.length; i++) {
+			s[i] = 0;
+		}
+		for (int loc = 0; loc < 81; loc++) {
+			int num = cells[loc];
+			s[loc] = num;
+			if (num == 0) {
+				continue;
+			}
+			if (num < 0 || num > 9) {
+				throw new IllegalArgumentException("Invalid digit " + num + " at cell " + loc);
+			}
+			int bit = 1 << num;
+			if (((s[81 + ROW_OF[loc]] | s[90 + COL_OF[loc]] | s[99 + BOX_OF[loc]]) & bit) != 0) {
+				return false;
+			}
+			place(s, loc, num);
+		}
+		return true;
+	}
+
+	private static void place(int[] s, int loc, int num) {
+		int bit = 1 << num;
+		s[loc] = num;
+		s[81 + ROW_OF[loc]] |= bit;
+		s[90 + COL_OF[loc]] |= bit;
+		s[99 + BOX_OF[loc]] |= bit;
+	}
+
+	private static int candidates(int[] s, int loc) {
+		return ~(s[81 + ROW_OF[loc]] | s[90 + COL_OF[loc]] | s[99 + BOX_OF[loc]]) & FULL_MASK;
+	}
+
+	private void search(int level) {
+		int[] s = states[level];
+
+		int best = propagate(s);
+		if (best == -2) {
+			return;
+		}
+		if (best == -1) {
+			if (solutions++ == 0) {
+				System.arraycopy(s, 0, solution, 0, 81);
+			}
+			return;
+		}
+
+		int[] next = states[level + 1];
+		int cand = candidates(s, best);
+		while (cand != 0) {
+			int bit = cand & -cand;
+			cand ^= bit;
+			System.arraycopy(s, 0, next, 0, s.length);
+			place(next, best, Integer.numberOfTrailingZeros(bit));
+			search(level + 1);
+			if (solutions >= limit) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Places naked and hidden singles until none are left.
+	 *
+	 * @return  the empty cell with the fewest candidates, -1 if the grid is full, -2 if it cannot be completed
+	 */
+	private static int propagate(int[] s) {
+		boolean changed = true;
+		int best = -1;
+		while (changed) {
+			changed = false;
+			best = -1;
+			int bestCount = 10;
+
+			// naked singles, remembering the most constrained cell
+			for (int loc = 0; loc < 81; loc++) {
+				if (s[loc] != 0) {
+					continue;
+				}
+				int cand = candidates(s, loc);
+				if (cand == 0) {
+					return -2;
+				}
+				if ((cand & (cand - 1)) == 0) {
+					place(s, loc, Integer.numberOfTrailingZeros(cand));
+					changed = true;
+				} else if (!changed) {
+					int count = Integer.bitCount(cand);
+					if (count < bestCount) {
+						bestCount = count;
+						best = loc;
+					}
+				}
+			}
+			if (changed) {
+				continue;
+			}
+			if (best == -1) {
+				return -1;
+			}
+
+			// hidden singles
+			for (int u = 0; u < 27; u++) {
+				byte[] unit = UNITS[u];
+				int once = 0, twice = 0;
+				for (int i = 0; i < 9; i++) {
+					int loc = unit[i];
+					if (s[loc] == 0) {
+						int cand = candidates(s, loc);
+						twice |= once & cand;
+						once |= cand;
+					}
+				}
+				int used = s[81 + u];
+				if ((once | used) != FULL_MASK) {
+					// a missing digit fits nowhere in this unit
+					return -2;
+				}
+				int singles = once & ~twice;
+				while (singles != 0) {
+					int bit = singles & -singles;
+					singles ^= bit;
+					for (int i = 0; i < 9; i++) {
+						int loc = unit[i];
+						if (s[loc] == 0 && (candidates(s, loc) & bit) != 0) {
+							place(s, loc, Integer.numberOfTrailingZeros(bit));
+							changed = true;
+							break;
+						}
+					}
+				}
+			}
+		}
+		return best;
+	}
+}
@@ -6,14 +6,22 @@
 
 package com.uc.sudoku.validate;
 
+import java.io.Closeable;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
 import org.apache.log4j.Logger;
-import org.apache.log4j.xml.DOMConfigurator;
 
 /**
  * Main class for validating Sudoku solutions.<p>
@@ -24,66 +32,577 @@ import org.apache.log4j.xml.DOMConfigurator;
  */
 public class SudokuValidate {
 	
-	private static Logger LOGGER = Logger.getLogger(SudokuValidate.class);
+	// created on first use, after main has kept log4j from configuring itself, see SudokuLogging
+	private static final class Log {
+		static final Logger LOGGER = Logger.getLogger(SudokuValidate.class);
+	}
 	
 	/**
 	 * @param args
 	 */
 	public static void main(String[] args) {
-		DOMConfigurator.configure("src/main/resources/config/log4j.xml");
+		SudokuLogging.skipDefaultInit();
+		SudokuLogging.configure();
+		SudokuMetrics.configure();
 		StringBuilder sb = new StringBuilder();
 		sb.append("\n\t\t\t########################################");
 		sb.append("\n\t\t\t###          Sudoku Validation       ###");
 		sb.append("\n\t\t\t###  by Andrew Upton                 ###");
 		sb.append("\n\t\t\t###   2011 Upton Consulting gmbh    ###");
 		sb.append("\n\t\t\t########################################");
-		if (LOGGER.isInfoEnabled()) {
-			LOGGER.info(sb.toString());
+		if (Log.LOGGER.isInfoEnabled()) {
+			Log.LOGGER.info(sb.toString());
 		}
 		
 		ERR_CODE err = validateInput(args); 
 		if (err != null){
-			LOGGER.error(err.toString());
+			Log.LOGGER.error(err.toString());
+			return;
+		}
+		if (!validateOptions(args)) {
+			Log.LOGGER.error(SudokuValidateUtils.USAGE);
+			System.exit(1);
+		}
+
+		if (SudokuValidateUtils.OPT_SERVER.equals(args[0])) {
+			// runs until the JVM is shut down
+			new SudokuValidate().sudokuServe(args);
+			return;
+		}
+
+		if (SudokuValidateUtils.OPT_WATCH.equals(args[0])) {
+			// runs until the JVM is shut down
+			new SudokuValidate().sudokuWatch(args);
 			return;
 		}
 		
 		try{
 			SudokuValidate validator = new SudokuValidate();
-			validator.sudokuValidate(args);
+			if (SudokuValidateUtils.OPT_BATCH.equals(args[0])) {
+				validator.sudokuBatchValidate(args);
+			} else if (SudokuValidateUtils.OPT_CORPUS.equals(args[0])) {
+				validator.sudokuCorpusValidate(args);
+			} else if (SudokuValidateUtils.OPT_SHARD.equals(args[0])) {
+				validator.sudokuShardValidate(args);
+			} else if (SudokuValidateUtils.OPT_WORKER.equals(args[0])) {
+				validator.sudokuWork(args);
+			} else {
+				validator.sudokuValidate(args);
+			}
 		} finally {
+			if (SudokuMetrics.get().isEnabled() && Log.LOGGER.isInfoEnabled()) {
+				Log.LOGGER.info(SudokuMetrics.get().dump());
+			}
 			sb = new StringBuilder();
 			sb.append("\n\t\t\t########################################");
 			sb.append("\n\t\t\t##### Sudoku Validation completed  #####");
 			sb.append("\n\t\t\t########################################");
 
-			if (LOGGER.isInfoEnabled()) {
-				LOGGER.info(sb.toString());
+			if (Log.LOGGER.isInfoEnabled()) {
+				Log.LOGGER.info(sb.toString());
 			}
 		}
 	}
 
 	/**
-	 * Validates the structure and logical content of the file<p>
+	 * Validates the structure and logical content of the file, or of every puzzle file of an archive,
+	 * 		see {@link SudokuArchiveReader}<p>
 	 * (method made protected for testing purposes)
-	 * @param args
+	 * @param args  &lt;puzzleName.txt|archive.zip|puzzleName.txt.gz&gt; [-box n] [-variant v] [-policy p] [-nogrid]
 	 */
 	protected void sudokuValidate(String[] args) {
-		SudokuProposedSolution grid = null;
+		boolean includeGrid = !ArrayUtils.contains(args, SudokuValidateUtils.OPT_NO_GRID);
+		SudokuProposedSolution grid = new SudokuProposedSolution(variant(args));
+		grid.setValidationPolicy(policy(args));
+		if (!SudokuArchiveReader.isArchive(args[0])) {
+			grid = validateFile(args[0], grid);
+			printAnalysis(grid, args[0], includeGrid);
+			return;
+		}
+
+		try {
+			SudokuArchiveReader archive = SudokuArchiveReader.open(Paths.get(args[0]));
+			try {
+				archive.setReuseGrid(true);
+				archive.setVariant(grid.getVariant());
+				archive.setValidationPolicy(grid.getValidationPolicy());
+				while (archive.hasNext()) {
+					grid = archive.next();
+					printAnalysis(grid, archive.getSource(), includeGrid);
+				}
+			} finally {
+				archive.close();
+			}
+		} catch (IOException e) {
+			grid.reset();
+			grid.addErr(SudokuArchiveReader.readError(e));
+			printAnalysis(grid, args[0], false);
+		}
+	}
+
+	/**
+	 * Validates all files denoted by the arguments following the batch option in parallel
+	 * 		and reports the aggregated result.<p>
+	 * (method made protected for testing purposes)
+	 * @param args  -batch [-threads n] [-box n] [-variant v] [-policy p] [-manifest file] [-report file [-grid]] &lt;dir|glob|@fileList|puzzleName.txt|archive&gt; ...
+	 * @return the aggregated summary, null if the run failed
+	 */
+	protected SudokuBatchSummary sudokuBatchValidate(String[] args) {
+		int threads = NumberUtils.toInt(optionValue(args, SudokuValidateUtils.OPT_THREADS), 0);
+		List<String> specs = inputs(args);
+
+		SudokuBatchValidate batch = new SudokuBatchValidate(threads);
+		batch.setVariant(variant(args));
+		batch.setValidationPolicy(policy(args));
+		SudokuResultSink sink = null;
+		SudokuManifest manifest = null;
+		try {
+			sink = openSink(args);
+			batch.setSink(sink);
+			String manifestFile = optionValue(args, SudokuValidateUtils.OPT_MANIFEST);
+			if (StringUtils.isNotBlank(manifestFile) && !batch.getVariant().isClassic()) {
+				Log.LOGGER.warn("The manifest only records classic grids, validating all files");
+			} else if (StringUtils.isNotBlank(manifestFile)) {
+				manifest = SudokuManifest.open(Paths.get(manifestFile), batch.getGeometry(), batch.getValidationPolicy());
+				batch.setManifest(manifest);
+			}
+			SudokuBatchSummary summary = batch.validate(specs.toArray(new String[specs.size()]));
+			if (Log.LOGGER.isInfoEnabled()) {
+				Log.LOGGER.info(summary.toString());
+			}
+			return summary;
+		} catch (IOException e) {
+			Log.LOGGER.error(new ValidationError(ERR_CODE.UNABLE_TO_READ_SUDOKU_FILE, e).getError());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			closeSink(sink);
+			closeManifest(manifest);
+		}
+		return null;
+	}
+
+	/**
+	 * Validates every grid of the multi-grid corpus files following the corpus option
+	 * 		and reports the aggregated result. Packed files, see {@link SudokuPackedGrid}, are recognised by their header
+	 * 		and always hold 9x9 grids, validated as the given variant if it is one of 9x9 grids.<p>
+	 * (method made protected for testing purposes)
+	 * @param args  -corpus [-box n] [-variant v] [-policy p] [-report file [-grid]] corpusFile ...
+	 * @return the aggregated summary
+	 */
+	protected SudokuBatchSummary sudokuCorpusValidate(String[] args) {
+		SudokuBatchSummary summary = new SudokuBatchSummary();
+		SudokuResultSink sink = null;
+		try {
+			sink = openSink(args);
+		} catch (IOException e) {
+			Log.LOGGER.error(new ValidationError(ERR_CODE.UNABLE_TO_READ_SUDOKU_FILE, e).getError());
+			return summary;
+		}
+
+		SudokuVariant variant = variant(args);
+		ValidationPolicy policy = policy(args);
+		summary.start();
+		try {
+			for (String input : inputs(args)) {
+				validateCorpus(input, variant, policy, summary, sink);
+			}
+		} finally {
+			// the records queued so far are written whatever went wrong
+			closeSink(sink);
+			summary.stop();
+		}
+
+		if (Log.LOGGER.isInfoEnabled()) {
+			Log.LOGGER.info(summary.toString());
+		}
+		return summary;
+	}
+
+	/**
+	 * Validates all files, or corpus files, denoted by the arguments following the shard option on worker processes
+	 * 		and reports the merged result, see {@link SudokuShardCoordinator}.<p>
+	 * (method made protected for testing purposes)
+	 * @param args  -shard [-workers n] [-threads n] [-box n] [-variant v] [-policy p] [-corpus] [-shardsize n] [-bind addr] [-port n] [-timeout s] [-workerlog dir]
+	 * 		[-report file] input ...
+	 * @return the merged summary, null if the run failed
+	 */
+	protected SudokuBatchSummary sudokuShardValidate(String[] args) {
+		int workers = NumberUtils.toInt(optionValue(args, SudokuValidateUtils.OPT_WORKERS),
+				Runtime.getRuntime().availableProcessors());
+		List<String> specs = inputs(args);
+
+		SudokuShardCoordinator coordinator = new SudokuShardCoordinator(workers);
+		coordinator.setVariant(variant(args));
+		coordinator.setValidationPolicy(policy(args));
+		coordinator.setCorpus(ArrayUtils.contains(args, SudokuValidateUtils.OPT_CORPUS));
+		coordinator.setShardSize(NumberUtils.toInt(optionValue(args, SudokuValidateUtils.OPT_SHARD_SIZE),
+				SudokuShardCoordinator.DEFAULT_SHARD_SIZE));
+		coordinator.setThreads(NumberUtils.toInt(optionValue(args, SudokuValidateUtils.OPT_THREADS), 0));
+		coordinator.setPort(NumberUtils.toInt(optionValue(args, SudokuValidateUtils.OPT_PORT), 0));
+		coordinator.setWorkerTimeout(NumberUtils.toInt(optionValue(args, SudokuValidateUtils.OPT_TIMEOUT),
+				SudokuShardCoordinator.DEFAULT_WORKER_TIMEOUT));
+		String workerLog = optionValue(args, SudokuValidateUtils.OPT_WORKER_LOG);
+		if (StringUtils.isNotBlank(workerLog)) {
+			coordinator.setWorkerLogDir(Paths.get(workerLog));
+		}
+		SudokuResultSink sink = null;
+		try {
+			String bind = optionValue(args, SudokuValidateUtils.OPT_BIND);
+			if (StringUtils.isNotBlank(bind)) {
+				coordinator.setBindAddress(InetAddress.getByName(bind));
+			}
+			sink = openSink(args);
+			coordinator.setSink(sink);
+			SudokuBatchSummary summary = coordinator.validate(specs.toArray(new String[specs.size()]));
+			if (Log.LOGGER.isInfoEnabled()) {
+				Log.LOGGER.info(summary.toString());
+			}
+			return summary;
+		} catch (IOException e) {
+			Log.LOGGER.error("Unable to coordinate the workers: " + e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			closeSink(sink);
+		}
+		return null;
+	}
+
+	/**
+	 * Validates the shards of the coordinator at the address following the worker option until it has none left.<p>
+	 * (method made protected for testing purposes)
+	 * @param args  -worker host:port [-threads n]
+	 */
+	protected void sudokuWork(String[] args) {
+		int colon = args[1].lastIndexOf(':');
+		SudokuShardWorker worker = new SudokuShardWorker(args[1].substring(0, colon),
+				NumberUtils.toInt(args[1].substring(colon + 1)),
+				NumberUtils.toInt(optionValue(args, SudokuValidateUtils.OPT_THREADS), 0));
+		try {
+			worker.run();
+		} catch (IOException e) {
+			Log.LOGGER.error("Lost the coordinator at " + args[1] + ": " + e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Validates every grid of a corpus file, recording the outcomes in the summary and the sink, if any.
+	 * 		A file that cannot be read, or fails to be read to its end, is recorded as a further grid in error.
+	 * 		A grid that cannot be written to the sink is logged and left out of the report only.
+	 */
+	static void validateCorpus(String input, SudokuVariant variant, ValidationPolicy policy,
+			SudokuBatchSummary summary, SudokuResultSink sink) {
+		try {
+			Path file = Paths.get(input);
+			Iterator<SudokuProposedSolution> grids;
+			Closeable corpus;
+			if (SudokuPackedReader.isPacked(file)) {
+				SudokuPackedReader packed = SudokuPackedReader.open(file);
+				packed.setReuseGrid(true);
+				if (variant.getGeometry() == SudokuGeometry.STANDARD) {
+					packed.setVariant(variant);
+				}
+				packed.setValidationPolicy(policy);
+				grids = packed;
+				corpus = packed;
+			} else {
+				SudokuCorpusReader text = SudokuCorpusReader.open(file);
+				text.setReuseGrid(true);
+				text.setVariant(variant);
+				text.setValidationPolicy(policy);
+				grids = text;
+				corpus = text;
+			}
+			try {
+				while (grids.hasNext()) {
+					SudokuProposedSolution grid = grids.next();
+					summary.record(grid);
+					if (sink != null) {
+						try {
+							sink.write(input, grid);
+						} catch (IOException e) {
+							Log.LOGGER.error(input + "#" + grid.getRecordIndex() + ": unable to report, " + e.getMessage());
+						}
+					}
+					if (grid.isInError() && Log.LOGGER.isDebugEnabled()) {
+						Log.LOGGER.debug(input + "#" + grid.getRecordIndex() + ": " + grid.getErrs().get(0).getError());
+					}
+				}
+			} finally {
+				corpus.close();
+			}
+		} catch (IOException e) {
+			readFailed(input, e, summary);
+		} catch (UncheckedIOException e) {
+			// thrown by the readers while iterating
+			readFailed(input, e.getCause(), summary);
+		}
+	}
+
+	private static void readFailed(String input, IOException e, SudokuBatchSummary summary) {
+		SudokuProposedSolution grid = new SudokuProposedSolution();
+		grid.addErr(new ValidationError(ERR_CODE.UNABLE_TO_READ_SUDOKU_FILE, e));
+		summary.record(grid);
+		Log.LOGGER.error(input + ": " + grid.getErrs().get(0).getError());
+	}
+
+	/**
+	 * @return the arguments following the mode option that are neither options nor option values
+	 */
+	private static List<String> inputs(String[] args) {
+		List<String> inputs = new ArrayList<String>();
+		for (int i = 1; i < args.length; i++) {
+			if (SudokuValidateUtils.OPT_THREADS.equals(args[i]) || SudokuValidateUtils.OPT_REPORT.equals(args[i])
+					|| SudokuValidateUtils.OPT_BOX.equals(args[i]) || SudokuValidateUtils.OPT_POLICY.equals(args[i])
+					|| SudokuValidateUtils.OPT_MANIFEST.equals(args[i]) || SudokuValidateUtils.OPT_QUIET.equals(args[i])
+					|| SudokuValidateUtils.OPT_PORT.equals(args[i]) || SudokuValidateUtils.OPT_WORKERS.equals(args[i])
+					|| SudokuValidateUtils.OPT_SHARD_SIZE.equals(args[i]) || SudokuValidateUtils.OPT_BIND.equals(args[i])
+					|| SudokuValidateUtils.OPT_VARIANT.equals(args[i]) || SudokuValidateUtils.OPT_TIMEOUT.equals(args[i])
+					|| SudokuValidateUtils.OPT_WORKER_LOG.equals(args[i])) {
+				i++;
+			} else if (!SudokuValidateUtils.OPT_GRID.equals(args[i]) && !SudokuValidateUtils.OPT_CORPUS.equals(args[i])
+					&& StringUtils.isNotBlank(args[i])) {
+				inputs.add(args[i]);
+			}
+		}
+		return inputs;
+	}
+
+	/**
+	 * @return the value following the given option, null if absent
+	 */
+	private static String optionValue(String[] args, String option) {
+		for (int i = 1; i + 1 < args.length; i++) {
+			if (option.equals(args[i])) {
+				return args[i + 1];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the geometry given by the box option, 9x9 if absent
+	 * @throws IllegalArgumentException  if the box size is not a number or not supported
+	 */
+	private static SudokuGeometry geometry(String[] args) {
+		String value = optionValue(args, SudokuValidateUtils.OPT_BOX);
+		if (value == null) {
+			return SudokuGeometry.STANDARD;
+		}
+		int box = NumberUtils.toInt(value, -1);
+		if (box < SudokuGeometry.MIN_BOX_SIZE || box > SudokuGeometry.MAX_BOX_SIZE) {
+			throw new IllegalArgumentException("Unsupported box size " + value);
+		}
+		return SudokuGeometry.of(box);
+	}
+
+	/**
+	 * @return the variant given by the variant option for the geometry given by the box option, classic if absent
+	 * @throws IllegalArgumentException  if the variant is unknown, cannot be read or does not fit the geometry
+	 */
+	private static SudokuVariant variant(String[] args) {
+		SudokuGeometry geometry = geometry(args);
+		String spec = optionValue(args, SudokuValidateUtils.OPT_VARIANT);
+		if (StringUtils.isBlank(spec)) {
+			return SudokuVariant.classic(geometry);
+		}
+		SudokuVariant variant;
+		try {
+			variant = SudokuVariant.parse(spec, geometry);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Unable to read the variant " + spec + ": " + e.getMessage(), e);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Variant " + spec + " does not fit " + geometry + " grids: " + e.getMessage(), e);
+		}
+		if (variant == null) {
+			throw new IllegalArgumentException("Unknown variant " + spec);
+		}
+		return variant;
+	}
+
+	/**
+	 * @return the validation policy given by the policy option, exhaustive if absent
+	 * @throws IllegalArgumentException  if the policy is unknown
+	 */
+	private static ValidationPolicy policy(String[] args) {
+		String name = optionValue(args, SudokuValidateUtils.OPT_POLICY);
+		if (name == null) {
+			return ValidationPolicy.EXHAUSTIVE;
+		}
+		ValidationPolicy policy = ValidationPolicy.parse(name);
+		if (policy == null) {
+			throw new IllegalArgumentException("Unknown validation policy " + name);
+		}
+		return policy;
+	}
+
+	private static SudokuResultSink openSink(String[] args) throws IOException {
+		String report = optionValue(args, SudokuValidateUtils.OPT_REPORT);
+		if (StringUtils.isBlank(report)) {
+			return null;
+		}
+		SudokuResultSink sink = SudokuResultSink.open(Paths.get(report));
+		sink.setIncludeGrid(ArrayUtils.contains(args, SudokuValidateUtils.OPT_GRID));
+		return sink;
+	}
+
+	private static void closeSink(SudokuResultSink sink) {
+		if (sink == null) {
+			return;
+		}
+		try {
+			sink.close();
+		} catch (IOException e) {
+			Log.LOGGER.error("Unable to write the report: " + e.getMessage());
+		}
+	}
+
+	private static void closeManifest(SudokuManifest manifest) {
+		if (manifest == null) {
+			return;
+		}
+		try {
+			manifest.close();
+		} catch (IOException e) {
+			Log.LOGGER.error("Unable to write the manifest: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Starts the HTTP validation service and stops it again when the JVM shuts down.<p>
+	 * (method made protected for testing purposes)
+	 * @param args  -server [-bind addr] [-port n] [-threads n]
+	 * @return the running server, null if it failed to start
+	 */
+	protected SudokuValidationServer sudokuServe(String[] args) {
+		int port = SudokuValidationServer.DEFAULT_PORT;
+		int threads = 0;
+		String bind = null;
+		for (int i = 1; i + 1 < args.length; i++) {
+			if (SudokuValidateUtils.OPT_PORT.equals(args[i])) {
+				port = NumberUtils.toInt(args[++i], port);
+			} else if (SudokuValidateUtils.OPT_THREADS.equals(args[i])) {
+				threads = NumberUtils.toInt(args[++i], 0);
+			} else if (SudokuValidateUtils.OPT_BIND.equals(args[i])) {
+				bind = args[++i];
+			}
+		}
+
+		final SudokuValidationServer server = new SudokuValidationServer(port, threads);
+		try {
+			if (StringUtils.isNotBlank(bind)) {
+				server.setBindAddress(InetAddress.getByName(bind));
+			}
+			server.start();
+		} catch (IOException e) {
+			Log.LOGGER.error("Unable to start the validation service on port " + port + ": " + e.getMessage());
+			return null;
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			public void run() {
+				server.stop(1);
+			}
+		}));
+		return server;
+	}
+
+	/**
+	 * Watches the directories following the watch option and validates every puzzle file dropped into them,
+	 * 		until the JVM shuts down.<p>
+	 * (method made protected for testing purposes)
+	 * @param args  -watch [-threads n] [-box n] [-variant v] [-policy p] [-quiet ms] [-report file [-grid]] dir ...
+	 * @return the running watcher, null if it failed to start
+	 */
+	protected SudokuDirectoryWatcher sudokuWatch(String[] args) {
+		final SudokuDirectoryWatcher watcher = new SudokuDirectoryWatcher(
+				NumberUtils.toInt(optionValue(args, SudokuValidateUtils.OPT_THREADS), 0));
+		watcher.setVariant(variant(args));
+		watcher.setValidationPolicy(policy(args));
+		watcher.setQuietMillis(NumberUtils.toLong(optionValue(args, SudokuValidateUtils.OPT_QUIET),
+				SudokuDirectoryWatcher.DEFAULT_QUIET_MILLIS));
+		for (String dir : inputs(args)) {
+			watcher.watch(Paths.get(dir));
+		}
+
+		final SudokuResultSink sink;
+		try {
+			sink = openSink(args);
+			watcher.setSink(sink);
+			watcher.start();
+		} catch (IOException e) {
+			Log.LOGGER.error("Unable to watch " + inputs(args) + ": " + e.getMessage());
+			return null;
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			public void run() {
+				try {
+					watcher.stop(1);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				closeSink(sink);
+				if (Log.LOGGER.isInfoEnabled()) {
+					Log.LOGGER.info(watcher.getSummary().toString());
+				}
+			}
+		}));
+		return watcher;
+	}
+
+	/**
+	 * Validates the structure and logical content of a single file.<br>
+	 * File access problems are reported as errors of the returned grid.
+	 * @param filename  the file to validate
+	 * @return grid SudokuGrid which may contain errors.
+	 */
+	protected static SudokuProposedSolution validateFile(String filename) {
+		return validateFile(filename, new SudokuProposedSolution());
+	}
+
+	/**
+	 * Same as {@link #validateFile(String)}, but validates into the given grid which is reset first.
+	 * @param filename  the file to validate
+	 * @param grid      the grid to reuse
+	 * @return grid the given grid, which may contain errors.
+	 */
+	protected static SudokuProposedSolution validateFile(String filename, SudokuProposedSolution grid) {
 		try{
-			FileReader rd = new FileReader(args[0]);
-			
-			// validate the proferred Sudoku solution file
-			grid = SudokuProposedSolution.validate(rd);
-			
+			FileInputStream in = new FileInputStream(filename);
+			try {
+				// validate the proferred Sudoku solution file
+				SudokuProposedSolution.validate(in.getChannel(), grid);
+			} finally {
+				in.close();
+			}
+
 		} catch (FileNotFoundException e) {
-			grid = new SudokuProposedSolution();
+			grid.reset();
 			grid.addErr(new ValidationError(ERR_CODE.MISSING_SUDOKU_FILE, e));
 		} catch (IOException e) {
-			grid = new SudokuProposedSolution();
+			grid.reset();
 			grid.addErr(new ValidationError(ERR_CODE.UNABLE_TO_READ_SUDOKU_FILE, e));
 		}
-		
-		printAnalysis(grid, args[0]);
+		return grid;
+	}
+
+	/**
+	 * Checks the values of the options that select how grids are validated.<p>
+	 * (method made protected for testing purposes)
+	 * @return false, after logging the reason, if an option value is unusable
+	 */
+	protected static boolean validateOptions(String[] args) {
+		try {
+			policy(args);
+			geometry(args);
+			variant(args);
+			return true;
+		} catch (IllegalArgumentException e) {
+			Log.LOGGER.error(e.getMessage());
+			return false;
+		}
 	}
 
 	protected static ERR_CODE validateInput(String[] args) {
@@ -95,29 +614,51 @@ public class SudokuValidate {
 		if (StringUtils.isBlank(args[0])){
 			return ERR_CODE.MISSING_SUDOKU_FILE;
 		}
-		
-		if (!StringUtils.endsWith(args[0], ".txt")){
+
+		if (SudokuValidateUtils.OPT_SERVER.equals(args[0])){
+			return null;
+		}
+
+		if (SudokuValidateUtils.OPT_BATCH.equals(args[0]) || SudokuValidateUtils.OPT_CORPUS.equals(args[0])
+				|| SudokuValidateUtils.OPT_WATCH.equals(args[0]) || SudokuValidateUtils.OPT_SHARD.equals(args[0])){
+			// at least one input besides the options is required
+			return inputs(args).isEmpty() ? ERR_CODE.MISSING_SUDOKU_FILE : null;
+		}
+
+		if (SudokuValidateUtils.OPT_WORKER.equals(args[0])){
+			// the address of the coordinator is required
+			return args.length > 1 && args[1].lastIndexOf(':') > 0 ? null : ERR_CODE.MISSING_SUDOKU_FILE;
+		}
+
+		if (!StringUtils.endsWith(args[0], SudokuValidateUtils.PUZZLE_FILE_EXTN) && !SudokuArchiveReader.isArchive(args[0])){
 			return ERR_CODE.WRONG_SUDOKU_FILENAME;
 		}
 		
 		return null;
 	}
 
-    private void printAnalysis(SudokuProposedSolution grid, String filename) {
+    private void printAnalysis(SudokuProposedSolution grid, String filename, boolean includeGrid) {
         // Print the grid with the givens
-    	if (LOGGER.isInfoEnabled()) {
+    	if (Log.LOGGER.isInfoEnabled()) {
+    		long start = SudokuMetrics.start();
 			StringBuilder sb = new StringBuilder();
 			sb.append("\n\n\t >>> filename: ").append(filename).append(" <<<\n");
-			sb.append("\n\t\t\t\tPuzzle Analysis:");
-			sb.append(grid).append("\n");
+			if (includeGrid) {
+				sb.append("\n\t\t\t\tPuzzle Analysis:");
+				sb.append(grid).append("\n");
+			}
 	        if (grid.isInError()){
 	        	for (ValidationError error : grid.getErrs()){
 	        		sb.append("\n\t !!! INVALID Grid !!! ").append(error.getError()).append("\n");
 	        	}
+	        	if (grid.getErrsDropped() > 0) {
+	        		sb.append("\n\t !!! INVALID Grid !!! ").append(grid.getErrsDropped()).append(" further errors not recorded\n");
+	        	}
 	        } else {
 	        	sb.append("\n\t\t\t VALID. Status Code: 0\n");
 	        }
-			LOGGER.info(sb.toString());
+			Log.LOGGER.info(sb.toString());
+			SudokuMetrics.stop(SudokuMetrics.Phase.REPORT, start);
 		}
     }
     
@@ -11,5 +11,55 @@ package com.uc.sudoku.validate;
  * @author Andrew Upton,  2011 Upton Consulting gmbh *
  */
 public class SudokuValidateUtils {
-	public static final String USAGE = "Usage: valdate.bat puzzleName.txt";
+	public static final String USAGE = "Usage: valdate.bat <puzzleName.txt|archive.zip|puzzleName.txt.gz> [-box n] [-variant v] [-policy p] [-nogrid]"
+			+ " | valdate.bat -batch [-threads n] [-box n] [-variant v] [-policy p] [-manifest file] [-report file [-grid]] <dir|glob|@fileList|puzzleName.txt|archive> ..."
+			+ " | valdate.bat -corpus [-box n] [-variant v] [-policy p] [-report file [-grid]] <corpusFile|packedFile> ..."
+			+ " | valdate.bat -server [-bind addr] [-port n] [-threads n]"
+			+ " | valdate.bat -watch [-threads n] [-box n] [-variant v] [-policy p] [-quiet ms] [-report file [-grid]] dir ..."
+			+ " | valdate.bat -shard [-workers n] [-threads n] [-box n] [-variant v] [-policy p] [-corpus] [-shardsize n] [-bind addr] [-port n] [-timeout s] [-workerlog dir] [-report file]"
+			+ " <dir|glob|@fileList|puzzleName.txt|archive|corpusFile> ..."
+			+ " | valdate.bat -worker host:port [-threads n]";
+
+	// command line options
+	public static final String OPT_BATCH = "-batch";
+	public static final String OPT_THREADS = "-threads";
+	public static final String OPT_CORPUS = "-corpus";
+	public static final String OPT_SERVER = "-server";
+	public static final String OPT_PORT = "-port";
+	public static final String OPT_WATCH = "-watch";
+	// the time without changes to a watched file before it is validated
+	public static final String OPT_QUIET = "-quiet";
+	// writes one record per grid to a JSON lines or, for '*.csv', a CSV file
+	public static final String OPT_REPORT = "-report";
+	// includes the digits of each grid in the report
+	public static final String OPT_GRID = "-grid";
+	// leaves the grid out of the analysis of a single file
+	public static final String OPT_NO_GRID = "-nogrid";
+	// the subgrid size of the grids, e.g. 4 for 16x16 grids, 3 by default
+	public static final String OPT_BOX = "-box";
+	// the rules of a Sudoku variant joined by '+', e.g. diagonal+windoku or jigsaw=layout.txt, see SudokuVariant
+	public static final String OPT_VARIANT = "-variant";
+	// fail_fast, first_per_category or exhaustive, see ValidationPolicy
+	public static final String OPT_POLICY = "-policy";
+	// keeps the outcomes of a batch run for the next one, which only validates changed files, see SudokuManifest
+	public static final String OPT_MANIFEST = "-manifest";
+	// splits a batch or corpus run into shards validated by worker processes, see SudokuShardCoordinator
+	public static final String OPT_SHARD = "-shard";
+	// validates the shards of the coordinator at the given address, see SudokuShardWorker
+	public static final String OPT_WORKER = "-worker";
+	// the number of worker processes a coordinator starts on this machine
+	public static final String OPT_WORKERS = "-workers";
+	// the number of files per shard
+	public static final String OPT_SHARD_SIZE = "-shardsize";
+	// the interface the server accepts clients on, or a coordinator workers, loopback by default
+	public static final String OPT_BIND = "-bind";
+	// the seconds a coordinator waits for a worker validating a shard to send something, 0 for no limit
+	public static final String OPT_TIMEOUT = "-timeout";
+	// the directory a coordinator's worker processes log to, their output is discarded otherwise
+	public static final String OPT_WORKER_LOG = "-workerlog";
+
+	// prefix marking a file that lists one puzzle file per line
+	public static final String FILE_LIST_PREFIX = "@";
+
+	public static final String PUZZLE_FILE_EXTN = ".txt";
 }
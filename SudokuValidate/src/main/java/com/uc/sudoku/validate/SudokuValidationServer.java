@@ -0,0 +1,217 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuValidationServer
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Long-running validation service on the JDK's built-in HTTP server.<p>
+ * Clients POST a grid in the usual comma-separated format to {@value #CONTEXT} and receive the outcome as JSON:
+ * <pre>
+ * {"valid":false,"status":3001,"errors":[{"status":3001,"row":1,"col":2,"value":"5"}]}
+ * </pre>
+ * where status is 0 for a valid grid and the status code of the first error otherwise. Rows and columns are reported
+ * 		as in {@link ValidationError}, values are only given for errors naming an offending digit or character.
+ * 		Grids are validated exhaustively unless the request names another {@link ValidationPolicy}, as in
+ * 		<code>/validate?policy=fail_fast</code>; an unknown policy is rejected with 400.
+ * <p>
+ * Requests are handled by a bounded pool of platform threads, each validating into its own reusable grid and body buffer,
+ * 		so that a request allocates little more than its response. Once the queue is full the server's dispatcher thread
+ * 		handles the request itself, which stops it accepting connections until the load has eased.
+ * 		Bodies larger than {@value #MAX_BODY_SIZE} bytes are rejected with 413.
+ * <p>
+ * The service does not authenticate its clients and therefore listens on the loopback interface only,
+ * 		unless another is set with {@link #setBindAddress(InetAddress)}, e.g. behind a proxy that does.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public class SudokuValidationServer {
+
+	private static Logger LOGGER = Logger.getLogger(SudokuValidationServer.class);
+
+	public static final String CONTEXT = "/validate";
+
+	public static final int DEFAULT_PORT = 8080;
+
+	public static final int MAX_BODY_SIZE = 64 * 1024;
+
+	private static final int QUEUE_PER_THREAD = 64;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final int port;
+
+	private final int threads;
+
+	private InetAddress bindAddress = InetAddress.getLoopbackAddress();
+
+	private HttpServer server;
+
+	private ThreadPoolExecutor executor;
+
+	// per handler thread: the grid validated into and the request body
+	private final ThreadLocal<SudokuProposedSolution> grids = new ThreadLocal<SudokuProposedSolution>() {
+		@Override
+		protected SudokuProposedSolution initialValue() {
+			return new SudokuProposedSolution();
+		}
+	};
+
+	private final ThreadLocal<byte[]> bodies = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[MAX_BODY_SIZE + 1];
+		}
+	};
+
+	/**
+	 * @param port     the port to listen on, 0 for any free port
+	 * @param threads  the number of handler threads, 0 for one per available processor
+	 */
+	public SudokuValidationServer(int port, int threads) {
+		this.port = port;
+		this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+	}
+
+	public synchronized void start() throws IOException {
+		executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(threads * QUEUE_PER_THREAD), new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+
+					public Thread newThread(Runnable r) {
+						return new Thread(r, "sudoku-http-" + count.incrementAndGet());
+					}
+				}, new ThreadPoolExecutor.CallerRunsPolicy());
+		server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+		server.createContext(CONTEXT, new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					handleValidate(exchange);
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+		server.setExecutor(executor);
+		server.start();
+		if (LOGGER.isInfoEnabled()) {
+			LOGGER.info("Listening on " + bindAddress.getHostAddress() + ":" + getPort() + " with " + threads + " threads");
+		}
+	}
+
+	/**
+	 * Stops accepting requests and waits up to the given delay for the running ones to complete.
+	 */
+	public synchronized void stop(int delaySeconds) {
+		if (server != null) {
+			server.stop(delaySeconds);
+			executor.shutdown();
+			server = null;
+		}
+	}
+
+	/**
+	 * @return the port listened on, which is only known after {@link #start()} if started on port 0
+	 */
+	public int getPort() {
+		return server != null ? server.getAddress().getPort() : port;
+	}
+
+	public InetAddress getBindAddress() {
+		return bindAddress;
+	}
+
+	/**
+	 * @param bindAddress  the interface to listen on, the loopback interface by default. Must be set before {@link #start()}.
+	 */
+	public void setBindAddress(InetAddress bindAddress) {
+		this.bindAddress = bindAddress;
+	}
+
+	private void handleValidate(HttpExchange exchange) throws IOException {
+		if (!"POST".equals(exchange.getRequestMethod())) {
+			exchange.getResponseHeaders().set("Allow", "POST");
+			exchange.sendResponseHeaders(405, -1);
+			return;
+		}
+
+		ValidationPolicy policy = policy(exchange.getRequestURI().getRawQuery());
+		if (policy == null) {
+			exchange.sendResponseHeaders(400, -1);
+			return;
+		}
+
+		byte[] body = bodies.get();
+		int len = readBody(exchange.getRequestBody(), body);
+		if (len > MAX_BODY_SIZE) {
+			exchange.sendResponseHeaders(413, -1);
+			return;
+		}
+
+		SudokuProposedSolution grid = grids.get();
+		grid.setValidationPolicy(policy);
+		SudokuProposedSolution.validate(ByteBuffer.wrap(body, 0, len), grid);
+		long start = SudokuMetrics.start();
+		byte[] response = toJson(grid).getBytes(UTF8);
+		SudokuMetrics.stop(SudokuMetrics.Phase.REPORT, start);
+
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+		exchange.sendResponseHeaders(200, response.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(response);
+		out.close();
+	}
+
+	// the policy parameter of a query string, exhaustive if absent and null if unknown
+	static ValidationPolicy policy(String query) {
+		if (query != null) {
+			for (String param : query.split("&")) {
+				if (param.startsWith("policy=")) {
+					return ValidationPolicy.parse(param.substring("policy=".length()));
+				}
+			}
+		}
+		return ValidationPolicy.EXHAUSTIVE;
+	}
+
+	// reads at most one byte beyond the maximum size, so that oversized bodies are recognised
+	private static int readBody(InputStream in, byte[] body) throws IOException {
+		int len = 0, n;
+		while (len < body.length && (n = in.read(body, len, body.length - len)) > 0) {
+			len += n;
+		}
+		return len;
+	}
+
+	/**
+	 * Renders the outcome of a validated grid as a JSON object, see {@link SudokuJsonLinesSink}.
+	 */
+	static String toJson(SudokuProposedSolution grid) {
+		StringBuilder sb = new StringBuilder(64 + grid.getErrCount() * 48);
+		sb.append('{');
+		SudokuJsonLinesSink.appendOutcome(grid, sb);
+		sb.append('}');
+		return sb.toString();
+	}
+}
@@ -0,0 +1,231 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuVariant
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * The units of a Sudoku variant, compiled from its {@link SudokuRule}s into flat cell to unit tables.<p>
+ * Every cell lies in exactly one row, one column and one region, the subgrids of the geometry unless a rule
+ * 		replaces them, see {@link SudokuRule#regions(SudokuGeometry)}. The region of each cell is kept in a table
+ * 		like the rows and columns of the geometry. The units added by the rules, e.g. the diagonals, are numbered
+ * 		from 0 and listed per cell in a single array: the units of cell <code>loc</code> are
+ * 		<code>unitOf[unitStart[loc]]</code> up to, not including, <code>unitOf[unitStart[loc + 1]]</code>.
+ * 		Setting a number thus costs one mask update per unit of the cell, however many rules are active,
+ * 		and classic grids have no added units at all.
+ * <p>
+ * Variants are immutable and may be shared by any number of grids; compile them once with {@link #of(SudokuGeometry, SudokuRule...)}.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public final class SudokuVariant {
+
+	public static final String CLASSIC = "classic";
+
+	// separates the rule names of a variant, see parse()
+	public static final String RULE_SEPARATOR = "+";
+
+	// prefix of a jigsaw layout file, see parse()
+	public static final String JIGSAW_PREFIX = "jigsaw=";
+
+	private static final SudokuVariant[] CLASSICS = new SudokuVariant[SudokuGeometry.MAX_BOX_SIZE + 1];
+
+	static {
+		for (int n = SudokuGeometry.MIN_BOX_SIZE; n <= SudokuGeometry.MAX_BOX_SIZE; n++) {
+			CLASSICS[n] = new SudokuVariant(SudokuGeometry.of(n), Collections.<SudokuRule>emptyList());
+		}
+	}
+
+	/** Classic 9x9 Sudoku */
+	public static final SudokuVariant STANDARD = CLASSICS[3];
+
+	private final SudokuGeometry geometry;
+
+	private final List<SudokuRule> rules;
+
+	private final String name;
+
+	// the region of each cell, the subgrids of the geometry unless replaced by a rule
+	final byte[] boxOf;
+
+	// the added units of each cell, see the class comment
+	final int[] unitStart;
+
+	final int[] unitOf;
+
+	private final int unitCount;
+
+	private SudokuVariant(SudokuGeometry geometry, List<SudokuRule> rules) {
+		this.geometry = geometry;
+		this.rules = rules;
+		int count = geometry.getCellCount();
+
+		byte[] regions = geometry.boxOf;
+		List<int[]> units = new ArrayList<int[]>();
+		StringBuilder sb = new StringBuilder();
+		for (SudokuRule rule : rules) {
+			int[] ruleRegions = rule.regions(geometry);
+			if (ruleRegions != null) {
+				if (regions != geometry.boxOf) {
+					throw new IllegalArgumentException("Rules " + rules + " replace the subgrids twice");
+				}
+				regions = compileRegions(rule, ruleRegions);
+			}
+			for (int[] unit : rule.units(geometry)) {
+				checkUnit(rule, unit);
+				units.add(unit);
+			}
+			sb.append(sb.length() > 0 ? RULE_SEPARATOR : "").append(rule.getName());
+		}
+		this.name = rules.isEmpty() ? CLASSIC : sb.toString();
+		this.boxOf = regions;
+		this.unitCount = units.size();
+
+		// count the units of each cell, then fill them in unit order
+		unitStart = new int[count + 1];
+		for (int[] unit : units) {
+			for (int loc : unit) {
+				unitStart[loc + 1] ++;
+			}
+		}
+		for (int loc = 0; loc < count; loc++) {
+			unitStart[loc + 1] += unitStart[loc];
+		}
+		unitOf = new int[unitStart[count]];
+		int[] next = Arrays.copyOf(unitStart, count);
+		for (int u = 0; u < units.size(); u++) {
+			for (int loc : units.get(u)) {
+				unitOf[next[loc]++] = u;
+			}
+		}
+	}
+
+	/**
+	 * @return the classic variant of the geometry, rows, columns and subgrids only
+	 */
+	public static SudokuVariant classic(SudokuGeometry geometry) {
+		return CLASSICS[geometry.getBoxSize()];
+	}
+
+	/**
+	 * Compiles the rules of a variant.
+	 *
+	 * @param geometry  the geometry of the grids
+	 * @param rules     the rules, none for the classic variant
+	 * @throws IllegalArgumentException  if a unit or region does not hold as many distinct cells as the grid has columns,
+	 * 		or more than one rule replaces the subgrids
+	 */
+	public static SudokuVariant of(SudokuGeometry geometry, SudokuRule... rules) {
+		if (rules.length == 0) {
+			return classic(geometry);
+		}
+		return new SudokuVariant(geometry, Collections.unmodifiableList(Arrays.asList(rules.clone())));
+	}
+
+	/**
+	 * Compiles a variant given by the names of its rules joined by {@value #RULE_SEPARATOR}, e.g. <code>diagonal+windoku</code>.
+	 * 		Besides the built-in rules, see {@link SudokuRule#parse(String)}, <code>jigsaw=file</code> reads the regions
+	 * 		of a jigsaw Sudoku, see {@link SudokuRule#jigsaw(java.nio.file.Path, SudokuGeometry)}.
+	 *
+	 * @return the variant, null if a rule is unknown
+	 * @throws IOException  if a jigsaw layout cannot be read
+	 * @throws IllegalArgumentException  if the rules do not fit the geometry
+	 */
+	public static SudokuVariant parse(String spec, SudokuGeometry geometry) throws IOException {
+		List<SudokuRule> rules = new ArrayList<SudokuRule>();
+		for (String name : StringUtils.split(spec, RULE_SEPARATOR)) {
+			name = name.trim();
+			SudokuRule rule;
+			if (CLASSIC.equalsIgnoreCase(name)) {
+				continue;
+			} else if (StringUtils.startsWithIgnoreCase(name, JIGSAW_PREFIX)) {
+				rule = SudokuRule.jigsaw(Paths.get(name.substring(JIGSAW_PREFIX.length())), geometry);
+			} else if ((rule = SudokuRule.parse(name)) == null) {
+				return null;
+			}
+			rules.add(rule);
+		}
+		return of(geometry, rules.toArray(new SudokuRule[rules.size()]));
+	}
+
+	private byte[] compileRegions(SudokuRule rule, int[] regions) {
+		int side = geometry.getSide();
+		if (regions.length != geometry.getCellCount()) {
+			throw new IllegalArgumentException(rule + ": " + regions.length + " regions for " + geometry.getCellCount() + " cells");
+		}
+		byte[] table = new byte[regions.length];
+		int[] sizes = new int[side];
+		for (int loc = 0; loc < regions.length; loc++) {
+			if (regions[loc] < 0 || regions[loc] >= side) {
+				throw new IllegalArgumentException(rule + ": invalid region " + regions[loc] + " of cell " + loc);
+			}
+			sizes[regions[loc]] ++;
+			table[loc] = (byte) regions[loc];
+		}
+		for (int region = 0; region < side; region++) {
+			if (sizes[region] != side) {
+				throw new IllegalArgumentException(rule + ": region " + region + " holds " + sizes[region] + " cells");
+			}
+		}
+		return table;
+	}
+
+	private void checkUnit(SudokuRule rule, int[] unit) {
+		int side = geometry.getSide();
+		if (unit.length != side) {
+			throw new IllegalArgumentException(rule + ": a unit of " + unit.length + " cells");
+		}
+		boolean[] seen = new boolean[geometry.getCellCount()];
+		for (int loc : unit) {
+			if (loc < 0 || loc >= seen.length || seen[loc]) {
+				throw new IllegalArgumentException(rule + ": invalid or repeated cell " + loc);
+			}
+			seen[loc] = true;
+		}
+	}
+
+	// JavaBean accessors
+	public SudokuGeometry getGeometry() {
+		return geometry;
+	}
+
+	public List<SudokuRule> getRules() {
+		return rules;
+	}
+
+	/**
+	 * @return the names of the rules joined by {@value #RULE_SEPARATOR}, {@value #CLASSIC} if there are none
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the number of units added by the rules to the rows, columns and regions
+	 */
+	public int getUnitCount() {
+		return unitCount;
+	}
+
+	/**
+	 * @return true if the grids have their rows, columns and subgrids only
+	 */
+	public boolean isClassic() {
+		return rules.isEmpty();
+	}
+
+	public String toString() {
+		return geometry + " " + name;
+	}
+}
@@ -6,12 +6,17 @@
 package com.uc.sudoku.validate;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
 
 /**
  * Convenience class holding the validation error enum and supporting data, if any
  * @author Andrew Upton,  2011 Upton Consulting gmbh
  */
 public class ValidationError {
+
+	// ERR_CODE.values() clones the array on every call
+	private static final ERR_CODE[] CODES = ERR_CODE.values();
+
 	private ERR_CODE errCode;
 	private int row = -1;
 	private int col = -1;
@@ -55,6 +60,10 @@ public class ValidationError {
 	public String getBadValue() {
 		return badValue;
 	}
+
+	public Exception getException() {
+		return e;
+	}
 	
 	public String getError(){
 		StringBuilder sb = new StringBuilder();
@@ -65,4 +74,75 @@ public class ValidationError {
 		if (e != null) sb.append("\n").append(e.getStackTrace());
 		return sb.toString();
 	}
+
+	/**
+	 * Packs an error into a single int so that grids can record errors without creating objects.<br>
+	 * Layout: | code (8 bits) | row + 1 (8 bits) | col + 1 (8 bits) | bad value (8 bits) |.
+	 * Rows and columns are clamped to [-1, 254]; characters beyond ISO-8859-1 are stored as '?'.
+	 *
+	 * @param code   the error
+	 * @param row    the row, -1 if unknown
+	 * @param col    the column, -1 if unknown
+	 * @param value  the offending digit (NUMBER_ALREADY_USED) or character, 0 if none
+	 */
+	static int pack(ERR_CODE code, int row, int col, int value) {
+		if (value > 0xFF) {
+			value = '?';
+		}
+		return code.ordinal() << 24 | clamp(row + 1) << 16 | clamp(col + 1) << 8 | value;
+	}
+
+	static ERR_CODE codeOf(int packed) {
+		return CODES[packed >>> 24];
+	}
+
+	static int rowOf(int packed) {
+		return ((packed >>> 16) & 0xFF) - 1;
+	}
+
+	static int colOf(int packed) {
+		return ((packed >>> 8) & 0xFF) - 1;
+	}
+
+	static int valueOf(int packed) {
+		return packed & 0xFF;
+	}
+
+	/**
+	 * The packable form of a bad value as passed to the constructors
+	 */
+	static int valueOf(ERR_CODE code, String badValue) {
+		if (StringUtils.isEmpty(badValue)) {
+			return 0;
+		}
+		if (code == ERR_CODE.NUMBER_ALREADY_USED) {
+			return NumberUtils.toInt(badValue, badValue.charAt(0));
+		}
+		return badValue.charAt(0);
+	}
+
+	/**
+	 * Renders a packed error as an object.
+	 *
+	 * @param packed  the packed error
+	 * @param e       the exception behind the error, only used for errors without a row
+	 */
+	static ValidationError unpack(int packed, Exception e) {
+		ERR_CODE code = codeOf(packed);
+		int row = rowOf(packed);
+		int value = valueOf(packed);
+		if (row < 0 && e != null) {
+			return new ValidationError(code, e);
+		}
+
+		ValidationError err = new ValidationError(code, row, colOf(packed));
+		if (value != 0) {
+			err.badValue = code == ERR_CODE.NUMBER_ALREADY_USED ? String.valueOf(value) : Character.toString((char) value);
+		}
+		return err;
+	}
+
+	private static int clamp(int i) {
+		return i < 0 ? 0 : i > 0xFF ? 0xFF : i;
+	}
 }
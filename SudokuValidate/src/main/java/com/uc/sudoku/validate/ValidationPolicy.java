@@ -0,0 +1,38 @@
+////////////////////////////////////////////////////////////
+/// Class:     ValidationPolicy
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate;
+
+/**
+ * How much of a grid is validated once an error has been found, see {@link SudokuProposedSolution#setValidationPolicy(ValidationPolicy)}.<p>
+ * Structural errors such as a missing row always end the validation. Duplicate digits and invalid characters
+ * 		leave the structure intact, so that validation may carry on and find further errors.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public enum ValidationPolicy {
+
+	/** stops at the first error of any kind, for callers needing no more than valid or invalid */
+	FAIL_FAST,
+
+	/** carries on after an error but records only the first error of each category of {@link ERR_CODE}: file, structure and logic */
+	FIRST_PER_CATEGORY,
+
+	/** carries on after an error and records every error, the default */
+	EXHAUSTIVE;
+
+	/**
+	 * @return the policy of the given name in any case, null if there is none
+	 */
+	public static ValidationPolicy parse(String name) {
+		for (ValidationPolicy policy : values()) {
+			if (policy.name().equalsIgnoreCase(name)) {
+				return policy;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,4 @@
+echo Starting Sudoku Pack Converter by Upton Consulting gmbh ...
+echo off
+java -cp bin/SudokuValidate-1.0.0.jar com.uc.sudoku.validate.SudokuPackConverter %*
+echo on
\ No newline at end of file
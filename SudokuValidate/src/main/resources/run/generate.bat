@@ -0,0 +1,4 @@
+echo Starting Sudoku Grid Generator by Upton Consulting gmbh ...
+echo off
+java -cp bin/SudokuValidate-1.0.0.jar com.uc.sudoku.validate.SudokuGridGenerator %*
+echo on
\ No newline at end of file
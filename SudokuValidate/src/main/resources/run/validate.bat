@@ -1,4 +1,4 @@
 echo Starting Sudoku Validator by Upton Consulting gmbh ...
 echo off
-java -jar bin/SudokuValidate-1.0.0.jar %1
+java -jar bin/SudokuValidate-1.0.0.jar %*
 echo on
\ No newline at end of file
@@ -0,0 +1,337 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuBatchValidateTest
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+package com.uc.sudoku.validate;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.junit.Test;
+
+
+public class SudokuBatchValidateTest extends TestCase{
+
+	private static Logger LOGGER = Logger.getLogger(SudokuBatchValidateTest.class);
+
+	private static final String FIXTURE_DIR = "src/test/java/com/uc/sudoku/validate";
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		DOMConfigurator.configure("src/test/resources/config/log4j.xml");
+	}
+
+	@Test
+	public void testMissingBatchInput() throws Exception {
+		String [] args = {"-batch", "-threads", "4"};
+		ERR_CODE err = SudokuValidate.validateInput( args );
+		Assert.assertEquals(ERR_CODE.MISSING_SUDOKU_FILE.getStatusCode(), err.getStatusCode());
+
+		args = new String[] {"-batch", FIXTURE_DIR};
+		Assert.assertNull(SudokuValidate.validateInput( args ));
+	}
+
+	/**
+	 * Validates all fixtures of the test directory in one run
+	 * @throws Exception
+	 */
+	@Test
+	public void testBatchDirectory() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testBatchDirectory() with directory: " + FIXTURE_DIR);
+			}
+
+			String [] args = {"-batch", "-threads", "3", FIXTURE_DIR};
+			SudokuBatchSummary summary = new SudokuValidate().sudokuBatchValidate(args);
+			Assert.assertNotNull(summary);
+			Assert.assertEquals(10, summary.getTotal());
+			Assert.assertEquals(2, summary.getValid());
+			Assert.assertEquals(8, summary.getInvalid());
+			Assert.assertEquals(1, summary.getErrCount(ERR_CODE.INVALID_SUDOKU_FILEFORMAT));
+			Assert.assertEquals(2, summary.getErrCount(ERR_CODE.MISSING_DIGITS_IN_ROW));
+			Assert.assertEquals(1, summary.getErrCount(ERR_CODE.TOO_MANY_DIGITS_IN_ROW));
+			Assert.assertEquals(1, summary.getErrCount(ERR_CODE.INVALID_CHARACTERS_IN_ROW));
+			Assert.assertEquals(1, summary.getErrCount(ERR_CODE.NOT_ENOUGH_ROWS_IN_GRID));
+			Assert.assertEquals(1, summary.getErrCount(ERR_CODE.TOO_MANY_ROWS_IN_GRID));
+			Assert.assertEquals(2, summary.getErrCount(ERR_CODE.NUMBER_ALREADY_USED));
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testBatchDirectory()");
+			}
+		}
+	}
+
+	@Test
+	public void testBatchGlobAndFileList() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testBatchGlobAndFileList()");
+			}
+
+			SudokuBatchSummary summary = new SudokuBatchValidate(2).validate(FIXTURE_DIR + "/ok*.txt");
+			Assert.assertEquals(2, summary.getTotal());
+			Assert.assertEquals(2, summary.getValid());
+
+			File list = File.createTempFile("puzzles", ".lst");
+			list.deleteOnExit();
+			FileWriter wr = new FileWriter(list);
+			try {
+				wr.write(FIXTURE_DIR + "/okPuzzle.txt\n");
+				wr.write("\n");
+				wr.write(FIXTURE_DIR + "/badPuzzle.txt\n");
+				wr.write(FIXTURE_DIR + "/doesNotExist.txt\n");
+			} finally {
+				wr.close();
+			}
+
+			summary = new SudokuBatchValidate(2).validate("@" + list.getPath());
+			Assert.assertEquals(3, summary.getTotal());
+			Assert.assertEquals(1, summary.getValid());
+			Assert.assertEquals(1, summary.getErrCount(ERR_CODE.NUMBER_ALREADY_USED));
+			Assert.assertEquals(1, summary.getErrCount(ERR_CODE.MISSING_SUDOKU_FILE));
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testBatchGlobAndFileList()");
+			}
+		}
+	}
+
+	/**
+	 * Validates the fixtures packed into a zip archive, one of them also gzipped, without extracting them
+	 * @throws Exception
+	 */
+	@Test
+	public void testBatchArchives() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testBatchArchives()");
+			}
+
+			File dir = Files.createTempDirectory("archives").toFile();
+			File zip = new File(dir, "fixtures.zip");
+			ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip));
+			try {
+				for (File fixture : new File(FIXTURE_DIR).listFiles()) {
+					if (fixture.getName().endsWith(".txt")) {
+						out.putNextEntry(new ZipEntry(fixture.getName()));
+						out.write(Files.readAllBytes(fixture.toPath()));
+					}
+				}
+				out.putNextEntry(new ZipEntry("nested/"));
+				out.putNextEntry(new ZipEntry("nested/okPuzzle.txt"));
+				out.write(Files.readAllBytes(Paths.get(FIXTURE_DIR, "okPuzzle.txt")));
+				out.putNextEntry(new ZipEntry("README"));
+				out.write("not a puzzle".getBytes());
+			} finally {
+				out.close();
+			}
+			GZIPOutputStream gz = new GZIPOutputStream(new FileOutputStream(new File(dir, "badPuzzle.txt.gz")));
+			try {
+				gz.write(Files.readAllBytes(Paths.get(FIXTURE_DIR, "badPuzzle.txt")));
+			} finally {
+				gz.close();
+			}
+			FileWriter wr = new FileWriter(new File(dir, "broken.zip"));
+			try {
+				wr.write("not a zip archive");
+			} finally {
+				wr.close();
+			}
+
+			SudokuArchiveReader rd = SudokuArchiveReader.open(zip.toPath());
+			List<String> sources = new ArrayList<String>();
+			try {
+				while (rd.hasNext()) {
+					SudokuProposedSolution grid = rd.next();
+					sources.add(rd.getSource());
+					Assert.assertEquals(rd.getEntryName(), rd.getEntryName().endsWith("okPuzzle.txt")
+							|| rd.getEntryName().equals("okPuzzle_2.txt"), !grid.isInError());
+				}
+			} finally {
+				rd.close();
+			}
+			Assert.assertEquals(11, sources.size());
+			Assert.assertTrue(sources.contains(zip.getPath() + "!/nested/okPuzzle.txt"));
+
+			SudokuBatchSummary summary = new SudokuBatchValidate(3).validate(dir.getPath());
+			Assert.assertEquals(13, summary.getTotal());
+			Assert.assertEquals(3, summary.getValid());
+			Assert.assertEquals(3, summary.getErrCount(ERR_CODE.NUMBER_ALREADY_USED));
+			Assert.assertEquals(1, summary.getErrCount(ERR_CODE.INVALID_SUDOKU_FILEFORMAT));
+			Assert.assertEquals(1, summary.getErrCount(ERR_CODE.UNABLE_TO_READ_SUDOKU_FILE));
+
+			summary = new SudokuBatchValidate(2).validate(dir.getPath() + "/missing.zip", dir.getPath() + "/missing.txt.gz");
+			Assert.assertEquals(2, summary.getErrCount(ERR_CODE.MISSING_SUDOKU_FILE));
+
+			String [] args = {zip.getPath()};
+			Assert.assertNull(SudokuValidate.validateInput( args ));
+
+			// entries beyond the maximum size are not inflated further, blanks alone do not end the parsing
+			File bombs = Files.createTempDirectory("bombs").toFile();
+			byte[] blanks = new byte[SudokuArchiveReader.MAX_ENTRY_SIZE + 1];
+			Arrays.fill(blanks, (byte) ' ');
+			out = new ZipOutputStream(new FileOutputStream(new File(bombs, "bomb.zip")));
+			try {
+				out.putNextEntry(new ZipEntry("bomb.txt"));
+				out.write(blanks);
+				out.putNextEntry(new ZipEntry("okPuzzle.txt"));
+				out.write(Files.readAllBytes(Paths.get(FIXTURE_DIR, "okPuzzle.txt")));
+			} finally {
+				out.close();
+			}
+			gz = new GZIPOutputStream(new FileOutputStream(new File(bombs, "bomb.txt.gz")));
+			try {
+				gz.write(blanks);
+			} finally {
+				gz.close();
+			}
+			summary = new SudokuBatchValidate(2).validate(bombs.getPath());
+			Assert.assertEquals(3, summary.getTotal());
+			Assert.assertEquals(1, summary.getValid());
+			Assert.assertEquals(2, summary.getErrCount(ERR_CODE.UNABLE_TO_READ_SUDOKU_FILE));
+
+			// an entry of exactly the maximum size is read to its end
+			gz = new GZIPOutputStream(new FileOutputStream(new File(bombs, "bomb.txt.gz")));
+			try {
+				gz.write(blanks, 1, blanks.length - 1);
+			} finally {
+				gz.close();
+			}
+			// and only the errors the grid has room for are logged
+			final AtomicInteger logged = new AtomicInteger();
+			AppenderSkeleton counter = new AppenderSkeleton() {
+				@Override
+				protected void append(LoggingEvent event) {
+					logged.incrementAndGet();
+				}
+
+				public boolean requiresLayout() {
+					return false;
+				}
+
+				public void close() {
+				}
+			};
+			Logger.getLogger(SudokuGridParser.class).addAppender(counter);
+			rd = SudokuArchiveReader.open(new File(bombs, "bomb.txt.gz").toPath());
+			try {
+				SudokuProposedSolution grid = rd.next();
+				Assert.assertTrue(ERR_CODE.UNABLE_TO_READ_SUDOKU_FILE != grid.getErrCode(0));
+				Assert.assertTrue(grid.getErrsDropped() > 0);
+				Assert.assertEquals(grid.getErrCount(), logged.get());
+			} finally {
+				rd.close();
+				Logger.getLogger(SudokuGridParser.class).removeAppender(counter);
+			}
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testBatchArchives()");
+			}
+		}
+	}
+
+	/**
+	 * Runs the same batch twice, changing its variant and policy in between, and expects the thread walking the inputs
+	 * 		to validate the files it takes over from the busy pool with the new ones
+	 * @throws Exception
+	 */
+	@Test
+	public void testChangedVariant() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testChangedVariant()");
+			}
+
+			File dir = Files.createTempDirectory("batch").toFile();
+			for (int i = 0; i < 70; i++) {
+				File copy = new File(dir, "ok" + i + ".txt");
+				copy.deleteOnExit();
+				Files.copy(Paths.get(FIXTURE_DIR, "okPuzzle.txt"), copy.toPath());
+			}
+			dir.deleteOnExit();
+
+			SudokuBatchValidate batch = new SudokuBatchValidate(1);
+			CallerSink sink = new CallerSink();
+			batch.setSink(sink);
+			batch.validate(dir.getPath());
+			Assert.assertFalse(sink.outcomes.isEmpty());
+			for (String outcome : sink.outcomes) {
+				Assert.assertEquals("classic EXHAUSTIVE VALID", outcome);
+			}
+
+			batch.setVariant(SudokuVariant.of(SudokuGeometry.STANDARD, SudokuRule.DIAGONALS));
+			batch.setValidationPolicy(ValidationPolicy.FAIL_FAST);
+			sink = new CallerSink();
+			batch.setSink(sink);
+			batch.validate(dir.getPath());
+			Assert.assertFalse(sink.outcomes.isEmpty());
+			for (String outcome : sink.outcomes) {
+				Assert.assertEquals("diagonal FAIL_FAST NUMBER_ALREADY_USED", outcome);
+			}
+			Assert.assertEquals(140, batch.getSummary().getTotal());
+			Assert.assertEquals(70, batch.getSummary().getValid());
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testChangedVariant()");
+			}
+		}
+	}
+
+	/**
+	 * Records the outcomes of the files validated by the thread creating it, holding up the pool until there is one
+	 */
+	private static class CallerSink extends SudokuJsonLinesSink {
+
+		private final Thread caller = Thread.currentThread();
+
+		private final CountDownLatch callerRan = new CountDownLatch(1);
+
+		final List<String> outcomes = Collections.synchronizedList(new ArrayList<String>());
+
+		CallerSink() {
+			super(new StringWriter());
+		}
+
+		@Override
+		public void write(String source, SudokuProposedSolution grid) {
+			if (Thread.currentThread() == caller) {
+				outcomes.add(grid.getVariant().getName() + " " + grid.getValidationPolicy()
+						+ (grid.isInError() ? " " + grid.getErrCode(0).name() : " VALID"));
+				callerRan.countDown();
+			} else {
+				try {
+					Assert.assertTrue(callerRan.await(10, TimeUnit.SECONDS));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+}
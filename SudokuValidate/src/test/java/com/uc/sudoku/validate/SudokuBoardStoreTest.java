@@ -0,0 +1,235 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuBoardStoreTest
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+package com.uc.sudoku.validate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.apache.log4j.Logger;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.junit.Test;
+
+
+public class SudokuBoardStoreTest extends TestCase{
+
+	private static Logger LOGGER = Logger.getLogger(SudokuBoardStoreTest.class);
+
+	private static final int THREADS = 8;
+
+	private static final String OK_LINE = "185436297437592816692817345376289451214375968958641732863124579721953684549768123";
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		DOMConfigurator.configure("src/test/resources/config/log4j.xml");
+	}
+
+	@Test
+	public void testSessions() throws Exception {
+		SudokuBoardStore store = new SudokuBoardStore(100);
+		Assert.assertEquals(128, store.getStripes());
+
+		SudokuSharedBoard board = store.open("alice");
+		Assert.assertSame(board, store.open("alice"));
+		Assert.assertSame(board, store.get("alice"));
+		Assert.assertNull(store.get("bob"));
+		Assert.assertNotSame(board, store.open("bob", SudokuGeometry.of(4)));
+		Assert.assertEquals(2, store.size());
+
+		Assert.assertTrue(board.set(0, 5));
+		Assert.assertFalse(board.set(1, 5));
+		Assert.assertEquals(SudokuProposedSolution.CONFLICT_ROW | SudokuProposedSolution.CONFLICT_SUBGRID, board.conflicts(1, 5));
+		Assert.assertTrue(board.replace(0, 6));
+		Assert.assertTrue(board.set(1, 5));
+		Assert.assertFalse(board.replace(0, 5));
+		Assert.assertEquals(6, board.get(0));
+		Assert.assertEquals(2, board.getFilled());
+		Assert.assertEquals(6, board.unset(0));
+		Assert.assertEquals(1, board.getFilled());
+
+		try {
+			board.set(81, 1);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			board.set(0, 0);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			store.open("bob");
+			Assert.fail();
+		} catch (IllegalStateException e) {
+		}
+
+		Assert.assertSame(board, store.remove("alice"));
+		Assert.assertEquals(1, store.size());
+	}
+
+	/**
+	 * Lets several threads fill the same boards with the cells of a solution in different orders,
+	 * 		every cell being set by exactly one of them
+	 * @throws Exception
+	 */
+	@Test
+	public void testCooperativeFill() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testCooperativeFill()");
+			}
+
+			final SudokuBoardStore store = new SudokuBoardStore(64);
+			final int[] cells = SudokuSolver.parse(OK_LINE);
+			final int boards = 50;
+			final AtomicInteger accepted = new AtomicInteger();
+			List<Callable<Void>> players = new ArrayList<Callable<Void>>();
+			for (int t = 0; t < THREADS; t++) {
+				final Random random = new Random(t);
+				players.add(new Callable<Void>() {
+					public Void call() {
+						for (int b = 0; b < boards; b++) {
+							SudokuSharedBoard board = store.open("board" + b);
+							int start = random.nextInt(81);
+							for (int i = 0; i < 81; i++) {
+								int loc = (start + i*7) % 81;
+								if (board.set(loc, cells[loc])) {
+									accepted.incrementAndGet();
+								}
+							}
+						}
+						return null;
+					}
+				});
+			}
+			run(players);
+
+			Assert.assertEquals(boards * 81, accepted.get());
+			for (int b = 0; b < boards; b++) {
+				SudokuSharedBoard board = store.get("board" + b);
+				Assert.assertTrue(board.isComplete());
+				Assert.assertTrue(java.util.Arrays.equals(cells, board.snapshot()));
+			}
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testCooperativeFill()");
+			}
+		}
+	}
+
+	/**
+	 * Plays random moves on a few boards from many threads, with few lock stripes so that boards share them,
+	 * 		and checks the invariants of every board meanwhile and afterwards
+	 * @throws Exception
+	 */
+	@Test
+	public void testRandomMoves() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testRandomMoves()");
+			}
+
+			final SudokuBoardStore store = new SudokuBoardStore(32);
+			final int boards = 4;
+			List<Callable<Void>> players = new ArrayList<Callable<Void>>();
+			for (int t = 0; t < THREADS; t++) {
+				final Random random = new Random(t);
+				final boolean observer = t == 0;
+				players.add(new Callable<Void>() {
+					public Void call() {
+						for (int i = 0; i < 200000; i++) {
+							SudokuSharedBoard board = store.open("board" + random.nextInt(boards));
+							int loc = random.nextInt(81);
+							int num = random.nextInt(9) + 1;
+							switch (random.nextInt(4)) {
+							case 0:
+								board.set(loc, num);
+								break;
+							case 1:
+								board.replace(loc, num);
+								break;
+							case 2:
+								board.unset(loc);
+								break;
+							default:
+								Assert.assertTrue(board.conflicts(loc, num) <= 7);
+							}
+							if (observer && i % 1000 == 0) {
+								assertConsistent(board, board.snapshot(), false);
+							}
+						}
+						return null;
+					}
+				});
+			}
+			run(players);
+
+			for (int b = 0; b < boards; b++) {
+				SudokuSharedBoard board = store.get("board" + b);
+				assertConsistent(board, board.snapshot(), true);
+			}
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testRandomMoves()");
+			}
+		}
+	}
+
+	// starts all tasks at once and rethrows the first failure
+	private static void run(List<Callable<Void>> tasks) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+		final CountDownLatch go = new CountDownLatch(1);
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (final Callable<Void> task : tasks) {
+				futures.add(executor.submit(new Callable<Void>() {
+					public Void call() throws Exception {
+						go.await();
+						return task.call();
+					}
+				}));
+			}
+			go.countDown();
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	// no unit holds a number twice, and once the board is at rest its masks and count match its cells
+	private static void assertConsistent(SudokuSharedBoard board, int[] cells, boolean atRest) {
+		SudokuProposedSolution replayed = new SudokuProposedSolution();
+		int filled = 0;
+		for (int loc = 0; loc < 81; loc++) {
+			if (cells[loc] != 0) {
+				Assert.assertTrue(board.getId() + " cell " + loc, replayed.set(loc, cells[loc]));
+				filled ++;
+			}
+		}
+		if (atRest) {
+			Assert.assertEquals(filled, board.getFilled());
+			for (int loc = 0; loc < 81; loc++) {
+				Assert.assertEquals(cells[loc], board.get(loc));
+				for (int num = 1; num <= 9; num++) {
+					Assert.assertEquals(replayed.conflicts(loc, num), board.conflicts(loc, num));
+				}
+			}
+		}
+	}
+}
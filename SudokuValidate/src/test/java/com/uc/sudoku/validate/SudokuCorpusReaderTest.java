@@ -0,0 +1,154 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuCorpusReaderTest
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+package com.uc.sudoku.validate;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.StringReader;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.apache.log4j.Logger;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.junit.Test;
+
+
+public class SudokuCorpusReaderTest extends TestCase{
+
+	private static Logger LOGGER = Logger.getLogger(SudokuCorpusReaderTest.class);
+
+	private static final String OK_GRID =
+			"1,8,5,4,3,6,2,9,7\r\n" +
+			"4,3,7,5,9,2,8,1,6\r\n" +
+			"6,9,2,8,1,7,3,4,5\r\n" +
+			"3,7,6,2,8,9,4,5,1\r\n" +
+			"2,1,4,3,7,5,9,6,8\r\n" +
+			"9,5,8,6,4,1,7,3,2\r\n" +
+			"8,6,3,1,2,4,5,7,9\r\n" +
+			"7,2,1,9,5,3,6,8,4\r\n" +
+			"5,4,9,7,6,8,1,2,3";
+
+	private static final String OK_LINE = "185436297437592816692817345376289451214375968958641732863124579721953684549768123";
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		DOMConfigurator.configure("src/test/resources/config/log4j.xml");
+	}
+
+	@Test
+	public void testCsvBlocks() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testCsvBlocks()");
+			}
+
+			String corpus = "\r\n" + OK_GRID + "\r\n\r\n"
+					+ OK_GRID.replace("4,3,7,5,9,2,8", "4,3,7,5,9,2,5") + "\r\n\r\n\r\n"
+					+ OK_GRID + "\r\n" + "5,4,9,7,6,8,1,2,3\r\n\r\n"
+					+ OK_GRID.replace("3,7,6,2,8,9,4,5,1", "3,7,6,2,8,9,4,5") + "\r\n";
+
+			SudokuCorpusReader rd = new SudokuCorpusReader(new StringReader(corpus), SudokuCorpusReader.Format.CSV_BLOCKS);
+			SudokuProposedSolution grid = rd.next();
+			Assert.assertEquals(0, grid.getRecordIndex());
+			Assert.assertFalse(grid.isInError());
+
+			grid = rd.next();
+			Assert.assertEquals(1, grid.getRecordIndex());
+			Assert.assertEquals(1, grid.getErrs().size());
+			Assert.assertEquals(ERR_CODE.NUMBER_ALREADY_USED, grid.getErrs().get(0).getErrCode());
+
+			grid = rd.next();
+			Assert.assertEquals(2, grid.getRecordIndex());
+			Assert.assertEquals(ERR_CODE.TOO_MANY_ROWS_IN_GRID, grid.getErrs().get(0).getErrCode());
+
+			grid = rd.next();
+			Assert.assertEquals(3, grid.getRecordIndex());
+			Assert.assertEquals(ERR_CODE.MISSING_DIGITS_IN_ROW, grid.getErrs().get(0).getErrCode());
+
+			Assert.assertFalse(rd.hasNext());
+			rd.close();
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testCsvBlocks()");
+			}
+		}
+	}
+
+	@Test
+	public void testCompactLines() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testCompactLines()");
+			}
+
+			String corpus = OK_LINE + "\n"
+					+ OK_LINE.substring(0, 80) + "\n\n"
+					+ OK_LINE + "3\n"
+					+ OK_LINE.replace('7', 'X') + "\n"
+					+ OK_LINE.substring(0, 72);
+
+			SudokuCorpusReader rd = new SudokuCorpusReader(new StringReader(corpus), SudokuCorpusReader.Format.COMPACT_LINES);
+			Assert.assertFalse(rd.next().isInError());
+			SudokuProposedSolution grid = rd.next();
+			Assert.assertEquals(ERR_CODE.MISSING_DIGITS_IN_ROW, grid.getErrs().get(0).getErrCode());
+			Assert.assertEquals(8, grid.getErrs().get(0).getRow());
+			Assert.assertEquals(8, grid.getErrs().get(0).getCol());
+			Assert.assertEquals(ERR_CODE.TOO_MANY_ROWS_IN_GRID, rd.next().getErrs().get(0).getErrCode());
+			grid = rd.next();
+			Assert.assertEquals(9, grid.getErrs().size());
+			Assert.assertEquals(ERR_CODE.INVALID_CHARACTERS_IN_ROW, grid.getErrs().get(0).getErrCode());
+			grid = rd.next();
+			Assert.assertEquals(4, grid.getRecordIndex());
+			Assert.assertEquals(ERR_CODE.NOT_ENOUGH_ROWS_IN_GRID, grid.getErrs().get(0).getErrCode());
+			Assert.assertFalse(rd.hasNext());
+			rd.close();
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testCompactLines()");
+			}
+		}
+	}
+
+	@Test
+	public void testCorpusFile() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testCorpusFile()");
+			}
+
+			File file = File.createTempFile("corpus", ".sdk");
+			file.deleteOnExit();
+			FileWriter wr = new FileWriter(file);
+			try {
+				for (int i = 0; i < 1000; i++) {
+					wr.write(i % 10 == 0 ? OK_LINE.replace('1', '2') : OK_LINE);
+					wr.write("\n");
+				}
+			} finally {
+				wr.close();
+			}
+
+			SudokuCorpusReader rd = SudokuCorpusReader.open(file.toPath());
+			Assert.assertEquals(SudokuCorpusReader.Format.COMPACT_LINES, rd.getFormat());
+			Assert.assertEquals(900, rd.stream().filter(g -> !g.isInError()).count());
+
+			String [] args = {"-corpus", file.getPath()};
+			Assert.assertNull(SudokuValidate.validateInput(args));
+			SudokuBatchSummary summary = new SudokuValidate().sudokuCorpusValidate(args);
+			Assert.assertEquals(1000, summary.getTotal());
+			Assert.assertEquals(900, summary.getValid());
+			Assert.assertEquals(100, summary.getErrCount(ERR_CODE.NUMBER_ALREADY_USED));
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testCorpusFile()");
+			}
+		}
+	}
+}
@@ -0,0 +1,140 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuDirectoryWatcherTest
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+package com.uc.sudoku.validate;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.apache.log4j.Logger;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.junit.Test;
+
+
+public class SudokuDirectoryWatcherTest extends TestCase{
+
+	private static Logger LOGGER = Logger.getLogger(SudokuDirectoryWatcherTest.class);
+
+	private static final String FIXTURE_DIR = "src/test/java/com/uc/sudoku/validate";
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		DOMConfigurator.configure("src/test/resources/config/log4j.xml");
+	}
+
+	/**
+	 * Drops files into a watched directory, one of them written in two steps, and expects a single outcome per file
+	 * @throws Exception
+	 */
+	@Test
+	public void testDroppedFiles() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testDroppedFiles()");
+			}
+
+			Path dir = Files.createTempDirectory("spool");
+			final BlockingQueue<String> outcomes = new LinkedBlockingQueue<String>();
+			SudokuDirectoryWatcher watcher = new SudokuDirectoryWatcher(2);
+			watcher.watch(dir);
+			watcher.setQuietMillis(200);
+			watcher.setSink(new SudokuJsonLinesSink(new StringWriter()) {
+				@Override
+				public void write(String source, SudokuProposedSolution grid) {
+					if (source.endsWith("boom.txt")) {
+						throw new IllegalStateException("sink failure");
+					}
+					outcomes.add(Paths.get(source).getFileName() + (grid.isInError() ? " " + grid.getErrCode(0).name() : " VALID"));
+				}
+			});
+			watcher.start();
+			try {
+				byte[] ok = Files.readAllBytes(Paths.get(FIXTURE_DIR, "okPuzzle.txt"));
+				OutputStream out = Files.newOutputStream(dir.resolve("ok.txt"));
+				try {
+					out.write(ok, 0, ok.length / 2);
+					out.flush();
+					Thread.sleep(20);
+					out.write(ok, ok.length / 2, ok.length - ok.length / 2);
+				} finally {
+					out.close();
+				}
+				Files.copy(Paths.get(FIXTURE_DIR, "badPuzzle.txt"), dir.resolve("bad.txt"));
+				Files.write(dir.resolve("notes.md"), "not a puzzle".getBytes());
+
+				String first = outcomes.poll(10, TimeUnit.SECONDS);
+				String second = outcomes.poll(10, TimeUnit.SECONDS);
+				Assert.assertNotNull(second);
+				Assert.assertTrue(first + ", " + second, (first + second).contains("ok.txt VALID"));
+				Assert.assertTrue(first + ", " + second, (first + second).contains("bad.txt NUMBER_ALREADY_USED"));
+				Assert.assertNull(outcomes.poll(500, TimeUnit.MILLISECONDS));
+
+				Files.copy(Paths.get(FIXTURE_DIR, "okPuzzle_2.txt"), dir.resolve("bad.txt"), StandardCopyOption.REPLACE_EXISTING);
+				Assert.assertEquals("bad.txt VALID", outcomes.poll(10, TimeUnit.SECONDS));
+
+				// a file that fails unexpectedly is logged and the watch goes on
+				Files.copy(Paths.get(FIXTURE_DIR, "okPuzzle.txt"), dir.resolve("boom.txt"));
+				Assert.assertNull(outcomes.poll(500, TimeUnit.MILLISECONDS));
+				Files.copy(Paths.get(FIXTURE_DIR, "okPuzzle.txt"), dir.resolve("after.txt"));
+				Assert.assertEquals("after.txt VALID", outcomes.poll(10, TimeUnit.SECONDS));
+			} finally {
+				watcher.stop(1);
+			}
+			Assert.assertEquals(5, watcher.getSummary().getTotal());
+			Assert.assertEquals(4, watcher.getSummary().getValid());
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testDroppedFiles()");
+			}
+		}
+	}
+
+	/**
+	 * Watches a directory for diagonal Sudokus and expects the solution of okPuzzle.txt to be rejected
+	 * @throws Exception
+	 */
+	@Test
+	public void testWatchVariant() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testWatchVariant()");
+			}
+
+			Path dir = Files.createTempDirectory("spool");
+			String [] args = {"-watch", "-threads", "1", "-variant", "diagonal", "-quiet", "50", dir.toString()};
+			SudokuDirectoryWatcher watcher = new SudokuValidate().sudokuWatch(args);
+			Assert.assertNotNull(watcher);
+			try {
+				Assert.assertEquals("diagonal", watcher.getVariant().getName());
+				Files.copy(Paths.get(FIXTURE_DIR, "okPuzzle.txt"), dir.resolve("ok.txt"));
+				for (int i = 0; watcher.getSummary().getTotal() == 0; i++) {
+					Assert.assertTrue(i < 200);
+					Thread.sleep(50);
+				}
+			} finally {
+				watcher.stop(1);
+			}
+			Assert.assertEquals(1, watcher.getSummary().getTotal());
+			Assert.assertEquals(0, watcher.getSummary().getValid());
+			Assert.assertEquals(1, watcher.getSummary().getErrCount(ERR_CODE.NUMBER_ALREADY_USED));
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testWatchVariant()");
+			}
+		}
+	}
+}
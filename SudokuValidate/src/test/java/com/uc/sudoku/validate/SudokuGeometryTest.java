@@ -0,0 +1,190 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuGeometryTest
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+package com.uc.sudoku.validate;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.apache.log4j.Logger;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.junit.Test;
+
+
+public class SudokuGeometryTest extends TestCase{
+
+	private static Logger LOGGER = Logger.getLogger(SudokuGeometryTest.class);
+
+	private static final String OK_LINE = "185436297437592816692817345376289451214375968958641732863124579721953684549768123";
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		DOMConfigurator.configure("src/test/resources/config/log4j.xml");
+	}
+
+	/**
+	 * Validates 16x16 and 25x25 grids given as decimal numbers and letters
+	 * @throws Exception
+	 */
+	@Test
+	public void testLargeGrids() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testLargeGrids()");
+			}
+
+			for (int box = 4; box <= 5; box++) {
+				SudokuGeometry geometry = SudokuGeometry.of(box);
+				int[] cells = solution(geometry);
+				SudokuProposedSolution grid = new SudokuProposedSolution(geometry);
+				SudokuProposedSolution.validate(new StringReader(text(geometry, cells, false)), grid);
+				Assert.assertFalse(grid.isInError());
+				Assert.assertTrue(java.util.Arrays.equals(cells, grid.cells()));
+
+				// letters and bytes give the same grid
+				SudokuProposedSolution.validate(ByteBuffer.wrap(text(geometry, cells, true).getBytes("US-ASCII")), grid);
+				Assert.assertFalse(grid.isInError());
+				Assert.assertTrue(java.util.Arrays.equals(cells, grid.cells()));
+
+				Assert.assertTrue(SudokuBitboardChecker.check(cells, grid));
+			}
+
+			SudokuGeometry geometry = SudokuGeometry.of(4);
+			int[] cells = solution(geometry);
+			String text = text(geometry, cells, false);
+			SudokuProposedSolution grid = new SudokuProposedSolution(geometry);
+
+			// the number of the first cell again in the second one
+			int second = text.indexOf(',') + 1;
+			String dup = text.substring(0, second) + cells[0] + text.substring(text.indexOf(',', second));
+			SudokuProposedSolution.validate(new StringReader(dup), grid);
+			Assert.assertEquals(ERR_CODE.NUMBER_ALREADY_USED, grid.getErrCode(0));
+			Assert.assertEquals(1, grid.getErrCol(0));
+			Assert.assertEquals(cells[0], grid.getErrValue(0));
+
+			// out of range, zero and malformed tokens are reported once per cell
+			SudokuProposedSolution.validate(new StringReader("17," + text.substring(second)), grid);
+			Assert.assertEquals(ERR_CODE.INVALID_CHARACTERS_IN_ROW, grid.getErrCode(0));
+			Assert.assertEquals('7', grid.getErrValue(0));
+			SudokuProposedSolution.validate(new StringReader("0," + text.substring(second)), grid);
+			Assert.assertEquals(ERR_CODE.INVALID_CHARACTERS_IN_ROW, grid.getErrCode(0));
+			SudokuProposedSolution.validate(new StringReader("1AB," + text.substring(second)), grid);
+			Assert.assertEquals(ERR_CODE.INVALID_CHARACTERS_IN_ROW, grid.getErrCode(0));
+			Assert.assertEquals('A', grid.getErrValue(0));
+			Assert.assertEquals(1, grid.getErrCount());
+
+			// structure errors, including the last row
+			SudokuProposedSolution.validate(new StringReader(text.substring(0, text.lastIndexOf(','))), grid);
+			Assert.assertEquals(ERR_CODE.MISSING_DIGITS_IN_ROW, grid.getErrCode(0));
+			SudokuProposedSolution.validate(new StringReader(text + ",1"), grid);
+			Assert.assertEquals(ERR_CODE.TOO_MANY_DIGITS_IN_ROW, grid.getErrCode(0));
+			SudokuProposedSolution.validate(new StringReader(text.substring(0, text.lastIndexOf('\n'))), grid);
+			Assert.assertEquals(ERR_CODE.NOT_ENOUGH_ROWS_IN_GRID, grid.getErrCode(0));
+			SudokuProposedSolution.validate(new StringReader(text + "\n" + text), grid);
+			Assert.assertEquals(ERR_CODE.TOO_MANY_ROWS_IN_GRID, grid.getErrCode(0));
+			SudokuProposedSolution.validate(new StringReader(text.replaceFirst(",", ",,")), grid);
+			Assert.assertEquals(ERR_CODE.MISSING_DIGITS_IN_ROW, grid.getErrCode(0));
+
+			// a 9x9 last row with an extra cell
+			grid = SudokuProposedSolution.validate(new StringReader(text(SudokuGeometry.STANDARD, SudokuSolver.parse(OK_LINE), false) + ",4"));
+			Assert.assertEquals(ERR_CODE.TOO_MANY_DIGITS_IN_ROW, grid.getErrCode(0));
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testLargeGrids()");
+			}
+		}
+	}
+
+	/**
+	 * Validates a 16x16 compact corpus through the command line, and a 4x4 grid file
+	 * @throws Exception
+	 */
+	@Test
+	public void testBoxOption() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testBoxOption()");
+			}
+
+			SudokuGeometry geometry = SudokuGeometry.of(4);
+			StringBuilder sb = new StringBuilder();
+			for (int loc = 0; loc < geometry.getCellCount(); loc++) {
+				sb.append(SudokuGeometry.symbolOf(solution(geometry)[loc]));
+			}
+			String line = sb.toString();
+			File corpus = File.createTempFile("corpus16", ".sdk");
+			corpus.deleteOnExit();
+			FileWriter wr = new FileWriter(corpus);
+			try {
+				wr.write(line + "\n" + line.replace('G', '1') + "\n" + line.substring(1) + "\n");
+			} finally {
+				wr.close();
+			}
+
+			String[] args = {"-corpus", "-box", "4", corpus.getPath()};
+			Assert.assertNull(SudokuValidate.validateInput(args));
+			SudokuBatchSummary summary = new SudokuValidate().sudokuCorpusValidate(args);
+			Assert.assertEquals(3, summary.getTotal());
+			Assert.assertEquals(1, summary.getValid());
+
+			File small = File.createTempFile("small", ".txt");
+			small.deleteOnExit();
+			wr = new FileWriter(small);
+			try {
+				wr.write(text(SudokuGeometry.of(2), solution(SudokuGeometry.of(2)), false));
+			} finally {
+				wr.close();
+			}
+			SudokuProposedSolution grid = SudokuValidate.validateFile(small.getPath(), new SudokuProposedSolution(SudokuGeometry.of(2)));
+			Assert.assertFalse(grid.isInError());
+			Assert.assertTrue(SudokuValidate.validateFile(small.getPath()).isInError());
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testBoxOption()");
+			}
+		}
+	}
+
+	// the pattern solution shifting each row by the box size, and each band by one
+	private static int[] solution(SudokuGeometry geometry) {
+		int n = geometry.getBoxSize(), side = geometry.getSide();
+		int[] cells = new int[geometry.getCellCount()];
+		for (int r = 0; r < side; r++) {
+			for (int c = 0; c < side; c++) {
+				cells[r*side + c] = (n*(r%n) + r/n + c) % side + 1;
+			}
+		}
+		return cells;
+	}
+
+	private static String text(SudokuGeometry geometry, int[] cells, boolean letters) {
+		int side = geometry.getSide();
+		StringBuilder sb = new StringBuilder();
+		for (int r = 0; r < side; r++) {
+			if (r > 0) {
+				sb.append('\n');
+			}
+			for (int c = 0; c < side; c++) {
+				if (c > 0) {
+					sb.append(',');
+				}
+				int num = cells[r*side + c];
+				if (letters) {
+					sb.append(SudokuGeometry.symbolOf(num));
+				} else {
+					sb.append(num);
+				}
+			}
+		}
+		return sb.toString();
+	}
+}
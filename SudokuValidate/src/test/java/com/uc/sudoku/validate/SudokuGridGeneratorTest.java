@@ -0,0 +1,132 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuGridGeneratorTest
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+package com.uc.sudoku.validate;
+import java.io.File;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.EnumSet;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.apache.log4j.Logger;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.junit.Test;
+
+
+public class SudokuGridGeneratorTest extends TestCase{
+
+	private static Logger LOGGER = Logger.getLogger(SudokuGridGeneratorTest.class);
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		DOMConfigurator.configure("src/test/resources/config/log4j.xml");
+	}
+
+	@Test
+	public void testSolutions() throws Exception {
+		SudokuGridGenerator generator = new SudokuGridGenerator(42);
+		int[] cells = new int[81];
+		int[] other = new int[81];
+		SudokuProposedSolution grid = new SudokuProposedSolution();
+		for (long n = 0; n < 3000; n += 7) {
+			generator.solution(n, cells);
+			Assert.assertTrue(SudokuBitboardChecker.check(cells, grid));
+
+			StringBuilder sb = new StringBuilder();
+			Assert.assertNull(generator.grid(n, sb));
+			Assert.assertFalse(SudokuProposedSolution.validate(new StringReader(sb.toString())).isInError());
+		}
+
+		// the same seed gives the same grids, neighbouring indexes different ones
+		new SudokuGridGenerator(42).solution(2021, other);
+		generator.solution(2021, cells);
+		Assert.assertTrue(java.util.Arrays.equals(cells, other));
+		generator.solution(2022, other);
+		Assert.assertFalse(java.util.Arrays.equals(cells, other));
+	}
+
+	@Test
+	public void testDefects() throws Exception {
+		SudokuGridGenerator generator = new SudokuGridGenerator(7);
+		generator.setDefectRate(1);
+		for (SudokuGridGenerator.Defect defect : SudokuGridGenerator.Defect.values()) {
+			generator.setDefects(EnumSet.of(defect));
+			for (long n = 0; n < 200; n++) {
+				StringBuilder sb = new StringBuilder();
+				Assert.assertEquals(defect, generator.grid(n, sb));
+				SudokuProposedSolution grid = SudokuProposedSolution.validate(new StringReader(sb.toString()));
+				Assert.assertTrue(sb.toString(), grid.isInError());
+				Assert.assertEquals(sb.toString(), defect.getErrCode(), grid.getErrCode(0));
+			}
+			Assert.assertEquals(200, generator.getDefective(defect));
+		}
+	}
+
+	/**
+	 * Generates a corpus with several threads, reads it back and compares it to a single threaded run
+	 * @throws Exception
+	 */
+	@Test
+	public void testCorpus() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testCorpus()");
+			}
+
+			File corpus = File.createTempFile("generated", ".sdk");
+			corpus.deleteOnExit();
+			SudokuGridGenerator generator = new SudokuGridGenerator(2011);
+			generator.setDefectRate(0.25);
+			generator.setThreads(3);
+			generator.generate(corpus.toPath(), 5000);
+			Assert.assertEquals(5000, generator.getGenerated());
+
+			int total = 0, invalid = 0;
+			SudokuCorpusReader rd = SudokuCorpusReader.open(corpus.toPath());
+			Assert.assertEquals(SudokuCorpusReader.Format.CSV_BLOCKS, rd.getFormat());
+			try {
+				while (rd.hasNext()) {
+					SudokuProposedSolution grid = rd.next();
+					total ++;
+					if (grid.isInError()) {
+						invalid ++;
+					}
+				}
+			} finally {
+				rd.close();
+			}
+			Assert.assertEquals(5000, total);
+			Assert.assertEquals(generator.getDefective(), invalid);
+
+			File again = File.createTempFile("generated", ".sdk");
+			again.deleteOnExit();
+			SudokuGridGenerator single = new SudokuGridGenerator(2011);
+			single.setDefectRate(0.25);
+			single.setThreads(1);
+			single.generate(again.toPath(), 5000);
+			Assert.assertTrue(java.util.Arrays.equals(Files.readAllBytes(corpus.toPath()), Files.readAllBytes(again.toPath())));
+
+			// one grid file per grid into a directory
+			File dir = Files.createTempDirectory("generated").toFile();
+			generator = new SudokuGridGenerator(2011);
+			generator.generate(dir.toPath(), 20);
+			File[] files = dir.listFiles();
+			Assert.assertEquals(20, files.length);
+			for (File file : files) {
+				Assert.assertFalse(file.getName(), SudokuValidate.validateFile(file.getPath()).isInError());
+				file.delete();
+			}
+			dir.delete();
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testCorpus()");
+			}
+		}
+	}
+}
@@ -0,0 +1,154 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuManifestTest
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+package com.uc.sudoku.validate;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.apache.log4j.Logger;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.junit.Test;
+
+
+public class SudokuManifestTest extends TestCase{
+
+	private static Logger LOGGER = Logger.getLogger(SudokuManifestTest.class);
+
+	private static final String FIXTURE_DIR = "src/test/java/com/uc/sudoku/validate";
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		DOMConfigurator.configure("src/test/resources/config/log4j.xml");
+	}
+
+	/**
+	 * Runs a batch over copies of the fixtures three times, changing files in between, and compares the
+	 * 		outcomes with those of a run without manifest
+	 * @throws Exception
+	 */
+	@Test
+	public void testIncrementalRuns() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testIncrementalRuns()");
+			}
+
+			Path dir = Files.createTempDirectory("manifest");
+			for (File fixture : new File(FIXTURE_DIR).listFiles()) {
+				if (fixture.getName().endsWith(".txt")) {
+					Files.copy(fixture.toPath(), dir.resolve(fixture.getName()));
+				}
+			}
+			Path file = dir.resolve("nightly.sdkm");
+			SudokuBatchSummary expected = new SudokuBatchValidate(2).validate(dir.toString());
+
+			SudokuBatchSummary summary = run(file, dir);
+			Assert.assertEquals(0, summary.getUnchanged());
+			assertSameCounts(expected, summary);
+
+			summary = run(file, dir);
+			Assert.assertEquals(10, summary.getUnchanged());
+			assertSameCounts(expected, summary);
+
+			// touched but unchanged, and changed from bad to ok
+			Path touched = dir.resolve("okPuzzle_2.txt");
+			Files.setLastModifiedTime(touched, FileTime.fromMillis(Files.getLastModifiedTime(touched).toMillis() - 60000));
+			Path changed = dir.resolve("badPuzzle.txt");
+			Files.copy(dir.resolve("okPuzzle.txt"), changed, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+			Files.setLastModifiedTime(changed, FileTime.fromMillis(Files.getLastModifiedTime(changed).toMillis() - 60000));
+
+			summary = run(file, dir);
+			Assert.assertEquals(9, summary.getUnchanged());
+			Assert.assertEquals(expected.getValid() + 1, summary.getValid());
+			Assert.assertEquals(expected.getErrCount(ERR_CODE.NUMBER_ALREADY_USED) - 1, summary.getErrCount(ERR_CODE.NUMBER_ALREADY_USED));
+
+			SudokuManifest manifest = SudokuManifest.open(file, SudokuGeometry.STANDARD, ValidationPolicy.EXHAUSTIVE);
+			try {
+				Assert.assertEquals(10, manifest.size());
+				// compacted whenever most records have been replaced
+				Assert.assertTrue(manifest.getRecords() <= 2 * manifest.size());
+				Assert.assertEquals(0, manifest.get(changed).errs.length);
+				Assert.assertEquals(Files.getLastModifiedTime(touched).toMillis(), manifest.get(touched).modified);
+			} finally {
+				manifest.close();
+			}
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testIncrementalRuns()");
+			}
+		}
+	}
+
+	@Test
+	public void testRecovery() throws Exception {
+		Path dir = Files.createTempDirectory("manifest");
+		Path puzzle = dir.resolve("badPuzzle.txt");
+		Files.copy(new File(FIXTURE_DIR, "badPuzzle.txt").toPath(), puzzle);
+		Path file = dir.resolve("nightly.sdkm");
+
+		SudokuManifest manifest = SudokuManifest.open(file, SudokuGeometry.STANDARD, ValidationPolicy.EXHAUSTIVE);
+		SudokuProposedSolution grid = new SudokuProposedSolution();
+		Assert.assertFalse(manifest.validate(puzzle, null, grid));
+		Assert.assertTrue(manifest.validate(puzzle, null, grid));
+		Assert.assertEquals(2, grid.getErrCount());
+		Assert.assertEquals(ERR_CODE.NUMBER_ALREADY_USED, grid.getErrCode(0));
+		manifest.close();
+		long size = Files.size(file);
+
+		// a record cut short
+		FileOutputStream out = new FileOutputStream(file.toFile(), true);
+		try {
+			out.write(new byte[] {0, 40, 'x'});
+		} finally {
+			out.close();
+		}
+		manifest = SudokuManifest.open(file, SudokuGeometry.STANDARD, ValidationPolicy.EXHAUSTIVE);
+		Assert.assertEquals(1, manifest.size());
+		Assert.assertEquals(size, Files.size(file));
+		Assert.assertTrue(manifest.validate(puzzle, null, grid));
+		manifest.close();
+
+		// another policy starts over
+		manifest = SudokuManifest.open(file, SudokuGeometry.STANDARD, ValidationPolicy.FAIL_FAST);
+		Assert.assertEquals(0, manifest.size());
+		grid.setValidationPolicy(ValidationPolicy.FAIL_FAST);
+		Assert.assertFalse(manifest.validate(puzzle, null, grid));
+		Assert.assertEquals(1, grid.getErrCount());
+		manifest.close();
+
+		try {
+			SudokuManifest.open(puzzle, SudokuGeometry.STANDARD, ValidationPolicy.EXHAUSTIVE);
+			Assert.fail();
+		} catch (java.io.IOException e) {
+		}
+	}
+
+	private static SudokuBatchSummary run(Path file, Path dir) throws Exception {
+		SudokuManifest manifest = SudokuManifest.open(file, SudokuGeometry.STANDARD, ValidationPolicy.EXHAUSTIVE);
+		try {
+			SudokuBatchValidate batch = new SudokuBatchValidate(2);
+			batch.setManifest(manifest);
+			return batch.validate(dir.toString());
+		} finally {
+			manifest.close();
+		}
+	}
+
+	private static void assertSameCounts(SudokuBatchSummary expected, SudokuBatchSummary actual) {
+		Assert.assertEquals(expected.getTotal(), actual.getTotal());
+		Assert.assertEquals(expected.getValid(), actual.getValid());
+		for (ERR_CODE code : ERR_CODE.values()) {
+			Assert.assertEquals(code.name(), expected.getErrCount(code), actual.getErrCount(code));
+		}
+	}
+}
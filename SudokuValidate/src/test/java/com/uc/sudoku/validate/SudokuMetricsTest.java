@@ -0,0 +1,95 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuMetricsTest
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+package com.uc.sudoku.validate;
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.apache.log4j.Logger;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.junit.Test;
+
+
+public class SudokuMetricsTest extends TestCase{
+
+	private static Logger LOGGER = Logger.getLogger(SudokuMetricsTest.class);
+
+	private static final String FIXTURE_DIR = "src/test/java/com/uc/sudoku/validate";
+
+	private final SudokuMetrics metrics = SudokuMetrics.get();
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		DOMConfigurator.configure("src/test/resources/config/log4j.xml");
+		metrics.reset();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		metrics.setEnabled(false);
+		metrics.reset();
+		super.tearDown();
+	}
+
+	@Test
+	public void testCounters() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testCounters()");
+			}
+
+			// nothing is recorded while disabled
+			SudokuValidate.validateFile(FIXTURE_DIR + "/badPuzzle.txt");
+			Assert.assertEquals(0, metrics.getGrids());
+
+			metrics.setEnabled(true);
+			SudokuValidate.validateFile(FIXTURE_DIR + "/okPuzzle.txt");
+			SudokuProposedSolution bad = SudokuValidate.validateFile(FIXTURE_DIR + "/badPuzzle.txt");
+			SudokuValidate.validateFile(FIXTURE_DIR + "/brokenPuzzleBadCharacter.txt");
+			SudokuProposedSolution.validate(bad.cells());
+
+			Assert.assertEquals(4, metrics.getGrids());
+			Assert.assertEquals(1, metrics.getValidGrids());
+			Assert.assertEquals(3, metrics.getLatency(SudokuMetrics.Phase.PARSE).getCount());
+			Assert.assertEquals(1, metrics.getLatency(SudokuMetrics.Phase.CHECK).getCount());
+			Assert.assertTrue(metrics.getLatency(SudokuMetrics.Phase.PARSE).getPercentileNanos(0.99)
+					>= metrics.getLatency(SudokuMetrics.Phase.PARSE).getMaxNanos());
+			Assert.assertEquals(bad.getErrCount(), metrics.getErrCount(ERR_CODE.NUMBER_ALREADY_USED));
+			Assert.assertEquals(1, metrics.getErrCount(ERR_CODE.INVALID_CHARACTERS_IN_ROW));
+			Assert.assertTrue(metrics.getErrRowCount(bad.getErrRow(0)) > 0);
+
+			String dump = metrics.dump();
+			Assert.assertTrue(dump, dump.contains("grids: 4"));
+			Assert.assertTrue(dump, dump.contains("2003=1"));
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testCounters()");
+			}
+		}
+	}
+
+	@Test
+	public void testMBean() throws Exception {
+		metrics.register();
+		metrics.register();
+		MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(SudokuMetrics.OBJECT_NAME);
+		Assert.assertTrue(mbs.isRegistered(name));
+
+		mbs.setAttribute(name, new javax.management.Attribute("Enabled", Boolean.TRUE));
+		SudokuValidate.validateFile(FIXTURE_DIR + "/okPuzzle_2.txt");
+		Assert.assertEquals(Long.valueOf(1), mbs.getAttribute(name, "Grids"));
+		Assert.assertEquals(SudokuMetrics.Phase.values().length, ((String[]) mbs.getAttribute(name, "PhaseLatencies")).length);
+		mbs.invoke(name, "reset", null, null);
+		Assert.assertEquals(0, metrics.getGrids());
+	}
+}
@@ -0,0 +1,155 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuOffHeapStoreTest
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+package com.uc.sudoku.validate;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.apache.log4j.Logger;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.junit.Test;
+
+
+public class SudokuOffHeapStoreTest extends TestCase{
+
+	private static Logger LOGGER = Logger.getLogger(SudokuOffHeapStoreTest.class);
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		DOMConfigurator.configure("src/test/resources/config/log4j.xml");
+	}
+
+	@Test
+	public void testAddAndValidate() throws Exception {
+		File dir = Files.createTempDirectory("offheap").toFile();
+		dir.deleteOnExit();
+		SudokuOffHeapStore store = new SudokuOffHeapStore(3, dir.toPath());
+		Assert.assertEquals(0, dir.list().length);
+		SudokuGridGenerator generator = new SudokuGridGenerator(18);
+		int[] cells = new int[81];
+		for (int n = 0; n < 10; n++) {
+			generator.solution(n, cells);
+			if (n % 2 == 1) {
+				cells[n] = cells[n + 1];
+			}
+			Assert.assertEquals(n, store.add(cells));
+		}
+		store.add(new int[81]);
+		Assert.assertEquals(11, store.size());
+		Assert.assertFalse(store.isValidated(0));
+		Assert.assertNull(store.getFirstErr(0));
+
+		SudokuBatchSummary summary = store.validate(2);
+		Assert.assertEquals(11, summary.getTotal());
+		Assert.assertEquals(5, summary.getValid());
+		for (int n = 0; n < 10; n++) {
+			Assert.assertTrue(store.isValidated(n));
+			Assert.assertEquals(n % 2 == 0, store.isValid(n));
+			Assert.assertEquals(n % 2 == 1, store.hasErr(n, ERR_CODE.NUMBER_ALREADY_USED));
+		}
+		Assert.assertEquals(ERR_CODE.NUMBER_ALREADY_USED, store.getFirstErr(1).getErrCode());
+		Assert.assertEquals(ERR_CODE.MISSING_DIGITS_IN_ROW, store.getFirstErr(10).getErrCode());
+
+		Assert.assertTrue(store.get(4, cells));
+		int[] expected = new int[81];
+		generator.solution(4, expected);
+		Assert.assertTrue(java.util.Arrays.equals(expected, cells));
+		try {
+			store.get(11, cells);
+			Assert.fail();
+		} catch (IndexOutOfBoundsException e) {
+		}
+
+		// the chunks live in a single backing file, deleted when the store is closed (or already once opened, on Unix)
+		Assert.assertEquals(4 * 3L * (SudokuPackedGrid.RECORD_SIZE + SudokuOffHeapStore.OUTCOME_SIZE), store.getCapacityBytes());
+		store.close();
+		Assert.assertEquals(0, dir.list().length);
+		Assert.assertEquals(0, store.size());
+		Assert.assertEquals(0, store.add(cells));
+		store.close();
+	}
+
+	/**
+	 * Loads a packed corpus over several chunks and compares the outcomes with those of the packed reader
+	 * @throws Exception
+	 */
+	@Test
+	public void testPackedCorpus() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testPackedCorpus()");
+			}
+
+			File corpus = File.createTempFile("offheap", ".sdk");
+			corpus.deleteOnExit();
+			SudokuGridGenerator generator = new SudokuGridGenerator(2018);
+			generator.setDefectRate(0.2);
+			generator.generate(corpus.toPath(), 5000);
+			File packed = File.createTempFile("offheap", ".sdkp");
+			packed.deleteOnExit();
+			SudokuPackConverter converter = new SudokuPackConverter();
+			converter.pack(packed.toPath(), corpus.getPath());
+
+			// a truncated record at the end
+			FileOutputStream out = new FileOutputStream(packed, true);
+			try {
+				out.write(new byte[] {0x12, 0x34, 0x56});
+			} finally {
+				out.close();
+			}
+
+			SudokuOffHeapStore store = new SudokuOffHeapStore(1000);
+			try {
+				store.addAll(packed.toPath());
+				Assert.assertEquals(converter.getConverted() + 1, store.size());
+				Assert.assertEquals(5 * 1000L * (SudokuPackedGrid.RECORD_SIZE + SudokuOffHeapStore.OUTCOME_SIZE), store.getCapacityBytes());
+				SudokuBatchSummary summary = store.validate(3);
+
+				SudokuBatchSummary expected = new SudokuBatchSummary();
+				SudokuPackedReader rd = SudokuPackedReader.open(packed.toPath());
+				try {
+					long index = 0;
+					while (rd.hasNext()) {
+						SudokuProposedSolution grid = rd.next();
+						expected.record(grid);
+						Assert.assertEquals(!grid.isInError(), store.isValid(index));
+						if (grid.isInError()) {
+							Assert.assertEquals(grid.getErrs().get(0).getError(), store.getFirstErr(index).getError());
+						}
+						index ++;
+					}
+					Assert.assertEquals(store.size(), index);
+				} finally {
+					rd.close();
+				}
+				Assert.assertEquals(expected.getTotal(), summary.getTotal());
+				Assert.assertEquals(expected.getValid(), summary.getValid());
+				for (ERR_CODE code : ERR_CODE.values()) {
+					Assert.assertEquals(expected.getErrCount(code), summary.getErrCount(code));
+				}
+				Assert.assertTrue(store.hasErr(store.size() - 1, ERR_CODE.INVALID_SUDOKU_FILEFORMAT));
+
+				// only the first error code of a grid under fail-fast
+				store.setValidationPolicy(ValidationPolicy.FAIL_FAST);
+				summary = store.validate(3);
+				Assert.assertEquals(expected.getValid(), summary.getValid());
+				Assert.assertEquals(expected.getInvalid(), summary.getErrCount(ERR_CODE.NUMBER_ALREADY_USED)
+						+ summary.getErrCount(ERR_CODE.INVALID_SUDOKU_FILEFORMAT));
+			} finally {
+				store.close();
+			}
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testPackedCorpus()");
+			}
+		}
+	}
+}
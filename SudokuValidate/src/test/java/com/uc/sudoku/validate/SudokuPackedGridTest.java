@@ -0,0 +1,132 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuPackedGridTest
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+package com.uc.sudoku.validate;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.apache.log4j.Logger;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.junit.Test;
+
+
+public class SudokuPackedGridTest extends TestCase{
+
+	private static Logger LOGGER = Logger.getLogger(SudokuPackedGridTest.class);
+
+	private static final String FIXTURE_DIR = "src/test/java/com/uc/sudoku/validate";
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		DOMConfigurator.configure("src/test/resources/config/log4j.xml");
+	}
+
+	@Test
+	public void testEncodeDecode() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testEncodeDecode()");
+			}
+
+			SudokuProposedSolution grid = SudokuValidate.validateFile(FIXTURE_DIR + "/badPuzzle.txt");
+			int[] cells = new int[81];
+			Assert.assertTrue(SudokuPackedGrid.digitsOf(grid, cells));
+
+			ByteBuffer buf = ByteBuffer.allocate(SudokuPackedGrid.RECORD_SIZE);
+			SudokuPackedGrid.encode(cells, buf);
+			Assert.assertFalse(buf.hasRemaining());
+
+			int[] decoded = new int[81];
+			Assert.assertTrue(SudokuPackedGrid.decode(buf, 0, decoded));
+			for (int loc = 0; loc < 81; loc++) {
+				Assert.assertEquals(cells[loc], decoded[loc]);
+			}
+
+			// the packed grid reports the same errors as its text
+			SudokuProposedSolution packed = SudokuPackedGrid.validate(buf, 0, decoded, new SudokuProposedSolution());
+			Assert.assertEquals(grid.getErrCount(), packed.getErrCount());
+			for (int i = 0; i < grid.getErrCount(); i++) {
+				Assert.assertEquals(grid.getErrs().get(i).getError(), packed.getErrs().get(i).getError());
+			}
+
+			// a flipped cell fails the checksum
+			buf.put(7, (byte) (buf.get(7) ^ 0x10));
+			Assert.assertFalse(SudokuPackedGrid.decode(buf, 0, decoded));
+			packed = SudokuPackedGrid.validate(buf, 0, decoded, packed);
+			Assert.assertEquals(ERR_CODE.INVALID_SUDOKU_FILEFORMAT, packed.getErrCode(0));
+
+			grid = SudokuValidate.validateFile(FIXTURE_DIR + "/brokenPuzzleBadCharacter.txt");
+			Assert.assertFalse(SudokuPackedGrid.digitsOf(grid, cells));
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testEncodeDecode()");
+			}
+		}
+	}
+
+	/**
+	 * Packs all fixtures, validates the packed file and unpacks it again
+	 * @throws Exception
+	 */
+	@Test
+	public void testPackUnpack() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testPackUnpack()");
+			}
+
+			File packed = File.createTempFile("fixtures", ".sdkp");
+			packed.deleteOnExit();
+			SudokuPackConverter converter = new SudokuPackConverter();
+			converter.pack(packed.toPath(), FIXTURE_DIR);
+			Assert.assertEquals(3, converter.getConverted());
+			Assert.assertEquals(7, converter.getSkipped());
+			Assert.assertEquals(SudokuPackedGrid.HEADER_SIZE + 3 * SudokuPackedGrid.RECORD_SIZE, packed.length());
+
+			String [] args = {"-corpus", packed.getPath()};
+			SudokuBatchSummary summary = new SudokuValidate().sudokuCorpusValidate(args);
+			Assert.assertEquals(3, summary.getTotal());
+			Assert.assertEquals(2, summary.getValid());
+			Assert.assertEquals(1, summary.getErrCount(ERR_CODE.NUMBER_ALREADY_USED));
+
+			File corpus = File.createTempFile("fixtures", ".sdk");
+			corpus.deleteOnExit();
+			converter = new SudokuPackConverter();
+			converter.unpack(packed.toPath(), corpus.toPath());
+			Assert.assertEquals(3, converter.getConverted());
+			args = new String[] {"-corpus", corpus.getPath()};
+			summary = new SudokuValidate().sudokuCorpusValidate(args);
+			Assert.assertEquals(3, summary.getTotal());
+			Assert.assertEquals(2, summary.getValid());
+
+			// a truncated last record
+			RandomAccessFile raf = new RandomAccessFile(packed, "rw");
+			try {
+				raf.setLength(packed.length() - 1);
+			} finally {
+				raf.close();
+			}
+			SudokuPackedReader rd = SudokuPackedReader.open(packed.toPath());
+			SudokuProposedSolution grid = null;
+			while (rd.hasNext()) {
+				grid = rd.next();
+			}
+			rd.close();
+			Assert.assertEquals(2, grid.getRecordIndex());
+			Assert.assertEquals(ERR_CODE.INVALID_SUDOKU_FILEFORMAT, grid.getErrCode(0));
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testPackUnpack()");
+			}
+		}
+	}
+}
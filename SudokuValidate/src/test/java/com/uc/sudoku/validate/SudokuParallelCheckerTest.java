@@ -0,0 +1,147 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuParallelCheckerTest
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+package com.uc.sudoku.validate;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.apache.log4j.Logger;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.junit.Test;
+
+
+public class SudokuParallelCheckerTest extends TestCase{
+
+	private static Logger LOGGER = Logger.getLogger(SudokuParallelCheckerTest.class);
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		DOMConfigurator.configure("src/test/resources/config/log4j.xml");
+	}
+
+	/**
+	 * Checks 36x36 and 49x49 grids, valid and with random defects, in parallel and sequentially under every policy
+	 * 		and expects the same cells and errors
+	 * @throws Exception
+	 */
+	@Test
+	public void testSameOutcome() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testSameOutcome()");
+			}
+
+			ForkJoinPool pool = new ForkJoinPool(4);
+			try {
+				Assert.assertFalse(SudokuParallelChecker.isParallel(SudokuGeometry.of(5), pool));
+				Assert.assertFalse(SudokuParallelChecker.isParallel(SudokuGeometry.of(6), new ForkJoinPool(1)));
+
+				Random random = new Random(23);
+				for (int box = 6; box <= 7; box++) {
+					SudokuGeometry geometry = SudokuGeometry.of(box);
+					Assert.assertTrue(SudokuParallelChecker.isParallel(geometry, pool));
+					int side = geometry.getSide();
+					int[] solution = solution(geometry);
+					SudokuProposedSolution grid = new SudokuProposedSolution(geometry);
+					Assert.assertTrue(SudokuParallelChecker.check(solution, grid, pool));
+					Assert.assertTrue(Arrays.equals(solution, grid.cells()));
+
+					for (int trial = 0; trial < 60; trial++) {
+						int[] cells = solution.clone();
+						for (int k = random.nextInt(side) + 1; k > 0; k--) {
+							int loc = random.nextInt(cells.length);
+							int pick = random.nextInt(20);
+							cells[loc] = pick == 0 ? 0 : pick == 1 ? side + 1 + random.nextInt(4) : random.nextInt(side) + 1;
+						}
+						for (ValidationPolicy policy : ValidationPolicy.values()) {
+							SudokuProposedSolution expected = new SudokuProposedSolution(geometry);
+							expected.setValidationPolicy(policy);
+							grid.setValidationPolicy(policy);
+							Assert.assertEquals(SudokuBitboardChecker.check(cells, expected), SudokuParallelChecker.check(cells, grid, pool));
+							assertSameGrid(expected, grid);
+						}
+					}
+
+					// the text of a grid, well-formed or not
+					grid.setValidationPolicy(ValidationPolicy.EXHAUSTIVE);
+					String text = text(solution, side);
+					int second = text.indexOf(',') + 1;
+					String[] texts = {
+						text,
+						text.replace("\n", "\r\n"),
+						text.substring(0, second) + solution[0] + text.substring(text.indexOf(',', second)),
+						"0" + text.substring(1),
+						text.replaceFirst(",", ",,"),
+						text + "\n",
+						text.substring(0, text.lastIndexOf('\n')),
+						text + ",1",
+					};
+					for (String input : texts) {
+						SudokuProposedSolution expected = new SudokuProposedSolution(geometry);
+						SudokuProposedSolution.parse(ByteBuffer.wrap(input.getBytes("US-ASCII")), expected);
+						SudokuParallelChecker.validate(ByteBuffer.wrap(input.getBytes("US-ASCII")), grid, pool);
+						assertSameGrid(expected, grid);
+					}
+				}
+			} finally {
+				pool.shutdown();
+			}
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testSameOutcome()");
+			}
+		}
+	}
+
+	private static void assertSameGrid(SudokuProposedSolution expected, SudokuProposedSolution actual) {
+		Assert.assertEquals(expected.getErrCount(), actual.getErrCount());
+		Assert.assertEquals(expected.getErrsDropped(), actual.getErrsDropped());
+		for (int i = 0; i < expected.getErrCount(); i++) {
+			Assert.assertEquals(expected.getErrCode(i), actual.getErrCode(i));
+			Assert.assertEquals(expected.getErrRow(i), actual.getErrRow(i));
+			Assert.assertEquals(expected.getErrCol(i), actual.getErrCol(i));
+			Assert.assertEquals(expected.getErrValue(i), actual.getErrValue(i));
+		}
+		Assert.assertTrue(Arrays.equals(expected.cells(), actual.cells()));
+		Assert.assertTrue(Arrays.equals(expected.rowMasks(), actual.rowMasks()));
+		Assert.assertTrue(Arrays.equals(expected.colMasks(), actual.colMasks()));
+		Assert.assertTrue(Arrays.equals(expected.subgridMasks(), actual.subgridMasks()));
+	}
+
+	// the pattern solution shifting each row by the box size, and each band by one
+	private static int[] solution(SudokuGeometry geometry) {
+		int n = geometry.getBoxSize(), side = geometry.getSide();
+		int[] cells = new int[geometry.getCellCount()];
+		for (int r = 0; r < side; r++) {
+			for (int c = 0; c < side; c++) {
+				cells[r*side + c] = (n*(r%n) + r/n + c) % side + 1;
+			}
+		}
+		return cells;
+	}
+
+	private static String text(int[] cells, int side) {
+		StringBuilder sb = new StringBuilder();
+		for (int r = 0; r < side; r++) {
+			if (r > 0) {
+				sb.append('\n');
+			}
+			for (int c = 0; c < side; c++) {
+				if (c > 0) {
+					sb.append(',');
+				}
+				sb.append(cells[r*side + c]);
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,186 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuResultSinkTest
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+package com.uc.sudoku.validate;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.List;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.apache.log4j.Logger;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.junit.Test;
+
+
+public class SudokuResultSinkTest extends TestCase{
+
+	private static Logger LOGGER = Logger.getLogger(SudokuResultSinkTest.class);
+
+	private static final String FIXTURE_DIR = "src/test/java/com/uc/sudoku/validate";
+
+	private static final String OK_LINE = "185436297437592816692817345376289451214375968958641732863124579721953684549768123";
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		DOMConfigurator.configure("src/test/resources/config/log4j.xml");
+	}
+
+	@Test
+	public void testBatchJsonLines() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testBatchJsonLines()");
+			}
+
+			File report = File.createTempFile("report", ".jsonl");
+			report.deleteOnExit();
+			String [] args = {"-batch", "-threads", "3", "-report", report.getPath(), FIXTURE_DIR};
+			Assert.assertNull(SudokuValidate.validateInput(args));
+			Assert.assertEquals(10, new SudokuValidate().sudokuBatchValidate(args).getTotal());
+
+			List<String> lines = Files.readAllLines(report.toPath(), Charset.forName("UTF-8"));
+			Assert.assertEquals(10, lines.size());
+			SudokuProposedSolution bad = SudokuValidate.validateFile(FIXTURE_DIR + "/badPuzzle.txt");
+			String expected = SudokuValidationServer.toJson(bad).substring(1);
+			boolean found = false;
+			for (String line : lines) {
+				Assert.assertTrue(line, line.startsWith("{\"source\":\""));
+				found |= line.contains("badPuzzle.txt\"") && line.endsWith(expected);
+			}
+			Assert.assertTrue(found);
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testBatchJsonLines()");
+			}
+		}
+	}
+
+	@Test
+	public void testCorpusCsv() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testCorpusCsv()");
+			}
+
+			File corpus = File.createTempFile("corpus", ".sdk");
+			corpus.deleteOnExit();
+			FileWriter wr = new FileWriter(corpus);
+			try {
+				wr.write(OK_LINE + "\n" + OK_LINE.replace('9', 'X') + "\n" + OK_LINE.replace('4', '3') + "\n");
+			} finally {
+				wr.close();
+			}
+
+			File report = File.createTempFile("report", ".csv");
+			report.deleteOnExit();
+			String [] args = {"-corpus", "-report", report.getPath(), "-grid", corpus.getPath()};
+			Assert.assertNull(SudokuValidate.validateInput(args));
+			Assert.assertEquals(3, new SudokuValidate().sudokuCorpusValidate(args).getTotal());
+
+			List<String> lines = Files.readAllLines(report.toPath(), Charset.forName("UTF-8"));
+			Assert.assertEquals(4, lines.size());
+			Assert.assertEquals(SudokuCsvSink.HEADER + ",grid", lines.get(0));
+			Assert.assertEquals(corpus.getPath() + ",0,true,0,,0," + OK_LINE, lines.get(1));
+			Assert.assertTrue(lines.get(2), lines.get(2).startsWith(corpus.getPath() + ",1,false,2003,2003@0:7=X;"));
+			Assert.assertTrue(lines.get(3), lines.get(3).contains(",2,false,3001,3001@"));
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testCorpusCsv()");
+			}
+		}
+	}
+
+	/**
+	 * A report that cannot be written must not abandon the corpus, whose grids are all still validated
+	 * @throws Exception
+	 */
+	@Test
+	public void testCorpusSinkFailure() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testCorpusSinkFailure()");
+			}
+
+			File corpus = File.createTempFile("corpus", ".sdk");
+			corpus.deleteOnExit();
+			FileWriter wr = new FileWriter(corpus);
+			try {
+				wr.write(OK_LINE + "\n" + OK_LINE.replace('9', 'X') + "\n" + OK_LINE + "\n");
+			} finally {
+				wr.close();
+			}
+
+			SudokuResultSink broken = new SudokuJsonLinesSink(new StringWriter()) {
+				@Override
+				public void write(String source, SudokuProposedSolution grid) throws IOException {
+					throw new IOException("disk full");
+				}
+			};
+			SudokuBatchSummary summary = new SudokuBatchSummary();
+			SudokuValidate.validateCorpus(corpus.getPath(), SudokuVariant.STANDARD, ValidationPolicy.EXHAUSTIVE, summary, broken);
+			Assert.assertEquals(3, summary.getTotal());
+			Assert.assertEquals(2, summary.getValid());
+			Assert.assertEquals(0, summary.getErrCount(ERR_CODE.UNABLE_TO_READ_SUDOKU_FILE));
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testCorpusSinkFailure()");
+			}
+		}
+	}
+
+	@Test
+	public void testWriterFailure() throws Exception {
+		SudokuAsyncWriter ok = new SudokuAsyncWriter(new StringWriter(), 4);
+		for (int i = 0; i < 100; i++) {
+			ok.write("line " + i + "\n");
+		}
+		ok.close();
+		Assert.assertEquals(100, ok.getWritten());
+
+		SudokuAsyncWriter broken = new SudokuAsyncWriter(new Writer() {
+			@Override
+			public void write(char[] cbuf, int off, int len) throws IOException {
+				throw new IOException("disk full");
+			}
+
+			@Override
+			public void write(String str) throws IOException {
+				throw new IOException("disk full");
+			}
+
+			@Override
+			public void flush() {
+			}
+
+			@Override
+			public void close() {
+			}
+		}, 4);
+		for (int i = 0; i < 100; i++) {
+			try {
+				broken.write("line " + i + "\n");
+			} catch (IOException e) {
+				break;
+			}
+		}
+		try {
+			broken.close();
+			Assert.fail("the failure of the target is rethrown");
+		} catch (IOException e) {
+			Assert.assertEquals("disk full", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,317 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuShardCoordinatorTest
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+package com.uc.sudoku.validate;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.StringWriter;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.apache.log4j.Logger;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.junit.Test;
+
+
+public class SudokuShardCoordinatorTest extends TestCase{
+
+	private static Logger LOGGER = Logger.getLogger(SudokuShardCoordinatorTest.class);
+
+	private static final String FIXTURE_DIR = "src/test/java/com/uc/sudoku/validate";
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		DOMConfigurator.configure("src/test/resources/config/log4j.xml");
+	}
+
+	@Test
+	public void testMissingShardInput() throws Exception {
+		String [] args = {"-shard", "-workers", "2", "-corpus"};
+		Assert.assertEquals(ERR_CODE.MISSING_SUDOKU_FILE, SudokuValidate.validateInput(args));
+		Assert.assertEquals(ERR_CODE.MISSING_SUDOKU_FILE, SudokuValidate.validateInput(new String[] {"-worker"}));
+		Assert.assertEquals(ERR_CODE.MISSING_SUDOKU_FILE, SudokuValidate.validateInput(new String[] {"-worker", "localhost"}));
+		Assert.assertNull(SudokuValidate.validateInput(new String[] {"-worker", "localhost:7070"}));
+	}
+
+	/**
+	 * Validates all fixtures on two worker processes and expects the totals of a batch run
+	 * 		and a report of the failing grids
+	 * @throws Exception
+	 */
+	@Test
+	public void testShardedBatch() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testShardedBatch()");
+			}
+
+			File report = File.createTempFile("report", ".jsonl");
+			report.deleteOnExit();
+			String [] args = {"-shard", "-workers", "2", "-threads", "1", "-shardsize", "3", "-report", report.getPath(), FIXTURE_DIR};
+			Assert.assertNull(SudokuValidate.validateInput(args));
+			SudokuBatchSummary summary = new SudokuValidate().sudokuShardValidate(args);
+			Assert.assertNotNull(summary);
+			assertSameCounts(new SudokuValidate().sudokuBatchValidate(new String[] {"-batch", FIXTURE_DIR}), summary);
+
+			List<String> lines = Files.readAllLines(report.toPath(), Charset.forName("UTF-8"));
+			Assert.assertEquals(summary.getInvalid(), lines.size());
+			String expected = SudokuValidationServer.toJson(SudokuValidate.validateFile(FIXTURE_DIR + "/badPuzzle.txt")).substring(1);
+			boolean found = false;
+			for (String line : lines) {
+				found |= line.contains("badPuzzle.txt\"") && line.endsWith(expected);
+			}
+			Assert.assertTrue(found);
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testShardedBatch()");
+			}
+		}
+	}
+
+	/**
+	 * A worker drops the connection in the middle of its shard, which is then validated by the next worker
+	 * @throws Exception
+	 */
+	@Test
+	public void testLostWorker() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testLostWorker()");
+			}
+
+			ServerSocket free = new ServerSocket(0);
+			final int port = free.getLocalPort();
+			free.close();
+			final SudokuShardCoordinator coordinator = new SudokuShardCoordinator(0);
+			coordinator.setPort(port);
+			coordinator.setShardSize(4);
+			Thread run = new Thread(new Runnable() {
+				public void run() {
+					try {
+						coordinator.validate(FIXTURE_DIR);
+					} catch (Exception e) {
+						LOGGER.error("Coordinator failed", e);
+					}
+				}
+			});
+			run.start();
+
+			Socket lost = null;
+			for (int i = 0; lost == null; i++) {
+				try {
+					lost = new Socket(InetAddress.getLoopbackAddress(), port);
+				} catch (ConnectException e) {
+					Assert.assertTrue(i < 100);
+					Thread.sleep(50);
+				}
+			}
+			DataOutputStream out = new DataOutputStream(lost.getOutputStream());
+			out.writeInt(SudokuShardCoordinator.MAGIC);
+			out.writeInt(SudokuShardCoordinator.VERSION);
+			out.writeUTF("lost");
+			out.flush();
+			Assert.assertEquals(SudokuShardCoordinator.SHARD, new DataInputStream(lost.getInputStream()).readByte());
+			lost.close();
+
+			new SudokuShardWorker(InetAddress.getLoopbackAddress().getHostAddress(), port, 2).run();
+			run.join(10000);
+			Assert.assertFalse(run.isAlive());
+			Assert.assertEquals(1, coordinator.getReassigned());
+			Assert.assertTrue(coordinator.getAbandoned().isEmpty());
+			assertSameCounts(new SudokuValidate().sudokuBatchValidate(new String[] {"-batch", FIXTURE_DIR}), coordinator.getSummary());
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testLostWorker()");
+			}
+		}
+	}
+
+	/**
+	 * Worker processes ending right away are replaced a few times before the run is given up
+	 * @throws Exception
+	 */
+	@Test
+	public void testNoWorkers() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testNoWorkers()");
+			}
+
+			SudokuShardCoordinator coordinator = new SudokuShardCoordinator(1);
+			String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+			coordinator.setWorkerCommand(Arrays.asList(java, "-cp", System.getProperty("java.class.path"), "-version"));
+			coordinator.setShardSize(1);
+			SudokuBatchSummary summary = coordinator.validate(FIXTURE_DIR);
+			Assert.assertEquals(0, summary.getTotal());
+			Assert.assertFalse(coordinator.getAbandoned().isEmpty());
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testNoWorkers()");
+			}
+		}
+	}
+
+	public void testHungWorker() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testHungWorker()");
+			}
+
+			ServerSocket free = new ServerSocket(0);
+			final int port = free.getLocalPort();
+			free.close();
+			final SudokuShardCoordinator coordinator = new SudokuShardCoordinator(0);
+			coordinator.setPort(port);
+			coordinator.setShardSize(4);
+			coordinator.setWorkerTimeout(1);
+			StringWriter report = new StringWriter();
+			SudokuResultSink sink = new SudokuJsonLinesSink(report);
+			coordinator.setSink(sink);
+			Thread run = new Thread(new Runnable() {
+				public void run() {
+					try {
+						coordinator.validate(FIXTURE_DIR);
+					} catch (Exception e) {
+						LOGGER.error("Coordinator failed", e);
+					}
+				}
+			});
+			run.start();
+
+			Socket hung = null;
+			for (int i = 0; hung == null; i++) {
+				try {
+					hung = new Socket(InetAddress.getLoopbackAddress(), port);
+				} catch (ConnectException e) {
+					Assert.assertTrue(i < 100);
+					Thread.sleep(50);
+				}
+			}
+			try {
+				DataOutputStream out = new DataOutputStream(hung.getOutputStream());
+				out.writeInt(SudokuShardCoordinator.MAGIC);
+				out.writeInt(SudokuShardCoordinator.VERSION);
+				out.writeUTF("hung");
+				out.flush();
+				Assert.assertEquals(SudokuShardCoordinator.SHARD, new DataInputStream(hung.getInputStream()).readByte());
+				// a failure of the shard it never completes, dropped when the shard is handed on
+				out.writeByte(SudokuShardCoordinator.FAILURE);
+				out.writeUTF("hung.txt");
+				out.writeLong(-1);
+				out.writeShort(0);
+				out.writeInt(0);
+				out.flush();
+
+				new SudokuShardWorker(InetAddress.getLoopbackAddress().getHostAddress(), port, 2).run();
+				run.join(10000);
+			} finally {
+				hung.close();
+			}
+			Assert.assertFalse(run.isAlive());
+			Assert.assertEquals(1, coordinator.getReassigned());
+			Assert.assertTrue(coordinator.getAbandoned().isEmpty());
+			SudokuBatchSummary expected = new SudokuValidate().sudokuBatchValidate(new String[] {"-batch", FIXTURE_DIR});
+			assertSameCounts(expected, coordinator.getSummary());
+			sink.close();
+			Assert.assertEquals(expected.getTotal() - expected.getValid(), sink.getWritten());
+			Assert.assertFalse(report.toString().contains("hung.txt"));
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testHungWorker()");
+			}
+		}
+	}
+
+	/**
+	 * Validates the fixtures as diagonal Sudokus on a worker and expects the counts of a diagonal batch run
+	 * @throws Exception
+	 */
+	@Test
+	public void testShardVariant() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testShardVariant()");
+			}
+
+			ServerSocket free = new ServerSocket(0);
+			final int port = free.getLocalPort();
+			free.close();
+			final SudokuShardCoordinator coordinator = new SudokuShardCoordinator(0);
+			coordinator.setPort(port);
+			coordinator.setShardSize(4);
+			coordinator.setVariant(SudokuVariant.of(SudokuGeometry.STANDARD, SudokuRule.DIAGONALS));
+			Thread run = new Thread(new Runnable() {
+				public void run() {
+					try {
+						coordinator.validate(FIXTURE_DIR);
+					} catch (Exception e) {
+						LOGGER.error("Coordinator failed", e);
+					}
+				}
+			});
+			run.start();
+
+			for (int i = 0; ; i++) {
+				try {
+					new SudokuShardWorker(InetAddress.getLoopbackAddress().getHostAddress(), port, 2).run();
+					break;
+				} catch (ConnectException e) {
+					Assert.assertTrue(i < 100);
+					Thread.sleep(50);
+				}
+			}
+			run.join(10000);
+			Assert.assertFalse(run.isAlive());
+			SudokuBatchSummary classic = new SudokuValidate().sudokuBatchValidate(new String[] {"-batch", FIXTURE_DIR});
+			SudokuBatchSummary diagonal = new SudokuValidate().sudokuBatchValidate(new String[] {"-batch", "-variant", "diagonal", FIXTURE_DIR});
+			Assert.assertTrue(diagonal.getValid() < classic.getValid());
+			assertSameCounts(diagonal, coordinator.getSummary());
+
+			// the compiled form of a jigsaw variant, the regions of which are the subgrids shifted by one row
+			int[] regions = new int[81];
+			for (int loc = 0; loc < regions.length; loc++) {
+				regions[loc] = SudokuGeometry.STANDARD.boxOf[(loc + 9) % 81];
+			}
+			SudokuVariant jigsaw = SudokuVariant.of(SudokuGeometry.STANDARD, SudokuRule.jigsaw(regions), SudokuRule.WINDOWS);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			SudokuShardCoordinator.writeVariant(new DataOutputStream(bytes), jigsaw);
+			SudokuVariant read = SudokuShardCoordinator.readVariant(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+			Assert.assertEquals(jigsaw.getName(), read.getName());
+			Assert.assertTrue(Arrays.equals(jigsaw.boxOf, read.boxOf));
+			Assert.assertTrue(Arrays.equals(jigsaw.unitStart, read.unitStart));
+			Assert.assertTrue(Arrays.equals(jigsaw.unitOf, read.unitOf));
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testShardVariant()");
+			}
+		}
+	}
+
+	private static void assertSameCounts(SudokuBatchSummary expected, SudokuBatchSummary actual) {
+		Assert.assertEquals(expected.getTotal(), actual.getTotal());
+		Assert.assertEquals(expected.getValid(), actual.getValid());
+		for (ERR_CODE code : ERR_CODE.values()) {
+			Assert.assertEquals(expected.getErrCount(code), actual.getErrCount(code));
+		}
+	}
+}
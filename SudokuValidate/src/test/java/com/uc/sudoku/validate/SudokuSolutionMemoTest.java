@@ -0,0 +1,92 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuSolutionMemoTest
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+package com.uc.sudoku.validate;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.apache.log4j.Logger;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.junit.Test;
+
+
+public class SudokuSolutionMemoTest extends TestCase{
+
+	private static Logger LOGGER = Logger.getLogger(SudokuSolutionMemoTest.class);
+
+	private static final String OK_LINE = "185436297437592816692817345376289451214375968958641732863124579721953684549768123";
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		DOMConfigurator.configure("src/test/resources/config/log4j.xml");
+	}
+
+	@Test
+	public void testEquivalentGrids() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testEquivalentGrids()");
+			}
+
+			int[] cells = digits(OK_LINE);
+			// transposed, first and last band swapped, columns reversed within the stacks, digits relabelled
+			int[] other = new int[81];
+			for (int loc = 0; loc < 81; loc++) {
+				int r = loc/9, c = loc%9;
+				int row = (2 - r/3)*3 + r%3;
+				int col = (c/3)*3 + 2 - c%3;
+				other[loc] = cells[col*9 + row] % 9 + 1;
+			}
+			Assert.assertEquals(SudokuSolutionMemo.keyOf(cells), SudokuSolutionMemo.keyOf(other));
+
+			// two digits swapped within a row
+			int[] broken = cells.clone();
+			broken[0] = cells[1];
+			broken[1] = cells[0];
+			Assert.assertFalse(SudokuSolutionMemo.keyOf(cells).equals(SudokuSolutionMemo.keyOf(broken)));
+
+			other[5] = 12;
+			Assert.assertNull(SudokuSolutionMemo.keyOf(other));
+			other[5] = -1;
+			Assert.assertNull(SudokuSolutionMemo.keyOf(other));
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testEquivalentGrids()");
+			}
+		}
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		SudokuSolutionMemo<String> cache = new SudokuSolutionMemo<String>(2);
+		int[] cells = digits(OK_LINE);
+		SudokuSolutionMemo.Key first = SudokuSolutionMemo.keyOf(cells);
+		cells[0] = 0;
+		SudokuSolutionMemo.Key second = SudokuSolutionMemo.keyOf(cells);
+		cells[1] = 0;
+		SudokuSolutionMemo.Key third = SudokuSolutionMemo.keyOf(cells);
+
+		cache.put(first, "first");
+		cache.put(second, "second");
+		Assert.assertEquals("first", cache.get(first));
+		cache.put(third, "third");
+		// the least recently used entry is gone
+		Assert.assertNull(cache.get(second));
+		Assert.assertEquals("first", cache.get(first));
+		Assert.assertEquals("third", cache.get(third));
+		Assert.assertEquals(3, cache.getHits());
+		Assert.assertEquals(1, cache.getMisses());
+	}
+
+	private static int[] digits(String line) {
+		int[] cells = new int[81];
+		for (int loc = 0; loc < 81; loc++) {
+			cells[loc] = line.charAt(loc) - '0';
+		}
+		return cells;
+	}
+}
@@ -0,0 +1,128 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuSolverTest
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+package com.uc.sudoku.validate;
+import java.util.Random;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.apache.log4j.Logger;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.junit.Test;
+
+
+public class SudokuSolverTest extends TestCase{
+
+	private static Logger LOGGER = Logger.getLogger(SudokuSolverTest.class);
+
+	private static final String OK_LINE = "185436297437592816692817345376289451214375968958641732863124579721953684549768123";
+
+	// a puzzle requiring a deep search, with its unique solution
+	private static final String HARD_PUZZLE = "8..........36......7..9.2...5...7.......457.....1...3...1....68..85...1..9....4..";
+
+	private static final String HARD_SOLUTION = "812753649943682175675491283154237896369845721287169534521974368438526917796318452";
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		DOMConfigurator.configure("src/test/resources/config/log4j.xml");
+	}
+
+	@Test
+	public void testSolve() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testSolve()");
+			}
+
+			SudokuSolver solver = new SudokuSolver();
+			int[] solution = new int[81];
+			Assert.assertTrue(solver.solve(SudokuSolver.parse(HARD_PUZZLE), solution));
+			Assert.assertTrue(SudokuBitboardChecker.check(solution, new SudokuProposedSolution()));
+			Assert.assertTrue(java.util.Arrays.equals(SudokuSolver.parse(HARD_SOLUTION), solution));
+			Assert.assertEquals(1, solver.countSolutions(SudokuSolver.parse(HARD_PUZZLE), 2));
+
+			// a complete grid is its own solution
+			Assert.assertEquals(1, solver.countSolutions(SudokuSolver.parse(OK_LINE), 2));
+
+			// blanking cells one by one keeps exactly one solution for a while
+			Random random = new Random(42);
+			int[] puzzle = SudokuSolver.parse(OK_LINE);
+			for (int i = 0; i < 40; i++) {
+				int loc = random.nextInt(81);
+				int num = puzzle[loc];
+				puzzle[loc] = 0;
+				if (!solver.hasUniqueSolution(puzzle)) {
+					puzzle[loc] = num;
+				}
+			}
+			Assert.assertTrue(solver.solve(puzzle, solution));
+			Assert.assertTrue(java.util.Arrays.equals(SudokuSolver.parse(OK_LINE), solution));
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testSolve()");
+			}
+		}
+	}
+
+	@Test
+	public void testCountSolutions() throws Exception {
+		SudokuSolver solver = new SudokuSolver();
+
+		// the empty grid has many solutions, counting stops at the limit
+		Assert.assertEquals(2, solver.countSolutions(new int[81], 2));
+		Assert.assertEquals(5, solver.countSolutions(new int[81], 5));
+
+		// blanking a rectangle of distinct digits keeps the solution unique
+		int[] puzzle = SudokuSolver.parse(OK_LINE);
+		puzzle[0] = 0;
+		puzzle[1] = 0;
+		puzzle[9] = 0;
+		puzzle[10] = 0;
+		Assert.assertEquals(1, solver.countSolutions(puzzle, 2));
+
+		// conflicting givens
+		puzzle = new int[81];
+		puzzle[0] = 5;
+		puzzle[8] = 5;
+		Assert.assertEquals(0, solver.countSolutions(puzzle, 2));
+
+		// the givens leave no digit for the first cell
+		puzzle = SudokuSolver.parse(OK_LINE);
+		puzzle[0] = 0;
+		puzzle[1] = 0;
+		puzzle[2] = 1;
+		Assert.assertEquals(0, solver.countSolutions(puzzle, 2));
+
+		Assert.assertNull(SudokuSolver.parse("123"));
+		Assert.assertNull(SudokuSolver.parse(OK_LINE.replace('5', 'A')));
+	}
+
+	@Test
+	public void testUniquenessMemo() throws Exception {
+		SudokuSolver solver = new SudokuSolver();
+		solver.setMemo(new SudokuSolutionMemo<Boolean>(16));
+		int[] puzzle = SudokuSolver.parse(HARD_PUZZLE);
+		Assert.assertTrue(solver.hasUniqueSolution(puzzle));
+
+		// the transposed puzzle is answered from the memo
+		int[] transposed = new int[81];
+		for (int loc = 0; loc < 81; loc++) {
+			transposed[loc] = puzzle[(loc%9)*9 + loc/9];
+		}
+		Assert.assertTrue(solver.hasUniqueSolution(transposed));
+		Assert.assertEquals(1, solver.getMemo().getHits());
+
+		// swapping two rows within a band is not covered by the key, so that the puzzle is solved again
+		int[] swapped = puzzle.clone();
+		System.arraycopy(puzzle, 9, swapped, 0, 9);
+		System.arraycopy(puzzle, 0, swapped, 9, 9);
+		Assert.assertTrue(solver.hasUniqueSolution(swapped));
+		Assert.assertEquals(1, solver.getMemo().getHits());
+		Assert.assertEquals(2, solver.getMemo().getMisses());
+	}
+}
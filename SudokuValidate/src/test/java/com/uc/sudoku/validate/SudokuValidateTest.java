@@ -4,12 +4,23 @@
 ///	           Copyright 2011 Upton Consulting gmbh
 ////////////////////////////////////////////////////////////
 package com.uc.sudoku.validate;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
 import java.io.FileReader;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
 
 import junit.framework.Assert;
 import junit.framework.TestCase;
 
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Layout;
+import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.spi.LoggingEvent;
 import org.apache.log4j.xml.DOMConfigurator;
 import org.junit.Test;
 
@@ -44,6 +55,26 @@ public class SudokuValidateTest extends TestCase{
 		Assert.assertEquals(ERR_CODE.WRONG_SUDOKU_FILENAME.getStatusCode(), err.getStatusCode());
 	}
 
+	@Test
+	public void testUnknownPolicy() throws Exception {
+		String [] args = {"-batch", "-policy", "fail_fast", "src/test/java/com/uc/sudoku/validate"};
+		Assert.assertTrue(SudokuValidate.validateOptions(args));
+		args = new String[] {"-batch", "-policy", "thorough", "src/test/java/com/uc/sudoku/validate"};
+		Assert.assertNull(SudokuValidate.validateInput(args));
+		Assert.assertFalse(SudokuValidate.validateOptions(args));
+	}
+
+	@Test
+	public void testUnsupportedBox() throws Exception {
+		String [] args = {"-batch", "-box", "4", "src/test/java/com/uc/sudoku/validate"};
+		Assert.assertTrue(SudokuValidate.validateOptions(args));
+		args = new String[] {"-batch", "-box", "9", "src/test/java/com/uc/sudoku/validate"};
+		Assert.assertNull(SudokuValidate.validateInput(args));
+		Assert.assertFalse(SudokuValidate.validateOptions(args));
+		args = new String[] {"-batch", "-box", "three", "src/test/java/com/uc/sudoku/validate"};
+		Assert.assertFalse(SudokuValidate.validateOptions(args));
+	}
+
 	@Test
 	public void testWrongFileFormat() throws Exception {
 		String [] args = {"src/test/java/com/uc/sudoku/validate/badPuzzleFormat.txt"};
@@ -327,4 +358,360 @@ public class SudokuValidateTest extends TestCase{
 			}
 		}
 	}
+
+	/**
+	 * Ensures the byte level paths report exactly the same errors as the Reader path for every fixture
+	 * @throws Exception
+	 */
+	@Test
+	public void testByteBufferMatchesReader() throws Exception{
+		String[] fixtures = {"okPuzzle.txt", "okPuzzle_2.txt", "badPuzzle.txt", "badPuzzleFormat.txt",
+				"brokenPuzzleBadCharacter.txt", "brokenPuzzleMissingCharacter.txt", "brokenPuzzleTooFewCols.txt",
+				"brokenPuzzleTooFewRows.txt", "brokenPuzzleTooManyCols.txt", "brokenPuzzleTooManyRows.txt"};
+
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testByteBufferMatchesReader()");
+			}
+
+			for (String fixture : fixtures) {
+				String filename = "src/test/java/com/uc/sudoku/validate/" + fixture;
+				SudokuProposedSolution expected = SudokuProposedSolution.validate(new FileReader(filename));
+
+				byte[] bytes = readFully(filename);
+				ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+				direct.put(bytes).flip();
+
+				FileInputStream in = new FileInputStream(filename);
+				try {
+					assertSameErrors(fixture, expected, SudokuProposedSolution.validate(in.getChannel()));
+				} finally {
+					in.close();
+				}
+				assertSameErrors(fixture, expected, SudokuProposedSolution.validate(ByteBuffer.wrap(bytes)));
+				assertSameErrors(fixture, expected, SudokuProposedSolution.validate(direct));
+				assertSameErrors(fixture, expected, SudokuProposedSolution.validate(new ByteArrayInputStream(bytes), new SudokuProposedSolution()));
+				Assert.assertEquals(fixture, expected.toString(), SudokuProposedSolution.validate(direct).toString());
+			}
+
+			// a multi-byte character counts as one invalid cell
+			SudokuProposedSolution grid = SudokuProposedSolution.validate(ByteBuffer.wrap("1,\u00e9,3".getBytes("UTF-8")));
+			Assert.assertEquals(ERR_CODE.INVALID_CHARACTERS_IN_ROW, grid.getErrs().get(0).getErrCode());
+			Assert.assertEquals("\u00e9", grid.getErrs().get(0).getBadValue());
+			Assert.assertEquals(1, grid.getErrs().get(0).getCol());
+
+			// also when a stream splits it, as it does here between any two bytes
+			for (String text : new String[] {"1,\u00e9,3", "1,\u20ac,3\n4", "1,2,\u20ac"}) {
+				byte[] bytes = text.getBytes("UTF-8");
+				for (int cut = 0; cut <= 1; cut++) {
+					InputStream in = new ByteArrayInputStream(bytes, 0, bytes.length - cut) {
+						@Override
+						public synchronized int read(byte[] b, int off, int len) {
+							return super.read(b, off, Math.min(len, 1));
+						}
+					};
+					SudokuProposedSolution expected = SudokuProposedSolution.validate(ByteBuffer.wrap(bytes, 0, bytes.length - cut));
+					assertSameErrors(text, expected, SudokuProposedSolution.validate(in, new SudokuProposedSolution()));
+				}
+			}
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testByteBufferMatchesReader()");
+			}
+		}
+	}
+
+	/**
+	 * Validates all fixtures into one grid instance and compares the outcome with fresh grids
+	 * @throws Exception
+	 */
+	@Test
+	public void testReusedGrid() throws Exception{
+		String[] fixtures = {"badPuzzle.txt", "okPuzzle.txt", "brokenPuzzleTooManyCols.txt", "brokenPuzzleBadCharacter.txt",
+				"okPuzzle_2.txt", "brokenPuzzleTooFewRows.txt"};
+
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testReusedGrid()");
+			}
+
+			SudokuProposedSolution reused = new SudokuProposedSolution();
+			for (String fixture : fixtures) {
+				String filename = "src/test/java/com/uc/sudoku/validate/" + fixture;
+				SudokuProposedSolution expected = SudokuProposedSolution.validate(new FileReader(filename));
+				SudokuProposedSolution grid = SudokuProposedSolution.validate(ByteBuffer.wrap(readFully(filename)), reused);
+
+				Assert.assertSame(reused, grid);
+				Assert.assertEquals(fixture, expected.toString(), grid.toString());
+				assertSameErrors(fixture, expected, grid);
+				Assert.assertEquals(expected.getErrCount(), grid.getErrCount());
+				for (int i = 0; i < grid.getErrCount(); i++) {
+					ValidationError err = expected.getErrs().get(i);
+					Assert.assertEquals(err.getErrCode(), grid.getErrCode(i));
+					Assert.assertEquals(err.getRow(), grid.getErrRow(i));
+					Assert.assertEquals(err.getCol(), grid.getErrCol(i));
+				}
+			}
+
+			// errors beyond the capacity of a grid are counted only, the error terminating the validation is still recorded
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < 100; i++) {
+				sb.append(i == 0 ? "" : ",").append('X');
+			}
+			SudokuProposedSolution grid = SudokuProposedSolution.validate(new StringReader(sb.toString()), reused);
+			Assert.assertEquals(82, grid.getErrCount());
+			Assert.assertEquals(19, grid.getErrsDropped());
+			Assert.assertEquals("X", grid.getErrs().get(0).getBadValue());
+			Assert.assertEquals(ERR_CODE.INVALID_CHARACTERS_IN_ROW, grid.getErrCode(80));
+			Assert.assertEquals(ERR_CODE.NOT_ENOUGH_ROWS_IN_GRID, grid.getErrCode(81));
+			Assert.assertTrue(SudokuValidationServer.toJson(grid).endsWith("],\"dropped\":19}"));
+
+			grid.reset();
+			Assert.assertFalse(grid.isInError());
+			Assert.assertEquals(0, grid.getErrs().size());
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testReusedGrid()");
+			}
+		}
+	}
+
+	/**
+	 * Validates the fixtures' digits through the bitboard checker and compares the outcome with the text path
+	 * @throws Exception
+	 */
+	@Test
+	public void testBitboardChecker() throws Exception{
+		String[] fixtures = {"okPuzzle.txt", "okPuzzle_2.txt", "badPuzzle.txt"};
+
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testBitboardChecker()");
+			}
+
+			SudokuProposedSolution reused = new SudokuProposedSolution();
+			for (String fixture : fixtures) {
+				String filename = "src/test/java/com/uc/sudoku/validate/" + fixture;
+				SudokuProposedSolution expected = SudokuProposedSolution.validate(new FileReader(filename));
+
+				int[] cells = new int[81];
+				int loc = 0;
+				for (byte b : readFully(filename)) {
+					if (b >= '1' && b <= '9') {
+						cells[loc++] = b - '0';
+					}
+				}
+
+				SudokuProposedSolution grid = SudokuProposedSolution.validate(cells, reused);
+				Assert.assertEquals(fixture, expected.toString(), grid.toString());
+				assertSameErrors(fixture, expected, grid);
+
+				// a valid grid is left in the state set() would give
+				if (!grid.isInError()) {
+					Assert.assertFalse(grid.set(40, cells[40] % 9 + 1));
+				}
+			}
+
+			int[] cells = new int[81];
+			SudokuProposedSolution grid = SudokuProposedSolution.validate(cells);
+			Assert.assertEquals(1, grid.getErrCount());
+			Assert.assertEquals(ERR_CODE.MISSING_DIGITS_IN_ROW, grid.getErrCode(0));
+
+			// numbers out of range must not wrap around onto the bit of a digit
+			new SudokuGridGenerator(42).solution(0, cells);
+			Assert.assertTrue(SudokuBitboardChecker.check(cells, grid));
+			for (int bad : new int[] {-1, -63, 64, 65, 10}) {
+				int[] broken = cells.clone();
+				broken[40] = bad;
+				Assert.assertFalse(String.valueOf(bad), SudokuBitboardChecker.check(broken, grid));
+				Assert.assertEquals(ERR_CODE.INVALID_CHARACTERS_IN_ROW, grid.getErrCode(0));
+				Assert.assertEquals(4, grid.getErrRow(0));
+				Assert.assertEquals(4, grid.getErrCol(0));
+			}
+			Assert.assertEquals('A', grid.getErrValue(0));
+			cells[0] = -1;
+			SudokuBitboardChecker.check(cells, grid);
+			Assert.assertEquals('?', grid.getErrValue(0));
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testBitboardChecker()");
+			}
+		}
+	}
+
+	/**
+	 * Validates a grid with two duplicate digits and an invalid character under every validation policy
+	 * @throws Exception
+	 */
+	@Test
+	public void testValidationPolicy() throws Exception{
+		String filename = "src/test/java/com/uc/sudoku/validate/badPuzzle.txt";
+
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testValidationPolicy()");
+			}
+
+			String text = new String(readFully(filename), "US-ASCII").replace("2,1,4,3", "X,1,4,3");
+			SudokuProposedSolution grid = new SudokuProposedSolution();
+			Assert.assertEquals(ValidationPolicy.EXHAUSTIVE, grid.getValidationPolicy());
+			SudokuProposedSolution.validate(new StringReader(text), grid);
+			Assert.assertEquals(3, grid.getErrCount());
+
+			grid.setValidationPolicy(ValidationPolicy.FIRST_PER_CATEGORY);
+			SudokuProposedSolution.validate(new StringReader(text), grid);
+			Assert.assertEquals(2, grid.getErrCount());
+			Assert.assertEquals(ERR_CODE.NUMBER_ALREADY_USED, grid.getErrCode(0));
+			Assert.assertEquals(ERR_CODE.INVALID_CHARACTERS_IN_ROW, grid.getErrCode(1));
+
+			// an invalid character and a row too long are both structure errors
+			String[] rows = new String(readFully("src/test/java/com/uc/sudoku/validate/okPuzzle.txt"), "US-ASCII").split("\r?\n");
+			rows[0] = "X" + rows[0].substring(1);
+			rows[5] = rows[5] + ",1";
+			String structure = StringUtils.join(rows, "\n");
+			grid.setValidationPolicy(ValidationPolicy.EXHAUSTIVE);
+			SudokuProposedSolution.validate(new StringReader(structure), grid);
+			Assert.assertEquals(2, grid.getErrCount());
+			Assert.assertEquals(ERR_CODE.TOO_MANY_DIGITS_IN_ROW, grid.getErrCode(1));
+			grid.setValidationPolicy(ValidationPolicy.FIRST_PER_CATEGORY);
+			SudokuProposedSolution.validate(new StringReader(structure), grid);
+			Assert.assertEquals(1, grid.getErrCount());
+			Assert.assertEquals(ERR_CODE.INVALID_CHARACTERS_IN_ROW, grid.getErrCode(0));
+
+			// the policy outlives a reset, the first error is the same under every policy
+			grid.setValidationPolicy(ValidationPolicy.FAIL_FAST);
+			SudokuProposedSolution.validate(ByteBuffer.wrap(text.getBytes("US-ASCII")), grid);
+			Assert.assertEquals(1, grid.getErrCount());
+			Assert.assertEquals(ERR_CODE.NUMBER_ALREADY_USED, grid.getErrCode(0));
+			Assert.assertEquals(1, grid.getErrRow(0));
+
+			int[] cells = new int[81];
+			int loc = 0;
+			for (byte b : readFully(filename)) {
+				if (b >= '1' && b <= '9') {
+					cells[loc++] = b - '0';
+				}
+			}
+			SudokuProposedSolution.validate(cells, grid);
+			Assert.assertEquals(1, grid.getErrCount());
+			Assert.assertEquals(1, grid.getErrRow(0));
+
+			// the first error of a broken structure ends the validation as before
+			SudokuProposedSolution.validate(new FileReader("src/test/java/com/uc/sudoku/validate/brokenPuzzleTooManyCols.txt"), grid);
+			Assert.assertEquals(1, grid.getErrCount());
+			Assert.assertEquals(ERR_CODE.NUMBER_ALREADY_USED, grid.getErrCode(0));
+
+			Assert.assertEquals(ValidationPolicy.FAIL_FAST, ValidationPolicy.parse("fail_fast"));
+			Assert.assertNull(ValidationPolicy.parse("lenient"));
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testValidationPolicy()");
+			}
+		}
+	}
+
+	/**
+	 * Plays the valid fixture move by move into an empty grid, replacing and clearing cells on the way
+	 * @throws Exception
+	 */
+	@Test
+	public void testMoves() throws Exception{
+		String filename = "src/test/java/com/uc/sudoku/validate/okPuzzle.txt";
+
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testMoves()");
+			}
+
+			SudokuProposedSolution solution = SudokuProposedSolution.validate(new FileReader(filename));
+			Assert.assertTrue(solution.isComplete());
+			int[] cells = solution.cells().clone();
+
+			SudokuProposedSolution grid = new SudokuProposedSolution();
+			for (int loc = 0; loc < 81; loc++) {
+				Assert.assertFalse(grid.isComplete());
+				Assert.assertEquals(0, grid.conflicts(loc, cells[loc]));
+				Assert.assertTrue(grid.set(loc, cells[loc]));
+			}
+			Assert.assertTrue(grid.isComplete());
+			Assert.assertEquals(solution.toString(), grid.toString());
+
+			// in a complete grid every other number conflicts in all three units, a cell's own number in none
+			int all = SudokuProposedSolution.CONFLICT_ROW | SudokuProposedSolution.CONFLICT_COL | SudokuProposedSolution.CONFLICT_SUBGRID;
+			Assert.assertEquals(all, grid.conflicts(0, cells[1]));
+			Assert.assertEquals(0, grid.conflicts(0, cells[0]));
+
+			// clearing the first and fourth cells frees their numbers in row 0 only
+			int a = cells[0], b = cells[3];
+			Assert.assertEquals(a, grid.unset(0));
+			Assert.assertEquals(0, grid.unset(0));
+			Assert.assertFalse(grid.isComplete());
+			Assert.assertEquals(0, grid.conflicts(0, a));
+			Assert.assertEquals(all, grid.conflicts(0, b));
+			Assert.assertEquals(b, grid.unset(3));
+			Assert.assertEquals(SudokuProposedSolution.CONFLICT_COL | SudokuProposedSolution.CONFLICT_SUBGRID, grid.conflicts(0, b));
+			Assert.assertFalse(grid.set(0, b));
+			Assert.assertEquals(0, grid.get(0));
+
+			Assert.assertTrue(grid.set(0, a));
+			Assert.assertTrue(grid.set(3, b));
+			Assert.assertTrue(grid.isComplete());
+
+			// clearing every cell leaves an empty grid
+			for (int loc = 0; loc < 81; loc++) {
+				Assert.assertEquals(cells[loc], grid.unset(loc));
+			}
+			Assert.assertEquals(new SudokuProposedSolution().toString(), grid.toString());
+			for (int loc = 80; loc >= 0; loc--) {
+				Assert.assertTrue(grid.set(loc, cells[loc]));
+			}
+			Assert.assertTrue(grid.isComplete());
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testMoves()");
+			}
+		}
+	}
+
+	/**
+	 * The console layout of the command line tools formats events as <code>%d{ABSOLUTE}: - %m%n</code> does
+	 * @throws Exception
+	 */
+	@Test
+	public void testConsoleLayout() throws Exception {
+		Layout expected = new PatternLayout("%d{ABSOLUTE}: - %m%n");
+		Layout actual = new SudokuLogging.ConsoleLayout();
+		long[] times = {0L, 999L, 1000L * 3599 + 7, System.currentTimeMillis(), 1318000000123L};
+		for (long time : times) {
+			LoggingEvent event = new LoggingEvent(Logger.class.getName(), LOGGER, time, Level.INFO, "message " + time, null);
+			Assert.assertEquals(expected.format(event), actual.format(event));
+		}
+	}
+
+	private static byte[] readFully(String filename) throws Exception {
+		FileInputStream in = new FileInputStream(filename);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buf = new byte[256];
+			int len;
+			while ((len = in.read(buf)) >= 0) {
+				out.write(buf, 0, len);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void assertSameErrors(String fixture, SudokuProposedSolution expected, SudokuProposedSolution actual) {
+		Assert.assertEquals(fixture, expected.getErrs().size(), actual.getErrs().size());
+		for (int i = 0; i < expected.getErrs().size(); i++) {
+			Assert.assertEquals(fixture, expected.getErrs().get(i).getError(), actual.getErrs().get(i).getError());
+		}
+	}
 }
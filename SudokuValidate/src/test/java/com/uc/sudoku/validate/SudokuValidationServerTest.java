@@ -0,0 +1,111 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuValidationServerTest
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+package com.uc.sudoku.validate;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.apache.log4j.Logger;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.junit.Test;
+
+
+public class SudokuValidationServerTest extends TestCase{
+
+	private static Logger LOGGER = Logger.getLogger(SudokuValidationServerTest.class);
+
+	private static final String FIXTURE_DIR = "src/test/java/com/uc/sudoku/validate";
+
+	private SudokuValidationServer server;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		DOMConfigurator.configure("src/test/resources/config/log4j.xml");
+		server = new SudokuValidate().sudokuServe(new String[] {"-server", "-port", "0", "-threads", "2"});
+		Assert.assertNotNull(server);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		server.stop(0);
+		super.tearDown();
+	}
+
+	@Test
+	public void testValidateOverHttp() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testValidateOverHttp() on port " + server.getPort());
+			}
+			Assert.assertTrue(server.getBindAddress().isLoopbackAddress());
+
+			HttpURLConnection conn = post(Files.readAllBytes(Paths.get(FIXTURE_DIR, "okPuzzle.txt")));
+			Assert.assertEquals(200, conn.getResponseCode());
+			Assert.assertEquals("{\"valid\":true,\"status\":0,\"errors\":[]}", read(conn.getInputStream()));
+
+			conn = post(Files.readAllBytes(Paths.get(FIXTURE_DIR, "brokenPuzzleBadCharacter.txt")));
+			Assert.assertEquals(200, conn.getResponseCode());
+			Assert.assertTrue(read(conn.getInputStream()).startsWith(
+					"{\"valid\":false,\"status\":2003,\"errors\":[{\"status\":2003,\"row\":1,\"col\":1,\"value\":\"X\"}"));
+
+			SudokuProposedSolution bad = SudokuValidate.validateFile(FIXTURE_DIR + "/badPuzzle.txt");
+			conn = post(Files.readAllBytes(Paths.get(FIXTURE_DIR, "badPuzzle.txt")));
+			Assert.assertEquals(SudokuValidationServer.toJson(bad), read(conn.getInputStream()));
+
+			bad.setValidationPolicy(ValidationPolicy.FAIL_FAST);
+			SudokuValidate.validateFile(FIXTURE_DIR + "/badPuzzle.txt", bad);
+			conn = post("?policy=fail_fast", Files.readAllBytes(Paths.get(FIXTURE_DIR, "badPuzzle.txt")));
+			Assert.assertEquals(SudokuValidationServer.toJson(bad), read(conn.getInputStream()));
+			conn = post("?policy=lenient", Files.readAllBytes(Paths.get(FIXTURE_DIR, "badPuzzle.txt")));
+			Assert.assertEquals(400, conn.getResponseCode());
+
+			conn = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + SudokuValidationServer.CONTEXT).openConnection();
+			Assert.assertEquals(405, conn.getResponseCode());
+
+			conn = post(new byte[SudokuValidationServer.MAX_BODY_SIZE + 10]);
+			Assert.assertEquals(413, conn.getResponseCode());
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testValidateOverHttp()");
+			}
+		}
+	}
+
+	private HttpURLConnection post(byte[] body) throws Exception {
+		return post("", body);
+	}
+
+	private HttpURLConnection post(String query, byte[] body) throws Exception {
+		HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + SudokuValidationServer.CONTEXT + query).openConnection();
+		conn.setRequestMethod("POST");
+		conn.setDoOutput(true);
+		conn.setRequestProperty("Content-Type", "text/csv");
+		OutputStream out = conn.getOutputStream();
+		out.write(body);
+		out.close();
+		return conn;
+	}
+
+	private static String read(InputStream in) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[1024];
+		int n;
+		while ((n = in.read(buf)) > 0) {
+			out.write(buf, 0, n);
+		}
+		in.close();
+		return out.toString("UTF-8");
+	}
+}
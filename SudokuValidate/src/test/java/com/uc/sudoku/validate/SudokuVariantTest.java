@@ -0,0 +1,367 @@
+////////////////////////////////////////////////////////////
+/// Class:     SudokuVariantTest
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+package com.uc.sudoku.validate;
+import java.io.File;
+import java.io.FileWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.apache.log4j.Logger;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.junit.Test;
+
+
+public class SudokuVariantTest extends TestCase{
+
+	private static Logger LOGGER = Logger.getLogger(SudokuVariantTest.class);
+
+	private static final String FIXTURE_DIR = "src/test/java/com/uc/sudoku/validate";
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		DOMConfigurator.configure("src/test/resources/config/log4j.xml");
+	}
+
+	/**
+	 * Expects every cell to list exactly the added units holding it
+	 * @throws Exception
+	 */
+	@Test
+	public void testCompiledTables() throws Exception {
+		Assert.assertSame(SudokuVariant.STANDARD, SudokuVariant.of(SudokuGeometry.STANDARD));
+		Assert.assertSame(SudokuVariant.STANDARD, SudokuVariant.parse("classic", SudokuGeometry.STANDARD));
+		Assert.assertNull(SudokuVariant.parse("diagonal+killer", SudokuGeometry.STANDARD));
+
+		for (int box = 2; box <= 5; box++) {
+			SudokuGeometry geometry = SudokuGeometry.of(box);
+			SudokuVariant variant = SudokuVariant.parse("Diagonal+windoku", geometry);
+			Assert.assertEquals("diagonal+windoku", variant.getName());
+			Assert.assertEquals(2 + (box - 1) * (box - 1), variant.getUnitCount());
+			List<int[]> units = units(variant);
+			for (int loc = 0; loc < geometry.getCellCount(); loc++) {
+				List<Integer> expected = new ArrayList<Integer>();
+				for (int u = 0; u < units.size(); u++) {
+					if (contains(units.get(u), loc)) {
+						expected.add(u);
+					}
+				}
+				List<Integer> actual = new ArrayList<Integer>();
+				for (int k = variant.unitStart[loc]; k < variant.unitStart[loc + 1]; k++) {
+					actual.add(variant.unitOf[k]);
+				}
+				Assert.assertEquals(expected, actual);
+			}
+		}
+	}
+
+	/**
+	 * Fills grids of several variants move by move and expects the checkers and the parser to accept them
+	 * 		and every unit to hold every number once
+	 * @throws Exception
+	 */
+	@Test
+	public void testFilledVariants() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testFilledVariants()");
+			}
+
+			// regions made of the rows leave a Latin square
+			int[] rowRegions = new int[81];
+			for (int loc = 0; loc < 81; loc++) {
+				rowRegions[loc] = loc / 9;
+			}
+			SudokuVariant[] variants = {
+				SudokuVariant.of(SudokuGeometry.STANDARD, SudokuRule.DIAGONALS),
+				SudokuVariant.of(SudokuGeometry.STANDARD, SudokuRule.WINDOWS),
+				SudokuVariant.of(SudokuGeometry.STANDARD, SudokuRule.DIAGONALS, SudokuRule.WINDOWS),
+				SudokuVariant.of(SudokuGeometry.STANDARD, SudokuRule.jigsaw(rowRegions)),
+				SudokuVariant.of(SudokuGeometry.of(2), SudokuRule.WINDOWS, SudokuRule.DIAGONALS),
+			};
+			for (SudokuVariant variant : variants) {
+				SudokuProposedSolution grid = new SudokuProposedSolution(variant);
+				Assert.assertTrue(variant.toString(), fill(grid, 0));
+				Assert.assertTrue(grid.isComplete());
+				int[] cells = grid.cells().clone();
+				assertUnits(variant, cells);
+
+				SudokuProposedSolution checked = new SudokuProposedSolution(variant);
+				Assert.assertTrue(SudokuBitboardChecker.check(cells, checked));
+				Assert.assertTrue(SudokuProposedSolution.validate(text(cells, variant.getGeometry()), checked).getErrs().isEmpty());
+				Assert.assertTrue(Arrays.equals(cells, checked.cells()));
+			}
+
+			// a Latin square breaks the subgrids but not the rows as regions
+			SudokuProposedSolution grid = new SudokuProposedSolution(variants[3]);
+			fill(grid, 0);
+			Assert.assertFalse(SudokuBitboardChecker.check(grid.cells().clone(), new SudokuProposedSolution()));
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testFilledVariants()");
+			}
+		}
+	}
+
+	/**
+	 * Validates a classic solution breaking the diagonals and expects the same errors from the parser and the checker
+	 * @throws Exception
+	 */
+	@Test
+	public void testDiagonalErrors() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testDiagonalErrors()");
+			}
+
+			SudokuVariant variant = SudokuVariant.of(SudokuGeometry.STANDARD, SudokuRule.DIAGONALS);
+			ByteBuffer text = ByteBuffer.wrap(Files.readAllBytes(Paths.get(FIXTURE_DIR, "okPuzzle.txt")));
+			Assert.assertFalse(SudokuProposedSolution.validate(text).isInError());
+
+			for (ValidationPolicy policy : ValidationPolicy.values()) {
+				SudokuProposedSolution parsed = new SudokuProposedSolution(variant);
+				parsed.setValidationPolicy(policy);
+				SudokuProposedSolution.validate(text, parsed);
+				Assert.assertTrue(parsed.isInError());
+				// the 2 of cell (3, 3) repeats the 2 of cell (2, 2) on the main diagonal
+				Assert.assertEquals(ERR_CODE.NUMBER_ALREADY_USED, parsed.getErrCode(0));
+				Assert.assertEquals(3, parsed.getErrRow(0));
+				Assert.assertEquals(3, parsed.getErrCol(0));
+				Assert.assertEquals(2, parsed.getErrValue(0));
+
+				SudokuProposedSolution digits = new SudokuProposedSolution(variant);
+				digits.setValidationPolicy(policy);
+				SudokuBitboardChecker.check(SudokuProposedSolution.validate(text).cells().clone(), digits);
+				Assert.assertEquals(parsed.getErrs().size(), digits.getErrs().size());
+				for (int i = 0; i < parsed.getErrCount(); i++) {
+					Assert.assertEquals(parsed.getErrs().get(i).getError(), digits.getErrs().get(i).getError());
+				}
+			}
+
+			// moves: the diagonal conflict is reported and cleared again
+			SudokuProposedSolution grid = new SudokuProposedSolution(variant);
+			Assert.assertTrue(grid.set(0, 5));
+			Assert.assertEquals(SudokuProposedSolution.CONFLICT_UNIT, grid.conflicts(80, 5));
+			Assert.assertFalse(grid.set(80, 5));
+			Assert.assertEquals(5, grid.unset(0));
+			Assert.assertEquals(0, grid.conflicts(80, 5));
+			Assert.assertTrue(grid.set(80, 5));
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testDiagonalErrors()");
+			}
+		}
+	}
+
+	/**
+	 * Validates all fixtures as diagonal Sudokus, which the solution of okPuzzle.txt is not
+	 * @throws Exception
+	 */
+	@Test
+	public void testBatchVariant() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testBatchVariant()");
+			}
+
+			SudokuBatchSummary classic = new SudokuValidate().sudokuBatchValidate(new String[] {"-batch", FIXTURE_DIR});
+			String [] args = {"-batch", "-threads", "2", "-variant", "diagonal", FIXTURE_DIR};
+			SudokuBatchSummary summary = new SudokuValidate().sudokuBatchValidate(args);
+			Assert.assertEquals(classic.getTotal(), summary.getTotal());
+			Assert.assertTrue(summary.getValid() < classic.getValid());
+			Assert.assertTrue(summary.getErrCount(ERR_CODE.NUMBER_ALREADY_USED) > classic.getErrCount(ERR_CODE.NUMBER_ALREADY_USED));
+
+			// an unknown variant is rejected rather than validated as classic grids
+			Assert.assertTrue(SudokuValidate.validateOptions(args));
+			args[4] = "killer";
+			Assert.assertFalse(SudokuValidate.validateOptions(args));
+			try {
+				new SudokuValidate().sudokuBatchValidate(args);
+				Assert.fail();
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testBatchVariant()");
+			}
+		}
+	}
+
+	/**
+	 * Validates the solution of okPuzzle.txt as a corpus, as text and packed, and expects the diagonal variant to reject it
+	 * @throws Exception
+	 */
+	@Test
+	public void testCorpusVariant() throws Exception {
+		try{
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Starting test: testCorpusVariant()");
+			}
+
+			File packed = File.createTempFile("okPuzzle", ".sdkp");
+			packed.deleteOnExit();
+			new SudokuPackConverter().pack(packed.toPath(), FIXTURE_DIR + "/okPuzzle.txt");
+			for (String input : new String[] {FIXTURE_DIR + "/okPuzzle.txt", packed.getPath()}) {
+				SudokuBatchSummary classic = new SudokuValidate().sudokuCorpusValidate(new String[] {"-corpus", input});
+				Assert.assertEquals(input, 1, classic.getValid());
+				String [] args = {"-corpus", "-variant", "diagonal", input};
+				SudokuBatchSummary summary = new SudokuValidate().sudokuCorpusValidate(args);
+				Assert.assertEquals(input, 1, summary.getTotal());
+				Assert.assertEquals(input, 0, summary.getValid());
+				Assert.assertEquals(input, 1, summary.getErrCount(ERR_CODE.NUMBER_ALREADY_USED));
+			}
+
+		} finally {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Completed test: testCorpusVariant()");
+			}
+		}
+	}
+
+	@Test
+	public void testInvalidRules() throws Exception {
+		SudokuGeometry geometry = SudokuGeometry.STANDARD;
+		int[][] shortUnit = {{0, 1, 2}};
+		int[][] repeated = {{0, 1, 2, 3, 4, 5, 6, 7, 7}};
+		int[] unbalanced = new int[81];
+		for (SudokuRule rule : new SudokuRule[] {SudokuRule.units("short", shortUnit), SudokuRule.units("repeated", repeated),
+				SudokuRule.jigsaw(unbalanced), SudokuRule.jigsaw(new int[80])}) {
+			try {
+				SudokuVariant.of(geometry, rule);
+				Assert.fail(rule.getName());
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+
+		// rules keep copies, changing the caller's arrays afterwards does not change them
+		int[][] diagonal = {{0, 10, 20, 30, 40, 50, 60, 70, 80}};
+		SudokuRule units = SudokuRule.units("diagonal", diagonal);
+		diagonal[0][8] = 79;
+		Assert.assertEquals(80, units.units(geometry)[0][8]);
+		units.units(geometry)[0][8] = 79;
+		Assert.assertEquals(80, units.units(geometry)[0][8]);
+		int[] regions = new int[geometry.getCellCount()];
+		for (int loc = 0; loc < regions.length; loc++) {
+			regions[loc] = geometry.boxOf[loc];
+		}
+		SudokuRule rule = SudokuRule.jigsaw(regions);
+		regions[0] = 1;
+		Assert.assertTrue(Arrays.equals(geometry.boxOf, SudokuVariant.of(geometry, rule).boxOf));
+
+		// a jigsaw layout file, the regions of the standard subgrids
+		File layout = File.createTempFile("layout", ".txt");
+		layout.deleteOnExit();
+		FileWriter wr = new FileWriter(layout);
+		for (int r = 0; r < 9; r++) {
+			for (int c = 0; c < 9; c++) {
+				wr.write(SudokuGeometry.symbolOf((r/3)*3 + c/3 + 1));
+			}
+			wr.write("\r\n");
+		}
+		wr.close();
+		SudokuVariant jigsaw = SudokuVariant.parse("jigsaw=" + layout.getPath(), geometry);
+		Assert.assertEquals("jigsaw", jigsaw.getName());
+		Assert.assertTrue(Arrays.equals(geometry.boxOf, jigsaw.boxOf));
+		try {
+			SudokuVariant.of(geometry, jigsaw.getRules().get(0), jigsaw.getRules().get(0));
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			// replaces the subgrids twice
+		}
+		try {
+			SudokuVariant.parse("jigsaw=" + layout.getPath(), SudokuGeometry.of(4));
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			// a 9x9 layout
+		}
+	}
+
+	// fills the grid from the given cell on with the lowest numbers the variant allows
+	private static boolean fill(SudokuProposedSolution grid, int loc) {
+		if (loc == grid.getGeometry().getCellCount()) {
+			return true;
+		}
+		for (int num = 1; num <= grid.getGeometry().getSide(); num++) {
+			if (grid.set(loc, num)) {
+				if (fill(grid, loc + 1)) {
+					return true;
+				}
+				grid.unset(loc);
+			}
+		}
+		return false;
+	}
+
+	// the rows, columns, regions and added units of a variant, listed independently of its tables
+	private static List<int[]> units(SudokuVariant variant) {
+		List<int[]> units = new ArrayList<int[]>();
+		for (SudokuRule rule : variant.getRules()) {
+			units.addAll(Arrays.asList(rule.units(variant.getGeometry())));
+		}
+		return units;
+	}
+
+	private static void assertUnits(SudokuVariant variant, int[] cells) {
+		SudokuGeometry geometry = variant.getGeometry();
+		int side = geometry.getSide();
+		List<int[]> units = units(variant);
+		for (int i = 0; i < side; i++) {
+			int[] row = new int[side], col = new int[side], region = new int[side];
+			int n = 0;
+			for (int k = 0; k < side; k++) {
+				row[k] = i*side + k;
+				col[k] = k*side + i;
+			}
+			for (int loc = 0; loc < cells.length; loc++) {
+				if (variant.boxOf[loc] == i) {
+					region[n++] = loc;
+				}
+			}
+			units.add(row);
+			units.add(col);
+			units.add(region);
+		}
+		for (int[] unit : units) {
+			boolean[] seen = new boolean[side + 1];
+			for (int loc : unit) {
+				Assert.assertFalse(seen[cells[loc]]);
+				seen[cells[loc]] = true;
+			}
+		}
+	}
+
+	private static boolean contains(int[] unit, int loc) {
+		for (int cell : unit) {
+			if (cell == loc) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static ByteBuffer text(int[] cells, SudokuGeometry geometry) throws Exception {
+		int side = geometry.getSide();
+		StringBuilder sb = new StringBuilder();
+		for (int r = 0; r < side; r++) {
+			for (int c = 0; c < side; c++) {
+				sb.append(c > 0 ? "," : r > 0 ? "\n" : "").append(cells[r*side + c]);
+			}
+		}
+		return ByteBuffer.wrap(sb.toString().getBytes("US-ASCII"));
+	}
+}
@@ -0,0 +1,131 @@
+////////////////////////////////////////////////////////////
+/// Class:     BenchmarkFixtures
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Inputs shared by the benchmarks: the test fixtures of the validator and generated corpora.<p>
+ * The fixtures are read from the directory given by the system property <code>sudoku.fixtures</code>,
+ * 		by default the test sources of the neighbouring SudokuValidate project.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+public final class BenchmarkFixtures {
+
+	public static final String FIXTURE_DIR = System.getProperty("sudoku.fixtures",
+			"../SudokuValidate/src/test/java/com/uc/sudoku/validate");
+
+	/**
+	 * The kinds of grids a generated corpus consists of
+	 */
+	public enum Kind {
+		// correct solutions
+		VALID,
+		// well-formed grids with duplicate digits
+		LOGICAL,
+		// grids with invalid characters or missing cells
+		BROKEN
+	}
+
+	// the solution of okPuzzle.txt, the seed of all generated grids
+	private static final String BASE = "185436297437592816692817345376289451214375968958641732863124579721953684549768123";
+
+	private BenchmarkFixtures() {
+	}
+
+	public static byte[] load(String fixture) throws IOException {
+		return Files.readAllBytes(Paths.get(FIXTURE_DIR, fixture));
+	}
+
+	/**
+	 * Returns the digits of a fixture in cell order, ignoring all separators.
+	 */
+	public static int[] digits(String fixture) throws IOException {
+		byte[] bytes = load(fixture);
+		int[] cells = new int[81];
+		int loc = 0;
+		for (int i = 0; i < bytes.length && loc < 81; i++) {
+			if (bytes[i] >= '0' && bytes[i] <= '9') {
+				cells[loc++] = bytes[i] - '0';
+			}
+		}
+		return cells;
+	}
+
+	/**
+	 * Generates a corpus of one 81 character grid per line. The valid grids are random
+	 * 		relabellings and row/column permutations of a known solution; invalid kinds break one cell of each grid.
+	 *
+	 * @param grids  the number of grids
+	 * @param kind   the kind of grids
+	 * @param seed   the random seed, equal seeds produce equal corpora
+	 */
+	public static char[] compactCorpus(int grids, Kind kind, long seed) {
+		Random rnd = new Random(seed);
+		StringBuilder sb = new StringBuilder(grids * 82);
+		char[] grid = new char[81];
+		for (int g = 0; g < grids; g++) {
+			shuffle(rnd, grid);
+			if (kind == Kind.LOGICAL) {
+				// copying a neighbour duplicates a digit in the row
+				int loc = rnd.nextInt(80);
+				grid[loc] = grid[loc + 1];
+			} else if (kind == Kind.BROKEN) {
+				grid[rnd.nextInt(81)] = 'X';
+			}
+			sb.append(grid).append('\n');
+		}
+		char[] corpus = new char[sb.length()];
+		sb.getChars(0, sb.length(), corpus, 0);
+		return corpus;
+	}
+
+	private static void shuffle(Random rnd, char[] grid) {
+		char[] labels = "123456789".toCharArray();
+		permute(rnd, labels, 0, 9);
+		int[] rows = order(rnd);
+		int[] cols = order(rnd);
+		for (int r = 0; r < 9; r++) {
+			for (int c = 0; c < 9; c++) {
+				grid[r * 9 + c] = labels[BASE.charAt(rows[r] * 9 + cols[c]) - '1'];
+			}
+		}
+	}
+
+	// a random order of the lines of a grid which keeps the lines of each band together
+	private static int[] order(Random rnd) {
+		int[] bands = {0, 1, 2};
+		permute(rnd, bands, 0, 3);
+		int[] lines = new int[9];
+		for (int b = 0; b < 3; b++) {
+			int[] inBand = {0, 1, 2};
+			permute(rnd, inBand, 0, 3);
+			for (int i = 0; i < 3; i++) {
+				lines[b * 3 + i] = bands[b] * 3 + inBand[i];
+			}
+		}
+		return lines;
+	}
+
+	private static void permute(Random rnd, char[] a, int from, int to) {
+		for (int i = to - 1; i > from; i--) {
+			int j = from + rnd.nextInt(i - from + 1);
+			char t = a[i]; a[i] = a[j]; a[j] = t;
+		}
+	}
+
+	private static void permute(Random rnd, int[] a, int from, int to) {
+		for (int i = to - 1; i > from; i--) {
+			int j = from + rnd.nextInt(i - from + 1);
+			int t = a[i]; a[i] = a[j]; a[j] = t;
+		}
+	}
+}
@@ -0,0 +1,67 @@
+////////////////////////////////////////////////////////////
+/// Class:     CorpusBenchmark
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate.benchmark;
+
+import java.io.CharArrayReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.uc.sudoku.validate.SudokuCorpusReader;
+import com.uc.sudoku.validate.SudokuProposedSolution;
+
+/**
+ * Measures validating a generated corpus of {@value #GRIDS} grids, reported per grid.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CorpusBenchmark {
+
+	static final int GRIDS = 10000;
+
+	@Param({"VALID", "LOGICAL", "BROKEN"})
+	public BenchmarkFixtures.Kind kind;
+
+	private char[] corpus;
+
+	@Setup
+	public void setUp() {
+		corpus = BenchmarkFixtures.compactCorpus(GRIDS, kind, 42L);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(GRIDS)
+	public int compactLines() {
+		SudokuCorpusReader rd = new SudokuCorpusReader(new CharArrayReader(corpus), SudokuCorpusReader.Format.COMPACT_LINES);
+		rd.setReuseGrid(true);
+		int valid = 0;
+		while (rd.hasNext()) {
+			SudokuProposedSolution grid = rd.next();
+			if (!grid.isInError()) {
+				valid ++;
+			}
+		}
+		return valid;
+	}
+}
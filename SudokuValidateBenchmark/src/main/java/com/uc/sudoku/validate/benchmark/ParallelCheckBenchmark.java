@@ -0,0 +1,107 @@
+////////////////////////////////////////////////////////////
+/// Class:     ParallelCheckBenchmark
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate.benchmark;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.uc.sudoku.validate.SudokuBitboardChecker;
+import com.uc.sudoku.validate.SudokuGeometry;
+import com.uc.sudoku.validate.SudokuParallelChecker;
+import com.uc.sudoku.validate.SudokuProposedSolution;
+
+/**
+ * Measures checking and parsing a valid grid of a large geometry sequentially and with the SudokuParallelChecker
+ * 		on a pool of the given number of threads, to tune SudokuParallelChecker.PARALLEL_THRESHOLD.
+ * 		The parallel benchmarks take the sequential path on a pool of a single thread.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelCheckBenchmark {
+
+	@Param({"6", "7"})
+	public int box;
+
+	@Param({"4"})
+	public int threads;
+
+	private int[] cells;
+
+	private ByteBuffer text;
+
+	private SudokuProposedSolution grid;
+
+	private ForkJoinPool pool;
+
+	// a pool of a single thread is never used
+	private ForkJoinPool sequential;
+
+	@Setup
+	public void setUp() throws UnsupportedEncodingException {
+		SudokuGeometry geometry = SudokuGeometry.of(box);
+		int n = geometry.getBoxSize(), side = geometry.getSide();
+		cells = new int[geometry.getCellCount()];
+		StringBuilder sb = new StringBuilder();
+		for (int r = 0; r < side; r++) {
+			for (int c = 0; c < side; c++) {
+				cells[r*side + c] = (n*(r%n) + r/n + c) % side + 1;
+				sb.append(c > 0 ? "," : r > 0 ? "\n" : "").append(cells[r*side + c]);
+			}
+		}
+		text = ByteBuffer.wrap(sb.toString().getBytes("US-ASCII"));
+		grid = new SudokuProposedSolution(geometry);
+		pool = new ForkJoinPool(threads);
+		sequential = new ForkJoinPool(1);
+	}
+
+	@TearDown
+	public void tearDown() {
+		pool.shutdown();
+		sequential.shutdown();
+	}
+
+	@Benchmark
+	public boolean checkSequential() {
+		return SudokuBitboardChecker.check(cells, grid);
+	}
+
+	@Benchmark
+	public boolean checkParallel() {
+		return SudokuParallelChecker.check(cells, grid, pool);
+	}
+
+	@Benchmark
+	public boolean parseSequential() {
+		return SudokuParallelChecker.validate(text, grid, sequential).isInError();
+	}
+
+	@Benchmark
+	public boolean parseParallel() {
+		return SudokuParallelChecker.validate(text, grid, pool).isInError();
+	}
+}
@@ -0,0 +1,84 @@
+////////////////////////////////////////////////////////////
+/// Class:     ParseBenchmark
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate.benchmark;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.uc.sudoku.validate.SudokuProposedSolution;
+
+/**
+ * Measures SudokuProposedSolution.validate over the Reader, byte buffer and reused grid paths
+ * 		for valid, logically invalid and structurally broken fixtures.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+	@Param({"okPuzzle.txt", "badPuzzle.txt", "badPuzzleFormat.txt", "brokenPuzzleBadCharacter.txt",
+			"brokenPuzzleMissingCharacter.txt", "brokenPuzzleTooFewCols.txt", "brokenPuzzleTooFewRows.txt",
+			"brokenPuzzleTooManyCols.txt", "brokenPuzzleTooManyRows.txt"})
+	public String fixture;
+
+	private char[] chars;
+
+	private ByteBuffer heap;
+
+	private ByteBuffer direct;
+
+	private SudokuProposedSolution grid;
+
+	@Setup
+	public void setUp() throws IOException {
+		byte[] bytes = BenchmarkFixtures.load(fixture);
+		chars = new String(bytes, "ISO-8859-1").toCharArray();
+		heap = ByteBuffer.wrap(bytes);
+		direct = ByteBuffer.allocateDirect(bytes.length);
+		direct.put(bytes).flip();
+		grid = new SudokuProposedSolution();
+	}
+
+	@Benchmark
+	public SudokuProposedSolution reader() throws IOException {
+		return SudokuProposedSolution.validate(new CharArrayReader(chars));
+	}
+
+	@Benchmark
+	public SudokuProposedSolution heapBuffer() {
+		return SudokuProposedSolution.validate(heap);
+	}
+
+	@Benchmark
+	public SudokuProposedSolution directBuffer() {
+		return SudokuProposedSolution.validate(direct);
+	}
+
+	@Benchmark
+	public SudokuProposedSolution reusedGrid() {
+		return SudokuProposedSolution.validate(heap, grid);
+	}
+}
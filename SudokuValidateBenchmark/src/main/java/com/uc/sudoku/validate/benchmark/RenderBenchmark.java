@@ -0,0 +1,64 @@
+////////////////////////////////////////////////////////////
+/// Class:     RenderBenchmark
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate.benchmark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.uc.sudoku.validate.SudokuProposedSolution;
+import com.uc.sudoku.validate.ValidationError;
+
+/**
+ * Measures rendering the results of a validation: the ASCII grid of toString() and the error messages.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+
+	@Param({"okPuzzle.txt", "badPuzzle.txt", "brokenPuzzleTooFewCols.txt"})
+	public String fixture;
+
+	private SudokuProposedSolution grid;
+
+	@Setup
+	public void setUp() throws IOException {
+		grid = SudokuProposedSolution.validate(ByteBuffer.wrap(BenchmarkFixtures.load(fixture)));
+	}
+
+	@Benchmark
+	public String grid() {
+		return grid.toString();
+	}
+
+	@Benchmark
+	public int errors() {
+		int len = 0;
+		for (ValidationError err : grid.getErrs()) {
+			len += err.getError().length();
+		}
+		return len;
+	}
+}
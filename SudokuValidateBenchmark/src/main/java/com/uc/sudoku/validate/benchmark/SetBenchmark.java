@@ -0,0 +1,96 @@
+////////////////////////////////////////////////////////////
+/// Class:     SetBenchmark
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.uc.sudoku.validate.SudokuGeometry;
+import com.uc.sudoku.validate.SudokuProposedSolution;
+import com.uc.sudoku.validate.SudokuVariant;
+
+/**
+ * Measures filling a complete grid through SudokuProposedSolution.set(int, int) and checking it with the
+ * 		SudokuBitboardChecker, for a valid solution and for one with duplicate digits.
+ * 		A single move of a game, clearing a cell, checking and setting its number again, is measured against the grid
+ * 		filled by the fixture, to be compared with validating the whole grid again.
+ * 		Each is measured for the classic grid and for a variant adding units, see SudokuVariant.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SetBenchmark {
+
+	@Param({"okPuzzle.txt", "badPuzzle.txt"})
+	public String fixture;
+
+	@Param({"classic", "diagonal+windoku"})
+	public String variant;
+
+	private int[] cells;
+
+	private SudokuProposedSolution grid;
+
+	private SudokuProposedSolution board;
+
+	private int move;
+
+	@Setup
+	public void setUp() throws IOException {
+		cells = BenchmarkFixtures.digits(fixture);
+		SudokuVariant rules = SudokuVariant.parse(variant, SudokuGeometry.STANDARD);
+		grid = new SudokuProposedSolution(rules);
+		board = new SudokuProposedSolution(rules);
+		for (int loc = 0; loc < cells.length; loc++) {
+			board.set(loc, cells[loc]);
+		}
+	}
+
+	@Benchmark
+	public int setAllCells() {
+		grid.reset();
+		int rejected = 0;
+		for (int loc = 0; loc < cells.length; loc++) {
+			if (!grid.set(loc, cells[loc])) {
+				rejected ++;
+			}
+		}
+		return rejected;
+	}
+
+	@Benchmark
+	public boolean move() {
+		move = (move + 7) % 81;
+		int num = board.unset(move);
+		if (num != 0 && board.conflicts(move, num) == 0) {
+			board.set(move, num);
+		}
+		return board.isComplete();
+	}
+
+	@Benchmark
+	public SudokuProposedSolution bitboardCheck() {
+		return SudokuProposedSolution.validate(cells, grid);
+	}
+}
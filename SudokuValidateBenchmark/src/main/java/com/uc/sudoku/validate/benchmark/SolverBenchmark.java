@@ -0,0 +1,105 @@
+////////////////////////////////////////////////////////////
+/// Class:     SolverBenchmark
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate.benchmark;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.uc.sudoku.validate.SudokuSolutionMemo;
+import com.uc.sudoku.validate.SudokuSolver;
+
+/**
+ * Measures solving and proving the uniqueness of puzzles, derived from the valid fixture by blanking
+ * 		cells in random order for as long as the solution stays unique. The puzzles are cycled per invocation,
+ * 		so that the score is the number of puzzles per second. The uniqueness proofs are also measured with
+ * 		a solver memo holding every puzzle, i.e. the cost of a hit.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolverBenchmark {
+
+	private static final int PUZZLES = 64;
+
+	@Param({"30", "60"})
+	public int blanks;
+
+	private int[][] puzzles;
+
+	private int[] solution;
+
+	private SudokuSolver solver;
+
+	private SudokuSolver cachingSolver;
+
+	private int next;
+
+	@Setup
+	public void setUp() throws IOException {
+		int[] cells = BenchmarkFixtures.digits("okPuzzle.txt");
+		solver = new SudokuSolver();
+		solution = new int[81];
+		puzzles = new int[PUZZLES][];
+		Random random = new Random(PUZZLES);
+		for (int p = 0; p < PUZZLES; p++) {
+			int[] puzzle = cells.clone();
+			int blanked = 0;
+			for (int tries = 0; tries < 1000 && blanked < blanks; tries++) {
+				int loc = random.nextInt(81);
+				int num = puzzle[loc];
+				if (num == 0) {
+					continue;
+				}
+				puzzle[loc] = 0;
+				if (solver.hasUniqueSolution(puzzle)) {
+					blanked ++;
+				} else {
+					puzzle[loc] = num;
+				}
+			}
+			puzzles[p] = puzzle;
+		}
+		cachingSolver = new SudokuSolver();
+		cachingSolver.setMemo(new SudokuSolutionMemo<Boolean>(PUZZLES));
+	}
+
+	@Benchmark
+	public boolean solve() {
+		next = (next + 1) % PUZZLES;
+		return solver.solve(puzzles[next], solution);
+	}
+
+	@Benchmark
+	public boolean unique() {
+		next = (next + 1) % PUZZLES;
+		return solver.hasUniqueSolution(puzzles[next]);
+	}
+
+	@Benchmark
+	public boolean cachedUnique() {
+		next = (next + 1) % PUZZLES;
+		return cachingSolver.hasUniqueSolution(puzzles[next]);
+	}
+}
@@ -0,0 +1,101 @@
+////////////////////////////////////////////////////////////
+/// Class:     StartupBenchmark
+///	Author:    Andrew Upton
+///	           Copyright 2011 Upton Consulting gmbh
+////////////////////////////////////////////////////////////
+
+package com.uc.sudoku.validate.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.uc.sudoku.validate.SudokuValidate;
+
+/**
+ * Measures the time to the first result of the command line validator: from starting a new JVM on a fixture
+ * 		until it prints the status code, as each run of <code>validate.bat</code> does.<p>
+ * <code>logging=code</code> is the default start, <code>logging=xml</code> has log4j parse log4j.xml as all runs used to.
+ * 		Further JVM options are passed with <code>jvmArgs</code>, e.g.
+ * 		<code>-p jvmArgs=-XX:SharedArchiveFile=../SudokuValidate/target/SudokuValidate.jsa</code> along with the class path
+ * 		of the archive in <code>-p classPath=...</code>.
+ *
+ * @author Andrew Upton,  2011 Upton Consulting gmbh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class StartupBenchmark {
+
+	@Param({"okPuzzle.txt"})
+	public String fixture;
+
+	@Param({"code", "xml"})
+	public String logging;
+
+	@Param({""})
+	public String jvmArgs;
+
+	// empty for the class path of the benchmarks
+	@Param({""})
+	public String classPath;
+
+	private Process process;
+
+	@Benchmark
+	public String firstResult() throws IOException {
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		for (String arg : jvmArgs.trim().split("\\s+")) {
+			if (arg.length() > 0) {
+				command.add(arg);
+			}
+		}
+		if ("xml".equals(logging)) {
+			command.add("-Dlog4j.configuration=log4j.xml");
+		}
+		command.add("-cp");
+		command.add(classPath.length() > 0 ? classPath : System.getProperty("java.class.path"));
+		command.add(SudokuValidate.class.getName());
+		command.add(new File(BenchmarkFixtures.FIXTURE_DIR, fixture).getPath());
+
+		process = new ProcessBuilder(command).redirectErrorStream(true).start();
+		BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()));
+		String line;
+		while ((line = in.readLine()) != null) {
+			if (line.contains("Status Code")) {
+				return line;
+			}
+		}
+		throw new IllegalStateException("No result from " + command);
+	}
+
+	@TearDown(Level.Invocation)
+	public void tearDown() throws InterruptedException {
+		if (process != null) {
+			process.destroy();
+			process.waitFor();
+			process = null;
+		}
+	}
+}